@@ -0,0 +1,830 @@
+/*
+// Licensed to DynamoBI Corporation (DynamoBI) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  DynamoBI licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+
+//   http://www.apache.org/licenses/LICENSE-2.0
+
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+*/
+package org.eigenbase.applib.impexp;
+
+import java.io.*;
+
+import java.math.*;
+
+import java.sql.*;
+
+import java.util.*;
+
+
+/**
+ * ColumnarRowFormat defines the typed, block-columnar row format written by
+ * {@link ColumnarRowWriter} and read by {@link ColumnarRowReader}.
+ *
+ * <p>A stream consists of a header followed by blocks of rows:
+ *
+ * <pre>
+ * header: byte[4] magic "LDBC", short version, byte flags,
+ *         int maxBlockRows, int columnCount, then per column:
+ *         UTF name, int sqlType, int precision, int scale, int displaySize
+ * block:  int rowCount, int rawLength, int storedLength,
+ *         byte[storedLength] (deflated if FLAG_COMPRESSED is set)
+ * end:    int 0
+ * error:  int -1, int length, byte[length] UTF-8 message (the writer gave
+ *         up; no more blocks follow)
+ * </pre>
+ *
+ * Within a block, the columns are stored one after the other. Each starts with
+ * a byte saying whether a null bitmap follows, and then holds its non-null
+ * values only:
+ *
+ * <ul>
+ * <li>integer, datetime and decimal columns are held as longs (milliseconds
+ * and unscaled values respectively), run-length encoded when the block has few
+ * runs and bit-packed relative to the block minimum otherwise;
+ * <li>character columns are dictionary-encoded (bit-packed ids) when at most
+ * half the values in the block are distinct, and stored as length-prefixed
+ * UTF-8 otherwise;
+ * <li>booleans are bit-packed; floating point values and binary strings are
+ * stored as is;
+ * <li>columns of any other type fall back to Java serialization.
+ * </ul>
+ *
+ * Blocks are bounded both in rows and in bytes, so reading and writing need
+ * memory proportional to one block regardless of the size of the table. The
+ * same stream serves as a file format ({@link WriteRowsToFileUDX}) and as a
+ * wire protocol ({@link RemoteRowsSender}).
+ *
+ * @version $Id$
+ */
+public abstract class ColumnarRowFormat
+{
+    //~ Static fields/initializers ---------------------------------------------
+
+    static final byte [] MAGIC = { 'L', 'D', 'B', 'C' };
+
+    static final short VERSION = 1;
+
+    static final int FLAG_COMPRESSED = 0x01;
+
+    static final int FRAME_END = 0;
+
+    static final int FRAME_ERROR = -1;
+
+    /**
+     * Maximum number of rows the writer puts in one block.
+     */
+    static final int BLOCK_ROWS = 8192;
+
+    /**
+     * Approximate number of value bytes after which the writer ends a block
+     * early, so that wide rows do not make blocks arbitrarily large.
+     */
+    static final int BLOCK_BYTES = 4 * 1024 * 1024;
+
+    static final int KIND_BOOLEAN = 0;
+    static final int KIND_LONG = 1;
+    static final int KIND_DOUBLE = 2;
+    static final int KIND_STRING = 3;
+    static final int KIND_BYTES = 4;
+    static final int KIND_OBJECT = 5;
+
+    static final int ENCODING_PACKED = 0;
+    static final int ENCODING_RLE = 1;
+    static final int ENCODING_PLAIN = 2;
+    static final int ENCODING_DICTIONARY = 3;
+
+    private static final String CHARSET = "UTF-8";
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * Tests whether a stream starts with the columnar format's magic number,
+     * without consuming anything from it.
+     *
+     * @param in stream supporting mark/reset
+     *
+     * @return whether the stream holds rows in this format
+     */
+    public static boolean isColumnar(InputStream in)
+        throws IOException
+    {
+        in.mark(MAGIC.length);
+        try {
+            for (int i = 0; i < MAGIC.length; i++) {
+                if (in.read() != MAGIC[i]) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            in.reset();
+        }
+    }
+
+    /**
+     * Maps a JDBC type to the way its values are held in a block.
+     */
+    static int getKind(int sqlType)
+    {
+        switch (sqlType) {
+        case Types.BIT:
+        case Types.BOOLEAN:
+            return KIND_BOOLEAN;
+        case Types.TINYINT:
+        case Types.SMALLINT:
+        case Types.INTEGER:
+        case Types.BIGINT:
+        case Types.DATE:
+        case Types.TIME:
+        case Types.TIMESTAMP:
+        case Types.DECIMAL:
+        case Types.NUMERIC:
+            return KIND_LONG;
+        case Types.REAL:
+        case Types.FLOAT:
+        case Types.DOUBLE:
+            return KIND_DOUBLE;
+        case Types.CHAR:
+        case Types.VARCHAR:
+        case Types.LONGVARCHAR:
+            return KIND_STRING;
+        case Types.BINARY:
+        case Types.VARBINARY:
+        case Types.LONGVARBINARY:
+            return KIND_BYTES;
+        default:
+            return KIND_OBJECT;
+        }
+    }
+
+    /**
+     * Returns the number of bits needed to hold any value between 0 and range,
+     * treated as unsigned.
+     */
+    static int bitsFor(long range)
+    {
+        return 64 - Long.numberOfLeadingZeros(range);
+    }
+
+    /**
+     * Writes n values as width-bit offsets from base, least significant bits
+     * first.
+     */
+    static void writePacked(
+        DataOutput out,
+        long [] values,
+        int n,
+        long base,
+        int width)
+        throws IOException
+    {
+        if (width == 0) {
+            return;
+        }
+        byte [] bytes = new byte[(int) (((long) n * width + 7) / 8)];
+        long bitPos = 0;
+        for (int i = 0; i < n; i++) {
+            long v = values[i] - base;
+            int byteIdx = (int) (bitPos >>> 3);
+            int shift = (int) (bitPos & 7);
+            int put = 0;
+            while (put < width) {
+                bytes[byteIdx++] |= (byte) ((v >>> put) << shift);
+                put += 8 - shift;
+                shift = 0;
+            }
+            bitPos += width;
+        }
+        out.write(bytes);
+    }
+
+    /**
+     * Reads n values written by {@link #writePacked}.
+     */
+    static void readPacked(
+        DataInput in,
+        long [] values,
+        int n,
+        long base,
+        int width)
+        throws IOException
+    {
+        if (width == 0) {
+            Arrays.fill(values, 0, n, base);
+            return;
+        }
+        byte [] bytes = new byte[(int) (((long) n * width + 7) / 8)];
+        in.readFully(bytes);
+        long bitPos = 0;
+        for (int i = 0; i < n; i++) {
+            int byteIdx = (int) (bitPos >>> 3);
+            int shift = (int) (bitPos & 7);
+            long v = 0;
+            int got = 0;
+            while (got < width) {
+                int take = Math.min(8 - shift, width - got);
+                long bits = ((bytes[byteIdx++] & 0xFF) >>> shift)
+                    & ((1 << take) - 1);
+                v |= bits << got;
+                got += take;
+                shift = 0;
+            }
+            values[i] = v + base;
+            bitPos += width;
+        }
+    }
+
+    static void writeVarInt(DataOutput out, int v)
+        throws IOException
+    {
+        while ((v & ~0x7F) != 0) {
+            out.writeByte((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.writeByte(v);
+    }
+
+    static int readVarInt(DataInput in)
+        throws IOException
+    {
+        int v = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            v |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return v;
+            }
+        }
+        throw new IOException("Malformed length in columnar row block");
+    }
+
+    static void writeBytes(DataOutput out, byte [] bytes)
+        throws IOException
+    {
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    static byte [] readBytes(DataInput in)
+        throws IOException
+    {
+        byte [] bytes = new byte[readVarInt(in)];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    static void writeString(DataOutput out, String s)
+        throws IOException
+    {
+        writeBytes(out, s.getBytes(CHARSET));
+    }
+
+    static String readString(DataInput in)
+        throws IOException
+    {
+        return new String(readBytes(in), CHARSET);
+    }
+
+    /**
+     * Writes the message of an error frame. Unlike {@link
+     * DataOutput#writeUTF}, this has no limit on the length of the message.
+     */
+    static void writeMessage(DataOutput out, String message)
+        throws IOException
+    {
+        byte [] bytes = message.getBytes(CHARSET);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readMessage(DataInput in)
+        throws IOException
+    {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Corrupt columnar row error frame");
+        }
+        byte [] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, CHARSET);
+    }
+
+    //~ Inner Classes ----------------------------------------------------------
+
+    /**
+     * Column holds the description of one column together with its values for
+     * the current block. Values are kept at their row positions; nulls are
+     * only skipped when the block is encoded.
+     */
+    static class Column
+    {
+        final String name;
+        final int sqlType;
+        final int precision;
+        final int scale;
+        final int displaySize;
+        final int kind;
+
+        boolean [] nulls;
+        long [] longs;
+        double [] doubles;
+        Object [] objects;
+
+        Column(
+            String name,
+            int sqlType,
+            int precision,
+            int scale,
+            int displaySize)
+        {
+            this.name = name;
+            this.sqlType = sqlType;
+            this.precision = precision;
+            this.scale = scale;
+            this.displaySize = displaySize;
+            this.kind = getKind(sqlType);
+        }
+
+        static Column read(DataInput in)
+            throws IOException
+        {
+            return new Column(
+                in.readUTF(),
+                in.readInt(),
+                in.readInt(),
+                in.readInt(),
+                in.readInt());
+        }
+
+        void write(DataOutput out)
+            throws IOException
+        {
+            out.writeUTF(name);
+            out.writeInt(sqlType);
+            out.writeInt(precision);
+            out.writeInt(scale);
+            out.writeInt(displaySize);
+        }
+
+        void allocate(int capacity)
+        {
+            if ((nulls != null) && (nulls.length >= capacity)) {
+                return;
+            }
+            nulls = new boolean[capacity];
+            switch (kind) {
+            case KIND_BOOLEAN:
+            case KIND_LONG:
+                longs = new long[capacity];
+                break;
+            case KIND_DOUBLE:
+                doubles = new double[capacity];
+                break;
+            default:
+                objects = new Object[capacity];
+                break;
+            }
+        }
+
+        /**
+         * Copies the current value of this column from a result set.
+         *
+         * @return approximate number of bytes taken by the value
+         */
+        int load(ResultSet rs, int iCol, int iRow)
+            throws SQLException
+        {
+            int cb = 8;
+            switch (kind) {
+            case KIND_BOOLEAN:
+                longs[iRow] = rs.getBoolean(iCol) ? 1 : 0;
+                break;
+            case KIND_LONG:
+                longs[iRow] = loadLong(rs, iCol);
+                break;
+            case KIND_DOUBLE:
+                doubles[iRow] = rs.getDouble(iCol);
+                break;
+            case KIND_STRING:
+                String s = rs.getString(iCol);
+                objects[iRow] = s;
+                cb = (s == null) ? 0 : s.length();
+                break;
+            case KIND_BYTES:
+                byte [] b = rs.getBytes(iCol);
+                objects[iRow] = b;
+                cb = (b == null) ? 0 : b.length;
+                break;
+            default:
+                objects[iRow] = rs.getObject(iCol);
+                cb = 64;
+                break;
+            }
+            nulls[iRow] = rs.wasNull();
+            return cb;
+        }
+
+        private long loadLong(ResultSet rs, int iCol)
+            throws SQLException
+        {
+            switch (sqlType) {
+            case Types.DATE:
+                java.sql.Date date = rs.getDate(iCol);
+                return (date == null) ? 0 : date.getTime();
+            case Types.TIME:
+                Time time = rs.getTime(iCol);
+                return (time == null) ? 0 : time.getTime();
+            case Types.TIMESTAMP:
+                Timestamp ts = rs.getTimestamp(iCol);
+                return (ts == null) ? 0 : ts.getTime();
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+                BigDecimal bd = rs.getBigDecimal(iCol);
+                if (bd == null) {
+                    return 0;
+                }
+                BigInteger unscaled = bd.setScale(scale).unscaledValue();
+                if (unscaled.bitLength() > 63) {
+                    throw new SQLException(
+                        "Decimal value " + bd + " in column " + name
+                        + " does not fit in 64 bits");
+                }
+                return unscaled.longValue();
+            default:
+                return rs.getLong(iCol);
+            }
+        }
+
+        /**
+         * Binds the value of this column at a given row of the current block
+         * to a statement parameter.
+         */
+        void bind(PreparedStatement ps, int iParam, int iRow)
+            throws SQLException
+        {
+            if (nulls[iRow]) {
+                ps.setNull(iParam, sqlType);
+                return;
+            }
+            switch (kind) {
+            case KIND_BOOLEAN:
+                ps.setBoolean(iParam, longs[iRow] != 0);
+                break;
+            case KIND_LONG:
+                bindLong(ps, iParam, longs[iRow]);
+                break;
+            case KIND_DOUBLE:
+                if (sqlType == Types.REAL) {
+                    ps.setFloat(iParam, (float) doubles[iRow]);
+                } else {
+                    ps.setDouble(iParam, doubles[iRow]);
+                }
+                break;
+            case KIND_STRING:
+                ps.setString(iParam, (String) objects[iRow]);
+                break;
+            case KIND_BYTES:
+                ps.setBytes(iParam, (byte []) objects[iRow]);
+                break;
+            default:
+                ps.setObject(iParam, objects[iRow]);
+                break;
+            }
+        }
+
+        private void bindLong(PreparedStatement ps, int iParam, long v)
+            throws SQLException
+        {
+            switch (sqlType) {
+            case Types.TINYINT:
+                ps.setByte(iParam, (byte) v);
+                break;
+            case Types.SMALLINT:
+                ps.setShort(iParam, (short) v);
+                break;
+            case Types.INTEGER:
+                ps.setInt(iParam, (int) v);
+                break;
+            case Types.DATE:
+                ps.setDate(iParam, new java.sql.Date(v));
+                break;
+            case Types.TIME:
+                ps.setTime(iParam, new Time(v));
+                break;
+            case Types.TIMESTAMP:
+                ps.setTimestamp(iParam, new Timestamp(v));
+                break;
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+                ps.setBigDecimal(iParam, BigDecimal.valueOf(v, scale));
+                break;
+            default:
+                ps.setLong(iParam, v);
+                break;
+            }
+        }
+
+        /**
+         * Encodes the first n rows of this column.
+         */
+        void encode(DataOutputStream out, int n)
+            throws IOException
+        {
+            int nNonNull = 0;
+            for (int i = 0; i < n; i++) {
+                if (!nulls[i]) {
+                    nNonNull++;
+                }
+            }
+            if (nNonNull == n) {
+                out.writeByte(0);
+            } else {
+                out.writeByte(1);
+                long [] bits = new long[n];
+                for (int i = 0; i < n; i++) {
+                    bits[i] = nulls[i] ? 1 : 0;
+                }
+                writePacked(out, bits, n, 0, 1);
+            }
+            if (nNonNull == 0) {
+                return;
+            }
+            switch (kind) {
+            case KIND_BOOLEAN:
+                writePacked(out, compactLongs(n, nNonNull), nNonNull, 0, 1);
+                break;
+            case KIND_LONG:
+                encodeLongs(out, compactLongs(n, nNonNull), nNonNull);
+                break;
+            case KIND_DOUBLE:
+                for (int i = 0; i < n; i++) {
+                    if (!nulls[i]) {
+                        out.writeDouble(doubles[i]);
+                    }
+                }
+                break;
+            case KIND_STRING:
+                encodeStrings(out, n, nNonNull);
+                break;
+            case KIND_BYTES:
+                for (int i = 0; i < n; i++) {
+                    if (!nulls[i]) {
+                        writeBytes(out, (byte []) objects[i]);
+                    }
+                }
+                break;
+            default:
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                ObjectOutputStream objOut = new ObjectOutputStream(bytes);
+                for (int i = 0; i < n; i++) {
+                    if (!nulls[i]) {
+                        objOut.writeObject(objects[i]);
+                    }
+                }
+                objOut.close();
+                writeBytes(out, bytes.toByteArray());
+                break;
+            }
+        }
+
+        private long [] compactLongs(int n, int nNonNull)
+        {
+            if (nNonNull == n) {
+                return longs;
+            }
+            long [] compact = new long[nNonNull];
+            for (int i = 0, j = 0; i < n; i++) {
+                if (!nulls[i]) {
+                    compact[j++] = longs[i];
+                }
+            }
+            return compact;
+        }
+
+        private static void encodeLongs(
+            DataOutputStream out,
+            long [] values,
+            int n)
+            throws IOException
+        {
+            long min = values[0];
+            long max = values[0];
+            int runs = 1;
+            for (int i = 1; i < n; i++) {
+                long v = values[i];
+                if (v < min) {
+                    min = v;
+                } else if (v > max) {
+                    max = v;
+                }
+                if (v != values[i - 1]) {
+                    runs++;
+                }
+            }
+            int width = bitsFor(max - min);
+            long packedBytes = ((long) n * width + 7) / 8;
+            if (((long) runs * 12) < packedBytes) {
+                out.writeByte(ENCODING_RLE);
+                out.writeInt(runs);
+                int start = 0;
+                for (int i = 1; i <= n; i++) {
+                    if ((i == n) || (values[i] != values[start])) {
+                        out.writeLong(values[start]);
+                        out.writeInt(i - start);
+                        start = i;
+                    }
+                }
+            } else {
+                out.writeByte(ENCODING_PACKED);
+                out.writeLong(min);
+                out.writeByte(width);
+                writePacked(out, values, n, min, width);
+            }
+        }
+
+        private void encodeStrings(DataOutputStream out, int n, int nNonNull)
+            throws IOException
+        {
+            Map<String, Integer> dict = new HashMap<String, Integer>();
+            List<String> entries = new ArrayList<String>();
+            long [] ids = new long[nNonNull];
+            int maxEntries = nNonNull / 2;
+            for (int i = 0, j = 0; i < n; i++) {
+                if (nulls[i]) {
+                    continue;
+                }
+                String s = (String) objects[i];
+                Integer id = dict.get(s);
+                if (id == null) {
+                    if (entries.size() >= maxEntries) {
+                        entries = null;
+                        break;
+                    }
+                    id = entries.size();
+                    dict.put(s, id);
+                    entries.add(s);
+                }
+                ids[j++] = id;
+            }
+            if (entries != null) {
+                out.writeByte(ENCODING_DICTIONARY);
+                out.writeInt(entries.size());
+                for (String s : entries) {
+                    writeString(out, s);
+                }
+                int width = bitsFor(entries.size() - 1);
+                out.writeByte(width);
+                writePacked(out, ids, nNonNull, 0, width);
+            } else {
+                out.writeByte(ENCODING_PLAIN);
+                for (int i = 0; i < n; i++) {
+                    if (!nulls[i]) {
+                        writeString(out, (String) objects[i]);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Decodes n rows of this column written by {@link #encode}.
+         */
+        void decode(DataInputStream in, int n)
+            throws IOException
+        {
+            allocate(n);
+            int nNonNull = n;
+            if (in.readByte() == 0) {
+                Arrays.fill(nulls, 0, n, false);
+            } else {
+                long [] bits = new long[n];
+                readPacked(in, bits, n, 0, 1);
+                for (int i = 0; i < n; i++) {
+                    nulls[i] = (bits[i] != 0);
+                    if (nulls[i]) {
+                        nNonNull--;
+                    }
+                }
+            }
+            if (nNonNull == 0) {
+                return;
+            }
+            switch (kind) {
+            case KIND_BOOLEAN:
+                long [] bools = new long[nNonNull];
+                readPacked(in, bools, nNonNull, 0, 1);
+                expandLongs(bools, n);
+                break;
+            case KIND_LONG:
+                expandLongs(decodeLongs(in, nNonNull), n);
+                break;
+            case KIND_DOUBLE:
+                for (int i = 0; i < n; i++) {
+                    if (!nulls[i]) {
+                        doubles[i] = in.readDouble();
+                    }
+                }
+                break;
+            case KIND_STRING:
+                decodeStrings(in, n, nNonNull);
+                break;
+            case KIND_BYTES:
+                for (int i = 0; i < n; i++) {
+                    objects[i] = nulls[i] ? null : readBytes(in);
+                }
+                break;
+            default:
+                ObjectInputStream objIn =
+                    new ObjectInputStream(
+                        new ByteArrayInputStream(readBytes(in)));
+                try {
+                    for (int i = 0; i < n; i++) {
+                        objects[i] = nulls[i] ? null : objIn.readObject();
+                    }
+                } catch (ClassNotFoundException ex) {
+                    IOException ioe =
+                        new IOException(
+                            "Cannot read value of column " + name);
+                    ioe.initCause(ex);
+                    throw ioe;
+                }
+                break;
+            }
+        }
+
+        private void expandLongs(long [] compact, int n)
+        {
+            for (int i = 0, j = 0; i < n; i++) {
+                if (!nulls[i]) {
+                    longs[i] = compact[j++];
+                }
+            }
+        }
+
+        private static long [] decodeLongs(DataInputStream in, int n)
+            throws IOException
+        {
+            long [] values = new long[n];
+            int encoding = in.readByte();
+            if (encoding == ENCODING_RLE) {
+                int runs = in.readInt();
+                int pos = 0;
+                for (int r = 0; r < runs; r++) {
+                    long v = in.readLong();
+                    int len = in.readInt();
+                    if ((len < 0) || (len > (n - pos))) {
+                        throw new IOException(
+                            "Corrupt run length in columnar row block");
+                    }
+                    Arrays.fill(values, pos, pos + len, v);
+                    pos += len;
+                }
+            } else if (encoding == ENCODING_PACKED) {
+                long base = in.readLong();
+                int width = in.readByte();
+                readPacked(in, values, n, base, width);
+            } else {
+                throw new IOException(
+                    "Unknown encoding " + encoding + " in columnar row block");
+            }
+            return values;
+        }
+
+        private void decodeStrings(DataInputStream in, int n, int nNonNull)
+            throws IOException
+        {
+            int encoding = in.readByte();
+            if (encoding == ENCODING_DICTIONARY) {
+                String [] entries = new String[in.readInt()];
+                for (int k = 0; k < entries.length; k++) {
+                    entries[k] = readString(in);
+                }
+                int width = in.readByte();
+                long [] ids = new long[nNonNull];
+                readPacked(in, ids, nNonNull, 0, width);
+                for (int i = 0, j = 0; i < n; i++) {
+                    objects[i] = nulls[i] ? null : entries[(int) ids[j++]];
+                }
+            } else if (encoding == ENCODING_PLAIN) {
+                for (int i = 0; i < n; i++) {
+                    objects[i] = nulls[i] ? null : readString(in);
+                }
+            } else {
+                throw new IOException(
+                    "Unknown encoding " + encoding + " in columnar row block");
+            }
+        }
+    }
+}
+
+// End ColumnarRowFormat.java
@@ -0,0 +1,221 @@
+/*
+// Licensed to DynamoBI Corporation (DynamoBI) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  DynamoBI licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+
+//   http://www.apache.org/licenses/LICENSE-2.0
+
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+*/
+package org.eigenbase.applib.impexp;
+
+import java.io.*;
+
+import java.sql.*;
+
+import java.util.*;
+import java.util.zip.*;
+
+
+/**
+ * ColumnarRowReader reads rows written by {@link ColumnarRowWriter}, one block
+ * at a time.
+ *
+ * @version $Id$
+ */
+public class ColumnarRowReader
+{
+    //~ Instance fields --------------------------------------------------------
+
+    private final DataInputStream in;
+    private final boolean compressed;
+    private final int maxBlockRows;
+    private final ColumnarRowFormat.Column [] columns;
+    private final Inflater inflater;
+    private byte [] stored;
+    private byte [] raw;
+    private boolean eos;
+
+    //~ Constructors -----------------------------------------------------------
+
+    /**
+     * Creates a reader and reads the stream header.
+     *
+     * @param in source stream, positioned at the magic number
+     */
+    public ColumnarRowReader(InputStream in)
+        throws IOException
+    {
+        this.in = new DataInputStream(new BufferedInputStream(in, 1 << 16));
+        byte [] magic = new byte[ColumnarRowFormat.MAGIC.length];
+        this.in.readFully(magic);
+        if (!Arrays.equals(magic, ColumnarRowFormat.MAGIC)) {
+            throw new IOException("Not a columnar row file");
+        }
+        short version = this.in.readShort();
+        if (version != ColumnarRowFormat.VERSION) {
+            throw new IOException(
+                "Unsupported columnar row file version " + version);
+        }
+        int flags = this.in.readByte();
+        compressed = (flags & ColumnarRowFormat.FLAG_COMPRESSED) != 0;
+        maxBlockRows = this.in.readInt();
+        int columnCount = this.in.readInt();
+        columns = new ColumnarRowFormat.Column[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            columns[i] = ColumnarRowFormat.Column.read(this.in);
+        }
+        inflater = compressed ? new Inflater() : null;
+        stored = new byte[0];
+        raw = new byte[0];
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * @return whether the blocks of this stream are deflated
+     */
+    public boolean isCompressed()
+    {
+        return compressed;
+    }
+
+    /**
+     * @return JDBC type of each column, as recorded by the writer
+     */
+    public List<Integer> getColumnTypes()
+    {
+        List<Integer> ret = new ArrayList<Integer>(columns.length);
+        for (ColumnarRowFormat.Column column : columns) {
+            ret.add(column.sqlType);
+        }
+        return ret;
+    }
+
+    /**
+     * @return display size of each column, as recorded by the writer
+     */
+    public List<Integer> getColumnDisplaySizes()
+    {
+        List<Integer> ret = new ArrayList<Integer>(columns.length);
+        for (ColumnarRowFormat.Column column : columns) {
+            ret.add(column.displaySize);
+        }
+        return ret;
+    }
+
+    /**
+     * Reads and decodes the next block.
+     *
+     * @return number of rows in the block, or 0 at end of stream
+     *
+     * @throws EOFException if the stream ends before its end marker
+     * @throws IOException if the writer sent an error frame
+     */
+    public int readBlock()
+        throws IOException
+    {
+        if (eos) {
+            return 0;
+        }
+        int rowCount = in.readInt();
+        if (rowCount == ColumnarRowFormat.FRAME_END) {
+            eos = true;
+            return 0;
+        }
+        if (rowCount == ColumnarRowFormat.FRAME_ERROR) {
+            eos = true;
+            throw new IOException(
+                "Sender failed: " + ColumnarRowFormat.readMessage(in));
+        }
+        int rawLength = in.readInt();
+        int storedLength = in.readInt();
+        if ((rowCount < 0) || (rowCount > maxBlockRows) || (rawLength < 0)
+            || (storedLength < 0))
+        {
+            throw new IOException("Corrupt columnar row block header");
+        }
+        if (raw.length < rawLength) {
+            raw = new byte[rawLength];
+        }
+        if (compressed) {
+            if (stored.length < storedLength) {
+                stored = new byte[storedLength];
+            }
+            in.readFully(stored, 0, storedLength);
+            inflate(storedLength, rawLength);
+        } else {
+            in.readFully(raw, 0, rawLength);
+        }
+        DataInputStream blockIn =
+            new DataInputStream(new ByteArrayInputStream(raw, 0, rawLength));
+        for (ColumnarRowFormat.Column column : columns) {
+            column.decode(blockIn, rowCount);
+        }
+        return rowCount;
+    }
+
+    private void inflate(int storedLength, int rawLength)
+        throws IOException
+    {
+        inflater.reset();
+        inflater.setInput(stored, 0, storedLength);
+        int n = 0;
+        try {
+            while (n < rawLength) {
+                int cb = inflater.inflate(raw, n, rawLength - n);
+                if ((cb == 0)
+                    && (inflater.needsInput() || inflater.finished()))
+                {
+                    break;
+                }
+                n += cb;
+            }
+        } catch (DataFormatException ex) {
+            IOException ioe = new IOException(ex.getMessage());
+            ioe.initCause(ex);
+            throw ioe;
+        }
+        if (n != rawLength) {
+            throw new IOException("Truncated columnar row block");
+        }
+    }
+
+    /**
+     * Binds every column of a row of the current block to the parameters of a
+     * statement, in order.
+     *
+     * @param iRow 0-based row within the block last read
+     * @param ps statement with one parameter per column
+     */
+    public void bindRow(int iRow, PreparedStatement ps)
+        throws SQLException
+    {
+        for (int i = 0; i < columns.length; i++) {
+            columns[i].bind(ps, i + 1, iRow);
+        }
+    }
+
+    /**
+     * Closes the underlying stream.
+     */
+    public void close()
+        throws IOException
+    {
+        if (inflater != null) {
+            inflater.end();
+        }
+        in.close();
+    }
+}
+
+// End ColumnarRowReader.java
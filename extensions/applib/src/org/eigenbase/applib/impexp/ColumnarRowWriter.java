@@ -0,0 +1,261 @@
+/*
+// Licensed to DynamoBI Corporation (DynamoBI) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  DynamoBI licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+
+//   http://www.apache.org/licenses/LICENSE-2.0
+
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+*/
+package org.eigenbase.applib.impexp;
+
+import java.io.*;
+
+import java.sql.*;
+
+import java.util.zip.*;
+
+
+/**
+ * ColumnarRowWriter writes rows to a stream in {@link ColumnarRowFormat}. Rows
+ * are buffered column by column until a block is full, then the block is
+ * encoded, optionally deflated, and written out.
+ *
+ * @version $Id$
+ */
+public class ColumnarRowWriter
+{
+    //~ Instance fields --------------------------------------------------------
+
+    private final DataOutputStream out;
+    private final boolean compressed;
+    private final ColumnarRowFormat.Column [] columns;
+    private final BlockBuffer rawBytes;
+    private final DataOutputStream rawOut;
+    private final Deflater deflater;
+    private byte [] deflated;
+    private int blockRows;
+    private long blockBytes;
+    private long rowCount;
+
+    //~ Constructors -----------------------------------------------------------
+
+    /**
+     * Creates a writer and writes the stream header.
+     *
+     * @param out target stream
+     * @param metaData describes the rows to be written
+     * @param compressed whether to deflate each block
+     */
+    public ColumnarRowWriter(
+        OutputStream out,
+        ResultSetMetaData metaData,
+        boolean compressed)
+        throws SQLException, IOException
+    {
+        this.out =
+            new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+        this.compressed = compressed;
+        int columnCount = metaData.getColumnCount();
+        columns = new ColumnarRowFormat.Column[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            columns[i] =
+                new ColumnarRowFormat.Column(
+                    metaData.getColumnName(i + 1),
+                    metaData.getColumnType(i + 1),
+                    metaData.getPrecision(i + 1),
+                    metaData.getScale(i + 1),
+                    metaData.getColumnDisplaySize(i + 1));
+            columns[i].allocate(ColumnarRowFormat.BLOCK_ROWS);
+        }
+        rawBytes = new BlockBuffer();
+        rawOut = new DataOutputStream(rawBytes);
+        if (compressed) {
+            // favor speed: the blocks are already compactly encoded
+            deflater = new Deflater(Deflater.BEST_SPEED);
+            deflated = new byte[1 << 16];
+        } else {
+            deflater = null;
+        }
+        writeHeader();
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    private void writeHeader()
+        throws IOException
+    {
+        out.write(ColumnarRowFormat.MAGIC);
+        out.writeShort(ColumnarRowFormat.VERSION);
+        out.writeByte(compressed ? ColumnarRowFormat.FLAG_COMPRESSED : 0);
+        out.writeInt(ColumnarRowFormat.BLOCK_ROWS);
+        out.writeInt(columns.length);
+        for (ColumnarRowFormat.Column column : columns) {
+            column.write(out);
+        }
+    }
+
+    /**
+     * Appends the current row of a result set.
+     *
+     * @param rs result set positioned on a row, with the columns described by
+     * the metadata this writer was created with
+     */
+    public void writeRow(ResultSet rs)
+        throws SQLException, IOException
+    {
+        for (int i = 0; i < columns.length; i++) {
+            blockBytes += columns[i].load(rs, i + 1, blockRows);
+        }
+        blockRows++;
+        rowCount++;
+        if ((blockRows == ColumnarRowFormat.BLOCK_ROWS)
+            || (blockBytes >= ColumnarRowFormat.BLOCK_BYTES))
+        {
+            flushBlock();
+        }
+    }
+
+    private void flushBlock()
+        throws IOException
+    {
+        if (blockRows == 0) {
+            return;
+        }
+        rawBytes.reset();
+        for (ColumnarRowFormat.Column column : columns) {
+            column.encode(rawOut, blockRows);
+        }
+        rawOut.flush();
+        int rawLength = rawBytes.size();
+        out.writeInt(blockRows);
+        out.writeInt(rawLength);
+        if (compressed) {
+            int storedLength = deflate(rawBytes.getBuffer(), rawLength);
+            out.writeInt(storedLength);
+            out.write(deflated, 0, storedLength);
+        } else {
+            out.writeInt(rawLength);
+            out.write(rawBytes.getBuffer(), 0, rawLength);
+        }
+        blockRows = 0;
+        blockBytes = 0;
+    }
+
+    private int deflate(byte [] raw, int rawLength)
+    {
+        deflater.reset();
+        deflater.setInput(raw, 0, rawLength);
+        deflater.finish();
+        int storedLength = 0;
+        while (!deflater.finished()) {
+            if (storedLength == deflated.length) {
+                byte [] bigger = new byte[deflated.length * 2];
+                System.arraycopy(deflated, 0, bigger, 0, storedLength);
+                deflated = bigger;
+            }
+            storedLength +=
+                deflater.deflate(
+                    deflated,
+                    storedLength,
+                    deflated.length - storedLength);
+        }
+        return storedLength;
+    }
+
+    /**
+     * Writes any rows still buffered as a block, even if it is not full, and
+     * flushes the underlying stream, for instance to get the header to a
+     * remote reader before rows are available.
+     */
+    public void flush()
+        throws IOException
+    {
+        flushBlock();
+        out.flush();
+    }
+
+    /**
+     * Writes any buffered rows and the end marker, and closes the underlying
+     * stream.
+     */
+    public void close()
+        throws IOException
+    {
+        try {
+            flushBlock();
+            out.writeInt(ColumnarRowFormat.FRAME_END);
+            out.flush();
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * Discards any buffered rows, tells the reader that the stream failed,
+     * and closes the underlying stream.
+     *
+     * @param message error message for the reader
+     */
+    public void abort(String message)
+        throws IOException
+    {
+        try {
+            out.writeInt(ColumnarRowFormat.FRAME_ERROR);
+            ColumnarRowFormat.writeMessage(
+                out,
+                (message == null) ? "" : message);
+            out.flush();
+        } finally {
+            release();
+        }
+    }
+
+    private void release()
+        throws IOException
+    {
+        if (deflater != null) {
+            deflater.end();
+        }
+        out.close();
+    }
+
+    /**
+     * @return number of rows written so far
+     */
+    public long getRowCount()
+    {
+        return rowCount;
+    }
+
+    //~ Inner Classes ----------------------------------------------------------
+
+    /**
+     * ByteArrayOutputStream which gives access to its buffer, to avoid copying
+     * each block.
+     */
+    private static class BlockBuffer
+        extends ByteArrayOutputStream
+    {
+        BlockBuffer()
+        {
+            super(1 << 16);
+        }
+
+        byte [] getBuffer()
+        {
+            return buf;
+        }
+    }
+}
+
+// End ColumnarRowWriter.java
@@ -30,6 +30,8 @@ import java.util.zip.*;
 /**
  * Purpose: Allow serialized rows to be read from a file and output in a table
  * function.<br>
+ * Files in the block-columnar {@link ColumnarRowFormat} are recognized by
+ * their magic number; anything else is read as Java-serialized rows.<br>
  * Please refer to
  * http://pub.eigenbase.org/wiki/LucidDbAppLib_READ_ROWS_FROM_FILE<br>
  *
@@ -82,8 +84,80 @@ public class ReadRowsFromFileUDX
         PreparedStatement resultInserter)
         throws Exception
     {
-        InputStream fileIn = openFile(url);
+        InputStream fileIn = new BufferedInputStream(openFile(url));
+        if (ColumnarRowFormat.isColumnar(fileIn)) {
+            readColumnar(inputSet, fileIn, is_compressed, resultInserter);
+        } else {
+            readSerialized(inputSet, fileIn, is_compressed, resultInserter);
+        }
+    }
+
+    /**
+     * Reads a file in {@link ColumnarRowFormat}, as written by {@link
+     * WriteRowsToFileUDX}.
+     */
+    private static void readColumnar(
+        ResultSet inputSet,
+        InputStream fileIn,
+        boolean is_compressed,
+        PreparedStatement resultInserter)
+        throws Exception
+    {
+        ColumnarRowReader reader = new ColumnarRowReader(fileIn);
+        try {
+            // keep the old contract that the flag must match the file
+            if (is_compressed && !reader.isCompressed()) {
+                throw new IOException("Not in GZIP format");
+            } else if (!is_compressed && reader.isCompressed()) {
+                throw new IOException(
+                    "File is compressed; please set IS_COMPRESSED to TRUE");
+            }
 
+            int counter = 0;
+            try {
+                if (!verifyHeaderInfo(
+                        getHeaderInfoFromCursor(inputSet),
+                        reader.getColumnDisplaySizes()))
+                {
+                    throw new Exception(
+                        "Header Info was unmatched! Please check");
+                }
+                for (;;) {
+                    int n = reader.readBlock();
+                    if (n == 0) {
+                        break;
+                    }
+                    for (int i = 0; i < n; i++) {
+                        reader.bindRow(i, resultInserter);
+                        resultInserter.executeUpdate();
+                        counter++;
+                    }
+                }
+            } catch (EOFException ex) {
+                throw new Exception(
+                    "Error: Unexpected end of file\n" + counter
+                    + " rows are inserted successfully.");
+            } catch (Exception e) {
+                throw new Exception(
+                    "Error: " + e.getMessage() + "\n" + counter
+                    + " rows are inserted successfully.");
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Reads a file of Java-serialized rows, as written by earlier versions of
+     * {@link WriteRowsToFileUDX}.
+     */
+    private static void readSerialized(
+        ResultSet inputSet,
+        InputStream fileIn,
+        boolean is_compressed,
+        PreparedStatement resultInserter)
+        throws Exception
+    {
         GZIPInputStream gzIn = null;
         ObjectInputStream objIn = null;
         if (is_compressed) {
@@ -0,0 +1,123 @@
+/*
+// Licensed to DynamoBI Corporation (DynamoBI) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  DynamoBI licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+
+//   http://www.apache.org/licenses/LICENSE-2.0
+
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+*/
+package org.eigenbase.applib.impexp;
+
+import java.io.*;
+
+import java.net.*;
+
+import java.sql.*;
+
+
+/**
+ * Purpose: Send the rows of a cursor to a {@link RemoteRowsUDX} listening on
+ * another server, using the batched {@link ColumnarRowFormat} instead of
+ * Java serialization.<br>
+ * The exchange is:
+ *
+ * <ol>
+ * <li>the sender writes the stream header, which describes the columns;
+ * <li>the receiver checks it against its cursor and answers with {@link
+ * RemoteRowsUDX#ACK_ACCEPTED}, or with {@link RemoteRowsUDX#ACK_REJECTED}
+ * followed by a UTF message;
+ * <li>the sender streams blocks of rows, ending with an end-of-stream frame,
+ * or with an error frame if reading its own cursor fails.
+ * </ol>
+ *
+ * The static methods can also be called directly by Java applications which
+ * have a ResultSet to push.
+ *
+ * @version $Id$
+ */
+public class RemoteRowsSender
+{
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * Sends the rows of a cursor to a remote REMOTE_ROWS call.
+     *
+     * @param inputSet rows to send
+     * @param host host the receiver runs on
+     * @param port port the receiver listens on
+     * @param is_compressed whether to deflate each block
+     * @param resultInserter receives one row of status and message
+     */
+    public static void execute(
+        ResultSet inputSet,
+        String host,
+        int port,
+        boolean is_compressed,
+        PreparedStatement resultInserter)
+        throws Exception
+    {
+        Socket socket = new Socket(host, port);
+        long row_count;
+        try {
+            row_count = send(inputSet, socket, is_compressed);
+        } finally {
+            socket.close();
+        }
+        resultInserter.setInt(1, 0);
+        resultInserter.setString(
+            2,
+            row_count + " rows have been sent to " + host + ":" + port
+            + " successfully!");
+        resultInserter.executeUpdate();
+    }
+
+    /**
+     * Sends all remaining rows of a result set over a connected socket.
+     *
+     * @param rs rows to send
+     * @param socket connection to a {@link RemoteRowsUDX}
+     * @param compressed whether to deflate each block
+     *
+     * @return number of rows sent
+     */
+    public static long send(ResultSet rs, Socket socket, boolean compressed)
+        throws SQLException, IOException
+    {
+        ColumnarRowWriter writer =
+            new ColumnarRowWriter(
+                socket.getOutputStream(),
+                rs.getMetaData(),
+                compressed);
+        writer.flush();
+
+        DataInputStream ackIn =
+            new DataInputStream(socket.getInputStream());
+        if (ackIn.readByte() != RemoteRowsUDX.ACK_ACCEPTED) {
+            throw new SQLException(
+                "Receiver rejected rows: " + ackIn.readUTF());
+        }
+
+        try {
+            while (rs.next()) {
+                writer.writeRow(rs);
+            }
+        } catch (SQLException ex) {
+            writer.abort(ex.getMessage());
+            throw ex;
+        }
+        writer.close();
+        return writer.getRowCount();
+    }
+}
+
+// End RemoteRowsSender.java
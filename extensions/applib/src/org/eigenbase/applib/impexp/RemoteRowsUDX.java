@@ -32,6 +32,9 @@ import java.util.zip.*;
  * Purpose: Allow serialized rows to be streamed via HTTP from remote Java
  * applications (PDI / Talend).<br>
  * Please refer to http://pub.eigenbase.org/wiki/LucidDbAppLib_REMOTE_ROWS<br>
+ * Besides Java-serialized rows, the batched columnar protocol sent by {@link
+ * RemoteRowsSender} is accepted; the two are told apart by the first bytes on
+ * the connection.<br>
  *
  * @author Ray Zhang
  * @since Dec-16-2009
@@ -39,6 +42,17 @@ import java.util.zip.*;
 public class RemoteRowsUDX
 {
 
+    /**
+     * Answer to the header of a columnar stream: the rows will be read.
+     */
+    public static final int ACK_ACCEPTED = 0;
+
+    /**
+     * Answer to the header of a columnar stream: the header does not match
+     * the cursor; a UTF message follows.
+     */
+    public static final int ACK_REJECTED = 1;
+
     private static final String HEADER_PREFIX =
         "RemoteRowsUDX: Header Mismatch: ";
     //~ Methods ----------------------------------------------------------------
@@ -56,7 +70,17 @@ public class RemoteRowsUDX
         try {
             socket = ss.accept();
 
-            InputStream sIn = socket.getInputStream();
+            InputStream sIn =
+                new BufferedInputStream(socket.getInputStream());
+            if (ColumnarRowFormat.isColumnar(sIn)) {
+                // sent by RemoteRowsSender; compression is chosen by the
+                // sender and recorded in the stream header
+                readColumnar(inputSet, socket, sIn, resultInserter);
+                socket.close();
+                ss.close();
+                return;
+            }
+
             GZIPInputStream gzIn = null;
             ObjectInputStream objIn = null;
 
@@ -124,6 +148,86 @@ public class RemoteRowsUDX
         ss.close();
     }
 
+    private static void readColumnar(
+        ResultSet inputSet,
+        Socket socket,
+        InputStream sIn,
+        PreparedStatement resultInserter)
+        throws Exception
+    {
+        ColumnarRowReader reader = new ColumnarRowReader(sIn);
+        DataOutputStream ackOut =
+            new DataOutputStream(socket.getOutputStream());
+        try {
+            verifyColumnTypes(inputSet, reader.getColumnTypes());
+        } catch (Exception ex) {
+            ackOut.writeByte(ACK_REJECTED);
+            ackOut.writeUTF(ex.getMessage());
+            ackOut.flush();
+            throw ex;
+        }
+        ackOut.writeByte(ACK_ACCEPTED);
+        ackOut.flush();
+
+        int row_counter = 0;
+        try {
+            for (;;) {
+                int n = reader.readBlock();
+                if (n == 0) {
+                    break;
+                }
+                for (int i = 0; i < n; i++) {
+                    reader.bindRow(i, resultInserter);
+                    resultInserter.executeUpdate();
+                    row_counter++;
+                }
+            }
+        } catch (Exception e) {
+            StringWriter writer = new StringWriter();
+            e.printStackTrace(new PrintWriter(writer, true));
+            throw new Exception(
+                "Error: " + writer.toString() + "\n"
+                + row_counter + " rows are inserted successfully.");
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Checks the column types announced by a columnar sender against the
+     * cursor. Types only need to be held the same way on the wire (for
+     * instance, CHAR may be sent to a VARCHAR column); the rest is left to
+     * parameter conversion.
+     */
+    private static void verifyColumnTypes(
+        ResultSet inputSet,
+        List<Integer> typesFromSource)
+        throws Exception
+    {
+        ResultSetMetaData metaData = inputSet.getMetaData();
+        int columnCount = metaData.getColumnCount();
+        if (columnCount != typesFromSource.size()) {
+            throw new Exception(
+                HEADER_PREFIX
+                + "Header Size Mismatch: "
+                + "cursor = " + columnCount
+                + " from source = " + typesFromSource.size());
+        }
+        for (int i = 0; i < columnCount; i++) {
+            int cursorType = metaData.getColumnType(i + 1);
+            int sourceType = typesFromSource.get(i);
+            if (ColumnarRowFormat.getKind(cursorType)
+                != ColumnarRowFormat.getKind(sourceType))
+            {
+                throw new Exception(
+                    HEADER_PREFIX
+                    + "Type Mismatch: column " + (i + 1)
+                    + " cursor = " + metaData.getColumnTypeName(i + 1)
+                    + " from source = JDBC type " + sourceType);
+            }
+        }
+    }
+
     protected static boolean verifyHeaderInfo(
         List header_from_cursor,
         List header_from_file) throws Exception
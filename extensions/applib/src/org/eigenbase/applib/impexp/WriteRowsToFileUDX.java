@@ -25,11 +25,12 @@ import java.net.*;
 import java.sql.*;
 
 import java.util.*;
-import java.util.zip.*;
 
 
 /**
  * Purpose: Allow serialized rows to be written to a file.<br>
+ * Rows are written in the block-columnar {@link ColumnarRowFormat}; when
+ * is_compressed is set, each block is deflated.<br>
  * Please refer to
  * http://pub.eigenbase.org/wiki/LucidDbAppLib_WRITE_ROWS_TO_FILE<br>
  *
@@ -112,46 +113,18 @@ public class WriteRowsToFileUDX
         String err_msg = "";
         int row_count = 0;
 
-        FileOutputStream fileOut = null;
-        ObjectOutputStream objOut = null;
-        GZIPOutputStream gzOut = null;
+        ColumnarRowWriter writer = null;
 
         try {
-            fileOut = new FileOutputStream(openFile(url));
-            if (is_compressed) {
-                gzOut = new GZIPOutputStream(fileOut);
-                objOut = new ObjectOutputStream(gzOut);
-            } else {
-                objOut = new ObjectOutputStream(fileOut);
-            }
-
-            int columnCount = inputSet.getMetaData().getColumnCount();
-            List header = new ArrayList();
-
-            header.add(1);
-            List formater = new ArrayList(columnCount);
-            for (int i = 0; i < columnCount; i++) {
-                formater.add(
-                    inputSet.getMetaData().getColumnDisplaySize(i + 1));
-            }
-
-            header.add(formater);
-
-            objOut.writeObject(header);
-            objOut.flush();
-
-            header = null;
+            writer =
+                new ColumnarRowWriter(
+                    new FileOutputStream(openFile(url)),
+                    inputSet.getMetaData(),
+                    is_compressed);
 
             while (inputSet.next()) {
-                List row_entity = new ArrayList();
-                for (int i = 0; i < columnCount; i++) {
-                    row_entity.add(inputSet.getObject(i + 1));
-                }
-
-                objOut.writeObject(row_entity);
-                objOut.flush();
+                writer.writeRow(inputSet);
                 row_count++;
-                row_entity = null;
             }
 
             err_msg =
@@ -163,15 +136,8 @@ public class WriteRowsToFileUDX
             throw ex;
         } finally {
             try {
-                if (objOut != null) {
-                    objOut.close();
-                }
-
-                if (is_compressed && (gzOut != null)) {
-                    gzOut.close();
-                }
-                if (fileOut != null) {
-                    fileOut.close();
+                if (writer != null) {
+                    writer.close();
                 }
             } catch (IOException e) {
                 status = 1;
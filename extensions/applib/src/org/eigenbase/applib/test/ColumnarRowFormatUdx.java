@@ -0,0 +1,136 @@
+/*
+// Licensed to DynamoBI Corporation (DynamoBI) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  DynamoBI licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+
+//   http://www.apache.org/licenses/LICENSE-2.0
+
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+*/
+package org.eigenbase.applib.test;
+
+import java.io.*;
+
+import java.sql.*;
+
+import org.eigenbase.applib.impexp.*;
+
+
+/**
+ * Round-trips rows through {@link ColumnarRowWriter} and {@link
+ * ColumnarRowReader} in memory, so that SQL tests can compare what comes back
+ * with what went in.
+ *
+ * @version $Id$
+ */
+public abstract class ColumnarRowFormatUdx
+{
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * Writes every row of a cursor and returns the rows read back.
+     *
+     * @param inputSet rows to write
+     * @param compressed whether to deflate the blocks
+     * @param resultInserter receives the rows read back, with the columns of
+     * inputSet
+     */
+    public static void roundTrip(
+        ResultSet inputSet,
+        boolean compressed,
+        PreparedStatement resultInserter)
+        throws Exception
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ColumnarRowWriter writer =
+            new ColumnarRowWriter(bytes, inputSet.getMetaData(), compressed);
+        while (inputSet.next()) {
+            writer.writeRow(inputSet);
+        }
+        writer.close();
+
+        ColumnarRowReader reader =
+            new ColumnarRowReader(
+                new ByteArrayInputStream(bytes.toByteArray()));
+        try {
+            for (int n; (n = reader.readBlock()) > 0;) {
+                for (int i = 0; i < n; i++) {
+                    reader.bindRow(i, resultInserter);
+                    resultInserter.executeUpdate();
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Writes every row of a cursor, then aborts the stream with an error
+     * message, and reports what a reader of the stream sees.
+     *
+     * @param inputSet rows to write before aborting
+     * @param message text of the error message
+     * @param repeat number of times the text is repeated in the message
+     * @param resultInserter receives a single row: the number of rows read
+     * before the error, the length of the message read, and whether it
+     * equals the message sent
+     */
+    public static void abort(
+        ResultSet inputSet,
+        String message,
+        int repeat,
+        PreparedStatement resultInserter)
+        throws Exception
+    {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < repeat; i++) {
+            sb.append(message);
+        }
+        String sent = sb.toString();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ColumnarRowWriter writer =
+            new ColumnarRowWriter(bytes, inputSet.getMetaData(), false);
+        while (inputSet.next()) {
+            writer.writeRow(inputSet);
+        }
+        writer.abort(sent);
+
+        ColumnarRowReader reader =
+            new ColumnarRowReader(
+                new ByteArrayInputStream(bytes.toByteArray()));
+        int rowCount = 0;
+        String received = null;
+        try {
+            for (int n; (n = reader.readBlock()) > 0;) {
+                rowCount += n;
+            }
+        } catch (IOException ex) {
+            received = ex.getMessage();
+        } finally {
+            reader.close();
+        }
+
+        String prefix = "Sender failed: ";
+        if ((received == null) || !received.startsWith(prefix)) {
+            throw new IllegalStateException(
+                "expected an error frame, got " + received);
+        }
+        received = received.substring(prefix.length());
+        resultInserter.setInt(1, rowCount);
+        resultInserter.setInt(2, received.length());
+        resultInserter.setBoolean(3, received.equals(sent));
+        resultInserter.executeUpdate();
+    }
+}
+
+// End ColumnarRowFormatUdx.java
@@ -0,0 +1,306 @@
+/*
+// Licensed to DynamoBI Corporation (DynamoBI) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  DynamoBI licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+
+//   http://www.apache.org/licenses/LICENSE-2.0
+
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+*/
+package org.eigenbase.applib.test;
+
+import java.io.*;
+
+import java.lang.reflect.*;
+
+import java.net.*;
+
+import java.sql.*;
+
+import java.util.*;
+import java.util.zip.*;
+
+import org.eigenbase.applib.impexp.*;
+
+
+/**
+ * RemoteRowsBenchmark measures the throughput of {@link RemoteRowsUDX} on
+ * loopback, comparing Java-serialized rows (as sent by existing clients)
+ * against the columnar protocol sent by {@link RemoteRowsSender}, each with
+ * and without compression.
+ *
+ * <p>No server is needed: the UDX runs in a thread of its own, with stand-in
+ * JDBC objects for its cursor and result inserter, so the numbers cover only
+ * transport and decoding. Run it as
+ *
+ * <pre>java org.eigenbase.applib.test.RemoteRowsBenchmark [rowCount [port]]
+ * </pre>
+ *
+ * @version $Id$
+ */
+public class RemoteRowsBenchmark
+{
+    //~ Static fields/initializers ---------------------------------------------
+
+    private static final int [] TYPES =
+    {
+        Types.INTEGER, Types.VARCHAR, Types.DATE, Types.BOOLEAN,
+        Types.DOUBLE
+    };
+
+    private static final String [] TYPE_NAMES =
+    { "INTEGER", "VARCHAR", "DATE", "BOOLEAN", "DOUBLE" };
+
+    //~ Instance fields --------------------------------------------------------
+
+    private final int rowCount;
+    private final int port;
+    private final Object [][] rows;
+
+    //~ Constructors -----------------------------------------------------------
+
+    private RemoteRowsBenchmark(int rowCount, int port)
+    {
+        this.rowCount = rowCount;
+        this.port = port;
+        rows = new Object[rowCount][];
+        Random random = new Random(42);
+        for (int i = 0; i < rowCount; i++) {
+            rows[i] =
+                new Object[] {
+                    i,
+                    "customer " + random.nextInt(1000),
+                    new java.sql.Date(86400000L * (14000 + (i / 1000))),
+                    random.nextBoolean(),
+                    random.nextDouble() * 1000
+                };
+        }
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    public static void main(String [] args)
+        throws Exception
+    {
+        int rowCount = (args.length > 0) ? Integer.parseInt(args[0]) : 1000000;
+        int port = (args.length > 1) ? Integer.parseInt(args[1]) : 7779;
+        RemoteRowsBenchmark benchmark = new RemoteRowsBenchmark(rowCount, port);
+
+        // first round warms up the JIT
+        for (int round = 0; round < 2; round++) {
+            for (boolean compressed : new boolean[] { false, true }) {
+                benchmark.run(false, compressed);
+                benchmark.run(true, compressed);
+            }
+        }
+    }
+
+    private void run(final boolean columnar, final boolean compressed)
+        throws Exception
+    {
+        final int [] received = new int[1];
+        final Exception [] failure = new Exception[1];
+        Thread receiver =
+            new Thread() {
+                public void run()
+                {
+                    try {
+                        RemoteRowsUDX.execute(
+                            newCursor(null),
+                            port,
+                            compressed,
+                            newInserter(received));
+                    } catch (Exception ex) {
+                        failure[0] = ex;
+                    }
+                }
+            };
+
+        long start = System.nanoTime();
+        receiver.start();
+        Socket socket = connect();
+        try {
+            if (columnar) {
+                RemoteRowsSender.send(newCursor(rows), socket, compressed);
+            } else {
+                sendSerialized(socket, compressed);
+            }
+        } finally {
+            socket.close();
+        }
+        receiver.join();
+        long elapsed = System.nanoTime() - start;
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+        if (received[0] != rowCount) {
+            throw new IllegalStateException(
+                "expected " + rowCount + " rows, received " + received[0]);
+        }
+
+        System.out.println(
+            (columnar ? "columnar  " : "serialized")
+            + (compressed ? " compressed  : " : " uncompressed: ")
+            + (long) (rowCount * 1e9 / elapsed) + " rows/sec");
+    }
+
+    private Socket connect()
+        throws Exception
+    {
+        // the receiver may not be listening yet
+        for (int i = 0;; i++) {
+            try {
+                return new Socket("localhost", port);
+            } catch (ConnectException ex) {
+                if (i == 100) {
+                    throw ex;
+                }
+                Thread.sleep(50);
+            }
+        }
+    }
+
+    /**
+     * Sends rows the way existing clients of REMOTE_ROWS do.
+     */
+    private void sendSerialized(Socket socket, boolean compressed)
+        throws IOException
+    {
+        OutputStream out =
+            new BufferedOutputStream(socket.getOutputStream(), 1 << 16);
+        GZIPOutputStream gzOut = null;
+        if (compressed) {
+            gzOut = new GZIPOutputStream(out);
+            out = gzOut;
+        }
+        ObjectOutputStream objOut = new ObjectOutputStream(out);
+        List<Object> header = new ArrayList<Object>();
+        header.add("1");
+        header.add(new ArrayList<String>(Arrays.asList(TYPE_NAMES)));
+        objOut.writeObject(header);
+        for (int i = 0; i < rowCount; i++) {
+            objOut.writeObject(new ArrayList<Object>(Arrays.asList(rows[i])));
+
+            // keep the stream's handle table bounded, as a long-running
+            // sender must
+            if ((i % 1000) == 999) {
+                objOut.reset();
+            }
+        }
+        objOut.close();
+    }
+
+    /**
+     * Creates a stand-in cursor over the benchmark rows (or with no rows, for
+     * the receiver's cursor, which only supplies metadata).
+     */
+    private static ResultSet newCursor(final Object [][] data)
+    {
+        final ResultSetMetaData metaData =
+            (ResultSetMetaData) newProxy(
+                ResultSetMetaData.class,
+                new InvocationHandler() {
+                    public Object invoke(
+                        Object proxy,
+                        Method method,
+                        Object [] args)
+                    {
+                        String name = method.getName();
+                        if (name.equals("getColumnCount")) {
+                            return TYPES.length;
+                        }
+                        int iCol = (Integer) args[0] - 1;
+                        if (name.equals("getColumnType")) {
+                            return TYPES[iCol];
+                        } else if (name.equals("getColumnTypeName")) {
+                            return TYPE_NAMES[iCol];
+                        } else if (name.equals("getColumnName")) {
+                            return "C" + iCol;
+                        } else if (name.equals("getColumnDisplaySize")) {
+                            return 20;
+                        }
+                        return 0;
+                    }
+                });
+        return (ResultSet) newProxy(
+            ResultSet.class,
+            new InvocationHandler() {
+                int iRow = -1;
+                boolean wasNull;
+
+                public Object invoke(Object proxy, Method method, Object [] args)
+                {
+                    String name = method.getName();
+                    if (name.equals("getMetaData")) {
+                        return metaData;
+                    } else if (name.equals("next")) {
+                        return (data != null) && (++iRow < data.length);
+                    } else if (name.equals("wasNull")) {
+                        return wasNull;
+                    } else if (name.equals("close")) {
+                        return null;
+                    }
+                    Object value = data[iRow][(Integer) args[0] - 1];
+                    wasNull = (value == null);
+                    if (name.equals("getLong")) {
+                        return ((Number) value).longValue();
+                    }
+                    return value;
+                }
+            });
+    }
+
+    /**
+     * Creates a stand-in result inserter which counts rows, checking that the
+     * values bound for each row are those of the corresponding benchmark row.
+     */
+    private PreparedStatement newInserter(final int [] count)
+    {
+        return (PreparedStatement) newProxy(
+            PreparedStatement.class,
+            new InvocationHandler() {
+                final Object [] values = new Object[TYPES.length];
+
+                public Object invoke(Object proxy, Method method, Object [] args)
+                {
+                    String name = method.getName();
+                    if (name.equals("setNull")) {
+                        values[(Integer) args[0] - 1] = null;
+                    } else if (name.startsWith("set")) {
+                        values[(Integer) args[0] - 1] = args[1];
+                    } else if (name.equals("executeUpdate")) {
+                        int iRow = count[0]++;
+                        if ((iRow >= rows.length)
+                            || !Arrays.equals(values, rows[iRow]))
+                        {
+                            throw new IllegalStateException(
+                                "row " + iRow + " received as "
+                                + Arrays.asList(values));
+                        }
+                        Arrays.fill(values, null);
+                        return 1;
+                    }
+                    return null;
+                }
+            });
+    }
+
+    private static Object newProxy(Class<?> iface, InvocationHandler handler)
+    {
+        return java.lang.reflect.Proxy.newProxyInstance(
+            RemoteRowsBenchmark.class.getClassLoader(),
+            new Class<?>[] { iface },
+            handler);
+    }
+}
+
+// End RemoteRowsBenchmark.java
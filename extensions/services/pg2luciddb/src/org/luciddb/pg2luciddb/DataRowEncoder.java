@@ -0,0 +1,547 @@
+/*
+// Licensed to DynamoBI Corporation (DynamoBI) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  DynamoBI licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+
+//   http://www.apache.org/licenses/LICENSE-2.0
+
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+*/
+
+package org.luciddb.pg2luciddb;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+
+/**
+ * Encodes the rows of one result set as PostgreSQL DataRow message bodies.
+ * Column types, PostgreSQL type OIDs and the result format (text or binary)
+ * requested by the client in Bind are resolved once, when the encoder is
+ * created, instead of re-reading the result set metadata for every cell.
+ *
+ * <p>Binary format is supported for int2, int4, int8, float4, float8, bool,
+ * date and timestamp columns, and for BINARY and VARBINARY columns, which are
+ * then described as bytea. Columns of any other type are always sent as text,
+ * which is reported to the client in RowDescription. In text format, BINARY
+ * and VARBINARY columns are sent (and described) as they always have been,
+ * as the hex string returned by the JDBC driver.
+ */
+class DataRowEncoder
+{
+    static final int FORMAT_TEXT = 0;
+    static final int FORMAT_BINARY = 1;
+
+    // PostgreSQL type OIDs with binary support:
+    private static final int PG_BOOL = 16;
+    private static final int PG_BYTEA = 17;
+    private static final int PG_INT8 = 20;
+    private static final int PG_INT2 = 21;
+    private static final int PG_INT4 = 23;
+    private static final int PG_FLOAT4 = 700;
+    private static final int PG_FLOAT8 = 701;
+    private static final int PG_DATE = 1082;
+    private static final int PG_TIMESTAMP = 1114;
+
+    // column encoders:
+    private static final int ENC_STRING = 0;
+    private static final int ENC_INTEGER = 1;
+    private static final int ENC_REAL = 2;
+    private static final int ENC_DOUBLE = 3;
+    private static final int ENC_DECIMAL = 4;
+    private static final int ENC_BOOL = 5;
+    private static final int ENC_DATE = 6;
+    private static final int ENC_TIMESTAMP = 7;
+    private static final int ENC_BYTEA = 8;
+
+    // JDBC date constants:
+    private static final long JDBC_DATE_INFINITY = 9223372036825200000l;
+    private static final long JDBC_DATE_MINUS_INFINITY = -9223372036832400000l;
+    private static final byte[] POSTGRES_DATE_INFINITY = { 'i', 'n', 'f', 'i', 'n', 'i', 't', 'y' };
+    private static final byte[] POSTGRES_DATE_MINUS_INFINITY = { '-', 'i', 'n', 'f', 'i', 'n', 'i', 't', 'y' };
+
+    // PostgreSQL epoch (2000-01-01) in milliseconds since the Java epoch:
+    private static final long POSTGRES_EPOCH_MILLIS = 946684800000l;
+    private static final long MILLIS_PER_DAY = 86400000l;
+
+    private final int columnCount;
+    private final int[] pgTypes;
+    private final int[] formats;
+    private final int[] encoders;
+    private final Charset charset;
+
+    // reusable scratch space:
+    private final byte[] digits = new byte[20];
+    private final Calendar calendar = new GregorianCalendar();
+    private final Calendar utcCalendar = new GregorianCalendar(TimeZone.getTimeZone("GMT"));
+    private final TimeZone timeZone = TimeZone.getDefault();
+    private final DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+    private final DateFormat dateFormatBC = new SimpleDateFormat("yyyy-MM-dd G");
+    private final DateFormat timestampFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+    private final DateFormat timestampFormatBC = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss G");
+
+    /**
+     * Creates an encoder.
+     *
+     * @param meta result set metadata
+     * @param formatCodes result format codes sent by the client in Bind
+     *        (null or empty means text for all columns, a single code
+     *        applies to all columns)
+     * @param encoding client encoding
+     */
+    DataRowEncoder(ResultSetMetaData meta, int[] formatCodes, String encoding) throws SQLException
+    {
+        columnCount = meta.getColumnCount();
+        pgTypes = new int[columnCount];
+        formats = new int[columnCount];
+        encoders = new int[columnCount];
+        charset = Charset.forName(encoding);
+
+        for (int i = 0; i < columnCount; i++)
+        {
+            String typeName = meta.getColumnTypeName(i + 1);
+            pgTypes[i] = JDBCToPostgreSQLType.getPostgreSQLType(typeName);
+            encoders[i] = getEncoder(meta.getColumnType(i + 1), typeName);
+
+            int requested = FORMAT_TEXT;
+            if (formatCodes != null && formatCodes.length == 1)
+            {
+                requested = formatCodes[0];
+            }
+            else if (formatCodes != null && i < formatCodes.length)
+            {
+                requested = formatCodes[i];
+            }
+
+            // binary columns are only described as bytea when sent in
+            // binary format; in text format they keep their hex output:
+            if (encoders[i] == ENC_BYTEA && requested == FORMAT_BINARY)
+            {
+                pgTypes[i] = PG_BYTEA;
+            }
+            formats[i] = (requested == FORMAT_BINARY && supportsBinary(i)) ? FORMAT_BINARY : FORMAT_TEXT;
+        }
+    }
+
+    // get encoder for JDBC type:
+    private static int getEncoder(int sqlType, String typeName)
+    {
+        switch (sqlType)
+        {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+                return ENC_INTEGER;
+
+            case Types.REAL:
+                return ENC_REAL;
+
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                return ENC_DOUBLE;
+
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+                return ENC_DECIMAL;
+
+            case Types.BIT:
+            case Types.BOOLEAN:
+                if ("bool".equalsIgnoreCase(typeName) || "boolean".equalsIgnoreCase(typeName))
+                {
+                    return ENC_BOOL;
+                }
+                // TODO must return 01, 111, 10111, etc and not only true or false as now
+                return ENC_STRING;
+
+            case Types.DATE:
+                return ENC_DATE;
+
+            case Types.TIMESTAMP:
+                return ENC_TIMESTAMP;
+
+            case Types.BINARY:
+            case Types.VARBINARY:
+            case Types.LONGVARBINARY:
+                return ENC_BYTEA;
+
+            default:
+                return ENC_STRING;
+        }
+    }
+
+    // check if binary output is possible for specified column:
+    private boolean supportsBinary(int i)
+    {
+        switch (pgTypes[i])
+        {
+            case PG_INT2:
+            case PG_INT4:
+            case PG_INT8:
+                return encoders[i] == ENC_INTEGER;
+            case PG_FLOAT4:
+            case PG_FLOAT8:
+                return encoders[i] == ENC_REAL || encoders[i] == ENC_DOUBLE;
+            case PG_BOOL:
+                return encoders[i] == ENC_BOOL;
+            case PG_DATE:
+                return encoders[i] == ENC_DATE;
+            case PG_TIMESTAMP:
+                return encoders[i] == ENC_TIMESTAMP;
+            case PG_BYTEA:
+                return encoders[i] == ENC_BYTEA;
+            default:
+                return false;
+        }
+    }
+
+    // get number of columns:
+    int getColumnCount()
+    {
+        return columnCount;
+    }
+
+    // get PostgreSQL type of column (0-based):
+    int getPostgreSQLType(int i)
+    {
+        return pgTypes[i];
+    }
+
+    // get result format of column (0-based):
+    int getFormat(int i)
+    {
+        return formats[i];
+    }
+
+    /**
+     * Writes the body of a DataRow message (column count followed by the
+     * length-prefixed column values) for the current row of the result set.
+     */
+    void writeRow(ResultSet rs, DataOutputStream out) throws SQLException, IOException
+    {
+        out.writeShort(columnCount);
+        for (int i = 0; i < columnCount; i++)
+        {
+            if (formats[i] == FORMAT_BINARY)
+            {
+                writeBinary(rs, i, out);
+            }
+            else
+            {
+                writeText(rs, i, out);
+            }
+        }
+    }
+
+    // write column value in binary format:
+    private void writeBinary(ResultSet rs, int i, DataOutputStream out) throws SQLException, IOException
+    {
+        int col = i + 1;
+        switch (pgTypes[i])
+        {
+            case PG_INT2:
+            {
+                short v = rs.getShort(col);
+                if (rs.wasNull())
+                {
+                    out.writeInt(-1);
+                    return;
+                }
+                out.writeInt(2);
+                out.writeShort(v);
+                return;
+            }
+            case PG_INT4:
+            {
+                int v = rs.getInt(col);
+                if (rs.wasNull())
+                {
+                    out.writeInt(-1);
+                    return;
+                }
+                out.writeInt(4);
+                out.writeInt(v);
+                return;
+            }
+            case PG_INT8:
+            {
+                long v = rs.getLong(col);
+                if (rs.wasNull())
+                {
+                    out.writeInt(-1);
+                    return;
+                }
+                out.writeInt(8);
+                out.writeLong(v);
+                return;
+            }
+            case PG_FLOAT4:
+            {
+                float v = rs.getFloat(col);
+                if (rs.wasNull())
+                {
+                    out.writeInt(-1);
+                    return;
+                }
+                out.writeInt(4);
+                out.writeFloat(v);
+                return;
+            }
+            case PG_FLOAT8:
+            {
+                double v = rs.getDouble(col);
+                if (rs.wasNull())
+                {
+                    out.writeInt(-1);
+                    return;
+                }
+                out.writeInt(8);
+                out.writeDouble(v);
+                return;
+            }
+            case PG_BOOL:
+            {
+                boolean v = rs.getBoolean(col);
+                if (rs.wasNull())
+                {
+                    out.writeInt(-1);
+                    return;
+                }
+                out.writeInt(1);
+                out.writeByte(v ? 1 : 0);
+                return;
+            }
+            case PG_DATE:
+            {
+                java.sql.Date d = rs.getDate(col);
+                if (d == null)
+                {
+                    out.writeInt(-1);
+                    return;
+                }
+                // days since 2000-01-01 of the local calendar date:
+                calendar.setTimeInMillis(d.getTime());
+                utcCalendar.clear();
+                utcCalendar.set(Calendar.ERA, calendar.get(Calendar.ERA));
+                utcCalendar.set(calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH), calendar.get(Calendar.DAY_OF_MONTH));
+                long days = (utcCalendar.getTimeInMillis() - POSTGRES_EPOCH_MILLIS) / MILLIS_PER_DAY;
+                out.writeInt(4);
+                out.writeInt((int) days);
+                return;
+            }
+            case PG_TIMESTAMP:
+            {
+                Timestamp ts = rs.getTimestamp(col);
+                if (ts == null)
+                {
+                    out.writeInt(-1);
+                    return;
+                }
+                // integer_datetimes is off: seconds since 2000-01-01 as float8
+                double seconds;
+                long millis = ts.getTime();
+                if (millis == JDBC_DATE_INFINITY)
+                {
+                    seconds = Double.POSITIVE_INFINITY;
+                }
+                else if (millis == JDBC_DATE_MINUS_INFINITY)
+                {
+                    seconds = Double.NEGATIVE_INFINITY;
+                }
+                else
+                {
+                    long localMillis = millis + timeZone.getOffset(millis);
+                    seconds = (localMillis - POSTGRES_EPOCH_MILLIS) / 1000.0
+                        + (ts.getNanos() % 1000000) / 1000000000.0;
+                }
+                out.writeInt(8);
+                out.writeDouble(seconds);
+                return;
+            }
+            case PG_BYTEA:
+            {
+                byte[] b = rs.getBytes(col);
+                if (b == null)
+                {
+                    out.writeInt(-1);
+                    return;
+                }
+                out.writeInt(b.length);
+                out.write(b);
+                return;
+            }
+            default:
+                writeText(rs, i, out);
+                return;
+        }
+    }
+
+    // write column value in text format:
+    private void writeText(ResultSet rs, int i, DataOutputStream out) throws SQLException, IOException
+    {
+        int col = i + 1;
+        String returnValue = null;
+        switch (encoders[i])
+        {
+            case ENC_INTEGER:
+            {
+                long v = rs.getLong(col);
+                if (rs.wasNull())
+                {
+                    out.writeInt(-1);
+                }
+                else
+                {
+                    writeDigits(v, out);
+                }
+                return;
+            }
+            case ENC_REAL:
+            {
+                float v = rs.getFloat(col);
+                if (!rs.wasNull())
+                {
+                    returnValue = Float.toString(v);
+                }
+                break;
+            }
+            case ENC_DOUBLE:
+            {
+                double v = rs.getDouble(col);
+                if (!rs.wasNull())
+                {
+                    returnValue = Double.toString(v);
+                }
+                break;
+            }
+            case ENC_DECIMAL:
+            {
+                BigDecimal bigDecimal = rs.getBigDecimal(col);
+                if (bigDecimal != null)
+                {
+                    returnValue = bigDecimal.toPlainString();
+                }
+                break;
+            }
+            case ENC_BOOL:
+            {
+                boolean b = rs.getBoolean(col);
+                if (rs.wasNull())
+                {
+                    out.writeInt(-1);
+                }
+                else
+                {
+                    out.writeInt(1);
+                    out.writeByte(b ? 't' : 'f');
+                }
+                return;
+            }
+            case ENC_DATE:
+            {
+                java.sql.Date jdbcDate = rs.getDate(col);
+                if (jdbcDate != null)
+                {
+                    returnValue = formatDate(jdbcDate, dateFormat, dateFormatBC);
+                }
+                break;
+            }
+            case ENC_TIMESTAMP:
+            {
+                Timestamp ts = rs.getTimestamp(col);
+                if (ts != null)
+                {
+                    if (ts.getTime() == JDBC_DATE_INFINITY)
+                    {
+                        out.writeInt(POSTGRES_DATE_INFINITY.length);
+                        out.write(POSTGRES_DATE_INFINITY);
+                        return;
+                    }
+                    else if (ts.getTime() == JDBC_DATE_MINUS_INFINITY)
+                    {
+                        out.writeInt(POSTGRES_DATE_MINUS_INFINITY.length);
+                        out.write(POSTGRES_DATE_MINUS_INFINITY);
+                        return;
+                    }
+                    returnValue = formatDate(ts, timestampFormat, timestampFormatBC);
+                }
+                break;
+            }
+            default:
+                returnValue = rs.getString(col);
+                break;
+        }
+
+        if (returnValue != null)
+        {
+            byte[] d2 = returnValue.getBytes(charset);
+            out.writeInt(d2.length);
+            out.write(d2);
+        }
+        else
+        {
+            out.writeInt(-1);
+        }
+    }
+
+    // format date (appending era for BC dates):
+    private String formatDate(java.util.Date d, DateFormat format, DateFormat formatBC)
+    {
+        calendar.setTime(d);
+        if (calendar.get(Calendar.ERA) == GregorianCalendar.BC)
+        {
+            return formatBC.format(d);
+        }
+        return format.format(d);
+    }
+
+    // write decimal digits of an integer value (length-prefixed) without creating a string:
+    private void writeDigits(long v, DataOutputStream out) throws IOException
+    {
+        if (v == Long.MIN_VALUE)
+        {
+            byte[] d2 = Long.toString(v).getBytes(charset);
+            out.writeInt(d2.length);
+            out.write(d2);
+            return;
+        }
+        boolean negative = v < 0;
+        if (negative)
+        {
+            v = -v;
+        }
+        int pos = digits.length;
+        do
+        {
+            digits[--pos] = (byte) ('0' + (v % 10));
+            v /= 10;
+        }
+        while (v != 0);
+        if (negative)
+        {
+            digits[--pos] = '-';
+        }
+        out.writeInt(digits.length - pos);
+        out.write(digits, pos, digits.length - pos);
+    }
+}
@@ -0,0 +1,195 @@
+/*
+// Licensed to DynamoBI Corporation (DynamoBI) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  DynamoBI licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+
+//   http://www.apache.org/licenses/LICENSE-2.0
+
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+*/
+
+package org.luciddb.pg2luciddb;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+import org.h2.util.JdbcUtils;
+
+/**
+ * Per-connection cache of JDBC prepared statements keyed by the
+ * (already rewritten) SQL text. Entries are kept in access order and the
+ * least recently used statement is closed once the cache grows beyond its
+ * configured size, so extended-protocol Execute messages for a statement
+ * parsed earlier only need to bind parameters and run.
+ *
+ * <p>A statement handed out by {@link #get} stays in use until it is given
+ * back with {@link #release}; this lets a suspended portal keep its result
+ * set open while another portal for the same SQL runs on a private
+ * statement. In-use statements are never closed by eviction or removal,
+ * they are closed when released instead.
+ *
+ * <p>Several prepared statement names may share one SQL text, so the cache
+ * counts the names referring to each SQL text ({@link #addReference}); the
+ * statement is only removed when the last of them is closed.
+ */
+class PreparedStatementCache
+{
+    // get logger class:
+    private static final Logger logger = Logger.getLogger(PreparedStatementCache.class);
+
+    private final Connection conn;
+    private final int maxSize;
+    private final LinkedHashMap<String, PreparedStatement> statements;
+    private final Set<PreparedStatement> inUse = new HashSet<PreparedStatement>();
+    private final Map<String, Integer> references = new HashMap<String, Integer>();
+
+    // cache statistics:
+    private long hits;
+    private long misses;
+
+    // constructor:
+    PreparedStatementCache(Connection conn, int maxSize)
+    {
+        this.conn = conn;
+        this.maxSize = maxSize;
+        this.statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true)
+        {
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest)
+            {
+                if (size() > PreparedStatementCache.this.maxSize)
+                {
+                    logger.trace("Evicting prepared statement: " + eldest.getKey());
+                    closeIfUnused(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    // is caching enabled:
+    boolean isEnabled()
+    {
+        return maxSize > 0;
+    }
+
+    // get (or prepare) the statement for specified sql and mark it as in use:
+    PreparedStatement get(String sql) throws SQLException
+    {
+        if (!isEnabled())
+        {
+            misses++;
+            return conn.prepareStatement(sql);
+        }
+        PreparedStatement prep = statements.get(sql);
+        if (prep != null && !inUse.contains(prep))
+        {
+            hits++;
+            inUse.add(prep);
+            return prep;
+        }
+        misses++;
+        if (prep != null)
+        {
+            // cached one is busy (e.g. suspended portal), use a private statement:
+            return conn.prepareStatement(sql);
+        }
+        prep = conn.prepareStatement(sql);
+        statements.put(sql, prep);
+        inUse.add(prep);
+        return prep;
+    }
+
+    // release statement obtained via get (closes it if it is not cached):
+    void release(String sql, PreparedStatement prep)
+    {
+        if (prep == null)
+        {
+            return;
+        }
+        inUse.remove(prep);
+        if (statements.get(sql) != prep)
+        {
+            JdbcUtils.closeSilently(prep);
+        }
+    }
+
+    // note that one more prepared statement name refers to specified sql:
+    void addReference(String sql)
+    {
+        Integer count = references.get(sql);
+        references.put(sql, (count == null) ? 1 : count + 1);
+    }
+
+    // note that a prepared statement name no longer refers to specified sql
+    // (the statement is removed once no name refers to it):
+    void removeReference(String sql)
+    {
+        Integer count = references.get(sql);
+        if (count == null)
+        {
+            return;
+        }
+        if (count > 1)
+        {
+            references.put(sql, count - 1);
+            return;
+        }
+        references.remove(sql);
+        remove(sql);
+    }
+
+    // remove the statement for specified sql (closed now or when released):
+    void remove(String sql)
+    {
+        if (sql == null)
+        {
+            return;
+        }
+        closeIfUnused(statements.remove(sql));
+    }
+
+    // close statement unless it is in use:
+    private void closeIfUnused(PreparedStatement prep)
+    {
+        if (prep != null && !inUse.contains(prep))
+        {
+            JdbcUtils.closeSilently(prep);
+        }
+    }
+
+    // close all cached statements:
+    void clear()
+    {
+        for (PreparedStatement prep : statements.values())
+        {
+            JdbcUtils.closeSilently(prep);
+        }
+        statements.clear();
+        inUse.clear();
+        references.clear();
+        logger.trace("Prepared statement cache closed, hits: " + hits + ", misses: " + misses);
+    }
+
+    // number of cached statements:
+    int size()
+    {
+        return statements.size();
+    }
+}
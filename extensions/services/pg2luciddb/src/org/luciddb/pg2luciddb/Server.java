@@ -82,6 +82,7 @@ public class Server
     private boolean stop;
     private boolean trace;
     private ServerSocket serverSocket;
+    private SessionScheduler scheduler;
     private Set<ServerThread> running = Collections.synchronizedSet(new HashSet<ServerThread>());
     private String baseDir;
     private boolean ifExists;    
@@ -156,6 +157,17 @@ public class Server
        }
     }
 
+    /**
+     * Add a session to the list of running ones.
+     *
+     * @param t the session to add
+     */
+    synchronized void register(ServerThread t) 
+    {
+        running.add(t);
+        t.setProcessId(running.size());
+    }
+
     /**
      * Remove a thread from the list.
      *
@@ -274,7 +286,7 @@ public class Server
     }
 
     // check if client can connect to the server:
-    private boolean allow(String ip) 
+    boolean allow(String ip) 
     {
         if (ip == null)
             return false;
@@ -372,6 +384,25 @@ public class Server
             return;
         }
         
+        // NIO session scheduler:
+        if (configuration.isNioEnabled())
+        {
+            logger.info("Launching session scheduler with configuration: " + configuration.toString()
+                + ", max executing sessions: " + configuration.getMaxExecutingSessions());
+            scheduler = new SessionScheduler(this);
+            try
+            {
+                scheduler.open();
+            }
+            catch (IOException e)
+            {
+                logger.error("Can't open server port " + configuration.getServerPort() + ": " + e.toString());
+                return;
+            }
+            scheduler.run();
+            return;
+        }
+
         // create server socket (no SSL support yet)
         serverSocket = NetUtils.createServerSocket(configuration.getServerPort(), false);
         // listen:
@@ -398,8 +429,7 @@ public class Server
                 else 
                 {
                     ServerThread c = new ServerThread(s, this);
-                    running.add(c);
-                    c.setProcessId(running.size());
+                    register(c);
                     Thread thread = new Thread(c);
                     thread.setName(threadName + " thread");
                     c.setThread(thread);
@@ -423,6 +453,10 @@ public class Server
         if (!stop) 
         {
             stop = true;
+            if (scheduler != null)
+            {
+                scheduler.stop();
+            }
             if (serverSocket != null) 
             {
                 try 
@@ -437,6 +471,11 @@ public class Server
                 serverSocket = null;
             }
         }
+        // the scheduler closes the handlers of its sessions itself, once its workers are done:
+        if (scheduler != null) 
+        {
+            return;
+        }
         // TODO server: using a boolean 'now' argument? a timeout?
         for (ServerThread c : New.arrayList(running)) 
         {
@@ -457,16 +496,22 @@ public class Server
         }
     }
 
+    // get session scheduler (null if running one thread per connection):
+    SessionScheduler getScheduler() 
+    {
+        return scheduler;
+    }
+
     // is running method:
     public boolean isRunning(boolean traceError) 
     {
-        if (serverSocket == null) 
+        if (serverSocket == null && scheduler == null) 
         {
             return false;
         }
         try 
         {
-            Socket s = NetUtils.createLoopbackSocket(serverSocket.getLocalPort(), false);
+            Socket s = NetUtils.createLoopbackSocket(configuration.getServerPort(), false);
             s.close();
             return true;
         } 
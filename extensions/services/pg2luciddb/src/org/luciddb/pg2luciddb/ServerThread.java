@@ -19,6 +19,7 @@
 
 package org.luciddb.pg2luciddb;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -80,12 +81,14 @@ public class ServerThread implements Runnable
     private Socket socket;
     private Connection conn;
     private boolean stop;
+    private boolean closed;
     private DataInputStream dataInRaw;
     private DataInputStream dataIn;
     private OutputStream out;
     private int messageType;
     private ByteArrayOutputStream outBuffer;
     private DataOutputStream dataOut;
+    private DataOutputStream dataOutRaw;
     private Thread thread;
     private boolean initDone;
     private String userName;
@@ -96,10 +99,14 @@ public class ServerThread implements Runnable
     private HashMap<String, Prepared> prepared = New.hashMap();
     private HashMap<String, Portal> portals = New.hashMap();
     private HashSet<Integer> types = New.hashSet();
+    private PreparedStatementCache statementCache;
 
     // get logger class:
     private static final Logger logger = Logger.getLogger(ServerThread.class);
 
+    // initial size of the message buffer & socket output buffer:
+    private static final int OUTPUT_BUFFER_SIZE = 8192;
+
     // protocol V3 (for secure auth purposes):
     private static final int PROTOCOL_V3 = 196608;
 
@@ -107,12 +114,6 @@ public class ServerThread implements Runnable
     private String salt;
     private int secretKey;
 
-    // JDBC date constants:
-    private static final long JDBC_DATE_INFINITY = 9223372036825200000l;
-    private static final long JDBC_DATE_MINUS_INFINITY = -9223372036832400000l;
-    private static final String POSTGRES_DATE_INFINITY = "infinity";
-    private static final String POSTGRES_DATE_MINUS_INFINITY = "-infinity";
-
     // regexp:
     private static final String SELECT_PGTYPE_PATTERN_STRING = "^(select.*\\s*from)\\s*(pg_type)(.*?)$";
     private static final String COLUMNS_Q_SEARCH_BY_IDS_1_STRING = "and\\s*c[.]oid\\s*=(\\d+)\\s*"; 
@@ -161,25 +162,15 @@ public class ServerThread implements Runnable
     {
         try 
         {
-            server.trace("Connect");
-
-            // generate salt & secret key:
-            salt = generateRandomString(4);      
-            Random random = new Random();
-            secretKey = random.nextInt();
-
-            logger.debug("Start serving client: " + socket.getRemoteSocketAddress());
-
             // set tcp parameters:
             socket.setSoTimeout(server.configuration.getConnectionCloseIdleTimeout());
 
             InputStream ins = socket.getInputStream();
-            out = socket.getOutputStream();
+            attach(new BufferedOutputStream(socket.getOutputStream(), OUTPUT_BUFFER_SIZE));
             dataInRaw = new DataInputStream(ins);
             while (!stop) 
             {
                 process();
-                out.flush();
             }
         } 
         catch (EOFException e) 
@@ -197,6 +188,34 @@ public class ServerThread implements Runnable
         }
     }
 
+    // start serving the client, responses are written to specified stream:
+    void attach(OutputStream out) 
+    {
+        server.trace("Connect");
+
+        // generate salt & secret key:
+        salt = generateRandomString(4);      
+        Random random = new Random();
+        secretKey = random.nextInt();
+
+        logger.debug("Start serving client: " + socket.getRemoteSocketAddress());
+
+        this.out = out;
+        dataOutRaw = new DataOutputStream(out);
+    }
+
+    // check if session has been stopped:
+    boolean isStopped() 
+    {
+        return stop;
+    }
+
+    // check if startup message has been processed (messages are typed from now on):
+    boolean isInitDone() 
+    {
+        return initDone;
+    }
+
     // read string from input buffer:
     private String readString() throws IOException 
     {
@@ -270,7 +289,42 @@ public class ServerThread implements Runnable
         len -= 4;
         byte[] data = ByteUtils.newBytes(len);
         dataInRaw.readFully(data, 0, len);
-        dataIn = new DataInputStream(new ByteArrayInputStream(data, 0, len));
+        processMessage(x, data);
+    }
+
+    /**
+     * Processes one client message. Responses are written to the attached
+     * output stream, which is flushed after the message has been handled.
+     *
+     * @param x message type (zero for untyped messages sent before startup,
+     *        negative for end of stream)
+     * @param data message body (without type & length)
+     */
+    void processMessage(int x, byte[] data) throws IOException 
+    {
+        if (x < 0) 
+        {
+            stop = true;
+            return;
+        }
+        dataIn = new DataInputStream(new ByteArrayInputStream(data, 0, data.length));
+        try 
+        {
+            dispatchMessage(x);
+        } 
+        finally 
+        {
+            // nothing to flush once the connection has been closed:
+            if (socket != null) 
+            {
+                out.flush();
+            }
+        }
+    }
+
+    // dispatch message to its handler:
+    private void dispatchMessage(int x) throws IOException 
+    {
         switch (x) {
         // init state:
         case 0:
@@ -332,6 +386,7 @@ public class ServerThread implements Runnable
                        credentials.put("user", userName);
                        credentials.put("password", "");
                        conn = server.configuration.getDriver().connect(server.configuration.getJdbcDriverBaseURL() + server.configuration.getJdbcDriverOptionsForUser(this.userName), credentials);
+                       statementCache = new PreparedStatementCache(conn, server.configuration.getPreparedStatementCacheSize());
 
                        // set search path:
                        Statement _stat = null;
@@ -391,6 +446,7 @@ public class ServerThread implements Runnable
                     credentials.put("user", userName);
                     credentials.put("password", server.configuration.getAllowedUsers().get(userName).toString());
                     conn = server.configuration.getDriver().connect(server.configuration.getJdbcDriverBaseURL() + server.configuration.getJdbcDriverOptionsForUser(userName), credentials);
+                    statementCache = new PreparedStatementCache(conn, server.configuration.getPreparedStatementCacheSize());
 
                     // set search path:
                     Statement _stat = null;
@@ -449,13 +505,18 @@ public class ServerThread implements Runnable
                 checkType(type);
                 p.paramType[i] = type;
             }
-            // try to prepare statement:
+            // try to prepare statement (kept in the statement cache for Bind / Execute):
             try 
             {
-                // right now - execute ALL statements:
-                PreparedStatement pst = conn.prepareStatement(p.sql);
-                pst.close();
-                prepared.put(p.name, p);
+                PreparedStatement pst = statementCache.get(p.sql);
+                statementCache.release(p.sql, pst);
+                // reference the new sql before dropping the replaced one, which may be the same:
+                statementCache.addReference(p.sql);
+                Prepared replaced = prepared.put(p.name, p);
+                if (replaced != null)
+                {
+                    statementCache.removeReference(replaced.sql);
+                }
                 sendParseComplete();
             } 
             catch (SQLException e) 
@@ -481,7 +542,7 @@ public class ServerThread implements Runnable
 
             portal.sql = prep.sql;
             portal.prepared = prep;
-            portals.put(portal.name, portal);
+            closePortalResult(portals.put(portal.name, portal));
 
             int formatCodeCount = readShort();
             int[] formatCodes = new int[formatCodeCount];
@@ -556,15 +617,21 @@ public class ServerThread implements Runnable
                         // if dummy function call - return no data:
                         if (p.sql.startsWith("CALL PG_CATALOG.DUMMY_PROCEDURE"))
                         {
-                            sendRowDescription(null);
+                            sendRowDescription(null, null);
                         }
                         // else:
                         else     
                         {
-                            PreparedStatement prep = conn.prepareStatement(p.sql);
-                            ResultSetMetaData meta = prep.getMetaData();
-                            sendRowDescription(meta);
-                            prep.close();
+                            PreparedStatement prep = statementCache.get(p.sql);
+                            try
+                            {
+                                ResultSetMetaData meta = prep.getMetaData();
+                                sendRowDescription(meta, meta == null ? null : createEncoder(meta, p.resultColumnFormat));
+                            }
+                            finally
+                            {
+                                statementCache.release(p.sql, prep);
+                            }
                         }
                     } 
                     catch (SQLException e) 
@@ -591,12 +658,22 @@ public class ServerThread implements Runnable
                 sendErrorResponse("Portal not found: " + name);
                 break;
             }
-            int maxRows = readShort();
+            // max number of rows to return (zero means no limit):
+            int maxRows = readInt();
 
-            try 
+            // resume suspended portal:
+            if (p.resultSet != null)
             {
+                sendPortalRows(p, maxRows);
+                break;
+            }
 
-                PreparedStatement prep = conn.prepareStatement(p.sql);
+            PreparedStatement prep = null;
+            try 
+            {
+                // reuse statement prepared at Parse (if still cached):
+                prep = statementCache.get(p.sql);
+                prep.clearParameters();
                 // set parameters:
                 for (int i = 0; i < p.prepared.parameters.length; i++)
                 {
@@ -604,38 +681,68 @@ public class ServerThread implements Runnable
                 }                                
           
                 logger.trace(p.sql);
-                prep.setMaxRows(maxRows);                
+                // row limit is applied by suspending the portal, not by truncating the result:
+                prep.setMaxRows(0);
+                prep.setFetchSize(maxRows > 0 ? maxRows : server.configuration.getFetchSize());
                 boolean result = prep.execute();
                 if (result) 
                 {
-                    try 
-                    {
-                        ResultSet rs = prep.getResultSet();
-                        ResultSetMetaData meta = rs.getMetaData();
-                        sendRowDescription(meta);
-                        while (rs.next()) 
-                        {
-                            sendDataRow(rs);
-                        }
-                        rs.close();
-                        sendCommandComplete(p.sql, 0);
-                    } 
-                    catch (SQLException e) 
-                    {
-                        sendErrorResponse(e);
-                    }
+                    ResultSet rs = prep.getResultSet();
+                    ResultSetMetaData meta = rs.getMetaData();
+                    DataRowEncoder encoder = createEncoder(meta, p.resultColumnFormat);
+
+                    // result set (and its statement) stays open with the portal until drained or closed:
+                    p.statement = prep;
+                    p.resultSet = rs;
+                    p.encoder = encoder;
+                    prep = null;
+
+                    sendRowDescription(meta, encoder);
+                    sendPortalRows(p, maxRows);
                 } 
                 else 
                 {
                     sendCommandComplete(p.sql, prep.getUpdateCount());
                 }
-
-                prep.close();
             } 
             catch (SQLException e) 
             {
+                // statement may be unusable now, do not keep it around:
+                statementCache.remove(p.sql);
                 sendErrorResponse(e);
             }
+            finally
+            {
+                statementCache.release(p.sql, prep);
+            }
+            break;
+        }
+        // close prepared statement or portal:
+        case 'C':
+        {
+            char type = (char) readByte();
+            String name = readString();
+            server.trace("Close");
+            if (type == 'S') 
+            {
+                Prepared p = prepared.remove(name);
+                if (p != null)
+                {
+                    // other names may still use the same statement:
+                    statementCache.removeReference(p.sql);
+                }
+            }
+            else if (type == 'P')
+            {
+                closePortalResult(portals.remove(name));
+            }
+            else 
+            {
+                logger.trace("expected S or P, got " + type);
+                sendErrorResponse("expected S or P");
+                break;
+            }
+            sendCloseComplete();
             break;
         }
         // sync query:
@@ -700,10 +807,11 @@ public class ServerThread implements Runnable
                     {
                         ResultSet rs = stat.getResultSet();
                         ResultSetMetaData meta = rs.getMetaData();
-                        sendRowDescription(meta);
+                        DataRowEncoder encoder = createEncoder(meta, null);
+                        sendRowDescription(meta, encoder);
                         while (rs.next()) 
                         {
-                            sendDataRow(rs);
+                            sendDataRow(rs, encoder);
                         }
                         sendCommandComplete(s, 0);
                     } 
@@ -821,9 +929,11 @@ public class ServerThread implements Runnable
                 if (name.startsWith("PREPARE"))
                     name = name.substring(8).trim(); // remove "PREPARE" if any
                 
-                if (prepared.get(name) != null)
+                Prepared p = prepared.remove(name);
+                if (p != null)
                 {
-                    prepared.put(name, null);
+                    // other names may still use the same statement:
+                    statementCache.removeReference(p.sql);
                 }
 
                 sendCommandComplete(s, 0);
@@ -848,10 +958,11 @@ public class ServerThread implements Runnable
      	           rs.addRow(new Object[] { "63" });
 
                    ResultSetMetaData meta = rs.getMetaData();
-                   sendRowDescription(meta);
+                   DataRowEncoder encoder = createEncoder(meta, null);
+                   sendRowDescription(meta, encoder);
                    while (rs.next()) 
                    {
-                      sendDataRow(rs);
+                      sendDataRow(rs, encoder);
                    }
                    sendCommandComplete(s, 0);
                    s = "";
@@ -872,10 +983,11 @@ public class ServerThread implements Runnable
      	           rs.addRow(new Object[] { "on" });
 
                    ResultSetMetaData meta = rs.getMetaData();
-                   sendRowDescription(meta);
+                   DataRowEncoder encoder = createEncoder(meta, null);
+                   sendRowDescription(meta, encoder);
                    while (rs.next()) 
                    {
-                      sendDataRow(rs);
+                      sendDataRow(rs, encoder);
                    }
                    sendCommandComplete(s, 0);
                    s = "";
@@ -1013,10 +1125,11 @@ public class ServerThread implements Runnable
                     rs.addColumn("OID", Types.INTEGER, 0, 0);
 
                     ResultSetMetaData meta = rs.getMetaData();
-                    sendRowDescription(meta);
+                    DataRowEncoder encoder = createEncoder(meta, null);
+                    sendRowDescription(meta, encoder);
                     while (rs.next()) 
                     {
-                       sendDataRow(rs);
+                       sendDataRow(rs, encoder);
                     }
                     sendCommandComplete(s, 0);
                     s = "";
@@ -1203,146 +1316,70 @@ public class ServerThread implements Runnable
         sendMessage();
     }
 
-    // format date:
-    private String formatDate(Date d, String formatPattern) 
-    {
-        String returnValue;
-        Calendar c = GregorianCalendar.getInstance();
-        c.setTime(d);
-        if (c.get(Calendar.ERA) == GregorianCalendar.BC)
-            formatPattern += " G";
-        DateFormat format = new java.text.SimpleDateFormat(formatPattern);
-        returnValue = format.format(d);
-        return returnValue;
-    }
-
     // send data row:
-    private void sendDataRow(ResultSet rs) throws IOException 
+    private void sendDataRow(ResultSet rs, DataRowEncoder encoder) throws IOException 
     {
         try 
         {
-            int columns = rs.getMetaData().getColumnCount();
             // data row:
             startMessage('D');
-            // columns count:
-            writeShort(columns);
+            encoder.writeRow(rs, dataOut);
+            sendMessage();
+        } 
+        catch (SQLException e) 
+        {
+            sendErrorResponse(e);
+        }
+    }
 
-            // process over columns:
-            for (int i = 1; i <= columns; i++) 
+    // send rows of the portal's open result set, suspending the portal once maxRows rows were sent:
+    private void sendPortalRows(Portal p, int maxRows) throws IOException 
+    {
+        try 
+        {
+            int rows = 0;
+            while (maxRows <= 0 || rows < maxRows) 
             {
-                String returnValue = null;                
-                switch (rs.getMetaData().getColumnType(i)) 
+                if (!p.resultSet.next()) 
                 {
-                    case Types.TINYINT:
-                       returnValue = Byte.toString(rs.getByte(i));
-                       if (rs.wasNull())
-                           returnValue = null;
-                       break;
-
-                    case Types.SMALLINT:
-                       returnValue = Short.toString(rs.getShort(i));
-                       if (rs.wasNull())
-                           returnValue = null;
-                       break;
-
-                    case Types.INTEGER:
-                       returnValue = Integer.toString(rs.getInt(i));
-                       if (rs.wasNull())
-                           returnValue = null;
-                       break;
-
-                    case Types.BIGINT:
-                       returnValue = Long.toString(rs.getLong(i));
-                       if (rs.wasNull())
-                           returnValue = null;
-                       break;
-
-                    case Types.REAL:
-                       returnValue = Float.toString(rs.getFloat(i));
-                       if (rs.wasNull())
-                           returnValue = null;
-                       break;
-
-                    case Types.FLOAT:
-                       returnValue = Double.toString(rs.getDouble(i));
-                       if (rs.wasNull())
-                           returnValue = null;
-                       break;
-
-                    case Types.DOUBLE:
-                       returnValue = Double.toString(rs.getDouble(i));
-                       if (rs.wasNull())
-                           returnValue = null;
-                       break;
-
-                    case Types.DECIMAL:
-                    case Types.NUMERIC:
-                       BigDecimal bigDecimal = rs.getBigDecimal(i);
-                       if (bigDecimal != null)
-                           returnValue = bigDecimal.toPlainString();
-                       break;
-
-                    case Types.BIT:
-                    case Types.BOOLEAN:
-                       if ("bool".equalsIgnoreCase((rs.getMetaData().getColumnTypeName(i))) || "boolean".equalsIgnoreCase((rs.getMetaData().getColumnTypeName(i)))) 
-                       {
-                           Boolean b = rs.getBoolean(i);
-                           returnValue = rs.wasNull() ? null : b ? "t" : "f";
-			   //returnValue = rs.wasNull() ? null : b ? "1" : "0";
-                       } else {
-                           // TODO must return 01, 111, 10111, etc and not only true or false as now
-                           returnValue = rs.getString(i);
-                       }
-                       break;
-
-                    case Types.DATE:
-                       java.sql.Date jdbcDate = rs.getDate(i);
-                       if (jdbcDate != null) {
-                           returnValue = formatDate(new Date(jdbcDate.getTime()), "yyyy-MM-dd");
-                       }
-                       break;
-
-                    case Types.TIMESTAMP:
-                       Timestamp ts = rs.getTimestamp(i);
-                       if (ts != null) 
-                       {
-                          if (ts.getTime() == JDBC_DATE_INFINITY)
-                              returnValue = POSTGRES_DATE_INFINITY;
-                          else if (ts.getTime() == JDBC_DATE_MINUS_INFINITY)
-                               returnValue = POSTGRES_DATE_MINUS_INFINITY;
-                          else 
-                          {
-                               returnValue = formatDate(new Date(ts.getTime()), "yyyy-MM-dd HH:mm:ss");
-                          }
-                       }
-                       break;
-                     default:
-                        returnValue = rs.getString(i);
-                        break;
-                  } 
-                  		  
-
-                  // TODO write Binary data
-                  if (returnValue != null)
-                  {
-                     byte[] d2 = returnValue.getBytes(getEncoding());
-                     writeInt(d2.length);
-                     write(d2);
-                  }
-                  else
-                  {
-                     writeInt(-1); 
-                  }
+                    closePortalResult(p);
+                    sendCommandComplete(p.sql, 0);
+                    return;
+                }
+                sendDataRow(p.resultSet, p.encoder);
+                rows++;
             }
 
-            sendMessage();
+            // row limit reached, keep result set open for the next Execute:
+            sendPortalSuspended();
         } 
         catch (SQLException e) 
         {
+            closePortalResult(p);
             sendErrorResponse(e);
         }
     }
 
+    // close open result set of portal (if any):
+    private void closePortalResult(Portal p) 
+    {
+        if (p == null || p.statement == null)
+        {
+            return;
+        }
+        JdbcUtils.closeSilently(p.resultSet);
+        statementCache.release(p.sql, p.statement);
+        p.resultSet = null;
+        p.statement = null;
+        p.encoder = null;
+    }
+
+    // create row encoder for result set:
+    private DataRowEncoder createEncoder(ResultSetMetaData meta, int[] formatCodes) throws SQLException
+    {
+        return new DataRowEncoder(meta, formatCodes, getEncoding());
+    }
+
     // get encoding:
     private String getEncoding() 
     {
@@ -1418,17 +1455,18 @@ public class ServerThread implements Runnable
     {
         try 
         {
-            // prepare statement:
-            PreparedStatement prep = conn.prepareStatement(p.sql);
-
-            // set parameters:
-            for (int i = 0; i < p.parameters.length; i++)
+            // get statement prepared at Parse:
+            PreparedStatement prep = statementCache.get(p.sql);
+            int count;
+            try
             {
-                 prep.setString(i + 1, p.parameters[i]);
-            }                                
-
-            ParameterMetaData meta = prep.getParameterMetaData();
-            int count = meta.getParameterCount();
+                ParameterMetaData meta = prep.getParameterMetaData();
+                count = meta.getParameterCount();
+            }
+            finally
+            {
+                statementCache.release(p.sql, prep);
+            }
             startMessage('t');
             writeShort(count);
             for (int i = 0; i < count; i++) 
@@ -1446,8 +1484,6 @@ public class ServerThread implements Runnable
                 writeInt(type);
             }
             sendMessage();
-
-            prep.close();
         } 
         catch (SQLException e) 
         {
@@ -1463,7 +1499,7 @@ public class ServerThread implements Runnable
     }
 
     // send row description:
-    private void sendRowDescription(ResultSetMetaData meta) throws IOException 
+    private void sendRowDescription(ResultSetMetaData meta, DataRowEncoder encoder) throws IOException 
     {
         try 
         {
@@ -1486,7 +1522,7 @@ public class ServerThread implements Runnable
                     // attribute number of the column (column index)
                     writeShort(i);
                     // data type
-                    writeInt(JDBCToPostgreSQLType.getPostgreSQLType(meta.getColumnTypeName(i)));
+                    writeInt(encoder.getPostgreSQLType(i - 1));
                     
                     // attribute length:
                     switch (meta.getColumnType(i)) 
@@ -1571,8 +1607,8 @@ public class ServerThread implements Runnable
                         writeInt(-1);
                     }
 
-                    // text
-                    writeShort(0);
+                    // format code (text or binary)
+                    writeShort(encoder.getFormat(i - 1));
                 }
                 sendMessage();
             }
@@ -1640,12 +1676,41 @@ public class ServerThread implements Runnable
         sendMessage();
     }
 
+    // send portal suspended:
+    private void sendPortalSuspended() throws IOException 
+    {
+        startMessage('s');
+        sendMessage();
+    }
+
+    // send close complete:
+    private void sendCloseComplete() throws IOException 
+    {
+        startMessage('3');
+        sendMessage();
+    }
+
     // close:
-    void close() 
+    synchronized void close() 
     {
+        // the session may fail & be stopped at the same time, close only once:
+        if (closed) 
+        {
+            return;
+        }
+        closed = true;
         try 
         {
             stop = true;
+            for (Portal p : portals.values())
+            {
+                closePortalResult(p);
+            }
+            portals.clear();
+            if (statementCache != null)
+            {
+                statementCache.clear();
+            }
             JdbcUtils.closeSilently(conn);
             if (socket != null) 
             {
@@ -1832,25 +1897,26 @@ public class ServerThread implements Runnable
         dataOut.write(b);
     }
 
-    // start message:
+    // start message (message buffer is reused for all messages):
     private void startMessage(int messageType) 
     {
         this.messageType = messageType;
-        outBuffer = new ByteArrayOutputStream();
-        dataOut = new DataOutputStream(outBuffer);
+        if (outBuffer == null)
+        {
+            outBuffer = new ByteArrayOutputStream(OUTPUT_BUFFER_SIZE);
+            dataOut = new DataOutputStream(outBuffer);
+        }
+        outBuffer.reset();
     }
 
-    // send message:
+    // send message (socket stream is flushed once the client message has been processed):
     private void sendMessage() throws IOException 
     {
         dataOut.flush();
-        byte[] buff = outBuffer.toByteArray();
-        int len = buff.length;
-        dataOut = new DataOutputStream(out);
-        dataOut.write(messageType);
-        dataOut.writeInt(len + 4);
-        dataOut.write(buff);
-        dataOut.flush();
+        int len = outBuffer.size();
+        dataOutRaw.write(messageType);
+        dataOutRaw.writeInt(len + 4);
+        outBuffer.writeTo(dataOutRaw);
     }
 
     // send parameter status:
@@ -1931,5 +1997,20 @@ public class ServerThread implements Runnable
          * Prepared
          */
         Prepared prepared;
+
+        /**
+         * The statement of a suspended portal (null if not executing).
+         */
+        PreparedStatement statement;
+
+        /**
+         * The open result set of a suspended portal (null if not executing).
+         */
+        ResultSet resultSet;
+
+        /**
+         * The row encoder of the open result set.
+         */
+        DataRowEncoder encoder;
     }
 }
@@ -0,0 +1,822 @@
+/*
+// Licensed to DynamoBI Corporation (DynamoBI) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  DynamoBI licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+
+//   http://www.apache.org/licenses/LICENSE-2.0
+
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+*/
+
+package org.luciddb.pg2luciddb;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+/**
+ * NIO front end of the server. A single selector thread accepts client
+ * connections, reads and frames PostgreSQL protocol messages and writes
+ * queued responses, while the messages of each session are handled by a
+ * bounded pool of worker threads. A session occupies a worker only while
+ * it has messages to process, so the number of statements executing
+ * concurrently is limited by the pool size and further sessions wait in
+ * the admission queue instead of each connection holding its own thread.
+ */
+class SessionScheduler implements Runnable
+{
+    // get logger class:
+    private static final Logger logger = Logger.getLogger(SessionScheduler.class);
+
+    // protocol codes of untyped messages that keep the session in startup state:
+    private static final int SSL_REQUEST_CODE = 80877103;
+    private static final int CANCEL_REQUEST_CODE = 80877102;
+
+    // largest message accepted from a client:
+    private static final int MAX_MESSAGE_LENGTH = 256 * 1024 * 1024;
+
+    // socket read buffer size & output chunk size:
+    private static final int BUFFER_SIZE = 16384;
+
+    // max bytes of queued output per session before the worker has to wait:
+    private static final int MAX_PENDING_OUTPUT = 1024 * 1024;
+
+    // how often the selector checks idle sessions & logs statistics (ms):
+    private static final long MAINTENANCE_INTERVAL = 1000;
+    private static final long STATISTICS_INTERVAL = 60000;
+
+    // how long shutdown waits for workers to leave their sessions (ms):
+    private static final long SHUTDOWN_TIMEOUT = 10000;
+
+    private final Server server;
+    private final int port;
+    private final int maxConnections;
+    private final int idleTimeout;
+    private final ThreadPoolExecutor executor;
+
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private volatile boolean stop;
+    private volatile Thread selectorThread;
+    private final CountDownLatch shutdownDone = new CountDownLatch(1);
+
+    private final Set<Session> sessions = new HashSet<Session>();
+    private final ConcurrentLinkedQueue<Session> pendingWrites = new ConcurrentLinkedQueue<Session>();
+    private final ConcurrentLinkedQueue<Session> pendingCloses = new ConcurrentLinkedQueue<Session>();
+
+    // scheduler statistics:
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final AtomicInteger executing = new AtomicInteger();
+    private final AtomicLong dispatched = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong rejectedConnections = new AtomicLong();
+
+    // constructor:
+    SessionScheduler(Server server)
+    {
+        this.server = server;
+        this.port = server.configuration.getServerPort();
+        this.maxConnections = server.configuration.getMaxConnections();
+        this.idleTimeout = server.configuration.getConnectionCloseIdleTimeout();
+
+        int workers = server.configuration.getMaxExecutingSessions();
+        final String threadName = Thread.currentThread().getName();
+        executor = new ThreadPoolExecutor(workers, workers, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(),
+            new ThreadFactory()
+            {
+                private final AtomicInteger count = new AtomicInteger();
+
+                public Thread newThread(Runnable r)
+                {
+                    Thread thread = new Thread(r);
+                    thread.setName(threadName + " worker " + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    // open listening channel:
+    void open() throws IOException
+    {
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.socket().setReuseAddress(true);
+        serverChannel.socket().bind(new InetSocketAddress(port));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    // selector loop:
+    public void run()
+    {
+        selectorThread = Thread.currentThread();
+        long lastMaintenance = System.currentTimeMillis();
+        long lastStatistics = lastMaintenance;
+        try
+        {
+            while (!stop)
+            {
+                selector.select(MAINTENANCE_INTERVAL);
+                processPendingCloses();
+                processPendingWrites();
+
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext())
+                {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    try
+                    {
+                        if (!key.isValid())
+                        {
+                            continue;
+                        }
+                        if (key.isAcceptable())
+                        {
+                            accept();
+                        }
+                        else
+                        {
+                            Session session = (Session) key.attachment();
+                            if (key.isWritable())
+                            {
+                                session.writePending();
+                            }
+                            if (key.isValid() && key.isReadable())
+                            {
+                                session.read();
+                            }
+                        }
+                    }
+                    catch (CancelledKeyException e)
+                    {
+                        // session closed concurrently
+                    }
+                    catch (IOException e)
+                    {
+                        logger.trace("I/O exception on session: " + e.toString());
+                        Object attachment = key.attachment();
+                        if (attachment instanceof Session)
+                        {
+                            ((Session) attachment).disconnect();
+                        }
+                    }
+                }
+
+                long now = System.currentTimeMillis();
+                if (now - lastMaintenance >= MAINTENANCE_INTERVAL)
+                {
+                    closeIdleSessions(now);
+                    lastMaintenance = now;
+                }
+                if (now - lastStatistics >= STATISTICS_INTERVAL)
+                {
+                    logger.debug("Session scheduler: " + getStatistics());
+                    lastStatistics = now;
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            if (!stop)
+            {
+                logger.error("Session scheduler failed: " + e.toString());
+            }
+        }
+        finally
+        {
+            shutdown();
+        }
+    }
+
+    // stop scheduler & wait until it has stopped its workers & closed their handlers:
+    void stop()
+    {
+        stop = true;
+        if (selector != null)
+        {
+            selector.wakeup();
+        }
+        if (selectorThread == null || selectorThread == Thread.currentThread())
+        {
+            return;
+        }
+        try
+        {
+            if (!shutdownDone.await(2 * SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS))
+            {
+                logger.warn("Session scheduler did not stop in time");
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // close channels & worker pool:
+    private void shutdown()
+    {
+        logger.info("Session scheduler stopped: " + getStatistics());
+        try
+        {
+            if (serverChannel != null)
+            {
+                serverChannel.close();
+            }
+        }
+        catch (IOException e)
+        {
+            logger.trace("Exception closing server channel: " + e.toString());
+        }
+        // close channels first so that workers blocked on output give up, then stop the
+        // workers before closing handlers they may still be using:
+        for (Session session : sessions)
+        {
+            session.closeChannel();
+        }
+        executor.shutdownNow();
+        boolean terminated = false;
+        try
+        {
+            terminated = executor.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        for (Session session : sessions)
+        {
+            // a session still held by a worker is closed by that worker when its handler fails:
+            if (terminated || !session.isScheduled())
+            {
+                session.handler.close();
+            }
+            else
+            {
+                logger.warn("Session still being processed at shutdown, not closing its handler");
+            }
+        }
+        sessions.clear();
+        try
+        {
+            selector.close();
+        }
+        catch (IOException e)
+        {
+            logger.trace("Exception closing selector: " + e.toString());
+        }
+        shutdownDone.countDown();
+    }
+
+    // accept new connection:
+    private void accept() throws IOException
+    {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null)
+        {
+            return;
+        }
+        String address = channel.socket().getInetAddress().getHostAddress();
+        if (!server.allow(address))
+        {
+            logger.trace("Connection not allowed");
+            channel.close();
+            return;
+        }
+        if (maxConnections > 0 && sessions.size() >= maxConnections)
+        {
+            rejectedConnections.incrementAndGet();
+            logger.warn("Too many connections, rejecting client: " + address);
+            channel.close();
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+
+        ServerThread handler = new ServerThread(channel.socket(), server);
+        Session session = new Session(channel, handler);
+        server.register(handler);
+        handler.attach(new SessionOutputStream(session));
+        session.key = channel.register(selector, SelectionKey.OP_READ, session);
+        sessions.add(session);
+    }
+
+    // close sessions that were idle, or whose client stopped reading output, for too long:
+    private void closeIdleSessions(long now)
+    {
+        if (idleTimeout <= 0)
+        {
+            return;
+        }
+        for (Session session : new HashSet<Session>(sessions))
+        {
+            if (session.isScheduled())
+            {
+                // closing the channel wakes the worker waiting to write, whose handler then fails:
+                if (session.isOutputStalled(now, idleTimeout))
+                {
+                    logger.trace("Closing session stalled on output");
+                    session.closeChannel();
+                }
+            }
+            else if (now - session.lastActivity > idleTimeout)
+            {
+                logger.trace("Closing idle session");
+                session.disconnect();
+            }
+        }
+    }
+
+    // register write interest for sessions with queued output:
+    private void processPendingWrites()
+    {
+        Session session;
+        while ((session = pendingWrites.poll()) != null)
+        {
+            try
+            {
+                session.writePending();
+            }
+            catch (CancelledKeyException e)
+            {
+                // session closed concurrently
+            }
+            catch (IOException e)
+            {
+                logger.trace("I/O exception on session: " + e.toString());
+                session.disconnect();
+            }
+        }
+    }
+
+    // release sessions closed by their handler:
+    private void processPendingCloses()
+    {
+        Session session;
+        while ((session = pendingCloses.poll()) != null)
+        {
+            session.closeChannel();
+            sessions.remove(session);
+        }
+    }
+
+    // get number of sessions waiting for a worker:
+    int getQueueDepth()
+    {
+        return queueDepth.get();
+    }
+
+    // get number of sessions being processed:
+    int getExecutingCount()
+    {
+        return executing.get();
+    }
+
+    // get number of dispatched tasks:
+    long getDispatchCount()
+    {
+        return dispatched.get();
+    }
+
+    // get average admission wait (ms):
+    double getAverageWaitMillis()
+    {
+        long count = dispatched.get();
+        return count == 0 ? 0 : totalWaitNanos.get() / 1000000.0 / count;
+    }
+
+    // get max admission wait (ms):
+    double getMaxWaitMillis()
+    {
+        return maxWaitNanos.get() / 1000000.0;
+    }
+
+    // get statistics summary:
+    String getStatistics()
+    {
+        return "sessions: " + sessions.size()
+            + ", executing: " + getExecutingCount()
+            + ", queued: " + getQueueDepth()
+            + ", dispatched: " + getDispatchCount()
+            + ", avg wait ms: " + getAverageWaitMillis()
+            + ", max wait ms: " + getMaxWaitMillis()
+            + ", rejected connections: " + rejectedConnections.get();
+    }
+
+    /**
+     * Client message waiting to be processed.
+     */
+    private static class Message
+    {
+        final int type;
+        final byte[] data;
+
+        Message(int type, byte[] data)
+        {
+            this.type = type;
+            this.data = data;
+        }
+    }
+
+    /**
+     * State of one client connection.
+     */
+    private class Session implements Runnable
+    {
+        final SocketChannel channel;
+        final ServerThread handler;
+        SelectionKey key;
+
+        // input framing:
+        ByteBuffer readBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+        boolean typed;
+        boolean eof;
+        volatile long lastActivity = System.currentTimeMillis();
+
+        // messages waiting for a worker (guarded by this):
+        final LinkedList<Message> inbox = new LinkedList<Message>();
+        boolean scheduled;
+        long enqueueTime;
+
+        // queued output (guarded by this):
+        final LinkedList<ByteBuffer> outbox = new LinkedList<ByteBuffer>();
+        int pendingOutput;
+        boolean outputBlocked;
+        long lastOutputProgress;
+        boolean closed;
+
+        Session(SocketChannel channel, ServerThread handler)
+        {
+            this.channel = channel;
+            this.handler = handler;
+        }
+
+        synchronized boolean isScheduled()
+        {
+            return scheduled;
+        }
+
+        // check if a worker has been waiting for the client to read output for too long:
+        synchronized boolean isOutputStalled(long now, long timeout)
+        {
+            return outputBlocked && now - lastOutputProgress > timeout;
+        }
+
+        // read available bytes & frame complete messages (selector thread):
+        void read() throws IOException
+        {
+            int n = channel.read(readBuffer);
+            if (n < 0)
+            {
+                disconnect();
+                return;
+            }
+            lastActivity = System.currentTimeMillis();
+            readBuffer.flip();
+            int needed = 0;
+            while (true)
+            {
+                int header = typed ? 5 : 4;
+                if (readBuffer.remaining() < header)
+                {
+                    break;
+                }
+                int start = readBuffer.position();
+                int type = typed ? readBuffer.get(start) : 0;
+                int len = readBuffer.getInt(start + header - 4);
+                if (len < 4 || len > MAX_MESSAGE_LENGTH)
+                {
+                    throw new IOException("Invalid message length: " + len);
+                }
+                int total = header - 4 + len;
+                if (readBuffer.remaining() < total)
+                {
+                    needed = total;
+                    // grow buffer for large messages:
+                    if (readBuffer.capacity() < total)
+                    {
+                        ByteBuffer larger = ByteBuffer.allocate(total);
+                        larger.put(readBuffer);
+                        readBuffer = larger;
+                        readBuffer.flip();
+                    }
+                    break;
+                }
+                byte[] data = new byte[len - 4];
+                readBuffer.position(start + header);
+                readBuffer.get(data);
+                if (!typed && data.length >= 4)
+                {
+                    int code = ((data[0] & 0xff) << 24) | ((data[1] & 0xff) << 16)
+                        | ((data[2] & 0xff) << 8) | (data[3] & 0xff);
+                    typed = code != SSL_REQUEST_CODE && code != CANCEL_REQUEST_CODE;
+                }
+                enqueue(new Message(type, data));
+            }
+            readBuffer.compact();
+
+            // return to the default size once large messages have been consumed:
+            if (readBuffer.capacity() > BUFFER_SIZE && needed <= BUFFER_SIZE
+                && readBuffer.position() <= BUFFER_SIZE)
+            {
+                ByteBuffer smaller = ByteBuffer.allocate(BUFFER_SIZE);
+                readBuffer.flip();
+                smaller.put(readBuffer);
+                readBuffer = smaller;
+            }
+        }
+
+        // end of stream or I/O error: stop reading & let a worker close the session (selector thread):
+        void disconnect()
+        {
+            synchronized (this)
+            {
+                if (eof)
+                {
+                    return;
+                }
+                eof = true;
+            }
+            if (key.isValid())
+            {
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+            }
+            enqueue(new Message(-1, null));
+        }
+
+        // queue message & schedule session on a worker if idle:
+        private void enqueue(Message message)
+        {
+            synchronized (this)
+            {
+                inbox.add(message);
+                if (scheduled)
+                {
+                    return;
+                }
+                scheduled = true;
+                enqueueTime = System.nanoTime();
+            }
+            queueDepth.incrementAndGet();
+            executor.execute(this);
+        }
+
+        // worker: process all queued messages of this session:
+        public void run()
+        {
+            queueDepth.decrementAndGet();
+            long wait = System.nanoTime() - enqueueTime;
+            dispatched.incrementAndGet();
+            totalWaitNanos.addAndGet(wait);
+            long max = maxWaitNanos.get();
+            while (wait > max && !maxWaitNanos.compareAndSet(max, wait))
+            {
+                max = maxWaitNanos.get();
+            }
+
+            executing.incrementAndGet();
+            try
+            {
+                while (true)
+                {
+                    Message message;
+                    synchronized (this)
+                    {
+                        message = inbox.poll();
+                        if (message == null)
+                        {
+                            scheduled = false;
+                            return;
+                        }
+                    }
+                    boolean failed = false;
+                    try
+                    {
+                        handler.processMessage(message.type, message.data);
+                    }
+                    catch (IOException e)
+                    {
+                        logger.trace("Exception processing message: " + e.toString());
+                        failed = true;
+                    }
+                    if (failed || handler.isStopped())
+                    {
+                        handler.close();
+                        synchronized (this)
+                        {
+                            inbox.clear();
+                            scheduled = false;
+                        }
+                        pendingCloses.add(this);
+                        selector.wakeup();
+                        return;
+                    }
+                }
+            }
+            finally
+            {
+                executing.decrementAndGet();
+            }
+        }
+
+        // write output chunk, blocks while too much output is pending (worker thread);
+        // returns true if the chunk had to be queued for the selector thread:
+        boolean write(ByteBuffer buffer) throws IOException
+        {
+            boolean needSelector = false;
+            synchronized (this)
+            {
+                if (closed)
+                {
+                    throw new IOException("Connection closed");
+                }
+                if (outbox.isEmpty())
+                {
+                    channel.write(buffer);
+                }
+                if (buffer.hasRemaining())
+                {
+                    outbox.add(buffer);
+                    pendingOutput += buffer.remaining();
+                    needSelector = true;
+                }
+            }
+            if (needSelector)
+            {
+                pendingWrites.add(this);
+                selector.wakeup();
+                synchronized (this)
+                {
+                    if (pendingOutput > MAX_PENDING_OUTPUT)
+                    {
+                        outputBlocked = true;
+                        lastOutputProgress = System.currentTimeMillis();
+                    }
+                    try
+                    {
+                        while (pendingOutput > MAX_PENDING_OUTPUT && !closed)
+                        {
+                            wait();
+                        }
+                    }
+                    catch (InterruptedException e)
+                    {
+                        throw new IOException("Interrupted while writing");
+                    }
+                    finally
+                    {
+                        outputBlocked = false;
+                    }
+                }
+            }
+            return needSelector;
+        }
+
+        // write queued output & update write interest (selector thread):
+        synchronized void writePending() throws IOException
+        {
+            if (closed || !key.isValid())
+            {
+                return;
+            }
+            while (!outbox.isEmpty())
+            {
+                ByteBuffer buffer = outbox.getFirst();
+                int n = channel.write(buffer);
+                pendingOutput -= n;
+                if (n > 0)
+                {
+                    lastOutputProgress = System.currentTimeMillis();
+                }
+                if (buffer.hasRemaining())
+                {
+                    break;
+                }
+                outbox.removeFirst();
+            }
+            if (outbox.isEmpty())
+            {
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+            }
+            else
+            {
+                key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+            }
+            notifyAll();
+        }
+
+        // close channel (selector thread):
+        void closeChannel()
+        {
+            synchronized (this)
+            {
+                closed = true;
+                outbox.clear();
+                notifyAll();
+            }
+            if (key != null)
+            {
+                key.cancel();
+            }
+            try
+            {
+                channel.close();
+            }
+            catch (IOException e)
+            {
+                logger.trace("Exception closing channel: " + e.toString());
+            }
+        }
+    }
+
+    /**
+     * Output stream of a session: collects response messages into chunks
+     * that are written to the non-blocking channel, or queued for the
+     * selector thread when the socket is not ready.
+     */
+    private static class SessionOutputStream extends OutputStream
+    {
+        private final Session session;
+        private byte[] buffer = new byte[BUFFER_SIZE];
+        private int count;
+
+        SessionOutputStream(Session session)
+        {
+            this.session = session;
+        }
+
+        public void write(int b) throws IOException
+        {
+            if (count == buffer.length)
+            {
+                flush();
+            }
+            buffer[count++] = (byte) b;
+        }
+
+        public void write(byte[] b, int off, int len) throws IOException
+        {
+            while (len > 0)
+            {
+                if (count == buffer.length)
+                {
+                    flush();
+                }
+                int n = Math.min(len, buffer.length - count);
+                System.arraycopy(b, off, buffer, count, n);
+                count += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        public void flush() throws IOException
+        {
+            if (count == 0)
+            {
+                return;
+            }
+            ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, count);
+            count = 0;
+            if (session.write(chunk))
+            {
+                // buffer is queued, continue with a fresh one:
+                buffer = new byte[BUFFER_SIZE];
+            }
+        }
+    }
+}
@@ -52,6 +52,18 @@ public class Configuration
 
     // JDBC fetchsize hint:
     private int fetchSize;
+
+    // max number of prepared statements cached per client connection:
+    private int preparedStatementCacheSize;
+
+    // use NIO session scheduler (true) or one thread per connection (false):
+    private boolean nioEnabled;
+
+    // max number of sessions executing statements at the same time (NIO only):
+    private int maxExecutingSessions;
+
+    // max number of client connections, zero means no limit (NIO only):
+    private int maxConnections;
    
     // list of hosts allowed to connect to us - null means any host, not null means only these ones
     private List<String> authorizedHosts = null;
@@ -99,6 +111,16 @@ public class Configuration
         connectionCloseIdleTimeout = Integer.parseInt(prop.getProperty("connectionCloseIdleTimeout", "0").trim());
         // get fetch size:
         fetchSize = Integer.parseInt(prop.getProperty("statementFetchSize", "0").trim());
+        // get prepared statement cache size:
+        preparedStatementCacheSize = Integer.parseInt(prop.getProperty("preparedStatementCacheSize", "64").trim());
+        // get session scheduler settings:
+        nioEnabled = Boolean.valueOf(prop.getProperty("nioEnabled", "true").trim()).booleanValue();
+        maxExecutingSessions = Integer.parseInt(prop.getProperty("maxExecutingSessions", "16").trim());
+        if (maxExecutingSessions <= 0)
+        {
+            maxExecutingSessions = Runtime.getRuntime().availableProcessors();
+        }
+        maxConnections = Integer.parseInt(prop.getProperty("maxConnections", "0").trim());
         // database admin's username:
         databaseAdminUsername = prop.getProperty("databaseAdminUsername", "sa");
         // database admin's password:
@@ -235,6 +257,30 @@ public class Configuration
         return fetchSize;
     }
 
+    // get prepared statement cache size:
+    public int getPreparedStatementCacheSize()
+    {
+        return preparedStatementCacheSize;
+    }
+
+    // check if NIO session scheduler is enabled:
+    public boolean isNioEnabled()
+    {
+        return nioEnabled;
+    }
+
+    // get max number of concurrently executing sessions:
+    public int getMaxExecutingSessions()
+    {
+        return maxExecutingSessions;
+    }
+
+    // get max number of client connections:
+    public int getMaxConnections()
+    {
+        return maxConnections;
+    }
+
     // get list of authorized hosts:
     public List<String> getAuthorizedHosts() 
     {
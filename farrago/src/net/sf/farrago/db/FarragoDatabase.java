@@ -77,6 +77,13 @@ import org.eigenbase.util.property.*;
 public class FarragoDatabase
     extends FarragoDbSingleton
 {
+    //~ Static fields/initializers ---------------------------------------------
+
+    /**
+     * Maximum number of raw SQL keys remembered by {@link #rawSqlKeyMap}.
+     */
+    private static final int RAW_SQL_CACHE_MAX_ENTRIES = 1024;
+
     //~ Instance fields --------------------------------------------------------
 
     private FarragoRepos systemRepos;
@@ -103,6 +110,30 @@ public class FarragoDatabase
      */
     private FarragoObjectCache codeCache;
 
+    /**
+     * First-level cache in front of {@link #codeCache}: maps a raw SQL key
+     * (the statement text as submitted, qualified by the session state which
+     * affects its resolution; see {@link FarragoDbSession}) to the codeCache
+     * key derived from the validated statement, so that repeated prepares can
+     * skip parsing and validation altogether.
+     */
+    private final Map<String, String> rawSqlKeyMap =
+        Collections.synchronizedMap(
+            new LinkedHashMap<String, String>(16, 0.75f, true) {
+                protected boolean removeEldestEntry(
+                    Map.Entry<String, String> eldest)
+                {
+                    return size() > RAW_SQL_CACHE_MAX_ENTRIES;
+                }
+            });
+
+    /**
+     * Incremented whenever a DDL statement completes; part of every raw SQL
+     * key, since new objects can change how a name resolves without
+     * invalidating any object a cached statement depends on.
+     */
+    private final AtomicLong ddlGeneration = new AtomicLong();
+
     /**
      * File containing trace configuration.
      */
@@ -222,6 +253,8 @@ public class FarragoDatabase
                         this,
                         codeCacheMaxBytes,
                         new FarragoLruVictimPolicy());
+                codeCache.setMaxIdleExclusiveEntries(
+                    FarragoProperties.instance().codeCachePoolMax.get());
 
                 ojRexImplementorTable =
                     new FarragoOJRexImplementorTable(
@@ -925,6 +958,92 @@ public class FarragoDatabase
         return ct;
     }
 
+    /**
+     * @return the current DDL generation; see {@link #ddlGeneration}
+     */
+    long getDdlGeneration()
+    {
+        return ddlGeneration.get();
+    }
+
+    /**
+     * Notes that a DDL statement has completed, retiring all raw SQL keys
+     * computed before it.
+     */
+    void advanceDdlGeneration()
+    {
+        ddlGeneration.incrementAndGet();
+    }
+
+    /**
+     * Looks up a statement implementation previously prepared for the same raw
+     * SQL key, without parsing or validating anything. The entry is only
+     * returned if it is still in the code cache and none of the objects it
+     * depends on has been dropped or modified since it was prepared.
+     *
+     * @param rawSqlKey raw SQL text qualified by session state
+     * @param stmtValidator generic stmt validator
+     * @param owner the FarragoAllocationOwner which will be responsible for the
+     * returned stmt
+     *
+     * @return pinned statement implementation, or null on a miss
+     */
+    FarragoSessionExecutableStmt lookupStmt(
+        String rawSqlKey,
+        FarragoSessionStmtValidator stmtValidator,
+        FarragoAllocationOwner owner)
+    {
+        String stmtKey = rawSqlKeyMap.get(rawSqlKey);
+        if (stmtKey == null) {
+            return null;
+        }
+
+        // the staleness test reads the catalog, so this needs the same
+        // read txn the parser would have started
+        FarragoReposTxnContext reposTxnContext =
+            stmtValidator.getReposTxnContext();
+        if ((reposTxnContext != null)
+            && !reposTxnContext.isReadTxnInProgress())
+        {
+            reposTxnContext.beginLockedTxn(true);
+        }
+
+        final boolean sharable =
+            stmtValidator.getSession().getPersonality().supportsFeature(
+                EigenbaseResource.instance().SharedStatementPlans);
+        FarragoObjectCache.Entry cacheEntry =
+            codeCache.pinIfPresent(
+                stmtKey,
+                newStaleStmtChecker(stmtValidator.getRepos()),
+                !sharable);
+        if (cacheEntry == null) {
+            return null;
+        }
+        stmtValidator.getTimingTracer().traceTime("raw SQL cache hit");
+        owner.addAllocation(cacheEntry);
+        return (FarragoSessionExecutableStmt) cacheEntry.getValue();
+    }
+
+    private FarragoObjectCache.CachedObjectFactory newStaleStmtChecker(
+        final FarragoRepos stmtRepos)
+    {
+        return new FarragoObjectCache.CachedObjectFactory() {
+            public void initializeEntry(
+                Object key,
+                FarragoObjectCache.UninitializedEntry entry)
+            {
+                throw new AssertionError();
+            }
+
+            public boolean isStale(Object value)
+            {
+                return isExecutableStmtStale(
+                    stmtRepos,
+                    (FarragoSessionExecutableStmt) value);
+            }
+        };
+    }
+
     /**
      * Prepares an SQL expression; uses a cached implementation if available,
      * otherwise caches the one generated here.
@@ -944,12 +1063,45 @@ public class FarragoDatabase
         SqlNode sqlNode,
         FarragoAllocationOwner owner,
         FarragoSessionAnalyzedSql analyzedSql)
+    {
+        return prepareStmt(
+            stmtContext,
+            stmtValidator,
+            sqlNode,
+            owner,
+            analyzedSql,
+            null);
+    }
+
+    /**
+     * Prepares an SQL expression; uses a cached implementation if available,
+     * otherwise caches the one generated here. If the implementation is
+     * cached, rawSqlKey is remembered so that {@link #lookupStmt} can find it
+     * next time.
+     *
+     * @param stmtContext embracing stmt context
+     * @param stmtValidator generic stmt validator
+     * @param sqlNode the parsed form of the statement
+     * @param owner the FarragoAllocationOwner which will be responsible for the
+     * returned stmt
+     * @param analyzedSql receives information about a prepared expression
+     * @param rawSqlKey raw SQL text qualified by session state, or null
+     *
+     * @return statement implementation, or null when analyzedSql is non-null
+     */
+    FarragoSessionExecutableStmt prepareStmt(
+        FarragoSessionStmtContext stmtContext,
+        FarragoSessionStmtValidator stmtValidator,
+        SqlNode sqlNode,
+        FarragoAllocationOwner owner,
+        FarragoSessionAnalyzedSql analyzedSql,
+        String rawSqlKey)
     {
         final FarragoSessionPreparingStmt stmt =
             stmtValidator.getSession().getPersonality().newPreparingStmt(
                 stmtContext,
                 stmtValidator);
-        return prepareStmtImpl(stmt, sqlNode, owner, analyzedSql);
+        return prepareStmtImpl(stmt, sqlNode, owner, analyzedSql, rawSqlKey);
     }
 
     /**
@@ -987,7 +1139,8 @@ public class FarragoDatabase
         final FarragoSessionPreparingStmt stmt,
         final SqlNode sqlNode,
         FarragoAllocationOwner owner,
-        FarragoSessionAnalyzedSql analyzedSql)
+        FarragoSessionAnalyzedSql analyzedSql,
+        String rawSqlKey)
     {
         final EigenbaseTimingTracer timingTracer =
             stmt.getStmtValidator().getTimingTracer();
@@ -1070,6 +1223,22 @@ public class FarragoDatabase
         if (labelCsn != null) {
             key += labelCsn;
         }
+
+        // the degree of parallelism can change the shape of the plan
+        key +=
+            ";dop="
+            + session.getSessionVariables().get(
+                FarragoDefaultSessionPersonality.DEGREE_OF_PARALLELISM);
+
+        // so does a planning budget; don't let a plan settled for under a
+        // tight budget stand in for a fully optimized one
+        key +=
+            ";budget="
+            + session.getSessionVariables().get(
+                FarragoDefaultSessionPersonality.PLANNER_TIME_LIMIT)
+            + "/"
+            + session.getSessionVariables().get(
+                FarragoDefaultSessionPersonality.PLANNER_RULE_CALL_LIMIT);
         final String stmtKey = key;
 
         FarragoObjectCache.Entry cacheEntry;
@@ -1115,6 +1284,10 @@ public class FarragoDatabase
         FarragoSessionExecutableStmt executableStmt =
             (FarragoSessionExecutableStmt) cacheEntry.getValue();
         owner.addAllocation(cacheEntry);
+        if (rawSqlKey != null) {
+            // lookupStmt ignores the entry if it turns out not to be reusable
+            rawSqlKeyMap.put(rawSqlKey, stmtKey);
+        }
         return executableStmt;
     }
 
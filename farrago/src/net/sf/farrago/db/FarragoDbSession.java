@@ -1251,6 +1251,23 @@ public class FarragoDbSession
             expectStatement = false;
         }
 
+        // Try to skip parsing and validation entirely for SQL seen before
+        // under the same session state.
+        String rawSqlKey = null;
+        if (analyzedSql == null) {
+            rawSqlKey = getRawSqlKey(sql);
+        }
+        if (rawSqlKey != null) {
+            FarragoSessionExecutableStmt stmt =
+                database.lookupStmt(rawSqlKey, stmtValidator, owner);
+            if (stmt != null) {
+                pRollback[0] = false;
+                ddlValidator.closeAllocation();
+                checkExecDirect(stmt, sql, owner, isExecDirect);
+                return stmt;
+            }
+        }
+
         Object parsedObj =
             parser.parseSqlText(
                 stmtValidator,
@@ -1271,25 +1288,9 @@ public class FarragoDbSession
                     stmtValidator,
                     sqlNode,
                     owner,
-                    analyzedSql);
-            if (isExecDirect) {
-                if (stmt.getDynamicParamRowType().getFieldList().size() > 0) {
-                    owner.closeAllocation();
-                    throw FarragoResource.instance()
-                    .SessionNoExecuteImmediateParameters.ex(sql);
-                }
-
-                // DML statements are disallowed if a session label is set.
-                // For CALL statements, the contents of the UDP determines
-                // whether the call can be executed.
-                if (stmt.isDml()
-                    && (stmt.getTableModOp() != null)
-                    && isSessionLabelEnabled())
-                {
-                    owner.closeAllocation();
-                    throw FarragoResource.instance().ReadOnlySession.ex();
-                }
-            }
+                    analyzedSql,
+                    rawSqlKey);
+            checkExecDirect(stmt, sql, owner, isExecDirect);
             return stmt;
         }
 
@@ -1344,6 +1345,73 @@ public class FarragoDbSession
         return null;
     }
 
+    private void checkExecDirect(
+        FarragoSessionExecutableStmt stmt,
+        String sql,
+        FarragoAllocationOwner owner,
+        boolean isExecDirect)
+    {
+        if (!isExecDirect) {
+            return;
+        }
+        if (stmt.getDynamicParamRowType().getFieldList().size() > 0) {
+            owner.closeAllocation();
+            throw FarragoResource.instance()
+            .SessionNoExecuteImmediateParameters.ex(sql);
+        }
+
+        // DML statements are disallowed if a session label is set.
+        // For CALL statements, the contents of the UDP determines
+        // whether the call can be executed.
+        if (stmt.isDml()
+            && (stmt.getTableModOp() != null)
+            && isSessionLabelEnabled())
+        {
+            owner.closeAllocation();
+            throw FarragoResource.instance().ReadOnlySession.ex();
+        }
+    }
+
+    /**
+     * Computes the key under which the implementation of a statement is
+     * remembered by the raw SQL cache in {@link FarragoDatabase}. Besides the
+     * text itself, the key includes everything in the session which can
+     * change how the text resolves: personality, default catalog and schema,
+     * path, user and role (privileges are checked during validation), label,
+     * the remaining session variables, and the DDL generation.
+     *
+     * @param sql raw SQL text
+     *
+     * @return key, or null if statement caching is disabled for this session
+     */
+    private String getRawSqlKey(String sql)
+    {
+        if (!sessionVariables.getBoolean(
+                FarragoDefaultSessionPersonality.CACHE_STATEMENTS))
+        {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder(sql);
+        sb.append(";personality=").append(personality.getClass().getName());
+        sb.append(";path=").append(sessionVariables.schemaSearchPath);
+        Map<String, String> vars =
+            new TreeMap<String, String>(sessionVariables.getMap());
+
+        // these identify the session without affecting resolution
+        vars.remove("sessionName");
+        vars.remove("programName");
+        vars.remove("processId");
+        vars.remove("systemUserFullName");
+        sb.append(";vars=").append(vars);
+        sb.append(";label=");
+        Long labelCsn = getSessionLabelCsn();
+        if (labelCsn != null) {
+            sb.append(labelCsn);
+        }
+        sb.append(";ddl=").append(database.getDdlGeneration());
+        return sb.toString();
+    }
+
     private void validateDdl(
         FarragoSessionDdlValidator ddlValidator,
         FarragoDbStmtContextBase stmtContext,
@@ -1453,6 +1521,7 @@ public class FarragoDbSession
             reposTxnContext.commit();
             commitImpl();
             rollbackFennel = false;
+            database.advanceDdlGeneration();
             ddlStmt.postCommit(ddlValidator);
 
             if (shutDownRequested) {
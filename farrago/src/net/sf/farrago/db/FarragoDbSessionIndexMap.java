@@ -21,11 +21,16 @@ package net.sf.farrago.db;
 import java.sql.*;
 
 import java.util.*;
+import java.util.concurrent.*;
 
 import net.sf.farrago.catalog.*;
 import net.sf.farrago.cwm.relational.*;
+import net.sf.farrago.ddl.*;
+import net.sf.farrago.fem.fennel.*;
 import net.sf.farrago.fem.med.*;
+import net.sf.farrago.fennel.*;
 import net.sf.farrago.namespace.*;
+import net.sf.farrago.namespace.impl.*;
 import net.sf.farrago.namespace.util.*;
 import net.sf.farrago.resource.*;
 import net.sf.farrago.session.*;
@@ -271,6 +276,10 @@ class FarragoDbSessionIndexMap
             assert (indexMofId == null);
             indexMofId = index.refMofId();
         }
+
+        // statistics remembered by an interrupted ANALYZE no longer apply
+        DdlAnalyzeStmt.forgetIndexStats(indexMofId);
+
         try {
             if (FarragoCatalogUtil.isIndexTemporary(index)) {
                 if (!tempIndexRootMap.containsKey(indexMofId)) {
@@ -337,6 +346,70 @@ class FarragoDbSessionIndexMap
         }
     }
 
+    // implement FarragoSessionIndexMap
+    public Callable<FarragoMedLocalIndexStats> newIndexStatsTask(
+        FarragoDataWrapperCache wrapperCache,
+        FemLocalIndex index,
+        boolean estimate)
+    {
+        FarragoMedLocalDataServer server =
+            getIndexDataServer(wrapperCache, index);
+        if (!(server instanceof MedAbstractFennelDataServer)) {
+            // Nothing to defer; compute the statistics right away.
+            final FarragoMedLocalIndexStats stats =
+                computeIndexStats(wrapperCache, index, estimate);
+            return new Callable<FarragoMedLocalIndexStats>() {
+                public FarragoMedLocalIndexStats call()
+                {
+                    return stats;
+                }
+            };
+        }
+
+        final MedAbstractFennelDataServer fennelServer =
+            (MedAbstractFennelDataServer) server;
+        final FemCmdVerifyIndex cmd =
+            fennelServer.newVerifyIndexCmd(
+                index,
+                getIndexRoot(index),
+                estimate);
+
+        // If the session has a txn in progress, tasks share it; the
+        // verification only reads, but Fennel commands on one txn handle
+        // must not run at the same time, so tasks sharing it take turns.
+        // Otherwise each task verifies in an implicit txn of its own, rather
+        // than racing to start and commit the session's.
+        final FennelTxnContext sessionTxnContext =
+            dbSession.getFennelTxnContext();
+        final boolean shareTxn = sessionTxnContext.isTxnInProgress();
+        return new Callable<FarragoMedLocalIndexStats>() {
+            public FarragoMedLocalIndexStats call()
+            {
+                // Executing the command creates and updates repository
+                // objects (txn handles, command results), so the worker
+                // thread needs a repository session of its own, as the
+                // threads of Java UDXs do.
+                repos.beginReposSession();
+                try {
+                    if (shareTxn) {
+                        synchronized (sessionTxnContext) {
+                            return fennelServer.verifyIndex(
+                                cmd,
+                                sessionTxnContext);
+                        }
+                    }
+                    return fennelServer.verifyIndex(
+                        cmd,
+                        new FennelTxnContext(
+                            repos,
+                            sessionTxnContext.getFennelDbHandle()));
+                } finally {
+                    repos.endReposSession();
+                }
+            }
+        };
+    }
+
     // implement FarragoSessionIndexMap
     public FemLocalIndex getIndexById(long id)
     {
@@ -53,6 +53,7 @@ public class FarragoDbStmtContext
     //~ Instance fields --------------------------------------------------------
 
     private long updateCount;
+    private long [] batchUpdateCounts;
     private ResultSet resultSet;
     protected FarragoSessionExecutableStmt executableStmt;
     private FarragoCompoundAllocation allocations;
@@ -94,6 +95,7 @@ public class FarragoDbStmtContext
         super(session, paramDefFactory, ddlLockManager, rootStmtContext);
 
         updateCount = -1;
+        batchUpdateCounts = new long[0];
         warningQueue = new FarragoWarningQueue();
     }
 
@@ -229,11 +231,75 @@ public class FarragoDbStmtContext
     public void execute()
     {
         synchronized (session) {
-            executeImpl();
+            executeImpl(null);
         }
     }
 
-    private void executeImpl()
+    // implement FarragoSessionStmtContext
+    public long [] executeBatch()
+    {
+        synchronized (session) {
+            assert (isPrepared());
+            List<Object []> paramRows = dynamicParamBatch;
+            dynamicParamBatch = new ArrayList<Object []>();
+            long [] updateCounts = new long[paramRows.size()];
+            batchUpdateCounts = new long[0];
+            if (paramRows.isEmpty()) {
+                return updateCounts;
+            }
+
+            if (executableStmt.isBatchable()) {
+                // on failure, none of the rows counts as completed
+                executeImpl(paramRows);
+
+                // Each row of parameters inserts one row, unless the
+                // personality rejected some of them (e.g. LucidDB with an
+                // error threshold), in which case we can't tell which.
+                long count = getUpdateCount();
+                if (count == paramRows.size()) {
+                    Arrays.fill(updateCounts, 1);
+                } else {
+                    Arrays.fill(updateCounts, Statement.SUCCESS_NO_INFO);
+                }
+                batchUpdateCounts = updateCounts;
+                return updateCounts;
+            }
+
+            int nCompleted = 0;
+            try {
+                for (; nCompleted < updateCounts.length; ++nCompleted) {
+                    executeImpl(
+                        Collections.singletonList(paramRows.get(nCompleted)));
+                    updateCounts[nCompleted] = getUpdateCount();
+                }
+            } finally {
+                batchUpdateCounts = new long[nCompleted];
+                System.arraycopy(
+                    updateCounts,
+                    0,
+                    batchUpdateCounts,
+                    0,
+                    nCompleted);
+            }
+            return updateCounts;
+        }
+    }
+
+    // implement FarragoSessionStmtContext
+    public long [] getBatchUpdateCounts()
+    {
+        return batchUpdateCounts.clone();
+    }
+
+    /**
+     * Executes the prepared statement.
+     *
+     * @param paramRows rows of dynamic parameter values to execute with, or
+     * null to use the current settings; more than one row is only allowed if
+     * the statement is {@link FarragoSessionExecutableStmt#isBatchable
+     * batchable}
+     */
+    private void executeImpl(List<Object []> paramRows)
     {
         assert (isPrepared());
         if (!isExecDirect) {
@@ -262,7 +328,9 @@ public class FarragoDbStmtContext
 
         FarragoSessionRuntimeContext newContext = null;
         try {
-            checkDynamicParamsSet();
+            if (paramRows == null) {
+                checkDynamicParamsSet();
+            }
             FarragoSessionRuntimeParams params =
                 session.newRuntimeContextParams(this);
             if (executableStmt.getTableModOp() == null) {
@@ -277,7 +345,16 @@ public class FarragoDbStmtContext
             params.isDml = isDml;
             params.resultSetTypeMap = executableStmt.getResultSetTypeMap();
             params.iterCalcTypeMap = executableStmt.getIterCalcTypeMap();
-            params.dynamicParamValues = dynamicParamValues;
+            if (paramRows == null) {
+                params.dynamicParamValues = dynamicParamValues;
+            } else {
+                assert (executableStmt.isBatchable()
+                    || (paramRows.size() == 1));
+                params.dynamicParamValues = paramRows.get(0);
+                if (executableStmt.isBatchable()) {
+                    params.dynamicParamBatch = paramRows;
+                }
+            }
 
             // REVIEW zfong 3/21/08 - Should this time be set to a non-zero
             // value even if this isn't an internal statement?  Currently,
@@ -81,6 +81,12 @@ public abstract class FarragoDbStmtContextBase
      */
     protected boolean [] dynamicParamValuesSet;
 
+    /**
+     * Copies of dynamic parameter bindings saved by {@link
+     * #addDynamicParamBatch}, in the order added.
+     */
+    protected List<Object []> dynamicParamBatch = new ArrayList<Object []>();
+
     protected boolean daemon;
 
     protected String sql;
@@ -206,6 +212,7 @@ public abstract class FarragoDbStmtContextBase
             sql = null;
             dynamicParamValues = null;
             dynamicParamValuesSet = null;
+            dynamicParamBatch.clear();
 
             ddlLockManager.removeObjectsInUse(this);
         }
@@ -248,6 +255,24 @@ public abstract class FarragoDbStmtContextBase
         }
     }
 
+    // implement FarragoSessionStmtContext
+    public void addDynamicParamBatch()
+    {
+        synchronized (session) {
+            assert (isPrepared());
+            checkDynamicParamsSet();
+            dynamicParamBatch.add(dynamicParamValues.clone());
+        }
+    }
+
+    // implement FarragoSessionStmtContext
+    public void clearDynamicParamBatch()
+    {
+        synchronized (session) {
+            dynamicParamBatch.clear();
+        }
+    }
+
     // implement FarragoSessionStmtContext
     public String getSql()
     {
@@ -21,6 +21,7 @@ package net.sf.farrago.ddl;
 import java.sql.*;
 
 import java.util.*;
+import java.util.concurrent.*;
 
 import javax.jmi.reflect.*;
 
@@ -28,9 +29,11 @@ import net.sf.farrago.catalog.*;
 import net.sf.farrago.cwm.keysindexes.*;
 import net.sf.farrago.cwm.relational.*;
 import net.sf.farrago.cwm.relational.enumerations.*;
+import net.sf.farrago.defimpl.*;
 import net.sf.farrago.fem.med.*;
 import net.sf.farrago.fem.sql2003.*;
 import net.sf.farrago.namespace.*;
+import net.sf.farrago.namespace.util.*;
 import net.sf.farrago.resource.*;
 import net.sf.farrago.session.*;
 import net.sf.farrago.util.*;
@@ -60,7 +63,21 @@ import org.eigenbase.util14.*;
  * <li>The number of distinct values for the column.
  * </ul>
  *
- * This implementation issues recursive SQL.
+ * This implementation issues recursive SQL. Normally each column's
+ * distribution is computed by a GROUP BY query of its own. When the session
+ * variable {@link FarragoDefaultSessionPersonality#ANALYZE_SINGLE_PASS} is
+ * set, all of the columns are read by a single (possibly sampled) scan
+ * instead, and their distributions are summarized by sketches which are
+ * updated in parallel; see {@link ColumnSketch}.
+ *
+ * <p>Indexes are verified one at a time, or by several workers at once if
+ * the session variable {@link
+ * FarragoDefaultSessionPersonality#ANALYZE_INDEX_WORKERS} is greater than
+ * one. When the personality maintains row counts, the statistics of each
+ * index are remembered as soon as they are computed, until the statement
+ * succeeds; if it fails or is cancelled, re-running it reuses them rather
+ * than verifying those indexes again, provided the table has not been
+ * modified in the meantime.
  *
  * @author John Pham, Stephan Zuercher
  * @version $Id$
@@ -80,6 +97,35 @@ public class DdlAnalyzeStmt
 
     public static final String REPEATABLE_SEED = "test.estimateStatsSeed";
 
+    /**
+     * Number of rows read from the single-pass scan before they are handed
+     * to the column sketches.
+     */
+    private final static int SINGLE_PASS_BATCH_ROWS = 4096;
+
+    /**
+     * Maximum number of entries in {@link #finishedIndexStats}. Entries of
+     * runs which are never retried are evicted, least recently used first,
+     * once there are more than this.
+     */
+    private final static int MAX_FINISHED_INDEX_STATS = 1000;
+
+    /**
+     * Statistics of indexes verified by ANALYZE statements which have not yet
+     * completed, keyed by index MOFID. Entries are removed when the statement
+     * completes and when the index storage is dropped or truncated (see
+     * {@link #forgetIndexStats}).
+     */
+    private static final Map<String, FinishedIndexStats> finishedIndexStats =
+        Collections.synchronizedMap(
+            new LinkedHashMap<String, FinishedIndexStats>(16, 0.75f, true) {
+                protected boolean removeEldestEntry(
+                    Map.Entry<String, FinishedIndexStats> eldest)
+                {
+                    return size() > MAX_FINISHED_INDEX_STATS;
+                }
+            });
+
     //~ Instance fields --------------------------------------------------------
 
     EigenbaseTimingTracer timingTracer;
@@ -91,6 +137,15 @@ public class DdlAnalyzeStmt
     private boolean computeRowCount;
     private SqlNumericLiteral samplePercent;
     private Integer sampleRepeatableSeed;
+    private boolean singlePass;
+    private int indexWorkers;
+
+    /**
+     * Identifies the table's contents as of this statement, for matching
+     * against {@link #finishedIndexStats}; null if statistics of an earlier,
+     * interrupted statement cannot be trusted.
+     */
+    private String tableVersion;
 
     // execution fields
     private FemAbstractColumnSet femTable;
@@ -130,6 +185,18 @@ public class DdlAnalyzeStmt
 
     //~ Methods ----------------------------------------------------------------
 
+    /**
+     * Discards any statistics remembered for an index by an interrupted
+     * ANALYZE statement. Called when the storage of the index is dropped or
+     * truncated.
+     *
+     * @param indexMofId MOFID of the index
+     */
+    public static void forgetIndexStats(String indexMofId)
+    {
+        finishedIndexStats.remove(indexMofId);
+    }
+
     /**
      * Sets the list of columns to be analyzed
      *
@@ -173,6 +240,20 @@ public class DdlAnalyzeStmt
         writer = new SqlPrettyWriter(dialect);
         repos = session.getRepos();
 
+        Boolean singlePassSetting =
+            session.getSessionVariables().getBoolean(
+                FarragoDefaultSessionPersonality.ANALYZE_SINGLE_PASS);
+        singlePass = (singlePassSetting != null) && singlePassSetting;
+
+        Integer indexWorkersSetting =
+            session.getSessionVariables().getInteger(
+                FarragoDefaultSessionPersonality.ANALYZE_INDEX_WORKERS);
+        indexWorkers =
+            (indexWorkersSetting == null) ? 1 : indexWorkersSetting;
+        if (indexWorkers == 0) {
+            indexWorkers = Runtime.getRuntime().availableProcessors();
+        }
+
         // Cast abstract catalog objects to required types
         List<FemAbstractColumn> femColumnList = checkCatalogTypes();
 
@@ -185,6 +266,13 @@ public class DdlAnalyzeStmt
         femTableRowCount = rowCountStats[0];
         femTableDeletedRowCount = 0;
 
+        // Without row counts maintained by DML, there is no telling whether
+        // the table changed since an interrupted ANALYZE.
+        tableVersion = null;
+        if (personalityManagesRowCount(ddlValidator)) {
+            tableVersion = getTableVersion();
+        }
+
         // Computing row count implies running a query to calculate row count
         // and then later storing the value in the catalog.  If we don't
         // compute, we don't update the catalog row count.
@@ -278,12 +366,12 @@ public class DdlAnalyzeStmt
             }
 
             histograms = new LinkedHashMap<ColumnDetail, Histogram>();
-            if (estimate) {
-                if (rowCount == 0) {
-                    estimateEmptyTableStats(columnDetails, histograms);
-                } else {
-                    estimateStats(columnDetails, rowCount, histograms);
-                }
+            if (estimate && (rowCount == 0)) {
+                estimateEmptyTableStats(columnDetails, histograms);
+            } else if (singlePass && !columnDetails.isEmpty()) {
+                computeStatsInSinglePass(columnDetails, rowCount, histograms);
+            } else if (estimate) {
+                estimateStats(columnDetails, rowCount, histograms);
             } else {
                 // Compute column histograms
                 for (ColumnDetail column : columnDetails) {
@@ -346,6 +434,10 @@ public class DdlAnalyzeStmt
             histograms.values(),
             indexDetails);
 
+        for (IndexDetail indexDetail : indexDetails) {
+            finishedIndexStats.remove(indexDetail.indexMofId);
+        }
+
         timingTracer.traceTime("analyze: end update stats");
     }
 
@@ -579,7 +671,7 @@ public class DdlAnalyzeStmt
             buildEstimatedHistogram(
                 column,
                 tableRowCount,
-                resultSet,
+                new ResultSetClassSource(resultSet),
                 isUnique,
                 isUniqueNullable);
         histograms.put(column, columnHistogram);
@@ -592,7 +684,7 @@ public class DdlAnalyzeStmt
      *
      * @param column the column to generate a histogram for
      * @param tableRowCount number of rows in the table
-     * @param resultSet containing column samples aggregated by value
+     * @param classes column samples aggregated by value
      * @param isUnique if true, the column has a uniqueness constraint that
      * applies to it only (e.g. single-column primary key or single-column
      * unique constraint)
@@ -606,7 +698,7 @@ public class DdlAnalyzeStmt
     private Histogram buildEstimatedHistogram(
         ColumnDetail column,
         long tableRowCount,
-        ResultSet resultSet,
+        ValueClassSource classes,
         boolean isUnique,
         boolean isUniqueNullable)
         throws SQLException
@@ -625,7 +717,7 @@ public class DdlAnalyzeStmt
         long rowsPerBar = computeRowsPerHistogramBar(sampleSizeEstimate);
 
         List<ColumnHistogramBar> bars =
-            buildBars(resultSet, rowsPerBar, estimator);
+            buildBars(classes, rowsPerBar, estimator);
 
         timingTracer.traceTime("analyze: -- end build bars");
 
@@ -726,7 +818,10 @@ public class DdlAnalyzeStmt
         stmtContext.execute();
         ResultSet resultSet = stmtContext.getResultSet();
         Histogram columnHistogram =
-            buildHistogram(column, tableRowCount, resultSet);
+            buildHistogram(
+                column,
+                tableRowCount,
+                new ResultSetClassSource(resultSet));
         histograms.put(column, columnHistogram);
         resultSet.close();
     }
@@ -737,7 +832,7 @@ public class DdlAnalyzeStmt
      *
      * @param column the column to generate a histogram for
      * @param tableRowCount number of rows in the table
-     * @param resultSet containing column data aggregated by value
+     * @param classes column data aggregated by value
      *
      * @return the column's Histogram
      *
@@ -746,7 +841,7 @@ public class DdlAnalyzeStmt
     private Histogram buildHistogram(
         ColumnDetail column,
         long tableRowCount,
-        ResultSet resultSet)
+        ValueClassSource classes)
         throws SQLException
     {
         assert (!estimate);
@@ -755,7 +850,7 @@ public class DdlAnalyzeStmt
         long rowsLastBar =
             computeRowsLastHistogramBar(tableRowCount, rowsPerBar);
 
-        List<ColumnHistogramBar> bars = buildBars(resultSet, rowsPerBar, null);
+        List<ColumnHistogramBar> bars = buildBars(classes, rowsPerBar, null);
 
         timingTracer.traceTime("analyze: -- end build bars");
 
@@ -777,6 +872,284 @@ public class DdlAnalyzeStmt
             bars);
     }
 
+    /**
+     * Computes (or estimates, if the {@link #estimate} flag is set) the
+     * histograms and cardinalities of all of the given columns from a single
+     * scan of the table. Each column's values are summarized by a {@link
+     * ColumnSketch}. The sketches are updated in parallel, one batch of rows
+     * at a time, while the next batch is read.
+     *
+     * @param columnDetails columns to analyze
+     * @param rowCount row count of the table
+     * @param histograms a map of columns to histograms with predictable
+     * iteration order
+     *
+     * @throws SQLException if the scan fails
+     */
+    private void computeStatsInSinglePass(
+        List<ColumnDetail> columnDetails,
+        long rowCount,
+        LinkedHashMap<ColumnDetail, Histogram> histograms)
+        throws SQLException
+    {
+        int nColumns = columnDetails.size();
+        Random random =
+            (sampleRepeatableSeed != null) ? new Random(sampleRepeatableSeed)
+            : new Random();
+        ColumnSketch [] sketches = new ColumnSketch[nColumns];
+        for (int i = 0; i < nColumns; i++) {
+            sketches[i] = new ColumnSketch(new Random(random.nextLong()));
+        }
+
+        String sql = getColumnsScanQuery(columnDetails);
+        stmtContext.prepare(sql, true);
+
+        timingTracer.traceTime("analyze: -- end prepare");
+
+        stmtContext.execute();
+        ResultSet resultSet = stmtContext.getResultSet();
+        try {
+            scanColumns(resultSet, sketches);
+        } finally {
+            resultSet.close();
+        }
+
+        timingTracer.traceTime("analyze: -- end scan");
+
+        for (int i = 0; i < nColumns; i++) {
+            ColumnDetail column = columnDetails.get(i);
+            histograms.put(
+                column,
+                buildSketchedHistogram(column, rowCount, sketches[i]));
+
+            timingTracer.traceTime(
+                "analyze: end column " + column.toString());
+        }
+    }
+
+    /**
+     * Reads all rows of a result set into column sketches. Column i of the
+     * result set feeds sketches[i].
+     *
+     * @param resultSet rows to read
+     * @param sketches one sketch per column
+     *
+     * @throws SQLException if there's an error reading the result set
+     */
+    private void scanColumns(ResultSet resultSet, ColumnSketch [] sketches)
+        throws SQLException
+    {
+        int nColumns = sketches.length;
+        int nThreads =
+            Math.min(nColumns, Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = null;
+        if (nThreads > 1) {
+            executor = Executors.newFixedThreadPool(nThreads);
+        }
+        try {
+            // Datetime values are read as strings, so that they are recorded
+            // in the same form as by a column distribution query (the string
+            // forms of java.sql.Timestamp and friends differ).  The strings
+            // sort in the same order as the values.
+            boolean [] readAsString = new boolean[nColumns];
+            ResultSetMetaData metaData = resultSet.getMetaData();
+            for (int i = 0; i < nColumns; i++) {
+                switch (metaData.getColumnType(i + 1)) {
+                case Types.DATE:
+                case Types.TIME:
+                case Types.TIMESTAMP:
+                    readAsString[i] = true;
+                    break;
+                default:
+                    break;
+                }
+            }
+
+            // Fill one batch while the other is being added to the sketches.
+            Object [][] batch = new Object[nColumns][SINGLE_PASS_BATCH_ROWS];
+            Object [][] otherBatch =
+                new Object[nColumns][SINGLE_PASS_BATCH_ROWS];
+            List<Future<?>> pending = Collections.emptyList();
+            boolean more = true;
+            while (more) {
+                int nRows = 0;
+                while ((nRows < SINGLE_PASS_BATCH_ROWS)
+                    && (more = resultSet.next()))
+                {
+                    for (int i = 0; i < nColumns; i++) {
+                        batch[i][nRows] =
+                            readAsString[i] ? resultSet.getString(i + 1)
+                            : resultSet.getObject(i + 1);
+                    }
+                    ++nRows;
+                }
+                waitForSketches(pending);
+                pending =
+                    updateSketches(executor, nThreads, sketches, batch, nRows);
+                Object [][] filled = batch;
+                batch = otherBatch;
+                otherBatch = filled;
+            }
+            waitForSketches(pending);
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Adds a batch of rows to the column sketches, dividing the columns among
+     * nThreads tasks.
+     *
+     * @return futures for the tasks, or an empty list if there is no executor
+     * and the sketches were updated by the calling thread
+     */
+    private List<Future<?>> updateSketches(
+        ExecutorService executor,
+        final int nThreads,
+        final ColumnSketch [] sketches,
+        final Object [][] batch,
+        final int nRows)
+    {
+        if (executor == null) {
+            for (int i = 0; i < sketches.length; i++) {
+                sketches[i].addAll(batch[i], nRows);
+            }
+            return Collections.emptyList();
+        }
+        List<Future<?>> futures = new ArrayList<Future<?>>(nThreads);
+        for (int t = 0; t < nThreads; t++) {
+            final int firstColumn = t;
+            futures.add(
+                executor.submit(
+                    new Runnable() {
+                        public void run()
+                        {
+                            for (
+                                int i = firstColumn;
+                                i < sketches.length;
+                                i += nThreads)
+                            {
+                                sketches[i].addAll(batch[i], nRows);
+                            }
+                        }
+                    }));
+        }
+        return futures;
+    }
+
+    private void waitForSketches(List<Future<?>> futures)
+    {
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException ex) {
+                throw Util.newInternal(ex);
+            } catch (ExecutionException ex) {
+                throw Util.newInternal(
+                    ex.getCause(),
+                    "analyze: column sketch update failed");
+            }
+        }
+    }
+
+    /**
+     * Builds the histogram for a column from its sketch. If the sketch
+     * retained every distinct value, the result is the same as the one built
+     * from a column distribution query; otherwise, the bars' value counts and
+     * the number of distinct values are scaled up to the sketch's estimate.
+     *
+     * @param column the column to generate a histogram for
+     * @param tableRowCount number of rows in the table
+     * @param sketch summary of the column's values
+     *
+     * @return the column's Histogram
+     */
+    private Histogram buildSketchedHistogram(
+        ColumnDetail column,
+        long tableRowCount,
+        ColumnSketch sketch)
+        throws SQLException
+    {
+        List<Object> values = new ArrayList<Object>();
+        List<Long> rows = new ArrayList<Long>();
+        sketch.getClasses(values, rows);
+        ValueClassSource classes = new ListClassSource(values, rows);
+
+        Histogram histogram;
+        if (estimate) {
+            histogram =
+                buildEstimatedHistogram(
+                    column,
+                    tableRowCount,
+                    classes,
+                    singleUniqueCols.get(column.ordinal),
+                    singleUniqueColsNullable.get(column.ordinal));
+        } else {
+            histogram = buildHistogram(column, tableRowCount, classes);
+        }
+        if (sketch.isExact()) {
+            return histogram;
+        }
+
+        int nNullClasses = (sketch.nullCount > 0) ? 1 : 0;
+        long distinct = sketch.estimateDistinctValues();
+        double scale =
+            Math.max(1.0, (double) distinct / (values.size() - nNullClasses));
+        for (ColumnHistogramBar bar : histogram.bars) {
+            bar.valueCount = Math.round(bar.valueCount * scale);
+        }
+
+        if (estimate && !histogram.distinctValuesEstimated) {
+            // non-nullable unique column; the row count is exact
+            return histogram;
+        }
+        if (estimate) {
+            long nonNullSampleRows = sketch.rowCount - sketch.nullCount;
+            long nonNullRows =
+                Math.round(
+                    (double) tableRowCount * nonNullSampleRows
+                    / sketch.rowCount);
+            distinct =
+                scaleSampleDistinctValues(
+                    distinct,
+                    nonNullSampleRows,
+                    nonNullRows);
+        }
+        histogram.distinctValues =
+            Math.min(distinct + nNullClasses, tableRowCount);
+        histogram.distinctValuesEstimated = true;
+        return histogram;
+    }
+
+    /**
+     * Estimates the number of distinct values among N rows from the number
+     * seen among n rows sampled from them. This is the Duj1 estimator of Haas
+     * and Stokes (see {@link FarragoCardinalityEstimator}), with the number
+     * of values seen exactly once approximated by d * d / n, since sketches
+     * don't count them: a sample in which every value is distinct scales up
+     * to N, while one in which values repeat often is taken as complete.
+     *
+     * <p>The sketch's estimate of d may exceed n, most often for a unique
+     * column, which would make the denominator negative; so d is clamped to
+     * [0, n] first, and the result to [d, N].
+     *
+     * @param d distinct values in the sample
+     * @param n rows in the sample
+     * @param N rows in the population
+     */
+    private static long scaleSampleDistinctValues(long d, long n, long N)
+    {
+        d = Math.max(0, Math.min(d, n));
+        if ((n == 0) || (N <= n)) {
+            return d;
+        }
+        double f1 = (double) d * d / n;
+        double estimate = (n * (double) d) / ((n - f1) + ((f1 * n) / N));
+        return Math.max(d, Math.min(N, Math.round(estimate)));
+    }
+
     /**
      * Generate a query to generate a columns distribution. If the {@link
      * #estimate} flag is set, the query uses the TABLESAMPLE keyword to sample
@@ -801,6 +1174,60 @@ public class DdlAnalyzeStmt
 
         writer.sep("from");
         final Frame fromFrame = writer.startList(FrameTypeEnum.FromList);
+        unparseTableAndSample();
+        writer.endList(fromFrame);
+
+        writer.sep("group by");
+        final Frame groupByFrame = writer.startList(FrameTypeEnum.GroupByList);
+        columnName.unparse(writer, 0, 0);
+        writer.endList(groupByFrame);
+
+        writer.sep("order by");
+        final Frame orderByFrame = writer.startList(FrameTypeEnum.OrderByList);
+        columnName.unparse(writer, 0, 0);
+        writer.endList(orderByFrame);
+        writer.endList(selectFrame);
+
+        String sql = writer.toString();
+        return sql;
+    }
+
+    /**
+     * Generate a query which reads all of the given columns, for a
+     * single-pass analyze. If the {@link #estimate} flag is set, the query
+     * uses the TABLESAMPLE keyword to sample the data.
+     */
+    private String getColumnsScanQuery(List<ColumnDetail> columns)
+    {
+        writer.reset();
+
+        final Frame selectFrame = writer.startList(FrameTypeEnum.Select);
+        writer.sep("select");
+
+        final Frame selectListFrame =
+            writer.startList(FrameTypeEnum.SelectList);
+        for (ColumnDetail column : columns) {
+            writer.sep(",");
+            column.identifier.unparse(writer, 0, 0);
+        }
+        writer.endList(selectListFrame);
+
+        writer.sep("from");
+        final Frame fromFrame = writer.startList(FrameTypeEnum.FromList);
+        unparseTableAndSample();
+        writer.endList(fromFrame);
+        writer.endList(selectFrame);
+
+        String sql = writer.toString();
+        return sql;
+    }
+
+    /**
+     * Writes the table name, followed by a TABLESAMPLE clause if the {@link
+     * #estimate} flag is set.
+     */
+    private void unparseTableAndSample()
+    {
         tableName.unparse(writer, 0, 0);
 
         if (estimate) {
@@ -817,22 +1244,6 @@ public class DdlAnalyzeStmt
                 writer.endFunCall(frame);
             }
         }
-
-        writer.endList(fromFrame);
-
-        writer.sep("group by");
-        final Frame groupByFrame = writer.startList(FrameTypeEnum.GroupByList);
-        columnName.unparse(writer, 0, 0);
-        writer.endList(groupByFrame);
-
-        writer.sep("order by");
-        final Frame orderByFrame = writer.startList(FrameTypeEnum.OrderByList);
-        columnName.unparse(writer, 0, 0);
-        writer.endList(orderByFrame);
-        writer.endList(selectFrame);
-
-        String sql = writer.toString();
-        return sql;
     }
 
     /**
@@ -898,20 +1309,19 @@ public class DdlAnalyzeStmt
     }
 
     /**
-     * Given a result set from a column distribution query, compute the bars in
-     * the Histogram.
+     * Given the distribution of a column, compute the bars in the Histogram.
      *
-     * @param resultSet column distribution query result set
+     * @param classes column values in order, with their row counts
      * @param rowsPerBar the number of rows per bar
      * @param estimator an estimator to populate with data from the result set;
      * may be null
      *
      * @return a list of {@link ColumnHistogramBar} instances
      *
-     * @throws SQLException if there's an error reading the result set
+     * @throws SQLException if there's an error reading the distribution
      */
     private List<ColumnHistogramBar> buildBars(
-        ResultSet resultSet,
+        ValueClassSource classes,
         long rowsPerBar,
         FarragoCardinalityEstimator estimator)
         throws SQLException
@@ -922,18 +1332,9 @@ public class DdlAnalyzeStmt
         long barValueCount = 0;
         long barRowCount = 0;
 
-        while (resultSet.next()) {
-            Object o = resultSet.getObject(1);
-            String nextValue;
-            if (o == null) {
-                nextValue = null;
-            } else if (o instanceof byte []) {
-                nextValue =
-                    ConversionUtil.toStringFromByteArray((byte []) o, 16);
-            } else {
-                nextValue = resultSet.getString(1);
-            }
-            long nextRows = resultSet.getLong(2);
+        while (classes.next()) {
+            String nextValue = classes.getValue();
+            long nextRows = classes.getRows();
 
             if (estimator != null) {
                 estimator.addSampleClass(nextRows, nextValue == null);
@@ -1094,6 +1495,12 @@ public class DdlAnalyzeStmt
      * when the index can provide a more accurate cardinality for a given column
      * than the estimation algorithm.
      *
+     * <p>Indexes whose statistics were computed by an earlier, interrupted
+     * ANALYZE of the unchanged table are not verified again. The others are
+     * verified by up to {@link #indexWorkers} threads; the calling thread
+     * prepares each verification (reading the catalog) and applies its
+     * results.
+     *
      * @param ddlValidator used to execute index statistics gathering
      * @param rowCount table's row count
      * @param deletedRowCount number of deleted rows in the table store (usually
@@ -1106,63 +1513,222 @@ public class DdlAnalyzeStmt
         long deletedRowCount,
         LinkedHashMap<ColumnDetail, Histogram> histograms)
     {
+        List<IndexDetail> pendingIndexes = new ArrayList<IndexDetail>();
         for (IndexDetail index : indexDetails) {
-            FarragoMedLocalIndexStats indexStats =
-                ddlValidator.getIndexMap().computeIndexStats(
-                    ddlValidator.getDataWrapperCache(),
-                    index.getIndex(),
-                    index.estimate);
+            FinishedIndexStats finished =
+                finishedIndexStats.get(index.indexMofId);
+            if ((tableVersion != null)
+                && (finished != null)
+                && finished.tableVersion.equals(tableVersion)
+                && (finished.estimate == index.estimate))
+            {
+                applyIndexStats(
+                    index,
+                    finished.stats,
+                    rowCount,
+                    deletedRowCount,
+                    histograms);
+                timingTracer.traceTime(
+                    "analyze: resumed index " + index.getIndex().getName());
+            } else {
+                pendingIndexes.add(index);
+            }
+        }
+
+        FarragoSessionIndexMap indexMap = ddlValidator.getIndexMap();
+        FarragoDataWrapperCache wrapperCache =
+            ddlValidator.getDataWrapperCache();
+        int nIndexes = pendingIndexes.size();
+        int nThreads = Math.min(nIndexes, indexWorkers);
+        if (nThreads <= 1) {
+            int nFinished = 0;
+            for (IndexDetail index : pendingIndexes) {
+                FarragoMedLocalIndexStats indexStats =
+                    indexMap.computeIndexStats(
+                        wrapperCache,
+                        index.getIndex(),
+                        index.estimate);
+                finishIndex(
+                    index,
+                    indexStats,
+                    ++nFinished,
+                    nIndexes,
+                    rowCount,
+                    deletedRowCount,
+                    histograms);
+            }
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+        try {
+            CompletionService<FarragoMedLocalIndexStats> completionService =
+                new ExecutorCompletionService<FarragoMedLocalIndexStats>(
+                    executor);
+            Map<Future<FarragoMedLocalIndexStats>, IndexDetail> tasks =
+                new HashMap<Future<FarragoMedLocalIndexStats>, IndexDetail>();
+            for (IndexDetail index : pendingIndexes) {
+                Callable<FarragoMedLocalIndexStats> task =
+                    indexMap.newIndexStatsTask(
+                        wrapperCache,
+                        index.getIndex(),
+                        index.estimate);
+                tasks.put(completionService.submit(task), index);
+            }
+            for (int nFinished = 1; nFinished <= nIndexes; nFinished++) {
+                Future<FarragoMedLocalIndexStats> future =
+                    completionService.take();
+                finishIndex(
+                    tasks.get(future),
+                    future.get(),
+                    nFinished,
+                    nIndexes,
+                    rowCount,
+                    deletedRowCount,
+                    histograms);
+            }
+        } catch (InterruptedException ex) {
+            throw Util.newInternal(ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof EigenbaseException) {
+                throw (EigenbaseException) ex.getCause();
+            }
+            throw Util.newInternal(
+                ex.getCause(),
+                "analyze: index verification failed");
+        } finally {
+            // Verifications already under way may share the session's txn,
+            // so let them finish before returning; queued ones are dropped.
+            executor.shutdownNow();
+            awaitTermination(executor);
+        }
+    }
+
+    private void awaitTermination(ExecutorService executor)
+    {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                    break;
+                }
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Records the statistics of a newly verified index, so that an
+     * interrupted statement can be resumed, and applies them.
+     */
+    private void finishIndex(
+        IndexDetail index,
+        FarragoMedLocalIndexStats indexStats,
+        int nFinished,
+        int nIndexes,
+        long rowCount,
+        long deletedRowCount,
+        LinkedHashMap<ColumnDetail, Histogram> histograms)
+    {
+        if (tableVersion != null) {
+            finishedIndexStats.put(
+                index.indexMofId,
+                new FinishedIndexStats(
+                    tableVersion,
+                    index.estimate,
+                    indexStats));
+        }
+        applyIndexStats(
+            index,
+            indexStats,
+            rowCount,
+            deletedRowCount,
+            histograms);
+        timingTracer.traceTime(
+            "analyze: end index " + index.getIndex().getName() + " ("
+            + nFinished + " of " + nIndexes + ")");
+    }
 
-            index.indexStats = indexStats;
+    private void applyIndexStats(
+        IndexDetail index,
+        FarragoMedLocalIndexStats indexStats,
+        long rowCount,
+        long deletedRowCount,
+        LinkedHashMap<ColumnDetail, Histogram> histograms)
+    {
+        index.indexStats = indexStats;
 
-            if (estimate && !index.estimate) {
-                // Index stats were computed for this index so we could get a
-                // more accurate distint value count.
+        if (estimate && !index.estimate) {
+            // Index stats were computed for this index so we could get a
+            // more accurate distint value count.
 
-                long indexDistinctValues = indexStats.getUniqueKeyCount();
-                assert (indexDistinctValues >= 0);
+            long indexDistinctValues = indexStats.getUniqueKeyCount();
+            assert (indexDistinctValues >= 0);
 
-                Histogram histogram = histograms.get(index.column);
+            Histogram histogram = histograms.get(index.column);
 
-                // Get the unique key count and place it in the histogram if
-                // it's better than the estimate we have.
-                if (deletedRowCount == 0) {
-                    histogram.distinctValues = indexDistinctValues;
-                    histogram.distinctValuesEstimated = false;
-                } else {
-                    // Estimate distinct values in undeleted rows by computing
-                    // the number of distinct values per row and applying that
-                    // to just the undeleted row count.
-                    double rate =
-                        (double) indexDistinctValues
-                        / (double) (deletedRowCount + rowCount);
-                    if (rate > 1.0) {
-                        // REVIEW: SWZ 2-OCT-2007: One (or both) of the row
-                        // counts is incorrect.  For now clamp the rate to 1.0,
-                        // but perhaps we should consider emitting some type
-                        // of warning.
-                        rate = 1.0;
-                    }
+            // Get the unique key count and place it in the histogram if
+            // it's better than the estimate we have.
+            if (deletedRowCount == 0) {
+                histogram.distinctValues = indexDistinctValues;
+                histogram.distinctValuesEstimated = false;
+            } else {
+                // Estimate distinct values in undeleted rows by computing
+                // the number of distinct values per row and applying that
+                // to just the undeleted row count.
+                double rate =
+                    (double) indexDistinctValues
+                    / (double) (deletedRowCount + rowCount);
+                if (rate > 1.0) {
+                    // REVIEW: SWZ 2-OCT-2007: One (or both) of the row
+                    // counts is incorrect.  For now clamp the rate to 1.0,
+                    // but perhaps we should consider emitting some type
+                    // of warning.
+                    rate = 1.0;
+                }
 
-                    long estDistinctValues =
-                        Math.round(rate * (double) rowCount);
+                long estDistinctValues =
+                    Math.round(rate * (double) rowCount);
 
-                    // If distinct values is 0 we must have seen zero rows
-                    // in the sample.  Otherwise, if the estimate from the
-                    // index is much larger than the estimate from the sample,
-                    // use the index-based estimate.
-                    if ((histogram.distinctValues > 0)
-                        && ((estDistinctValues / histogram.distinctValues)
-                            >= 10.0))
-                    {
-                        histogram.distinctValues = estDistinctValues;
-                        histogram.distinctValuesEstimated = true;
-                    }
+                // If distinct values is 0 we must have seen zero rows
+                // in the sample.  Otherwise, if the estimate from the
+                // index is much larger than the estimate from the sample,
+                // use the index-based estimate.
+                if ((histogram.distinctValues > 0)
+                    && ((estDistinctValues / histogram.distinctValues)
+                        >= 10.0))
+                {
+                    histogram.distinctValues = estDistinctValues;
+                    histogram.distinctValuesEstimated = true;
                 }
             }
         }
     }
 
+    /**
+     * Describes the table's contents by the row counts and time of the last
+     * DML statement recorded in the catalog.
+     *
+     * @return version of the table
+     */
+    private String getTableVersion()
+    {
+        String dmlTimestamp = null;
+        List<FemRowCountStatistics> rowCountStatsList =
+            femTable.getRowCountStats();
+        if (!rowCountStatsList.isEmpty()) {
+            dmlTimestamp =
+                rowCountStatsList.get(rowCountStatsList.size() - 1)
+                .getDmlTimestamp();
+        }
+        return femTable.getRowCount() + "/" + femTable.getDeletedRowCount()
+            + "/" + dmlTimestamp;
+    }
+
     /**
      * Updates catalog records with new statistical data, all within a single
      * MDR write txn.
@@ -1267,6 +1833,246 @@ public class DdlAnalyzeStmt
         }
     }
 
+    /**
+     * Source of the distribution of a column: its distinct values in order,
+     * each with the number of rows having that value.
+     */
+    private interface ValueClassSource
+    {
+        /**
+         * Moves to the next value.
+         *
+         * @return false if there are no more values
+         */
+        boolean next()
+            throws SQLException;
+
+        /**
+         * @return the current value, formatted as a histogram bar's starting
+         * value
+         */
+        String getValue()
+            throws SQLException;
+
+        /**
+         * @return the number of rows having the current value
+         */
+        long getRows()
+            throws SQLException;
+    }
+
+    /**
+     * Reads the distribution of a column from the result of a column
+     * distribution query.
+     */
+    private static class ResultSetClassSource
+        implements ValueClassSource
+    {
+        private final ResultSet resultSet;
+
+        ResultSetClassSource(ResultSet resultSet)
+        {
+            this.resultSet = resultSet;
+        }
+
+        public boolean next()
+            throws SQLException
+        {
+            return resultSet.next();
+        }
+
+        public String getValue()
+            throws SQLException
+        {
+            Object o = resultSet.getObject(1);
+            if (o == null) {
+                return null;
+            } else if (o instanceof byte []) {
+                return ConversionUtil.toStringFromByteArray((byte []) o, 16);
+            } else {
+                return resultSet.getString(1);
+            }
+        }
+
+        public long getRows()
+            throws SQLException
+        {
+            return resultSet.getLong(2);
+        }
+    }
+
+    /**
+     * Reads the distribution of a column from lists built by a {@link
+     * ColumnSketch}.
+     */
+    private static class ListClassSource
+        implements ValueClassSource
+    {
+        private final List<Object> values;
+        private final List<Long> rows;
+        private int i = -1;
+
+        ListClassSource(List<Object> values, List<Long> rows)
+        {
+            this.values = values;
+            this.rows = rows;
+        }
+
+        public boolean next()
+        {
+            return ++i < values.size();
+        }
+
+        public String getValue()
+        {
+            Object o = values.get(i);
+            return (o == null) ? null : o.toString();
+        }
+
+        public long getRows()
+        {
+            return rows.get(i);
+        }
+    }
+
+    /**
+     * ColumnSketch summarizes the values of a column read by a single-pass
+     * analyze. Until the column has shown more than {@link
+     * #MAX_EXACT_CLASSES} distinct values, it simply counts the rows having
+     * each value, so that the statistics built from it are the same as those
+     * built from a GROUP BY query. Beyond that, it switches to a {@link
+     * FarragoHyperLogLog} for the number of distinct values and a {@link
+     * FarragoQuantileSketch} for the histogram bars.
+     *
+     * <p>Binary values are kept as hex strings, which sort the same way, and
+     * datetime values arrive as the strings returned by {@link
+     * ResultSet#getString}, so {@link ListClassSource} can report all values
+     * with {@link Object#toString}. A sketch must only be updated by one
+     * thread at a time.
+     */
+    private static class ColumnSketch
+    {
+        static final int MAX_EXACT_CLASSES = 10000;
+
+        /**
+         * Capacity of the quantile sketch; large enough to place the bar
+         * boundaries to within a fraction of a bar.
+         */
+        static final int QUANTILE_K = 8 * DEFAULT_HISTOGRAM_BAR_COUNT;
+
+        private static final Comparator<Object> valueComparator =
+            new Comparator<Object>() {
+                public int compare(Object o1, Object o2)
+                {
+                    return ((Comparable<Object>) o1).compareTo(o2);
+                }
+            };
+
+        private final Random random;
+        private Map<Object, long []> classes;
+        private FarragoHyperLogLog distinctValues;
+        private FarragoQuantileSketch<Object> quantiles;
+        long rowCount;
+        long nullCount;
+
+        ColumnSketch(Random random)
+        {
+            this.random = random;
+            classes = new HashMap<Object, long []>();
+        }
+
+        boolean isExact()
+        {
+            return classes != null;
+        }
+
+        void addAll(Object [] values, int n)
+        {
+            for (int i = 0; i < n; i++) {
+                add(values[i]);
+                values[i] = null;
+            }
+        }
+
+        void add(Object value)
+        {
+            ++rowCount;
+            if (value == null) {
+                ++nullCount;
+                return;
+            }
+            if (value instanceof byte []) {
+                value =
+                    ConversionUtil.toStringFromByteArray((byte []) value, 16);
+            }
+            if (classes != null) {
+                long [] count = classes.get(value);
+                if (count != null) {
+                    ++count[0];
+                    return;
+                }
+                if (classes.size() < MAX_EXACT_CLASSES) {
+                    classes.put(value, new long[] { 1 });
+                    return;
+                }
+                switchToSketches();
+            }
+            distinctValues.add(value);
+            quantiles.add(value);
+        }
+
+        private void switchToSketches()
+        {
+            distinctValues = new FarragoHyperLogLog();
+            quantiles =
+                new FarragoQuantileSketch<Object>(
+                    QUANTILE_K,
+                    valueComparator,
+                    random);
+            for (Map.Entry<Object, long []> entry : classes.entrySet()) {
+                distinctValues.add(entry.getKey());
+                for (long i = 0; i < entry.getValue()[0]; i++) {
+                    quantiles.add(entry.getKey());
+                }
+            }
+            classes = null;
+        }
+
+        /**
+         * @return estimated number of distinct non-null values
+         */
+        long estimateDistinctValues()
+        {
+            if (classes != null) {
+                return classes.size();
+            }
+            return distinctValues.estimate();
+        }
+
+        /**
+         * Lists the values seen (all of them if {@link #isExact()}, otherwise
+         * a summary), in order, with the number of rows each stands for.
+         * Null, if seen, comes first.
+         */
+        void getClasses(List<Object> values, List<Long> rows)
+        {
+            if (nullCount > 0) {
+                values.add(null);
+                rows.add(nullCount);
+            }
+            if (classes == null) {
+                quantiles.getSortedView(values, rows);
+                return;
+            }
+            List<Object> sorted = new ArrayList<Object>(classes.keySet());
+            Collections.sort(sorted, valueComparator);
+            for (Object value : sorted) {
+                values.add(value);
+                rows.add(classes.get(value)[0]);
+            }
+        }
+    }
+
     /**
      * ColumnDetail stores details about a column being analyzed.
      */
@@ -1326,6 +2132,27 @@ public class DdlAnalyzeStmt
         }
     }
 
+    /**
+     * Statistics of an index verified by an ANALYZE statement which has not
+     * yet completed.
+     */
+    private static class FinishedIndexStats
+    {
+        final String tableVersion;
+        final boolean estimate;
+        final FarragoMedLocalIndexStats stats;
+
+        FinishedIndexStats(
+            String tableVersion,
+            boolean estimate,
+            FarragoMedLocalIndexStats stats)
+        {
+            this.tableVersion = tableVersion;
+            this.estimate = estimate;
+            this.stats = stats;
+        }
+    }
+
     /**
      * IndexDetails stores details about an index being analyzed.
      */
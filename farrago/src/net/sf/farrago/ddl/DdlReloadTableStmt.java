@@ -19,6 +19,7 @@
 package net.sf.farrago.ddl;
 
 import java.util.*;
+import java.util.concurrent.*;
 
 import javax.jmi.reflect.*;
 
@@ -484,6 +485,15 @@ public abstract class DdlReloadTableStmt
             return internalMap.computeIndexStats(wrapperCache, index, estimate);
         }
 
+        // implement FarragoSessionIndexMap
+        public Callable<FarragoMedLocalIndexStats> newIndexStatsTask(
+            FarragoDataWrapperCache wrapperCache,
+            FemLocalIndex index,
+            boolean estimate)
+        {
+            return internalMap.newIndexStatsTask(wrapperCache, index, estimate);
+        }
+
         // implement FarragoSessionIndexMap
         public void onCommit()
         {
@@ -123,6 +123,40 @@ public class FarragoDefaultSessionPersonality
 
     public static final String USE_ENKI_MASS_DELETION = "useEnkiMassDeletion";
     public static final String USE_ENKI_MASS_DELETION_DEFAULT = "true";
+
+    /**
+     * Whether ANALYZE TABLE reads all columns in a single scan, summarizing
+     * columns with many distinct values in sketches, rather than querying
+     * each column separately.
+     */
+    public static final String ANALYZE_SINGLE_PASS = "analyzeSinglePass";
+    public static final String ANALYZE_SINGLE_PASS_DEFAULT = "false";
+
+    /**
+     * Number of indexes ANALYZE TABLE verifies at the same time; a value of 1
+     * (the default) verifies them one after another, and 0 means one per
+     * available processor.
+     */
+    public static final String ANALYZE_INDEX_WORKERS = "analyzeIndexWorkers";
+    public static final String ANALYZE_INDEX_WORKERS_DEFAULT = "1";
+
+    /**
+     * Milliseconds the optimizer may spend planning a statement before it
+     * settles for the best complete plan found so far; 0 (the default) means
+     * no limit.
+     */
+    public static final String PLANNER_TIME_LIMIT = "plannerTimeLimit";
+    public static final String PLANNER_TIME_LIMIT_DEFAULT = "0";
+
+    /**
+     * Number of rule calls the optimizer may make planning a statement before
+     * it settles for the best complete plan found so far; 0 (the default)
+     * means no limit.
+     */
+    public static final String PLANNER_RULE_CALL_LIMIT =
+        "plannerRuleCallLimit";
+    public static final String PLANNER_RULE_CALL_LIMIT_DEFAULT = "0";
+
     /**
      * "thisjar" replacement in the spec(section 4.11.1).
      */
@@ -161,6 +195,24 @@ public class FarragoDefaultSessionPersonality
         paramValidator.registerBoolParam(
             USE_ENKI_MASS_DELETION,
             false);
+        paramValidator.registerBoolParam(
+            ANALYZE_SINGLE_PASS,
+            false);
+        paramValidator.registerIntParam(
+            ANALYZE_INDEX_WORKERS,
+            false,
+            0,
+            Integer.MAX_VALUE);
+        paramValidator.registerIntParam(
+            PLANNER_TIME_LIMIT,
+            false,
+            0,
+            Integer.MAX_VALUE);
+        paramValidator.registerIntParam(
+            PLANNER_RULE_CALL_LIMIT,
+            false,
+            0,
+            Integer.MAX_VALUE);
         paramValidator.registerStringParam(SQLJ_THISJAR, false);
     }
 
@@ -499,6 +551,18 @@ public class FarragoDefaultSessionPersonality
         variables.setDefault(
             USE_ENKI_MASS_DELETION,
             USE_ENKI_MASS_DELETION_DEFAULT);
+        variables.setDefault(
+            ANALYZE_SINGLE_PASS,
+            ANALYZE_SINGLE_PASS_DEFAULT);
+        variables.setDefault(
+            ANALYZE_INDEX_WORKERS,
+            ANALYZE_INDEX_WORKERS_DEFAULT);
+        variables.setDefault(
+            PLANNER_TIME_LIMIT,
+            PLANNER_TIME_LIMIT_DEFAULT);
+        variables.setDefault(
+            PLANNER_RULE_CALL_LIMIT,
+            PLANNER_RULE_CALL_LIMIT_DEFAULT);
         variables.setDefault(SQLJ_THISJAR, SQLJ_THISJAR_DEFAULT);
     }
 
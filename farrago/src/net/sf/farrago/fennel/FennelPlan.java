@@ -0,0 +1,183 @@
+/*
+// Licensed to DynamoBI Corporation (DynamoBI) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  DynamoBI licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+
+//   http://www.apache.org/licenses/LICENSE-2.0
+
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+*/
+package net.sf.farrago.fennel;
+
+import java.security.*;
+
+import java.util.*;
+import java.util.logging.*;
+
+import javax.jmi.reflect.*;
+
+import net.sf.farrago.fem.fennel.*;
+import net.sf.farrago.trace.*;
+import net.sf.farrago.util.*;
+
+import org.eigenbase.jmi.*;
+import org.eigenbase.util.*;
+
+
+/**
+ * FennelPlan is the prepared form of the Fennel portion of an execution plan.
+ * Each execution which misses the code cache turns it back into a {@link
+ * FemCmdPrepareExecutionStreamGraph} and passes that to Fennel.
+ *
+ * <p>The command is normally held in the compact form produced by {@link
+ * JmiBinaryCodec}, which is much cheaper to produce and to decode than XMI.
+ * Plans which the codec cannot handle, and all plans while {@link
+ * FarragoProperties#fennelPlanBinary} is false, are held as XMI.
+ *
+ * <p>Stream graphs are cached under {@link #getCacheKey}, a digest of the
+ * plan, so that statements with the same plan share them.
+ *
+ * @version $Id$
+ */
+public class FennelPlan
+{
+    //~ Static fields/initializers ---------------------------------------------
+
+    private static final Logger tracer =
+        FarragoTrace.getClassTracer(FennelPlan.class);
+
+    /**
+     * Approximate number of XMI characters per byte of encoded plan, used to
+     * scale the encoded size for {@link FarragoUtil#getFennelMemoryUsage},
+     * whose estimate is calibrated against XMI. This is a rough estimate: XMI
+     * spends most of its characters on element and attribute names, which the
+     * encoding replaces with positions. Like the factors in FarragoUtil, it
+     * only needs to be approximately right.
+     */
+    private static final int XMI_CHARS_PER_BYTE = 8;
+
+    //~ Instance fields --------------------------------------------------------
+
+    private final byte [] encodedCmd;
+    private final String xmiCmd;
+    private final String cacheKey;
+
+    //~ Constructors -----------------------------------------------------------
+
+    private FennelPlan(byte [] encodedCmd, String xmiCmd)
+    {
+        this.encodedCmd = encodedCmd;
+        this.xmiCmd = xmiCmd;
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            if (encodedCmd != null) {
+                digest.update(encodedCmd);
+            } else {
+                digest.update(xmiCmd.getBytes("UTF-8"));
+            }
+            cacheKey = "FennelPlan:" + RhBase64.encodeBytes(digest.digest());
+        } catch (Exception ex) {
+            throw Util.newInternal(ex);
+        }
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * Creates the prepared form of a plan. The command and the objects it
+     * contains are not modified, and may be deleted afterwards.
+     *
+     * @param cmd command which prepares the plan's stream graph
+     *
+     * @return new plan
+     */
+    public static FennelPlan newPlan(FemCmdPrepareExecutionStreamGraph cmd)
+    {
+        if (FarragoProperties.instance().fennelPlanBinary.get()) {
+            byte [] encodedCmd = JmiBinaryCodec.encode(cmd);
+            if (encodedCmd != null) {
+                return new FennelPlan(encodedCmd, null);
+            }
+            tracer.fine("Fennel plan cannot be encoded; using XMI");
+        }
+        return new FennelPlan(
+            null,
+            JmiObjUtil.exportToXmiString(Collections.singleton(cmd)));
+    }
+
+    /**
+     * Creates a new command from this plan. Must be called within a
+     * repository session.
+     *
+     * @param extent extent in which to create the command, normally the
+     * repository's transient package
+     *
+     * @return new command
+     */
+    public FemCmdPrepareExecutionStreamGraph newCmd(RefPackage extent)
+    {
+        if (encodedCmd != null) {
+            return (FemCmdPrepareExecutionStreamGraph) JmiBinaryCodec.decode(
+                extent,
+                encodedCmd);
+        }
+        Collection<RefBaseObject> collection =
+            JmiObjUtil.importFromXmiString(extent, xmiCmd);
+        assert (collection.size() == 1);
+        return (FemCmdPrepareExecutionStreamGraph) collection.iterator()
+            .next();
+    }
+
+    /**
+     * @return key under which stream graphs prepared from this plan are
+     * cached
+     */
+    public String getCacheKey()
+    {
+        return cacheKey;
+    }
+
+    /**
+     * @return whether this plan is held as XMI rather than in encoded form
+     */
+    public boolean isXmi()
+    {
+        return xmiCmd != null;
+    }
+
+    /**
+     * @return number of bytes used by this plan's representation
+     */
+    public int getMemoryUsage()
+    {
+        if (encodedCmd != null) {
+            return encodedCmd.length;
+        }
+        return FarragoUtil.getStringMemoryUsage(xmiCmd);
+    }
+
+    /**
+     * Estimates the memory used by Fennel for a stream graph prepared from
+     * this plan; see {@link FarragoUtil#getFennelMemoryUsage}.
+     *
+     * @return estimated memory usage
+     */
+    public long getFennelMemoryUsage()
+    {
+        if (encodedCmd != null) {
+            return (long) (encodedCmd.length * XMI_CHARS_PER_BYTE * 2 * 1.5);
+        }
+        return FarragoUtil.getFennelMemoryUsage(xmiCmd);
+    }
+}
+
+// End FennelPlan.java
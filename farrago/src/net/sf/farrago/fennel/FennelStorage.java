@@ -18,6 +18,8 @@
 */
 package net.sf.farrago.fennel;
 
+import java.nio.*;
+
 import java.sql.*;
 
 import java.util.*;
@@ -153,6 +155,24 @@ public class FennelStorage
         byte [] byteArray)
         throws SQLException;
 
+    /**
+     * Fetches rows from a stream without copying them. The returned buffer is
+     * a direct view of the stream's output buffer; its contents remain valid
+     * only until the next call for the same stream, which consumes the bytes
+     * read from the previous view before fetching more.
+     *
+     * @param hStream handle to stream
+     * @param cbConsumed number of bytes of the previously returned view which
+     * were read, or 0 on the first call (or after a restart)
+     *
+     * @return direct buffer containing complete tuples, or null for end of
+     * stream
+     */
+    static native ByteBuffer tupleStreamFetchDirect(
+        long hStream,
+        int cbConsumed)
+        throws SQLException;
+
     /**
      * Fetches a buffer of rows from a stream. Specifically, the stream must be
      * a JavaTransformExecStream. If unpositioned, this fetches the first rows.
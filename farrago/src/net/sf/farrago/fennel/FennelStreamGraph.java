@@ -18,6 +18,8 @@
 */
 package net.sf.farrago.fennel;
 
+import java.nio.*;
+
 import java.sql.*;
 
 import java.util.*;
@@ -215,6 +217,32 @@ public class FennelStreamGraph
         }
     }
 
+    /**
+     * Fetches rows from a stream without copying them into the Java heap. The
+     * returned buffer is a direct view of the stream's output buffer; see
+     * {@link FennelStorage#tupleStreamFetchDirect} for its lifetime.
+     *
+     * @param streamHandle handle to stream from which to fetch
+     * @param cbConsumed number of bytes read from the previously returned
+     * buffer (0 if there was none)
+     *
+     * @return direct buffer of complete tuples (not yet in native byte
+     * order), or null for end of stream
+     */
+    public ByteBuffer fetchDirect(
+        FennelStreamHandle streamHandle,
+        int cbConsumed)
+    {
+        traceStreamHandle("fetchDirect", streamHandle);
+        try {
+            return FennelStorage.tupleStreamFetchDirect(
+                streamHandle.getLongHandle(),
+                cbConsumed);
+        } catch (SQLException ex) {
+            throw fennelDbHandle.handleNativeException(ex);
+        }
+    }
+
     /**
      * Fetches a buffer of rows from a stream. If unpositioned, this fetches the
      * first rows.
@@ -1312,7 +1312,7 @@ public class FarragoJdbcEngineDatabaseMetaData
     public boolean supportsBatchUpdates()
         throws SQLException
     {
-        return false;
+        return true;
     }
 
     // implement DatabaseMetaData
@@ -109,6 +109,65 @@ public class FarragoJdbcEnginePreparedNonDdl
         }
     }
 
+    // implement PreparedStatement
+    public void addBatch()
+        throws SQLException
+    {
+        validateSession();
+        if (!stmtContext.isPreparedDml()) {
+            throw new SQLException(ERRMSG_IS_A_QUERY + sql);
+        }
+        try {
+            stmtContext.addDynamicParamBatch();
+        } catch (Throwable ex) {
+            throw FarragoJdbcEngineDriver.newSqlException(ex);
+        }
+    }
+
+    // implement Statement
+    public void clearBatch()
+        throws SQLException
+    {
+        try {
+            stmtContext.clearDynamicParamBatch();
+        } catch (Throwable ex) {
+            throw FarragoJdbcEngineDriver.newSqlException(ex);
+        }
+    }
+
+    // implement Statement
+    public int [] executeBatch()
+        throws SQLException
+    {
+        validateSession();
+        if (!stmtContext.isPreparedDml()) {
+            throw new SQLException(ERRMSG_IS_A_QUERY + sql);
+        }
+        try {
+            return toIntCounts(stmtContext.executeBatch());
+        } catch (Throwable ex) {
+            // report the settings which completed before the failure
+            SQLException sqlEx = FarragoJdbcEngineDriver.newSqlException(ex);
+            BatchUpdateException batchEx =
+                new BatchUpdateException(
+                    sqlEx.getMessage(),
+                    sqlEx.getSQLState(),
+                    sqlEx.getErrorCode(),
+                    toIntCounts(stmtContext.getBatchUpdateCounts()));
+            batchEx.initCause(sqlEx);
+            throw batchEx;
+        }
+    }
+
+    private static int [] toIntCounts(long [] counts)
+    {
+        int [] updateCounts = new int[counts.length];
+        for (int i = 0; i < counts.length; ++i) {
+            updateCounts[i] = (int) counts[i];
+        }
+        return updateCounts;
+    }
+
     // implement PreparedStatement
     public ResultSetMetaData getMetaData()
         throws SQLException
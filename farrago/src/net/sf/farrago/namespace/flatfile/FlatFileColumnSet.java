@@ -23,11 +23,14 @@ import java.io.*;
 import java.text.*;
 
 import java.util.*;
+import java.util.regex.*;
 
+import net.sf.farrago.defimpl.*;
 import net.sf.farrago.fem.config.*;
 import net.sf.farrago.namespace.*;
 import net.sf.farrago.namespace.impl.*;
 import net.sf.farrago.query.*;
+import net.sf.farrago.resource.*;
 
 import org.eigenbase.oj.rel.*;
 import org.eigenbase.rel.*;
@@ -41,6 +44,26 @@ import org.eigenbase.util.*;
  * FlatFileColumnSet provides a flatfile implementation of the {@link
  * FarragoMedColumnSet} interface.
  *
+ * <p>A table normally reads the single file named by its FILENAME option (or
+ * by the table name). If the FILENAME_PATTERN option is set instead, the
+ * table reads every file in the server directory whose name, less the
+ * server's file extension, matches the pattern. The pattern may use
+ * <code>*</code>, <code>?</code> and <code>[...]</code> as in a shell. Each
+ * file is scanned by a stream of its own and the scans are combined with
+ * UNION ALL, so that the parallel executor (see the session variable
+ * degreeOfParallelism) reads several files at once. The files are listed
+ * each time a statement is prepared, and such statements are not cached.
+ *
+ * <p>The SOURCE_FILE_COLUMN option names a column which, rather than being
+ * read from the file, holds the name of the file each row came from.
+ *
+ * <p>If the server's MEMORY_MAP option is set, data files are read through
+ * a memory mapping, and a query with a degree of parallelism greater than
+ * one also splits each large file into byte ranges which are scanned at
+ * once. Each scan moves the ends of its range forward to row boundaries, so
+ * every row is read exactly once provided that no quoted value contains a
+ * line delimiter.
+ *
  * @author John Pham
  * @version $Id$
  */
@@ -51,6 +74,13 @@ class FlatFileColumnSet
 
     public static final String PROP_FILENAME = "FILENAME";
     public static final String PROP_LOG_FILENAME = "LOG_FILENAME";
+    public static final String PROP_FILENAME_PATTERN = "FILENAME_PATTERN";
+    public static final String PROP_SOURCE_FILE_COLUMN = "SOURCE_FILE_COLUMN";
+
+    /**
+     * Smallest part of a memory-mapped file worth scanning separately
+     */
+    static final long MIN_RANGE_SIZE = 16 * 1024 * 1024;
 
     private static final String TIMESTAMP_PREFIX = "_";
     private static final String TIMESTAMP_FORMAT = "yyyy-MM-dd_HH_mm_ss";
@@ -60,9 +90,16 @@ class FlatFileColumnSet
     FlatFileParams params;
     String filePath;
     String logFilePath;
+    String logFilename;
+    String filenamePattern;
     FlatFileParams.SchemaType schemaType;
     long numRows;
 
+    /**
+     * Ordinal of the column holding source file names, or -1 if none
+     */
+    int sourceFileOrdinal;
+
     //~ Constructors -----------------------------------------------------------
 
     FlatFileColumnSet(
@@ -81,9 +118,15 @@ class FlatFileColumnSet
             makeFilePath(
                 localName,
                 tableProps.getProperty(PROP_FILENAME, null));
-        logFilePath =
-            makeLogFilePath(
-                tableProps.getProperty(PROP_LOG_FILENAME, null));
+        logFilename = tableProps.getProperty(PROP_LOG_FILENAME, null);
+        logFilePath = makeLogFilePath(logFilename, filePath);
+        filenamePattern = tableProps.getProperty(PROP_FILENAME_PATTERN, null);
+        String sourceFileColumn =
+            tableProps.getProperty(PROP_SOURCE_FILE_COLUMN, null);
+        sourceFileOrdinal =
+            (sourceFileColumn == null) ? -1
+            : rowType.getFieldOrdinal(sourceFileColumn);
+        assert (sourceFileColumn == null) || (sourceFileOrdinal >= 0);
         this.schemaType = schemaType;
     }
 
@@ -104,6 +147,127 @@ class FlatFileColumnSet
         return logFilePath;
     }
 
+    /**
+     * Returns the path of the log file for one of the table's data files.
+     * When a table reads several files, each gets a log file of its own.
+     *
+     * @param dataFilePath path of a data file read by the table
+     *
+     * @return path of the log file for that data file
+     */
+    public String getLogFilePath(String dataFilePath)
+    {
+        if (dataFilePath.equals(filePath)) {
+            return logFilePath;
+        }
+        return makeLogFilePath(logFilename, dataFilePath);
+    }
+
+    /**
+     * Lists the data files matched by a FILENAME_PATTERN option.
+     *
+     * @param params server parameters
+     * @param filenamePattern pattern for file names, less extension
+     *
+     * @return matching files, sorted by name
+     */
+    static List<File> findDataFiles(
+        FlatFileParams params,
+        String filenamePattern)
+    {
+        String directory = params.getDirectory();
+        final String extension = params.getFileExtenstion();
+        final Pattern pattern = globToRegex(filenamePattern);
+        File [] files =
+            new File(directory.equals("") ? "." : directory).listFiles(
+                new FilenameFilter() {
+                    public boolean accept(File dir, String name)
+                    {
+                        if (!name.endsWith(extension)) {
+                            return false;
+                        }
+                        String root =
+                            name.substring(
+                                0,
+                                name.length() - extension.length());
+                        return pattern.matcher(root).matches();
+                    }
+                });
+        if (files == null) {
+            return Collections.emptyList();
+        }
+        List<File> list = new ArrayList<File>();
+        for (File file : files) {
+            if (file.isFile()) {
+                list.add(file);
+            }
+        }
+        Collections.sort(list);
+        return list;
+    }
+
+    /**
+     * Translates a shell-style file name pattern into a regular expression.
+     * Within a bracketed class, a leading '!' negates the class and a ']'
+     * which comes first (after any '!') stands for itself.
+     *
+     * @throws EigenbaseException if the class ranges of the pattern are invalid
+     */
+    private static Pattern globToRegex(String glob)
+    {
+        StringBuilder buf = new StringBuilder();
+        boolean inClass = false;
+
+        // index of the first member of the current class
+        int classStart = 0;
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (inClass) {
+                if ((c == '!') && (i == classStart)) {
+                    buf.append('^');
+                    classStart++;
+                } else if ((c == ']') && (i > classStart)) {
+                    inClass = false;
+                    buf.append(c);
+                } else if ("\\[]&^".indexOf(c) >= 0) {
+                    // characters with a meaning inside a regex class
+                    buf.append('\\').append(c);
+                } else {
+                    buf.append(c);
+                }
+                continue;
+            }
+            switch (c) {
+            case '*':
+                buf.append(".*");
+                break;
+            case '?':
+                buf.append('.');
+                break;
+            case '[':
+                inClass = true;
+                classStart = i + 1;
+                buf.append(c);
+                break;
+            default:
+                buf.append(Pattern.quote(String.valueOf(c)));
+                break;
+            }
+        }
+        if (inClass) {
+            // unterminated class; treat the pattern as literal text
+            return Pattern.compile(Pattern.quote(glob));
+        }
+        try {
+            return Pattern.compile(buf.toString());
+        } catch (PatternSyntaxException ex) {
+            // e.g. a range such as [z-a]
+            throw FarragoResource.instance().FlatFileInvalidFilenamePattern.ex(
+                glob,
+                ex.getDescription());
+        }
+    }
+
     // implement RelOptTable
     public double getRowCount()
     {
@@ -117,6 +281,123 @@ class FlatFileColumnSet
     public RelNode toRel(
         RelOptCluster cluster,
         RelOptConnection connection)
+    {
+        List<String> dataFilePaths;
+        if (filenamePattern == null) {
+            dataFilePaths = Collections.singletonList(filePath);
+        } else {
+            // the files matched may differ by the next execution
+            getPreparingStmt().disableStatementCaching();
+            dataFilePaths = new ArrayList<String>();
+            for (File file : findDataFiles(params, filenamePattern)) {
+                dataFilePaths.add(file.getPath());
+            }
+            if (dataFilePaths.isEmpty()) {
+                throw FarragoResource.instance().FlatFileNoMatchingFiles.ex(
+                    filenamePattern,
+                    params.getDirectory());
+            }
+        }
+
+        // each scan is estimated to return the table's rows in proportion
+        // to the bytes it reads
+        long totalLength = 0;
+        for (String dataFilePath : dataFilePaths) {
+            totalLength += new File(dataFilePath).length();
+        }
+
+        List<RelNode> scans = new ArrayList<RelNode>();
+        for (String dataFilePath : dataFilePaths) {
+            long length = new File(dataFilePath).length();
+            long [] offsets = getRangeOffsets(dataFilePath);
+            for (int i = 0; i + 1 < offsets.length; i++) {
+                long endOffset =
+                    (offsets[i + 1] == 0) ? length : offsets[i + 1];
+                double rowShare = 1.0;
+                if ((totalLength > 0)
+                    && ((dataFilePaths.size() > 1) || (offsets.length > 2)))
+                {
+                    rowShare =
+                        (double) (endOffset - offsets[i]) / totalLength;
+                }
+                scans.add(
+                    newScan(
+                        cluster,
+                        connection,
+                        dataFilePath,
+                        offsets[i],
+                        offsets[i + 1],
+                        rowShare));
+            }
+        }
+        if (scans.size() == 1) {
+            return scans.get(0);
+        }
+        return new UnionRel(
+            cluster,
+            scans.toArray(new RelNode[scans.size()]),
+            true);
+    }
+
+    /**
+     * Divides a data file into the byte ranges to be scanned separately.
+     * Only a query over memory-mapped files, at a degree of parallelism
+     * greater than one, divides large files. A range is aligned to the row
+     * delimiter following its offset, which may lie within a quoted or
+     * escaped value, so files are not divided when the server sets a quote
+     * or escape character.
+     *
+     * <p>The last range always extends to the end of the file (an offset of
+     * 0), so the plan reads the whole file even if the file grows after the
+     * statement is prepared.
+     *
+     * @param dataFilePath data file
+     *
+     * @return offsets at which the ranges begin, followed by the offset at
+     * which the last range ends; {0, 0} for the whole file
+     */
+    private long [] getRangeOffsets(String dataFilePath)
+    {
+        long [] whole = { 0, 0 };
+        if (!params.getMemoryMap()
+            || params.getMapped()
+            || (params.getQuoteChar() != 0)
+            || (params.getEscapeChar() != 0)
+            || (schemaType != FlatFileParams.SchemaType.QUERY))
+        {
+            return whole;
+        }
+        Integer dop =
+            getPreparingStmt().getSession().getSessionVariables().getInteger(
+                FarragoDefaultSessionPersonality.DEGREE_OF_PARALLELISM);
+        if ((dop == null) || (dop <= 1)) {
+            return whole;
+        }
+        long length = new File(dataFilePath).length();
+        int nRanges = (int) Math.min(dop, length / MIN_RANGE_SIZE);
+        if (nRanges <= 1) {
+            return whole;
+        }
+        long [] offsets = new long[nRanges + 1];
+        for (int i = 1; i < nRanges; i++) {
+            offsets[i] = (length / nRanges) * i;
+        }
+        return offsets;
+    }
+
+    /**
+     * Constructs the relations which scan one data file, or a range of one.
+     *
+     * @param rowShare fraction of the table's rows the scan is expected to
+     * return
+     */
+    private RelNode newScan(
+        RelOptCluster cluster,
+        RelOptConnection connection,
+        String dataFilePath,
+        long startOffset,
+        long endOffset,
+        double rowShare)
     {
         // Implement the flat file scan as physical relations. The scan
         // relies on a calculator to convert text into typed data. This
@@ -128,26 +409,95 @@ class FlatFileColumnSet
         // always implemented in a separate CalcRel (because the Fennel
         // calc only understands ISO formats).
 
+        RelDataType fileRowType = getFileRowType(cluster.getTypeFactory());
         FlatFileProgramWriter pw =
             new FlatFileProgramWriter(
                 cluster.getRexBuilder(),
                 getPreparingStmt(),
                 params,
-                rowType);
+                fileRowType);
 
+        RelNode scan;
         if (schemaType == FlatFileParams.SchemaType.QUERY) {
             RexProgram program = pw.getProgram();
-            return newCalcRel(
-                cluster,
+            scan =
+                newCalcRel(
+                    cluster,
+                    newFennelRel(
+                        cluster,
+                        connection,
+                        FlatFileParams.SchemaType.QUERY_TEXT,
+                        program.getInputRowType(),
+                        dataFilePath,
+                        startOffset,
+                        endOffset,
+                        rowShare),
+                    program);
+        } else {
+            scan =
                 newFennelRel(
                     cluster,
                     connection,
-                    FlatFileParams.SchemaType.QUERY_TEXT,
-                    program.getInputRowType()),
-                program);
-        } else {
-            return newFennelRel(cluster, connection, schemaType, rowType);
+                    schemaType,
+                    fileRowType,
+                    dataFilePath,
+                    startOffset,
+                    endOffset,
+                    rowShare);
+        }
+        if (sourceFileOrdinal >= 0) {
+            scan = addSourceFileColumn(scan, dataFilePath);
+        }
+        return scan;
+    }
+
+    /**
+     * Returns the type of the rows read from a data file: the table's row
+     * type, less the source file column if there is one.
+     */
+    private RelDataType getFileRowType(RelDataTypeFactory typeFactory)
+    {
+        if (sourceFileOrdinal < 0) {
+            return rowType;
+        }
+        List<RelDataType> types = new ArrayList<RelDataType>();
+        List<String> names = new ArrayList<String>();
+        for (RelDataTypeField field : rowType.getFieldList()) {
+            if (field.getIndex() != sourceFileOrdinal) {
+                types.add(field.getType());
+                names.add(field.getName());
+            }
         }
+        return typeFactory.createStructType(types, names);
+    }
+
+    /**
+     * Inserts the source file column into the rows read from a data file.
+     */
+    private RelNode addSourceFileColumn(RelNode scan, String dataFilePath)
+    {
+        RexBuilder rexBuilder = scan.getCluster().getRexBuilder();
+        RelDataTypeField [] scanFields = scan.getRowType().getFields();
+        List<RexNode> exprs = new ArrayList<RexNode>();
+        List<String> names = new ArrayList<String>();
+        int iScanField = 0;
+        for (RelDataTypeField field : rowType.getFieldList()) {
+            if (field.getIndex() == sourceFileOrdinal) {
+                exprs.add(
+                    rexBuilder.makeCast(
+                        field.getType(),
+                        rexBuilder.makeLiteral(
+                            new File(dataFilePath).getName())));
+            } else {
+                exprs.add(
+                    rexBuilder.makeInputRef(
+                        scanFields[iScanField].getType(),
+                        iScanField));
+                iScanField++;
+            }
+            names.add(field.getName());
+        }
+        return CalcRel.createProject(scan, exprs, names);
     }
 
     /**
@@ -157,7 +507,11 @@ class FlatFileColumnSet
         RelOptCluster cluster,
         RelOptConnection connection,
         FlatFileParams.SchemaType schemaType,
-        RelDataType rowType)
+        RelDataType rowType,
+        String dataFilePath,
+        long startOffset,
+        long endOffset,
+        double rowShare)
     {
         return new FlatFileFennelRel(
             this,
@@ -165,7 +519,11 @@ class FlatFileColumnSet
             connection,
             schemaType,
             params,
-            rowType);
+            rowType,
+            dataFilePath,
+            startOffset,
+            endOffset,
+            rowShare);
     }
 
     /**
@@ -215,28 +573,47 @@ class FlatFileColumnSet
      *
      * <p>Log files names are appended with a timestamp and have a .ERR
      * extension rather than the data file extension.
+     *
+     * <p>For data files other than the table's file (that is, files matched
+     * by a FILENAME_PATTERN option), the name of the data file is inserted
+     * into a log filename, so that each file has a log file of its own.
      */
-    private String makeLogFilePath(String logFilename)
+    private String makeLogFilePath(String logFilename, String dataFilePath)
     {
+        // NOTE: file path must be set before calling this function
+        Util.pre(filePath != null, "filePath != null");
         String name = logFilename;
         if (name == null) {
-            // NOTE: file path must be set before calling this function
-            Util.pre(filePath != null, "filePath != null");
-            File file = new File(filePath); // DIR/FILE.EXT
-            String root = file.getName(); // FILE.EXT
-            int dot = root.lastIndexOf(FlatFileParams.FILE_EXTENSION_PREFIX);
-            if (dot > 0) {
-                root = root.substring(0, dot); // FILE
-            }
             SimpleDateFormat formatter = new SimpleDateFormat(TIMESTAMP_FORMAT);
             String timeStamp = formatter.format(new java.util.Date());
             name =
-                (root + TIMESTAMP_PREFIX + timeStamp
+                (getFileRoot(dataFilePath) + TIMESTAMP_PREFIX + timeStamp
                     + FlatFileParams.FILE_EXTENSION_PREFIX
                     + FlatFileParams.LOG_FILE_EXTENSION);
+        } else if (!dataFilePath.equals(filePath)) {
+            int dot = name.lastIndexOf(FlatFileParams.FILE_EXTENSION_PREFIX);
+            String extension = "";
+            if (dot > 0) {
+                extension = name.substring(dot);
+                name = name.substring(0, dot);
+            }
+            name =
+                name + TIMESTAMP_PREFIX + getFileRoot(dataFilePath)
+                + extension;
         }
         return params.getLogDirectory() + name;
     }
+
+    private static String getFileRoot(String path)
+    {
+        File file = new File(path); // DIR/FILE.EXT
+        String root = file.getName(); // FILE.EXT
+        int dot = root.lastIndexOf(FlatFileParams.FILE_EXTENSION_PREFIX);
+        if (dot > 0) {
+            root = root.substring(0, dot); // FILE
+        }
+        return root;
+    }
 }
 
 // End FlatFileColumnSet.java
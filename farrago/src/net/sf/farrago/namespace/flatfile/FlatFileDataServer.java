@@ -55,6 +55,7 @@ class FlatFileDataServer
         FarragoTrace.getClassTracer(FlatFileDataServer.class);
 
     private static int DESCRIBE_COLUMN_LENGTH = 2048;
+    private static int SOURCE_FILE_COLUMN_LENGTH = 1024;
     private static String DESCRIBE_COLUMN_NAME = "FIELD_SIZES";
     private static String QUALIFIED_NAME_SEPARATOR = ".";
     private static String SQL_QUOTE_CHARACTER = "\"";
@@ -137,6 +138,25 @@ class FlatFileDataServer
         String filename =
             tableProps.getProperty(
                 FlatFileColumnSet.PROP_FILENAME);
+        String filenamePattern =
+            tableProps.getProperty(
+                FlatFileColumnSet.PROP_FILENAME_PATTERN);
+        List<File> patternFiles = null;
+        if ((filenamePattern != null)
+            && (schemaType == FlatFileParams.SchemaType.QUERY))
+        {
+            // Without a FILENAME, the first matching file stands in for
+            // all of them when sampling and deriving the row type.
+            patternFiles =
+                FlatFileColumnSet.findDataFiles(params, filenamePattern);
+            if ((filename == null) && !patternFiles.isEmpty()) {
+                String name = patternFiles.get(0).getName();
+                filename =
+                    name.substring(
+                        0,
+                        name.length() - params.getFileExtenstion().length());
+            }
+        }
         if (filename == null) {
             filename = getTableName(localName);
         }
@@ -145,6 +165,13 @@ class FlatFileDataServer
             params.getDirectory() + filename
             + params.getFileExtenstion();
         File dataFile = new File(dataFilePath);
+        long dataLength = dataFile.length();
+        if (patternFiles != null) {
+            dataLength = 0;
+            for (File file : patternFiles) {
+                dataLength += file.length();
+            }
+        }
 
         // Estimate number of rows in a file
         long numRows = -1;
@@ -161,7 +188,7 @@ class FlatFileDataServer
 
                     // Estimated number of rows == file length / avg row length
                     if (avgRowSize > 0) {
-                        numRows = dataFile.length() / avgRowSize;
+                        numRows = dataLength / avgRowSize;
                     }
                 }
             }
@@ -170,6 +197,9 @@ class FlatFileDataServer
             // explanation is a bad idea
         }
 
+        String sourceFileColumn =
+            tableProps.getProperty(
+                FlatFileColumnSet.PROP_SOURCE_FILE_COLUMN);
         if (rowType == null) {
             // scan control file/data file for metadata (Phase II)
             // check data file exists
@@ -188,10 +218,30 @@ class FlatFileDataServer
                     localName,
                     filename,
                     bcpFile);
+            if ((rowType != null) && (sourceFileColumn != null)) {
+                rowType =
+                    addSourceFileColumn(
+                        typeFactory,
+                        rowType,
+                        sourceFileColumn);
+            }
         }
         if (rowType == null) {
             return null;
         }
+        if (sourceFileColumn != null) {
+            int ordinal = rowType.getFieldOrdinal(sourceFileColumn);
+            if (ordinal < 0) {
+                throw FarragoResource.instance()
+                .FlatFileSourceFileColumnNotFound.ex(sourceFileColumn);
+            }
+            if (!SqlTypeUtil.inCharFamily(
+                    rowType.getFields()[ordinal].getType()))
+            {
+                throw FarragoResource.instance()
+                .FlatFileInvalidSourceFileColumn.ex(sourceFileColumn);
+            }
+        }
         return new FlatFileColumnSet(
             localName,
             rowType,
@@ -233,6 +283,34 @@ class FlatFileDataServer
         return typeFactory.createStructType(types, names);
     }
 
+    /**
+     * Appends a column for the names of source files to a row type derived
+     * from a control file, unless the control file already defines one.
+     */
+    private RelDataType addSourceFileColumn(
+        FarragoTypeFactory typeFactory,
+        RelDataType rowType,
+        String sourceFileColumn)
+    {
+        if (rowType.getFieldOrdinal(sourceFileColumn) >= 0) {
+            return rowType;
+        }
+        List<RelDataType> types = new ArrayList<RelDataType>();
+        List<String> names = new ArrayList<String>();
+        for (RelDataTypeField field : rowType.getFieldList()) {
+            types.add(field.getType());
+            names.add(field.getName());
+        }
+        types.add(
+            FlatFileBcpFile.forceSingleByte(
+                typeFactory,
+                typeFactory.createSqlType(
+                    SqlTypeName.VARCHAR,
+                    SOURCE_FILE_COLUMN_LENGTH)));
+        names.add(sourceFileColumn);
+        return typeFactory.createStructType(types, names);
+    }
+
     /**
      * Derives the row type of a table when other type information is not
      * available. Also derives the row type of internal queries.
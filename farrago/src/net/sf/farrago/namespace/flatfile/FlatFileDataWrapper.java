@@ -152,6 +152,17 @@ public class FlatFileDataWrapper
                 true,
                 BOOLEAN_CHOICES_DEFAULT_FALSE);
         }
+        if (FlatFileParams.DEFAULT_MEMORY_MAP) {
+            infoMap.addPropInfo(
+                FlatFileParams.PROP_MEMORY_MAP,
+                true,
+                BOOLEAN_CHOICES_DEFAULT_TRUE);
+        } else {
+            infoMap.addPropInfo(
+                FlatFileParams.PROP_MEMORY_MAP,
+                true,
+                BOOLEAN_CHOICES_DEFAULT_FALSE);
+        }
         infoMap.addPropInfo(
             FlatFileParams.PROP_DATE_FORMAT,
             false);
@@ -58,6 +58,20 @@ public class FlatFileFennelRel
     private FlatFileColumnSet columnSet;
     private FlatFileParams.SchemaType schemaType;
     FlatFileParams params;
+    private String dataFilePath;
+
+    /**
+     * Byte range of the data file to read, for a scan of part of a large
+     * memory-mapped file; an endOffset of 0 means the end of the file
+     */
+    private long startOffset;
+    private long endOffset;
+
+    /**
+     * Fraction of the table's rows this relation reads, when the table is
+     * read by several scans
+     */
+    private double rowShare = 1.0;
 
     //~ Constructors -----------------------------------------------------------
 
@@ -76,6 +90,7 @@ public class FlatFileFennelRel
         this.columnSet = columnSet;
         this.schemaType = schemaType;
         this.params = params;
+        this.dataFilePath = columnSet.getFilePath();
     }
 
     protected FlatFileFennelRel(
@@ -90,6 +105,37 @@ public class FlatFileFennelRel
         this.rowType = rowType;
     }
 
+    /**
+     * Creates a FlatFileFennelRel which reads one of the files matched by a
+     * table's FILENAME_PATTERN option, or the rows in part of a file.
+     *
+     * @param dataFilePath file to read
+     * @param startOffset offset in the file of the range to read; the range
+     * begins at the first row which starts at or after it
+     * @param endOffset offset in the file at which the range ends, extended
+     * to the end of the row in progress there; 0 means the end of the file
+     * @param rowShare fraction of the table's rows in the range, used to
+     * estimate the rows this relation returns
+     */
+    protected FlatFileFennelRel(
+        FlatFileColumnSet columnSet,
+        RelOptCluster cluster,
+        RelOptConnection connection,
+        FlatFileParams.SchemaType schemaType,
+        FlatFileParams params,
+        RelDataType rowType,
+        String dataFilePath,
+        long startOffset,
+        long endOffset,
+        double rowShare)
+    {
+        this(columnSet, cluster, connection, schemaType, params, rowType);
+        this.dataFilePath = dataFilePath;
+        this.startOffset = startOffset;
+        this.endOffset = endOffset;
+        this.rowShare = rowShare;
+    }
+
     //~ Methods ----------------------------------------------------------------
 
     // implement FennelRel
@@ -106,9 +152,9 @@ public class FlatFileFennelRel
 
         FemFlatFileTupleStreamDef streamDef =
             repos.newFemFlatFileTupleStreamDef();
-        streamDef.setDataFilePath(columnSet.getFilePath());
+        streamDef.setDataFilePath(dataFilePath);
         if (params.getWithLogging()) {
-            streamDef.setErrorFilePath(columnSet.getLogFilePath());
+            streamDef.setErrorFilePath(columnSet.getLogFilePath(dataFilePath));
         }
         streamDef.setFieldDelimiter(encodeChar(params.getFieldDelimiter()));
         streamDef.setRowDelimiter(encodeChar(params.getLineDelimiter()));
@@ -134,7 +180,7 @@ public class FlatFileFennelRel
             Util.needToImplement("unsupported schema type");
             break;
         }
-        boolean header = params.getWithHeader();
+        boolean header = params.getWithHeader() && (startOffset == 0);
         if ((numRowsScan > 0) && header) {
             // during a sample or describe query, treat header as any
             // other data, but do not count it against the user specified
@@ -154,6 +200,9 @@ public class FlatFileFennelRel
         streamDef.setLenient(params.getLenient());
         streamDef.setTrim(params.getTrim());
         streamDef.setMapped(params.getMapped());
+        streamDef.setMemoryMapped(params.getMemoryMap());
+        streamDef.setStartOffset(startOffset);
+        streamDef.setEndOffset(endOffset);
         java.util.List<FemColumnName> columnNames = streamDef.getColumn();
         for (int i = 0; i < rowType.getFieldCount(); i++) {
             FemColumnName name = repos.newFemColumnName();
@@ -194,6 +243,46 @@ public class FlatFileFennelRel
         return RelFieldCollation.emptyCollationArray;
     }
 
+    // override TableAccessRelBase
+    public double getRows()
+    {
+        return rowShare * super.getRows();
+    }
+
+    // override TableAccessRelBase
+    public RelOptCost computeSelfCost(RelOptPlanner planner)
+    {
+        double dRows = getRows();
+        return planner.makeCost(dRows, dRows + 1, 0);
+    }
+
+    // implement RelNode
+    public void explain(RelOptPlanWriter pw)
+    {
+        boolean ranged = (startOffset != 0) || (endOffset != 0);
+        if (dataFilePath.equals(columnSet.getFilePath()) && !ranged) {
+            super.explain(pw);
+            return;
+        }
+
+        // distinguish the scans of a table which reads several files, or
+        // several parts of a file
+        Object tableName = java.util.Arrays.asList(table.getQualifiedName());
+        if (!ranged) {
+            pw.explain(
+                this,
+                new String[] { "table", "file" },
+                new Object[] { tableName, dataFilePath });
+        } else {
+            pw.explain(
+                this,
+                new String[] { "table", "file", "startOffset", "endOffset" },
+                new Object[] {
+                    tableName, dataFilePath, startOffset, endOffset
+                });
+        }
+    }
+
     // implement RelNode
     public FlatFileFennelRel clone()
     {
@@ -204,7 +293,11 @@ public class FlatFileFennelRel
                 connection,
                 schemaType,
                 params,
-                getRowType());
+                getRowType(),
+                dataFilePath,
+                startOffset,
+                endOffset,
+                rowShare);
         clone.inheritTraitsFrom(this);
         return clone;
     }
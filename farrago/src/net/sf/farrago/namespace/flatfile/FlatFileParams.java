@@ -70,6 +70,7 @@ class FlatFileParams
     public static final String PROP_LENIENT = "LENIENT";
     public static final String PROP_TRIM = "TRIM";
     public static final String PROP_MAPPED = "MAPPED";
+    public static final String PROP_MEMORY_MAP = "MEMORY_MAP";
 
     public static final String FILE_EXTENSION_PREFIX = ".";
     public static final String LOG_FILE_EXTENSION = "err";
@@ -86,6 +87,7 @@ class FlatFileParams
     protected static final boolean DEFAULT_LENIENT = true;
     protected static final boolean DEFAULT_TRIM = true;
     protected static final boolean DEFAULT_MAPPED = false;
+    protected static final boolean DEFAULT_MEMORY_MAP = false;
 
     //~ Enums ------------------------------------------------------------------
 
@@ -166,7 +168,7 @@ class FlatFileParams
     private char quoteChar, escapeChar;
     private boolean withHeader, withLogging;
     private int numRowsScan;
-    private boolean lenient, trim, mapped;
+    private boolean lenient, trim, mapped, memoryMap;
     private String dateFormat, timeFormat, timestampFormat;
 
     //~ Constructors -----------------------------------------------------------
@@ -257,6 +259,11 @@ class FlatFileParams
                 props,
                 PROP_MAPPED,
                 DEFAULT_MAPPED);
+        memoryMap =
+            getBooleanProperty(
+                props,
+                PROP_MEMORY_MAP,
+                DEFAULT_MEMORY_MAP);
         dateFormat =
             decodeDatetimeFormat(
                 props.getProperty(PROP_DATE_FORMAT));
@@ -483,6 +490,16 @@ class FlatFileParams
         return mapped;
     }
 
+    /**
+     * Returns whether data files are read through a memory mapping. (Not to
+     * be confused with {@link #getMapped}, which maps header names to
+     * columns.)
+     */
+    public boolean getMemoryMap()
+    {
+        return memoryMap;
+    }
+
     /**
      * Lookup the type of a schema based upon it's schema name. The queryDefault
      * parameter allows the type to default to QUERY when the schema name is
@@ -130,8 +130,50 @@ public abstract class MedAbstractFennelDataServer
         long rootPageId,
         boolean estimate,
         FennelTxnContext txnContext)
+    {
+        return verifyIndex(
+            newVerifyIndexCmd(index, rootPageId, estimate),
+            txnContext);
+    }
+
+    /**
+     * Prepares a command which verifies an index. Preparation reads the
+     * catalog definition of the index; execution via {@link #verifyIndex}
+     * does not, so it may happen on another thread, provided that thread has
+     * a repository session of its own.
+     *
+     * @param index definition of the index to verify
+     * @param rootPageId root PageId of index
+     * @param estimate whether to estimate statistics for a quicker result
+     *
+     * @return command, not yet associated with a txn
+     */
+    public FemCmdVerifyIndex newVerifyIndexCmd(
+        FemLocalIndex index,
+        long rootPageId,
+        boolean estimate)
     {
         FemCmdVerifyIndex cmd = repos.newFemCmdVerifyIndex();
+        initIndexCmd(cmd, index);
+        cmd.setRootPageId(rootPageId);
+        cmd.setEstimate(estimate);
+        cmd.setIncludeTuples(getIncludeTuples(index));
+        return cmd;
+    }
+
+    /**
+     * Executes a command prepared by {@link #newVerifyIndexCmd}.
+     *
+     * @param cmd command to execute
+     * @param txnContext Fennel txn context; if no txn is in progress, one is
+     * started and committed around the verification
+     *
+     * @return index statistics for the verified index
+     */
+    public FarragoMedLocalIndexStats verifyIndex(
+        FemCmdVerifyIndex cmd,
+        FennelTxnContext txnContext)
+    {
         boolean implicitTxn = false;
         if (!txnContext.isTxnInProgress()) {
             // If a xact isn't already in progress, the index verification will
@@ -140,10 +182,7 @@ public abstract class MedAbstractFennelDataServer
             implicitTxn = true;
         }
         try {
-            initIndexCmd(cmd, index, txnContext);
-            cmd.setRootPageId(rootPageId);
-            cmd.setEstimate(estimate);
-            cmd.setIncludeTuples(getIncludeTuples(index));
+            cmd.setTxnHandle(txnContext.getTxnHandle());
             getFennelDbHandle().executeCmd(cmd);
             long pageCount = cmd.getResultPageCount();
             long uniqueKeyCount =
@@ -166,6 +205,13 @@ public abstract class MedAbstractFennelDataServer
         FennelTxnContext txnContext)
     {
         cmd.setTxnHandle(txnContext.getTxnHandle());
+        initIndexCmd(cmd, index);
+    }
+
+    private void initIndexCmd(
+        FemIndexCmd cmd,
+        FemLocalIndex index)
+    {
         cmd.setSegmentId(getIndexSegmentId(index));
         cmd.setIndexId(JmiObjUtil.getObjectId(index));
         prepareIndexCmd(cmd, index);
@@ -131,7 +131,9 @@ public class FarragoOJRexStaticMethodImplementor
             if (javaParams[i].isPrimitive()
                 || (javaParams[i] == ResultSet.class)
                 || ((javaParams[i] == PreparedStatement.class)
-                    || (javaParams[i] == java.util.List.class)))
+                    || (javaParams[i] == java.util.List.class))
+                || (javaParams[i]
+                    == net.sf.farrago.runtime.FarragoUdxBatchInserter.class))
             {
                 expr = operands[i];
             } else {
@@ -0,0 +1,82 @@
+/*
+// Licensed to DynamoBI Corporation (DynamoBI) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  DynamoBI licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+
+//   http://www.apache.org/licenses/LICENSE-2.0
+
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+*/
+package net.sf.farrago.query;
+
+import openjava.mop.*;
+
+import openjava.ptree.*;
+
+import org.eigenbase.oj.rel.*;
+import org.eigenbase.oj.util.*;
+import org.eigenbase.rel.*;
+import org.eigenbase.relopt.*;
+
+
+/**
+ * FarragoDynamicParamRowRel takes the place of the {@link OneRowRel} under
+ * <code>INSERT INTO t VALUES (?, ...)</code>. It returns one row for each row
+ * of dynamic parameter values bound to the execution, so that a JDBC batch of
+ * parameter rows can be inserted by a single execution of the statement (see
+ * {@link net.sf.farrago.runtime.FarragoRuntimeContext#newDynamicParamRowIter}).
+ * When the statement is executed normally, it returns one row, just like
+ * {@link IterOneRowRel}.
+ *
+ * @version $Id$
+ */
+public class FarragoDynamicParamRowRel
+    extends OneRowRelBase
+    implements JavaRel
+{
+    //~ Constructors -----------------------------------------------------------
+
+    public FarragoDynamicParamRowRel(RelOptCluster cluster)
+    {
+        super(
+            cluster,
+            new RelTraitSet(CallingConvention.ITERATOR));
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    public FarragoDynamicParamRowRel clone()
+    {
+        return this;
+    }
+
+    // implement RelNode
+    public ParseTree implement(JavaRelImplementor implementor)
+    {
+        OJClass outputRowClass =
+            OJUtil.typeToOJClass(
+                getRowType(),
+                getCluster().getTypeFactory());
+
+        Expression newRowExp =
+            new AllocationExpression(
+                TypeName.forOJClass(outputRowClass),
+                new ExpressionList());
+
+        return new MethodCall(
+            implementor.getConnectionVariable(),
+            "newDynamicParamRowIter",
+            new ExpressionList(newRowExp));
+    }
+}
+
+// End FarragoDynamicParamRowRel.java
@@ -54,7 +54,7 @@ class FarragoExecutableFennelStmt
 
     protected final RelDataType rowType;
     protected final List<List<String>> fieldOrigins;
-    protected final String xmiFennelPlan;
+    protected final FennelPlan fennelPlan;
     private final Map<String, String> referencedObjectTimestampMap;
     private final String streamName;
     private final Map<String, RelDataType> resultSetTypeMap;
@@ -65,7 +65,7 @@ class FarragoExecutableFennelStmt
         RelDataType preparedRowType,
         List<List<String>> fieldOrigins,
         RelDataType dynamicParamRowType,
-        String xmiFennelPlan,
+        FennelPlan fennelPlan,
         String streamName,
         boolean isDml,
         TableModificationRel.Operation tableModOp,
@@ -76,7 +76,7 @@ class FarragoExecutableFennelStmt
         super(dynamicParamRowType, isDml, tableModOp, tableAccessMap);
 
         this.fieldOrigins = fieldOrigins;
-        this.xmiFennelPlan = xmiFennelPlan;
+        this.fennelPlan = fennelPlan;
         this.streamName = streamName;
         this.referencedObjectTimestampMap = referencedObjectTimestampMap;
         this.resultSetTypeMap = typeMap;
@@ -117,7 +117,7 @@ class FarragoExecutableFennelStmt
     public ResultSet execute(FarragoSessionRuntimeContext runtimeContext)
     {
         try {
-            runtimeContext.loadFennelPlan(xmiFennelPlan);
+            runtimeContext.loadFennelPlan(fennelPlan);
 
             FennelTupleDescriptor tupleDesc =
                 FennelRelUtil.convertRowTypeToFennelTupleDesc(
@@ -145,7 +145,8 @@ class FarragoExecutableFennelStmt
                     tupleReader,
                     runtimeContext.getFennelStreamGraph(),
                     streamHandle,
-                    cachePageSize);
+                    cachePageSize,
+                    FarragoProperties.instance().fennelDirectFetch.get());
             FennelOnlyResultSet resultSet =
                 new FennelOnlyResultSet(
                     tupleIter,
@@ -173,19 +174,21 @@ class FarragoExecutableFennelStmt
     // implement FarragoSessionExecutableStmt
     public long getMemoryUsage()
     {
-        int xmiSize = FarragoUtil.getStringMemoryUsage(xmiFennelPlan);
+        int planSize = fennelPlan.getMemoryUsage();
         if (tracer.isLoggable(Level.FINE)) {
-            tracer.fine("XMI Fennel plan size = " + xmiSize + " bytes");
+            tracer.fine(
+                (fennelPlan.isXmi() ? "XMI" : "Encoded")
+                + " Fennel plan size = " + planSize + " bytes");
         }
 
-        // Account for half of the XMI plan here since this cache entry holds
+        // Account for half of the plan here since this cache entry holds
         // a pointer to that plan.  The other half will be accounted for in the
-        // object associated with the Fennel XMI entry itself.  That entry may
+        // object associated with the Fennel plan entry itself.  That entry may
         // be flushed from the cache while this entry is still in cache.  So,
         // we want to need to account for the memory in both entries.  But, at
         // the same time, we don't want to account for the entire size with
         // both, as that would double count the memory.
-        return xmiSize / 2;
+        return planSize / 2;
     }
 
     // implement FarragoSessionExecutableStmt
@@ -27,6 +27,7 @@ import java.sql.*;
 import java.util.*;
 import java.util.logging.*;
 
+import net.sf.farrago.fennel.*;
 import net.sf.farrago.runtime.*;
 import net.sf.farrago.session.*;
 import net.sf.farrago.util.*;
@@ -66,6 +67,12 @@ class FarragoExecutableJavaStmt
     private final Map<String, RelDataType> iterCalcTypeMap;
     private final int totalByteCodeSize;
 
+    /**
+     * Accessor for rowClass, compiled on first execution, or null if not yet
+     * compiled.
+     */
+    private AbstractIterResultSet.ColumnGetter columnAccessor;
+
     //~ Constructors -----------------------------------------------------------
 
     FarragoExecutableJavaStmt(
@@ -77,7 +84,7 @@ class FarragoExecutableJavaStmt
         RelDataType dynamicParamRowType,
         Method stmtMethod,
         List<FarragoTransformDef> transformDefs,
-        String xmiFennelPlan,
+        FennelPlan fennelPlan,
         boolean isDml,
         TableModificationRel.Operation tableModOp,
         Map<String, String> referencedObjectTimestampMap,
@@ -90,7 +97,7 @@ class FarragoExecutableJavaStmt
             preparedRowType,
             fieldOrigins,
             dynamicParamRowType,
-            xmiFennelPlan,
+            fennelPlan,
             null,
             isDml,
             tableModOp,
@@ -116,8 +123,8 @@ class FarragoExecutableJavaStmt
         try {
             runtimeContext.setStatementClassLoader(stmtClassLoader);
 
-            if (xmiFennelPlan != null) {
-                runtimeContext.loadFennelPlan(xmiFennelPlan);
+            if (fennelPlan != null) {
+                runtimeContext.loadFennelPlan(fennelPlan);
             }
 
             // NOTE jvs 1-May-2004: This sequence is subtle.  We can't open all
@@ -140,14 +147,14 @@ class FarragoExecutableJavaStmt
                     rowType,
                     fieldOrigins,
                     runtimeContext,
-                    null);
+                    getColumnAccessor());
 
             // instantiate and initialize all generated FarragoTransforms.
             for (FarragoTransformDef tdef : transformDefs) {
                 tdef.init(runtimeContext);
             }
 
-            if (xmiFennelPlan != null) {
+            if (fennelPlan != null) {
                 // Finally, it's safe to open all streams.
                 runtimeContext.openStreams();
             }
@@ -167,6 +174,24 @@ class FarragoExecutableJavaStmt
         }
     }
 
+    /**
+     * Returns the column getter for result sets of this statement, or null
+     * to read columns via reflection. DML returns a single row count, which
+     * is not worth compiling an accessor for.
+     */
+    private synchronized AbstractIterResultSet.ColumnGetter getColumnAccessor()
+    {
+        if (isDml()
+            || !FarragoProperties.instance().compiledColumnAccessors.get())
+        {
+            return null;
+        }
+        if (columnAccessor == null) {
+            columnAccessor = FarragoColumnAccessor.newColumnGetter(rowClass);
+        }
+        return columnAccessor;
+    }
+
     // implement FarragoSessionExecutableStmt
     public long getMemoryUsage()
     {
@@ -182,14 +207,10 @@ class FarragoExecutableJavaStmt
 
         if (tracer.isLoggable(Level.FINE)) {
             tracer.fine("Java bytecode size = " + totalByteCodeSize + " bytes");
-            if (xmiFennelPlan != null) {
-                int xmiSize = FarragoUtil.getStringMemoryUsage(xmiFennelPlan);
-                tracer.fine("XMI Fennel plan size = " + xmiSize + " bytes");
-            }
         }
 
-        // call the superclass to account for the Fennel XMI plan
-        if (xmiFennelPlan != null) {
+        // call the superclass to account for the Fennel plan
+        if (fennelPlan != null) {
             nBytes += super.getMemoryUsage();
         }
 
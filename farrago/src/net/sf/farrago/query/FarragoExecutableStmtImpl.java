@@ -52,6 +52,7 @@ abstract class FarragoExecutableStmtImpl
     private final TableModificationRel.Operation tableModOp;
     private final RelDataType dynamicParamRowType;
     private final TableAccessMap tableAccessMap;
+    private boolean batchable;
 
     //~ Constructors -----------------------------------------------------------
 
@@ -81,6 +82,24 @@ abstract class FarragoExecutableStmtImpl
         return tableModOp;
     }
 
+    // implement FarragoSessionExecutableStmt
+    public boolean isBatchable()
+    {
+        return batchable;
+    }
+
+    /**
+     * Marks this statement as able to process a batch of dynamic parameter
+     * rows in a single execution.
+     *
+     * @param batchable whether the plan reads its parameters from a {@link
+     * FarragoDynamicParamRowRel}
+     */
+    void setBatchable(boolean batchable)
+    {
+        this.batchable = batchable;
+    }
+
     // implement FarragoSessionExecutableStmt
     public RelDataType getDynamicParamRowType()
     {
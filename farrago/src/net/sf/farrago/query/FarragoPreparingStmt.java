@@ -120,6 +120,7 @@ public class FarragoPreparingStmt
     private final Map<String, RelDataType> resultSetTypeMap;
     private final Map<String, RelDataType> iterCalcTypeMap;
     private boolean cachingDisabled;
+    private boolean batchable;
     private FarragoPreparingStmt parentStmt;
     private final FarragoSessionStmtContext rootStmtContext;
 
@@ -261,6 +262,18 @@ public class FarragoPreparingStmt
         if (rootStmtContext != null) {
             planner.setCancelFlag(rootStmtContext.getCancelFlag());
         }
+        FarragoSessionVariables sessionVariables =
+            getSession().getSessionVariables();
+        Integer timeLimit =
+            sessionVariables.getInteger(
+                FarragoDefaultSessionPersonality.PLANNER_TIME_LIMIT);
+        Integer ruleCallLimit =
+            sessionVariables.getInteger(
+                FarragoDefaultSessionPersonality.PLANNER_RULE_CALL_LIMIT);
+        planner.setPlanningBudget(
+            new RelOptPlanningBudget(
+                (timeLimit == null) ? 0 : timeLimit,
+                (ruleCallLimit == null) ? 0 : ruleCallLimit));
         getSession().getPersonality().definePlannerListeners(planner);
     }
 
@@ -574,17 +587,15 @@ public class FarragoPreparingStmt
                 streamName = streamDef.getName();
             }
 
-            String xmiFennelPlan = null;
+            FennelPlan fennelPlan = null;
             Set<FemExecutionStreamDef> streamDefSet =
                 relImplementor.getStreamDefSet();
             if (!streamDefSet.isEmpty()) {
                 FemCmdPrepareExecutionStreamGraph cmdPrepareStream =
                     getRepos().newFemCmdPrepareExecutionStreamGraph();
 
-                // FIXME jvs 22-Jul-2008:  this does not play well
-                // with statement caching, since different sessions
-                // may have different settings for DOP, but the DOP
-                // is not part of the cache key
+                // NOTE: the DOP is part of the statement cache key
+                // (see FarragoDatabase.prepareStmtImpl)
                 cmdPrepareStream.setDegreeOfParallelism(
                     getSession().getSessionVariables().getInteger(
                         FarragoDefaultSessionPersonality
@@ -593,10 +604,12 @@ public class FarragoPreparingStmt
                 Collection<FemExecutionStreamDef> streamDefs =
                     cmdPrepareStream.getStreamDefs();
                 streamDefs.addAll(streamDefSet);
-                xmiFennelPlan =
-                    JmiObjUtil.exportToXmiString(
-                        Collections.singleton(cmdPrepareStream));
-                streamGraphTracer.fine(xmiFennelPlan);
+                fennelPlan = FennelPlan.newPlan(cmdPrepareStream);
+                if (streamGraphTracer.isLoggable(Level.FINE)) {
+                    streamGraphTracer.fine(
+                        JmiObjUtil.exportToXmiString(
+                            Collections.singleton(cmdPrepareStream)));
+                }
             }
 
             assert (tableAccessMap != null);
@@ -639,7 +652,7 @@ public class FarragoPreparingStmt
                         dynamicParamRowType,
                         preparedExecution.getMethod(),
                         getTransformDefs(),
-                        xmiFennelPlan,
+                        fennelPlan,
                         preparedResult.isDml(),
                         preparedResult.getTableModOp(),
                         getReferencedObjectTimestampMap(),
@@ -647,13 +660,15 @@ public class FarragoPreparingStmt
                         resultSetTypeMap,
                         iterCalcTypeMap,
                         javaCompiler.getTotalByteCodeSize());
+                ((FarragoExecutableJavaStmt) executableStmt).setBatchable(
+                    batchable);
             } else {
                 executableStmt =
                     new FarragoExecutableFennelStmt(
                         rowType,
                         fieldOrigins,
                         dynamicParamRowType,
-                        xmiFennelPlan,
+                        fennelPlan,
                         streamName,
                         preparedResult.isDml(),
                         preparedResult.getTableModOp(),
@@ -872,6 +887,8 @@ public class FarragoPreparingStmt
 
         RelTraitSet desiredTraits = getDesiredRootTraitSet(rootRel);
 
+        batchable = replaceDynamicParamRow(rootRel);
+
         rootRel = super.optimize(rowType, rootRel);
         if (dumpPlan) {
             planDumpTracer.fine(
@@ -917,6 +934,45 @@ public class FarragoPreparingStmt
         return rootRel;
     }
 
+    /**
+     * Replaces the {@link OneRowRel} under <code>INSERT INTO t VALUES (?,
+     * ...)</code> with a {@link FarragoDynamicParamRowRel}, so that a batch of
+     * parameter rows can be inserted in a single execution. Any other plan is
+     * left alone.
+     *
+     * @param rootRel root of the plan, before optimization
+     *
+     * @return whether the plan was changed
+     */
+    private boolean replaceDynamicParamRow(RelNode rootRel)
+    {
+        if ((sqlToRelConverter == null)
+            || (sqlToRelConverter.getDynamicParamCount() == 0)
+            || !(rootRel instanceof TableModificationRel))
+        {
+            return false;
+        }
+        TableModificationRel tableModRel = (TableModificationRel) rootRel;
+        if (tableModRel.getOperation()
+            != TableModificationRel.Operation.INSERT)
+        {
+            return false;
+        }
+        RelNode parent = tableModRel;
+        RelNode child = tableModRel.getChild();
+        while (child instanceof ProjectRel) {
+            parent = child;
+            child = ((ProjectRel) child).getChild();
+        }
+        if (!(child instanceof OneRowRel) || (parent == tableModRel)) {
+            return false;
+        }
+        parent.replaceInput(
+            0,
+            new FarragoDynamicParamRowRel(child.getCluster()));
+        return true;
+    }
+
     protected void validatePlan(RelNode rel, RelTraitSet desiredTraits)
         throws InvalidPlanException
     {
@@ -33,6 +33,7 @@ import net.sf.farrago.fem.sql2003.*;
 import net.sf.farrago.ojrex.*;
 import net.sf.farrago.plugin.*;
 import net.sf.farrago.resource.*;
+import net.sf.farrago.runtime.FarragoUdxBatchInserter;
 import net.sf.farrago.session.*;
 
 import openjava.ptree.*;
@@ -235,7 +236,7 @@ public class FarragoUserDefinedRoutine
         int nJavaParams = nParams;
 
         if (isTableFunction()) {
-            // one extra for PreparedStatement
+            // one extra for PreparedStatement (or FarragoUdxBatchInserter)
             ++nJavaParams;
         }
 
@@ -330,7 +331,20 @@ public class FarragoUserDefinedRoutine
 
         Method javaMethod;
         try {
-            javaMethod = javaClass.getMethod(javaMethodName, javaParamClasses);
+            try {
+                javaMethod =
+                    javaClass.getMethod(javaMethodName, javaParamClasses);
+            } catch (NoSuchMethodException ex) {
+                if (!isTableFunction() || (iLeftParen != -1)) {
+                    throw ex;
+                }
+
+                // no explicit signature, so accept a UDX which returns its
+                // rows in batches
+                javaParamClasses[nParams] = FarragoUdxBatchInserter.class;
+                javaMethod =
+                    javaClass.getMethod(javaMethodName, javaParamClasses);
+            }
         } catch (NoSuchMethodException ex) {
             throw FarragoResource.instance().ValidatorRoutineJavaMethodNotFound
             .ex(
@@ -394,7 +408,10 @@ public class FarragoUserDefinedRoutine
                     javaParamClass.toString());
             }
             if (isTableFunction()) {
-                if (javaParamClasses[nParams] != PreparedStatement.class) {
+                Class resultClass = javaParamClasses[nParams];
+                if ((resultClass != PreparedStatement.class)
+                    && (resultClass != FarragoUdxBatchInserter.class))
+                {
                     throw FarragoResource.instance()
                     .ValidatorRoutineJavaParamMismatch.ex(
                         "RETURNS TABLE",
@@ -501,9 +518,17 @@ public class FarragoUserDefinedRoutine
         if (isTableFunction()) {
             // NOTE jvs 8-Jan-2006:  "this" here refers to the
             // calling instance of FarragoJavaUdxIterator
+            String inserterMethodName;
+            if (javaParams[operands.length]
+                == FarragoUdxBatchInserter.class)
+            {
+                inserterMethodName = "getBatchInserter";
+            } else {
+                inserterMethodName = "getResultInserter";
+            }
             args[operands.length] =
                 new MethodCall(
-                    "getResultInserter",
+                    inserterMethodName,
                     new ExpressionList());
         }
 
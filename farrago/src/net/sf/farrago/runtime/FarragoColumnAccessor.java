@@ -0,0 +1,366 @@
+/*
+// Licensed to DynamoBI Corporation (DynamoBI) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  DynamoBI licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+
+//   http://www.apache.org/licenses/LICENSE-2.0
+
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+*/
+package net.sf.farrago.runtime;
+
+import java.io.*;
+
+import java.lang.reflect.*;
+
+import java.util.*;
+import java.util.concurrent.atomic.*;
+import java.util.logging.*;
+
+import net.sf.farrago.trace.*;
+import net.sf.farrago.type.runtime.*;
+
+import org.codehaus.janino.*;
+
+import org.eigenbase.runtime.*;
+import org.eigenbase.util.*;
+import org.eigenbase.util14.*;
+
+
+/**
+ * FarragoColumnAccessor reads the columns of the rows produced by a compiled
+ * statement. Each row class gets an accessor of its own, compiled using
+ * Janino, which reads the row's fields directly rather than through {@link
+ * java.lang.reflect.Field}.
+ *
+ * <p>Numeric and boolean columns, whether declared as Java primitives or as
+ * {@link NullablePrimitive} wrappers, are <dfn>direct</dfn>: {@link
+ * FarragoTupleIterResultSet} reads them with {@link #isNull}, {@link
+ * #getLong}, {@link #getDouble} and {@link #getString}, which neither box the
+ * value nor unwrap it through {@link DataValue#getNullableData}. The results
+ * are the same as those of the corresponding conversions in {@link
+ * AbstractResultSet}. Other columns are read with {@link #get}, as before.
+ *
+ * @version $Id$
+ */
+public abstract class FarragoColumnAccessor
+    implements AbstractIterResultSet.ColumnGetter
+{
+    //~ Static fields/initializers ---------------------------------------------
+
+    private static final Logger tracer =
+        FarragoTrace.getClassTracer(FarragoColumnAccessor.class);
+
+    private static final AtomicInteger nextId = new AtomicInteger();
+
+    /**
+     * Wrapper classes whose value can be read directly. Subclasses of {@link
+     * NullablePrimitive.NullableLong}, such as encoded decimals, have
+     * conversions of their own, so only the exact classes qualify.
+     */
+    private static final Set<Class<?>> directWrapperClasses =
+        new HashSet<Class<?>>(
+            Arrays.<Class<?>>asList(
+                NullablePrimitive.NullableBoolean.class,
+                NullablePrimitive.NullableByte.class,
+                NullablePrimitive.NullableShort.class,
+                NullablePrimitive.NullableInteger.class,
+                NullablePrimitive.NullableLong.class,
+                NullablePrimitive.NullableFloat.class,
+                NullablePrimitive.NullableDouble.class));
+
+    //~ Instance fields --------------------------------------------------------
+
+    private final String [] columnNames;
+    private final boolean [] direct;
+
+    //~ Constructors -----------------------------------------------------------
+
+    /**
+     * Creates a FarragoColumnAccessor. (Called from generated code.)
+     *
+     * @param columnNames names of the row's fields
+     * @param direct for each field, whether it is read directly
+     */
+    protected FarragoColumnAccessor(String [] columnNames, boolean [] direct)
+    {
+        this.columnNames = columnNames;
+        this.direct = direct;
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * Creates an accessor for a row class. If the accessor cannot be compiled
+     * (because the row class is not public, say), returns a {@link
+     * AbstractIterResultSet.SyntheticColumnGetter}, which reads the same
+     * columns via reflection.
+     *
+     * @param rowClass class of rows, a {@link SyntheticObject}
+     *
+     * @return column getter for rowClass
+     */
+    public static AbstractIterResultSet.ColumnGetter newColumnGetter(
+        Class<?> rowClass)
+    {
+        Field [] fields = rowClass.getFields();
+        if (isCompilable(rowClass, fields)) {
+            try {
+                return compileAccessor(rowClass, fields);
+            } catch (Exception ex) {
+                tracer.log(
+                    Level.FINE,
+                    "could not compile column accessor for " + rowClass
+                    + "; using reflection",
+                    ex);
+            }
+        }
+        return new AbstractIterResultSet.SyntheticColumnGetter(rowClass);
+    }
+
+    // implement ColumnGetter
+    public String [] getColumnNames()
+    {
+        return columnNames;
+    }
+
+    /**
+     * Returns whether a column can be read with {@link #isNull}, {@link
+     * #getLong}, {@link #getDouble} and {@link #getString}.
+     *
+     * @param columnIndex 1-based column ordinal
+     */
+    public boolean isDirect(int columnIndex)
+    {
+        return direct[columnIndex - 1];
+    }
+
+    // implement ColumnGetter
+    public abstract Object get(Object row, int columnIndex);
+
+    /**
+     * Returns whether a direct column of a row is null.
+     *
+     * @param row row
+     * @param columnIndex 1-based column ordinal
+     */
+    public abstract boolean isNull(Object row, int columnIndex);
+
+    /**
+     * Returns the value of a non-null direct column as a long, rounding
+     * floating-point values and mapping booleans to 0 and 1.
+     *
+     * @param row row
+     * @param columnIndex 1-based column ordinal
+     */
+    public abstract long getLong(Object row, int columnIndex);
+
+    /**
+     * Returns the value of a non-null direct column as a double, mapping
+     * booleans to 0 and 1.
+     *
+     * @param row row
+     * @param columnIndex 1-based column ordinal
+     */
+    public abstract double getDouble(Object row, int columnIndex);
+
+    /**
+     * Returns the value of a non-null direct column as a string.
+     *
+     * @param row row
+     * @param columnIndex 1-based column ordinal
+     */
+    public abstract String getString(Object row, int columnIndex);
+
+    /**
+     * Returns whether generated code can name a row class and read all of
+     * its fields.
+     */
+    private static boolean isCompilable(Class<?> rowClass, Field [] fields)
+    {
+        for (Class<?> c = rowClass; c != null; c = c.getDeclaringClass()) {
+            if (!Modifier.isPublic(c.getModifiers())) {
+                return false;
+            }
+        }
+        if (rowClass.getCanonicalName() == null) {
+            return false;
+        }
+        for (Field field : fields) {
+            if (Modifier.isStatic(field.getModifiers())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the primitive type of a field's value if the field can be read
+     * directly, or null otherwise.
+     */
+    private static Class<?> getDirectType(Field field)
+    {
+        Class<?> type = field.getType();
+        if (type.isPrimitive()) {
+            return (type == Character.TYPE) ? null : type;
+        }
+        if (directWrapperClasses.contains(type)) {
+            try {
+                return type.getField(NullablePrimitive.VALUE_FIELD_NAME)
+                    .getType();
+            } catch (NoSuchFieldException ex) {
+                throw Util.newInternal(ex);
+            }
+        }
+        return null;
+    }
+
+    private static FarragoColumnAccessor compileAccessor(
+        Class<?> rowClass,
+        Field [] fields)
+        throws Exception
+    {
+        String className = "FarragoColumnAccessor_" + nextId.getAndIncrement();
+        String source = generateSource(className, rowClass, fields);
+        if (tracer.isLoggable(Level.FINEST)) {
+            tracer.finest(
+                "column accessor for " + rowClass + ":" + Util.lineSeparator
+                + source);
+        }
+        SimpleCompiler compiler = new SimpleCompiler();
+        compiler.setParentClassLoader(rowClass.getClassLoader());
+        compiler.cook(new StringReader(source));
+        Class<?> clazz = compiler.getClassLoader().loadClass(className);
+
+        String [] columnNames = new String[fields.length];
+        boolean [] direct = new boolean[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            columnNames[i] = fields[i].getName();
+            direct[i] = (getDirectType(fields[i]) != null);
+        }
+        return (FarragoColumnAccessor) clazz.getConstructor(
+            String [].class,
+            boolean [].class).newInstance(columnNames, direct);
+    }
+
+    /**
+     * Generates an accessor class. Each method switches on the column
+     * ordinal; for example, for a nullable INTEGER column <code>C</code> at
+     * ordinal 2, <code>getLong</code> contains
+     *
+     * <blockquote>
+     * <pre>case 2: return (long) row.C.value;</pre>
+     * </blockquote>
+     *
+     * Janino does not box automatically, so <code>get</code> boxes primitive
+     * fields explicitly, with the result that {@link Field#get} would give.
+     */
+    private static String generateSource(
+        String className,
+        Class<?> rowClass,
+        Field [] fields)
+    {
+        StringBuilder get = new StringBuilder();
+        StringBuilder isNull = new StringBuilder();
+        StringBuilder getLong = new StringBuilder();
+        StringBuilder getDouble = new StringBuilder();
+        StringBuilder getString = new StringBuilder();
+        for (int i = 0; i < fields.length; i++) {
+            Field field = fields[i];
+            String ref = "row." + field.getName();
+            String caseLabel = "        case " + (i + 1) + ": return ";
+            Class<?> type = field.getType();
+            Class<?> directType = getDirectType(field);
+
+            get.append(caseLabel);
+            if (type.isPrimitive()) {
+                get.append(ReflectUtil.getBoxingClass(type).getName())
+                .append(".valueOf(")
+                .append(ref)
+                .append(");\n");
+            } else {
+                get.append(ref).append(";\n");
+            }
+
+            if (directType == null) {
+                continue;
+            }
+            String value;
+            String nullTest;
+            if (type.isPrimitive()) {
+                value = ref;
+                nullTest = "false";
+            } else {
+                value = ref + "." + NullablePrimitive.VALUE_FIELD_NAME;
+                nullTest = ref + "." + NullablePrimitive.NULL_IND_FIELD_NAME;
+            }
+            String longValue;
+            String doubleValue;
+            if (directType == Boolean.TYPE) {
+                longValue = "(" + value + " ? 1L : 0L)";
+                doubleValue = "(" + value + " ? 1.0 : 0.0)";
+            } else if ((directType == Float.TYPE)
+                || (directType == Double.TYPE))
+            {
+                longValue =
+                    NumberUtil.class.getName() + ".round(" + value + ")";
+                doubleValue = "(double) " + value;
+            } else {
+                longValue = "(long) " + value;
+                doubleValue = "(double) " + value;
+            }
+            isNull.append(caseLabel).append(nullTest).append(";\n");
+            getLong.append(caseLabel).append(longValue).append(";\n");
+            getDouble.append(caseLabel).append(doubleValue).append(";\n");
+            getString.append(caseLabel)
+            .append("String.valueOf(")
+            .append(value)
+            .append(");\n");
+        }
+
+        String rowClassName = rowClass.getCanonicalName();
+        return "public final class " + className
+            + " extends " + FarragoColumnAccessor.class.getName() + " {\n"
+            + "    public " + className
+            + "(String[] columnNames, boolean[] direct)\n"
+            + "    {\n"
+            + "        super(columnNames, direct);\n"
+            + "    }\n"
+            + generateMethod("Object", "get", rowClassName, get)
+            + generateMethod("boolean", "isNull", rowClassName, isNull)
+            + generateMethod("long", "getLong", rowClassName, getLong)
+            + generateMethod("double", "getDouble", rowClassName, getDouble)
+            + generateMethod("String", "getString", rowClassName, getString)
+            + "}\n";
+    }
+
+    private static String generateMethod(
+        String returnType,
+        String methodName,
+        String rowClassName,
+        StringBuilder cases)
+    {
+        return "    public " + returnType + " " + methodName
+            + "(Object o, int columnIndex)\n"
+            + "    {\n"
+            + "        " + rowClassName + " row = (" + rowClassName + ") o;\n"
+            + "        switch (columnIndex) {\n"
+            + cases
+            + "        default:\n"
+            + "            throw new IndexOutOfBoundsException(\n"
+            + "                \"column \" + columnIndex);\n"
+            + "        }\n"
+            + "    }\n";
+    }
+}
+
+// End FarragoColumnAccessor.java
@@ -44,6 +44,17 @@ import org.eigenbase.util.*;
  * supports both the blocking interface {@link Iterator} and the non-blocking
  * {@link TupleIter}.
  *
+ * <p>The UDX runs on a thread of its own, and passes its rows to the consumer
+ * in {@link FarragoUdxBatch batches} rather than one at a time. A UDX which
+ * takes a {@link FarragoUdxBatchInserter} fills the batches itself. A UDX
+ * which takes a {@link PreparedStatement} is given a proxy which stores the
+ * parameters set for each row in the current batch; the batch is handed off
+ * when it is full, or as soon as the consumer is waiting for rows, so that a
+ * slow UDX does not delay rows it has already produced. (A UDX which stops
+ * producing rows for a while without returning may still hold back the rows
+ * it has produced since the consumer started waiting, until it produces
+ * another row or returns.)
+ *
  * @author John V. Sichi
  * @version $Id$
  */
@@ -54,20 +65,76 @@ public abstract class FarragoJavaUdxIterator
 {
     //~ Static fields/initializers ---------------------------------------------
 
-    private static final int QUEUE_ARRAY_SIZE = 100;
+    /**
+     * Maximum number of batches waiting for the consumer.
+     */
+    private static final int QUEUE_BATCH_COUNT = 4;
+
+    /**
+     * Number of rows in a batch.
+     */
+    private static final int BATCH_ROW_COUNT = 256;
+
     protected static final Logger tracer =
         FarragoTrace.getRuntimeContextTracer();
 
     //~ Instance fields --------------------------------------------------------
 
+    /**
+     * Row objects returned to the consumer. We alternate between two, so that
+     * the row returned by the previous call to {@link #next} is not
+     * overwritten until the consumer asks for the one after.
+     */
     private final FarragoSyntheticObject [] rowObjs;
 
+    /**
+     * Field holder objects of each of {@link #rowObjs}.
+     */
+    private final Object [][] rowFieldObjs;
+
+    private final FarragoUdxBatch.ColumnKind [] columnKinds;
+
+    private final FarragoJdbcParamDef [] dynamicParamDefs;
+
     private final PreparedStatement resultInserter;
 
+    private final FarragoUdxBatchInserter batchInserter;
+
     // protected because needed by generated subclasses
     protected final FarragoSessionRuntimeContext runtimeContext;
 
-    private int iRow;
+    /**
+     * Emptied batches, ready to be filled again by the producer.
+     */
+    private final Queue<FarragoUdxBatch> freeBatches;
+
+    /**
+     * Batch being filled by the producer, or null; accessed only by the
+     * producer thread.
+     */
+    private FarragoUdxBatch fillBatch;
+
+    /**
+     * Whether the UDX fills batches itself; accessed only by the producer
+     * thread.
+     */
+    private boolean batchContract;
+
+    /**
+     * Batch whose rows are being returned by the consumer, or null if it has
+     * returned them all; accessed only by the consumer thread.
+     */
+    private FarragoUdxBatch fetchBatch;
+
+    private int iFetchRow;
+    private int iRowObj;
+
+    /**
+     * Set by the consumer when it finds no batch waiting, so that the
+     * producer hands off rows without waiting to fill a batch.
+     */
+    private volatile boolean consumerWaiting;
+
     private long defaultTimeout = Long.MAX_VALUE;
     private boolean timeoutAsUnderflow = true;
     private boolean didUnderflow = false;
@@ -85,17 +152,14 @@ public abstract class FarragoJavaUdxIterator
         Class rowClass,
         RelDataType rowType)
     {
-        super(new ArrayBlockingQueue(QUEUE_ARRAY_SIZE));
+        super(new ArrayBlockingQueue(QUEUE_BATCH_COUNT));
         this.runtimeContext = runtimeContext;
         runtimeContext.addAllocation(this);
 
         parameterMetaData = new FarragoParameterMetaData(rowType);
 
-        // NOTE jvs 16-Jan-2006: We construct a circular array with two extra
-        // slots:  one for the producer thread to write into, and one for the
-        // consumer thread to read from; this guarantees that we
-        // never recycle a row still accessible by the consumer.
-        rowObjs = new FarragoSyntheticObject[QUEUE_ARRAY_SIZE + 2];
+        rowObjs = new FarragoSyntheticObject[2];
+        rowFieldObjs = new Object[rowObjs.length][];
         try {
             for (int i = 0; i < rowObjs.length; ++i) {
                 rowObjs[i] = (FarragoSyntheticObject) rowClass.newInstance();
@@ -103,12 +167,40 @@ public abstract class FarragoJavaUdxIterator
         } catch (Throwable ex) {
             throw Util.newInternal(ex);
         }
-        iRow = 0;
+        Field [] fields = rowObjs[0].getFields();
+        columnKinds = new FarragoUdxBatch.ColumnKind[fields.length];
+        for (int i = 0; i < fields.length; ++i) {
+            columnKinds[i] =
+                FarragoUdxBatch.ColumnKind.forFieldClass(fields[i].getType());
+        }
+        for (int i = 0; i < rowObjs.length; ++i) {
+            rowFieldObjs[i] = new Object[fields.length];
+            for (int j = 0; j < fields.length; ++j) {
+                rowFieldObjs[i][j] = rowObjs[i].getFieldValue(j);
+            }
+        }
+
+        RelDataTypeField [] typeFields = rowType.getFields();
+        dynamicParamDefs = new FarragoJdbcParamDef[typeFields.length];
+        for (int i = 0; i < typeFields.length; ++i) {
+            FarragoParamFieldMetaData paramMetaData =
+                FarragoRuntimeJdbcUtil.newParamFieldMetaData(
+                    typeFields[i].getType(),
+                    ParameterMetaData.parameterModeIn);
+            dynamicParamDefs[i] =
+                FarragoJdbcParamDefFactory.instance.newParamDef(
+                    typeFields[i].getName(),
+                    paramMetaData,
+                    false);
+        }
+
+        freeBatches = new ConcurrentLinkedQueue<FarragoUdxBatch>();
         resultInserter =
             (PreparedStatement) Proxy.newProxyInstance(
                 null,
                 new Class[] { PreparedStatement.class },
-                new PreparedStatementInvocationHandler(rowType));
+                new PreparedStatementInvocationHandler());
+        batchInserter = new BatchInserter();
 
         restartableInputs = new ArrayList<TupleIter>();
         moreDataListeners = new ArrayList<MoreDataListener>();
@@ -125,7 +217,11 @@ public abstract class FarragoJavaUdxIterator
             // including subclasses; also the Fennel plan needs to be loaded.
             startWithLatch();
         }
-        return super.hasNext();
+        if (fetchBatch != null) {
+            return true;
+        }
+        checkWaiting();
+        return takeBatch(super.hasNext());
     }
 
     // override QueueIterator
@@ -135,7 +231,195 @@ public abstract class FarragoJavaUdxIterator
         if (latch == null) {
             startWithLatch();
         }
-        return super.hasNext(timeout);
+        if (fetchBatch != null) {
+            return true;
+        }
+        checkWaiting();
+        return takeBatch(super.hasNext(timeout));
+    }
+
+    // override QueueIterator
+    public Object next()
+    {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return fetchRow();
+    }
+
+    // override QueueIterator
+    public Object next(long timeout)
+        throws QueueIterator.TimeoutException
+    {
+        if (!hasNext(timeout)) {
+            throw new NoSuchElementException();
+        }
+        return fetchRow();
+    }
+
+    /**
+     * Tells the producer, if no batch is waiting, that the consumer is about
+     * to wait for one.
+     */
+    private void checkWaiting()
+    {
+        if ((next == null) && queue.isEmpty()) {
+            consumerWaiting = true;
+        }
+    }
+
+    /**
+     * Makes the batch received by {@link QueueIterator#hasNext} the one whose
+     * rows are returned next.
+     *
+     * @param more result of {@link QueueIterator#hasNext}
+     *
+     * @return whether there are more rows
+     */
+    private boolean takeBatch(boolean more)
+    {
+        consumerWaiting = false;
+        if (!more) {
+            return false;
+        }
+        fetchBatch = (FarragoUdxBatch) next;
+        next = null;
+        iFetchRow = 0;
+        return true;
+    }
+
+    /**
+     * Copies the next row of the current batch into a row object and returns
+     * it, releasing the batch once all its rows have been returned.
+     */
+    private Object fetchRow()
+    {
+        iRowObj ^= 1;
+        copyRow(fetchBatch, iFetchRow, rowFieldObjs[iRowObj]);
+        if (++iFetchRow == fetchBatch.getRowCount()) {
+            fetchBatch.clear();
+            freeBatches.offer(fetchBatch);
+            fetchBatch = null;
+        }
+        return rowObjs[iRowObj];
+    }
+
+    private void copyRow(
+        FarragoUdxBatch batch,
+        int iRow,
+        Object [] fieldObjs)
+    {
+        for (int i = 0; i < fieldObjs.length; ++i) {
+            Object fieldObj = fieldObjs[i];
+            if (batch.nulls[i][iRow]) {
+                assignField(fieldObj, null);
+                continue;
+            }
+            Object obj = batch.objects[i][iRow];
+            if (obj != null) {
+                assignField(fieldObj, obj);
+                continue;
+            }
+            NullablePrimitive primitive;
+            switch (columnKinds[i]) {
+            case BOOLEAN:
+                NullablePrimitive.NullableBoolean b =
+                    (NullablePrimitive.NullableBoolean) fieldObj;
+                b.value = batch.booleans[i][iRow];
+                primitive = b;
+                break;
+            case BYTE:
+                NullablePrimitive.NullableByte t =
+                    (NullablePrimitive.NullableByte) fieldObj;
+                t.value = (byte) batch.longs[i][iRow];
+                primitive = t;
+                break;
+            case SHORT:
+                NullablePrimitive.NullableShort s =
+                    (NullablePrimitive.NullableShort) fieldObj;
+                s.value = (short) batch.longs[i][iRow];
+                primitive = s;
+                break;
+            case INTEGER:
+                NullablePrimitive.NullableInteger n =
+                    (NullablePrimitive.NullableInteger) fieldObj;
+                n.value = (int) batch.longs[i][iRow];
+                primitive = n;
+                break;
+            case LONG:
+                NullablePrimitive.NullableLong l =
+                    (NullablePrimitive.NullableLong) fieldObj;
+                l.value = batch.longs[i][iRow];
+                primitive = l;
+                break;
+            case FLOAT:
+                NullablePrimitive.NullableFloat f =
+                    (NullablePrimitive.NullableFloat) fieldObj;
+                f.value = (float) batch.doubles[i][iRow];
+                primitive = f;
+                break;
+            case DOUBLE:
+                NullablePrimitive.NullableDouble d =
+                    (NullablePrimitive.NullableDouble) fieldObj;
+                d.value = batch.doubles[i][iRow];
+                primitive = d;
+                break;
+            default:
+                // no typed value, and no object
+                assignField(fieldObj, null);
+                continue;
+            }
+            primitive.setNull(false);
+        }
+    }
+
+    /**
+     * Assigns a value to a field holder object of a row.
+     *
+     * @param fieldObj field holder object
+     * @param value scrubbed value, or null
+     */
+    private static void assignField(Object fieldObj, Object value)
+    {
+        // Result types are always nullable, so we should get something
+        // which is both a NullableValue and an AssignableValue. However
+        // SqlDateTimeWithoutTZ is not a NullableValue, for some reason.
+        // Hack around this for the time being, as changing
+        // SqlDateTimeWithoutTZ seems to cause unmarshalling problems.
+        if (fieldObj instanceof NullableValue) {
+            NullableValue nullableValue = (NullableValue) fieldObj;
+            nullableValue.setNull(value == null);
+        } else if (fieldObj instanceof SqlDateTimeWithoutTZ) {
+            SqlDateTimeWithoutTZ dt = (SqlDateTimeWithoutTZ) fieldObj;
+            dt.setNull(value == null); // its own public method!
+        }
+
+        if (value != null) {
+            AssignableValue assignableValue = (AssignableValue) fieldObj;
+            assignableValue.assignFrom(value);
+        }
+    }
+
+    /**
+     * Converts a value to the type of an output column, as {@link
+     * PreparedStatement#setObject} does.
+     *
+     * @param iField 0-based column
+     * @param obj non-null value
+     * @param calendar calendar for datetime values, or null
+     *
+     * @return converted value
+     */
+    private Object scrub(int iField, Object obj, Calendar calendar)
+        throws SQLException
+    {
+        // Note: Calendar is an optional argument so it wouldn't
+        // make sense to pass in a null Calendar as a parameter
+        if (calendar == null) {
+            return dynamicParamDefs[iField].scrubValue(obj);
+        } else {
+            return dynamicParamDefs[iField].scrubValue(obj, calendar);
+        }
     }
 
     // implement TupleIter
@@ -178,6 +462,19 @@ public abstract class FarragoJavaUdxIterator
     // override QueueIterator
     public void done(Throwable e)
     {
+        // Rows set through the PreparedStatement are inserted when the UDX
+        // returns; the batch interface leaves that to the UDX.
+        if ((e == null)
+            && (fillBatch != null)
+            && (fillBatch.getRowCount() > 0)
+            && !batchContract)
+        {
+            try {
+                handOff();
+            } catch (Throwable ex) {
+                e = ex;
+            }
+        }
         super.done(e);
         onData();
     }
@@ -265,9 +562,44 @@ public abstract class FarragoJavaUdxIterator
         return resultInserter;
     }
 
-    public FarragoSyntheticObject getCurrentRow()
+    // NOTE:  called from generated code
+    public FarragoUdxBatchInserter getBatchInserter()
     {
-        return rowObjs[iRow];
+        batchContract = true;
+        return batchInserter;
+    }
+
+    /**
+     * Returns the batch being filled by the producer, starting one if
+     * necessary.
+     */
+    private FarragoUdxBatch getFillBatch()
+    {
+        if (fillBatch == null) {
+            fillBatch = freeBatches.poll();
+            if (fillBatch == null) {
+                fillBatch = new FarragoUdxBatch(columnKinds, BATCH_ROW_COUNT);
+            }
+        }
+        return fillBatch;
+    }
+
+    /**
+     * Passes the batch being filled to the consumer.
+     */
+    private void handOff()
+    {
+        FarragoUdxBatch batch = fillBatch;
+        fillBatch = null;
+
+        // on a full pipe, timeout every second to check cancellation; we
+        // have to do it this way because the iterator above us
+        // may not get sucked dry when the cursor is closed, in which
+        // case we'll be stuck on the full pipe unless we can check
+        // for cancellation
+        while (!offer(batch, 1000)) {
+            checkCancel();
+        }
     }
 
     // implement RestartableIterator
@@ -282,6 +614,8 @@ public abstract class FarragoJavaUdxIterator
 
         // Toss anything it was producing.
         queue.clear();
+        fetchBatch = null;
+        fillBatch = null;
 
         // Input cursors are currently "throwaway", but this is still
         // needed so that we correctly invoke a restart on Fennel streams.
@@ -342,25 +676,94 @@ public abstract class FarragoJavaUdxIterator
 
     //~ Inner Classes ----------------------------------------------------------
 
+    /**
+     * Batch interface for UDXs which fill their batches themselves.
+     */
+    private class BatchInserter
+        implements FarragoUdxBatchInserter
+    {
+        // implement FarragoUdxBatchInserter
+        public FarragoUdxBatch getBatch()
+        {
+            return getFillBatch();
+        }
+
+        // implement FarragoUdxBatchInserter
+        public FarragoUdxBatch insertBatch()
+            throws SQLException
+        {
+            checkCancel();
+            FarragoUdxBatch batch = getFillBatch();
+            int nRows = batch.getRowCount();
+            if (nRows > 0) {
+                for (int i = 0; i < columnKinds.length; ++i) {
+                    Object [] objects = batch.objects[i];
+                    boolean [] nulls = batch.nulls[i];
+                    for (int iRow = 0; iRow < nRows; ++iRow) {
+                        if ((objects[iRow] != null) && !nulls[iRow]) {
+                            batch.setValue(
+                                iRow,
+                                i,
+                                scrub(i, objects[iRow], null));
+                        }
+                    }
+                }
+                handOff();
+            }
+            return getFillBatch();
+        }
+
+        // implement FarragoUdxBatchInserter
+        public ParameterMetaData getParameterMetaData()
+        {
+            return parameterMetaData;
+        }
+    }
+
+    /**
+     * Implements the PreparedStatement passed to a UDX, storing the parameters
+     * set for each row in the current batch.
+     */
     public class PreparedStatementInvocationHandler
         extends BarfingInvocationHandler
     {
-        private final FarragoJdbcParamDef [] dynamicParamDefs;
+        /**
+         * Methods of this class, keyed by the PreparedStatement methods they
+         * implement, so that each is looked up only once.
+         */
+        private final Map<Method, Method> methodMap;
 
-        PreparedStatementInvocationHandler(RelDataType paramRowType)
+        PreparedStatementInvocationHandler()
         {
-            RelDataTypeField [] fields = paramRowType.getFields();
-            dynamicParamDefs = new FarragoJdbcParamDef[fields.length];
-            for (int i = 0; i < fields.length; ++i) {
-                FarragoParamFieldMetaData paramMetaData =
-                    FarragoRuntimeJdbcUtil.newParamFieldMetaData(
-                        fields[i].getType(),
-                        ParameterMetaData.parameterModeIn);
-                dynamicParamDefs[i] =
-                    FarragoJdbcParamDefFactory.instance.newParamDef(
-                        fields[i].getName(),
-                        paramMetaData,
-                        false);
+            methodMap = new IdentityHashMap<Method, Method>();
+        }
+
+        // override BarfingInvocationHandler
+        public Object invoke(
+            Object proxy,
+            Method method,
+            Object [] args)
+            throws Throwable
+        {
+            Method matchingMethod = methodMap.get(method);
+            if (matchingMethod == null) {
+                try {
+                    matchingMethod =
+                        getClass().getMethod(
+                            method.getName(),
+                            method.getParameterTypes());
+                } catch (NoSuchMethodException e) {
+                    throw noMethod(method);
+                }
+                if (matchingMethod.getReturnType() != method.getReturnType()) {
+                    throw noMethod(method);
+                }
+                methodMap.put(method, matchingMethod);
+            }
+            try {
+                return matchingMethod.invoke(this, args);
+            } catch (UndeclaredThrowableException e) {
+                throw e.getCause();
             }
         }
 
@@ -369,21 +772,11 @@ public abstract class FarragoJavaUdxIterator
             throws SQLException
         {
             checkCancel();
-
-            // on a full pipe, timeout every second to check cancellation; we
-            // have to do it this way because the iterator above us
-            // may not get sucked dry when the cursor is closed, in which
-            // case we'll be stuck on the full pipe unless we can check
-            // for cancellation
-            while (!offer(
-                    getCurrentRow(),
-                    1000))
-            {
-                checkCancel();
-            }
-            ++iRow;
-            if (iRow >= rowObjs.length) {
-                iRow = 0;
+            FarragoUdxBatch batch = getFillBatch();
+            int nRows = batch.getRowCount() + 1;
+            batch.setRowCount(nRows);
+            if ((nRows == batch.getCapacity()) || consumerWaiting) {
+                handOff();
             }
             return 1;
         }
@@ -398,8 +791,7 @@ public abstract class FarragoJavaUdxIterator
         public void clearParameters()
             throws SQLException
         {
-            int n = getCurrentRow().getFields().length;
-            for (int i = 0; i < n; ++i) {
+            for (int i = 0; i < columnKinds.length; ++i) {
                 setDynamicParam(i + 1, null, null);
             }
         }
@@ -411,36 +803,12 @@ public abstract class FarragoJavaUdxIterator
             throws SQLException
         {
             int iField = parameterIndex - 1;
-
-            // Result types are always nullable, so we should get something
-            // which is both a NullableValue and an AssignableValue. However
-            // SqlDateTimeWithoutTZ is not a NullableValue, for some reason.
-            // Hack around this for the time being, as changing
-            // SqlDateTimeWithoutTZ seems to cause unmarshalling problems.
-            Object fieldObj = getCurrentRow().getFieldValue(iField);
-
-            if (fieldObj instanceof NullableValue) {
-                NullableValue nullableValue = (NullableValue) fieldObj;
-                nullableValue.setNull(obj == null);
-            } else if (fieldObj instanceof SqlDateTimeWithoutTZ) {
-                SqlDateTimeWithoutTZ dt = (SqlDateTimeWithoutTZ) fieldObj;
-                dt.setNull(obj == null); // its own public method!
-            }
-
+            Object scrubbedValue = null;
             if (obj != null) {
-                AssignableValue assignableValue = (AssignableValue) fieldObj;
-
-                // Note: Calendar is an optional argument so it wouldn't
-                // make sense to pass in a null Calendar as a parameter
-                Object scrubbedValue;
-                if (calendar == null) {
-                    scrubbedValue = dynamicParamDefs[iField].scrubValue(obj);
-                } else {
-                    scrubbedValue =
-                        dynamicParamDefs[iField].scrubValue(obj, calendar);
-                }
-                assignableValue.assignFrom(scrubbedValue);
+                scrubbedValue = scrub(iField, obj, calendar);
             }
+            FarragoUdxBatch batch = getFillBatch();
+            batch.setValue(batch.getRowCount(), iField, scrubbedValue);
         }
 
         // implement PreparedStatement
@@ -96,7 +96,8 @@ public class FarragoRuntimeContext
     private final Map<String, FarragoTransform> transformMap =
         new HashMap<String, FarragoTransform>();
 
-    protected final Object [] dynamicParamValues;
+    protected Object [] dynamicParamValues;
+    private final List<Object []> dynamicParamBatch;
     protected FennelStreamGraph streamGraph;
 
     /**
@@ -137,6 +138,7 @@ public class FarragoRuntimeContext
         fennelTxnContext = params.fennelTxnContext;
         indexMap = params.indexMap;
         dynamicParamValues = params.dynamicParamValues;
+        dynamicParamBatch = params.dynamicParamBatch;
         sessionVariables = params.sessionVariables;
         streamFactoryProvider = params.streamFactoryProvider;
         isDml = params.isDml;
@@ -370,6 +372,47 @@ public class FarragoRuntimeContext
         return dynamicParamValues[paramIndex];
     }
 
+    /**
+     * Creates an iterator which returns a row for each row of dynamic
+     * parameter values bound to this execution: one row, unless a batch was
+     * bound. Fetching a row binds its values, so that {@link
+     * #getDynamicParamValue} returns them while the row is being processed.
+     * Called from code generated by {@link
+     * net.sf.farrago.query.FarragoDynamicParamRowRel}.
+     *
+     * @param row row to return for each row of values; since the row has no
+     * content of its own, the same object is returned every time
+     *
+     * @return tuple iterator
+     */
+    public TupleIter newDynamicParamRowIter(final Object row)
+    {
+        if (dynamicParamBatch == null) {
+            return new RestartableCollectionTupleIter(row);
+        }
+        return new AbstractTupleIter() {
+            private int nextRow;
+
+            public Object fetchNext()
+            {
+                if (nextRow >= dynamicParamBatch.size()) {
+                    return NoDataReason.END_OF_DATA;
+                }
+                dynamicParamValues = dynamicParamBatch.get(nextRow++);
+                return row;
+            }
+
+            public void restart()
+            {
+                nextRow = 0;
+            }
+
+            public void closeAllocation()
+            {
+            }
+        };
+    }
+
     /**
      * Called from generated code.
      *
@@ -613,21 +656,21 @@ public class FarragoRuntimeContext
     }
 
     // implement FarragoSessionRuntimeContext
-    public void loadFennelPlan(final String xmiFennelPlan)
+    public void loadFennelPlan(final FennelPlan fennelPlan)
     {
         assert (streamGraph == null);
 
+        final String cacheKey = fennelPlan.getCacheKey();
         FarragoObjectCache.CachedObjectFactory streamFactory =
             new FarragoObjectCache.CachedObjectFactory() {
                 public void initializeEntry(
                     Object key,
                     FarragoObjectCache.UninitializedEntry entry)
                 {
-                    assert (key.equals(xmiFennelPlan));
-                    streamGraph = prepareStreamGraph(xmiFennelPlan);
+                    assert (key.equals(cacheKey));
+                    streamGraph = prepareStreamGraph(fennelPlan);
 
-                    long memUsage =
-                        FarragoUtil.getFennelMemoryUsage(xmiFennelPlan);
+                    long memUsage = fennelPlan.getFennelMemoryUsage();
                     entry.initialize(streamGraph, memUsage, true);
                 }
 
@@ -639,16 +682,16 @@ public class FarragoRuntimeContext
 
         FarragoObjectCache.Entry cacheEntry = null;
         if (txnCodeCache != null) {
-            cacheEntry = txnCodeCache.get(xmiFennelPlan);
+            cacheEntry = txnCodeCache.get(cacheKey);
         }
         if (cacheEntry == null) {
-            cacheEntry = codeCache.pin(xmiFennelPlan, streamFactory, true);
+            cacheEntry = codeCache.pin(cacheKey, streamFactory, true);
         }
 
         if (txnCodeCache == null) {
             addAllocation(cacheEntry);
         } else {
-            txnCodeCache.put(xmiFennelPlan, cacheEntry);
+            txnCodeCache.put(cacheKey, cacheEntry);
         }
 
         if (streamGraph == null) {
@@ -786,20 +829,14 @@ public class FarragoRuntimeContext
         return streamGraph.findStream(repos, globalStreamName, isInput);
     }
 
-    protected FennelStreamGraph prepareStreamGraph(String xmiFennelPlan)
+    protected FennelStreamGraph prepareStreamGraph(FennelPlan fennelPlan)
     {
         boolean success = false;
         FennelStreamGraph newStreamGraph = null;
         repos.beginReposSession();
         try {
-            Collection<RefBaseObject> collection =
-                JmiObjUtil.importFromXmiString(
-                    repos.getTransientFarragoPackage(),
-                    xmiFennelPlan);
-            assert (collection.size() == 1);
             FemCmdPrepareExecutionStreamGraph cmd =
-                (FemCmdPrepareExecutionStreamGraph) collection.iterator()
-                .next();
+                fennelPlan.newCmd(repos.getTransientFarragoPackage());
 
             newStreamGraph = fennelTxnContext.newStreamGraph(streamOwner);
             streamFactoryProvider.registerStreamFactories(
@@ -55,6 +55,7 @@ public class FarragoTupleIterResultSet
     private FarragoSessionRuntimeContext runtimeContext;
     private final RelDataType rowType;
     private final List<List<String>> fieldOrigins;
+    private final FarragoColumnAccessor columnAccessor;
 
     //~ Constructors -----------------------------------------------------------
 
@@ -91,7 +92,8 @@ public class FarragoTupleIterResultSet
      * @param fieldOrigins Origin of each field in a column of a catalog object
      * @param runtimeContext runtime context for this execution
      * @param columnGetter object used to read individual columns from the the
-     * underlying iterator
+     * underlying iterator; if a {@link FarragoColumnAccessor}, numeric columns
+     * are read without boxing
      */
     public FarragoTupleIterResultSet(
         TupleIter tupleIter,
@@ -116,6 +118,11 @@ public class FarragoTupleIterResultSet
             this.fieldOrigins = fieldOrigins;
         }
         this.runtimeContext = runtimeContext;
+        if (columnGetter instanceof FarragoColumnAccessor) {
+            columnAccessor = (FarragoColumnAccessor) columnGetter;
+        } else {
+            columnAccessor = null;
+        }
         if (tracer.isLoggable(Level.FINE)) {
             tracer.fine(toString());
         }
@@ -229,6 +236,51 @@ public class FarragoTupleIterResultSet
         super.close();
     }
 
+    // override AbstractResultSet
+    public String getString(int columnIndex)
+        throws SQLException
+    {
+        if ((columnAccessor == null) || !columnAccessor.isDirect(columnIndex)) {
+            return super.getString(columnIndex);
+        }
+        wasNull = columnAccessor.isNull(current, columnIndex);
+        return wasNull ? null : columnAccessor.getString(current, columnIndex);
+    }
+
+    // override AbstractResultSet
+    public int getInt(int columnIndex)
+        throws SQLException
+    {
+        if ((columnAccessor == null) || !columnAccessor.isDirect(columnIndex)) {
+            return super.getInt(columnIndex);
+        }
+        wasNull = columnAccessor.isNull(current, columnIndex);
+        return wasNull ? 0
+            : (int) columnAccessor.getLong(current, columnIndex);
+    }
+
+    // override AbstractResultSet
+    public long getLong(int columnIndex)
+        throws SQLException
+    {
+        if ((columnAccessor == null) || !columnAccessor.isDirect(columnIndex)) {
+            return super.getLong(columnIndex);
+        }
+        wasNull = columnAccessor.isNull(current, columnIndex);
+        return wasNull ? 0 : columnAccessor.getLong(current, columnIndex);
+    }
+
+    // override AbstractResultSet
+    public double getDouble(int columnIndex)
+        throws SQLException
+    {
+        if ((columnAccessor == null) || !columnAccessor.isDirect(columnIndex)) {
+            return super.getDouble(columnIndex);
+        }
+        wasNull = columnAccessor.isNull(current, columnIndex);
+        return wasNull ? 0.0 : columnAccessor.getDouble(current, columnIndex);
+    }
+
     // implement AbstractResultSet
     protected Object getRaw(int columnIndex)
     {
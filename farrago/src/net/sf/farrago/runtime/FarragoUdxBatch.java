@@ -0,0 +1,304 @@
+/*
+// Licensed to DynamoBI Corporation (DynamoBI) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  DynamoBI licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+
+//   http://www.apache.org/licenses/LICENSE-2.0
+
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+*/
+package net.sf.farrago.runtime;
+
+import java.util.*;
+
+import net.sf.farrago.type.runtime.*;
+
+
+/**
+ * FarragoUdxBatch holds up to {@link #getCapacity} rows produced by a Java
+ * UDX, column by column. A UDX which uses {@link FarragoUdxBatchInserter}
+ * fills the arrays of a batch directly and then hands off the whole batch.
+ *
+ * <p>Columns of type TINYINT, SMALLINT, INTEGER and BIGINT have a long array
+ * ({@link #getLongs}); REAL, FLOAT and DOUBLE columns have a double array
+ * ({@link #getDoubles}); BOOLEAN columns have a boolean array ({@link
+ * #getBooleans}). Values in these arrays are narrowed to the column's type
+ * as by a Java cast. Every column also has an object array ({@link
+ * #getObjects}) and a null indicator array ({@link #getNulls}). The value of
+ * row <code>i</code> of a column is null if its null indicator is set;
+ * otherwise it is the object at position <code>i</code> if that is not null,
+ * converted as if by {@link java.sql.PreparedStatement#setObject}; otherwise
+ * it is the value in the column's typed array, or null if the column has
+ * none.
+ *
+ * <p>A batch received from {@link FarragoUdxBatchInserter} has no rows, its
+ * null indicators are all false and its object arrays are all null. Its
+ * typed arrays hold whatever values they last held.
+ *
+ * @version $Id$
+ */
+public final class FarragoUdxBatch
+{
+    //~ Enums ------------------------------------------------------------------
+
+    /**
+     * How the values of a column are stored, and the type of the field they
+     * are copied into.
+     */
+    enum ColumnKind
+    {
+        BOOLEAN, BYTE, SHORT, INTEGER, LONG, FLOAT, DOUBLE, OBJECT;
+
+        /**
+         * Returns the kind for a field of a row class.
+         *
+         * @param fieldClass declared class of the field
+         */
+        static ColumnKind forFieldClass(Class<?> fieldClass)
+        {
+            if (fieldClass == NullablePrimitive.NullableBoolean.class) {
+                return BOOLEAN;
+            } else if (fieldClass == NullablePrimitive.NullableByte.class) {
+                return BYTE;
+            } else if (fieldClass == NullablePrimitive.NullableShort.class) {
+                return SHORT;
+            } else if (fieldClass == NullablePrimitive.NullableInteger.class) {
+                return INTEGER;
+            } else if (fieldClass == NullablePrimitive.NullableLong.class) {
+                // subclasses such as encoded decimals are not plain longs
+                return LONG;
+            } else if (fieldClass == NullablePrimitive.NullableFloat.class) {
+                return FLOAT;
+            } else if (fieldClass == NullablePrimitive.NullableDouble.class) {
+                return DOUBLE;
+            } else {
+                return OBJECT;
+            }
+        }
+    }
+
+    //~ Instance fields --------------------------------------------------------
+
+    final ColumnKind [] kinds;
+    final long [][] longs;
+    final double [][] doubles;
+    final boolean [][] booleans;
+    final Object [][] objects;
+    final boolean [][] nulls;
+    private final int capacity;
+    private int rowCount;
+
+    //~ Constructors -----------------------------------------------------------
+
+    /**
+     * Creates an empty batch.
+     *
+     * @param kinds kind of each column
+     * @param capacity maximum number of rows
+     */
+    FarragoUdxBatch(ColumnKind [] kinds, int capacity)
+    {
+        this.kinds = kinds;
+        this.capacity = capacity;
+        int nColumns = kinds.length;
+        longs = new long[nColumns][];
+        doubles = new double[nColumns][];
+        booleans = new boolean[nColumns][];
+        objects = new Object[nColumns][capacity];
+        nulls = new boolean[nColumns][capacity];
+        for (int i = 0; i < nColumns; ++i) {
+            switch (kinds[i]) {
+            case BOOLEAN:
+                booleans[i] = new boolean[capacity];
+                break;
+            case BYTE:
+            case SHORT:
+            case INTEGER:
+            case LONG:
+                longs[i] = new long[capacity];
+                break;
+            case FLOAT:
+            case DOUBLE:
+                doubles[i] = new double[capacity];
+                break;
+            }
+        }
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * @return maximum number of rows in this batch
+     */
+    public int getCapacity()
+    {
+        return capacity;
+    }
+
+    /**
+     * @return number of columns
+     */
+    public int getColumnCount()
+    {
+        return kinds.length;
+    }
+
+    /**
+     * @return number of rows filled so far
+     */
+    public int getRowCount()
+    {
+        return rowCount;
+    }
+
+    /**
+     * Sets the number of rows filled. Rows 0 through <code>rowCount - 1</code>
+     * are inserted when the batch is handed off.
+     *
+     * @param rowCount number of rows, at most {@link #getCapacity}
+     */
+    public void setRowCount(int rowCount)
+    {
+        if ((rowCount < 0) || (rowCount > capacity)) {
+            throw new IllegalArgumentException(
+                "row count " + rowCount + " outside batch capacity "
+                + capacity);
+        }
+        this.rowCount = rowCount;
+    }
+
+    /**
+     * Returns the values of a TINYINT, SMALLINT, INTEGER or BIGINT column.
+     *
+     * @param column 1-based column ordinal
+     */
+    public long [] getLongs(int column)
+    {
+        return checkTyped(longs[column - 1], column, "long");
+    }
+
+    /**
+     * Returns the values of a REAL, FLOAT or DOUBLE column.
+     *
+     * @param column 1-based column ordinal
+     */
+    public double [] getDoubles(int column)
+    {
+        return checkTyped(doubles[column - 1], column, "double");
+    }
+
+    /**
+     * Returns the values of a BOOLEAN column.
+     *
+     * @param column 1-based column ordinal
+     */
+    public boolean [] getBooleans(int column)
+    {
+        return checkTyped(booleans[column - 1], column, "boolean");
+    }
+
+    /**
+     * Returns the object values of a column, which take precedence over the
+     * values in its typed array.
+     *
+     * @param column 1-based column ordinal
+     */
+    public Object [] getObjects(int column)
+    {
+        return objects[column - 1];
+    }
+
+    /**
+     * Returns the null indicators of a column.
+     *
+     * @param column 1-based column ordinal
+     */
+    public boolean [] getNulls(int column)
+    {
+        return nulls[column - 1];
+    }
+
+    private <T> T checkTyped(T array, int column, String typeName)
+    {
+        if (array == null) {
+            throw new IllegalArgumentException(
+                "column " + column + " has no " + typeName + " values");
+        }
+        return array;
+    }
+
+    /**
+     * Stores a value in a row as the {@link FarragoUdxBatchInserter}
+     * adapter for <code>PreparedStatement</code> does, in the typed array if
+     * it is of the column's type, and as an object otherwise.
+     *
+     * @param iRow 0-based row
+     * @param iColumn 0-based column
+     * @param value value, already scrubbed; null for SQL NULL
+     */
+    void setValue(int iRow, int iColumn, Object value)
+    {
+        Object [] columnObjects = objects[iColumn];
+        if (value == null) {
+            nulls[iColumn][iRow] = true;
+            columnObjects[iRow] = null;
+            return;
+        }
+        nulls[iColumn][iRow] = false;
+        switch (kinds[iColumn]) {
+        case BOOLEAN:
+            if (value instanceof Boolean) {
+                booleans[iColumn][iRow] = (Boolean) value;
+                columnObjects[iRow] = null;
+                return;
+            }
+            break;
+        case BYTE:
+        case SHORT:
+        case INTEGER:
+        case LONG:
+            if ((value instanceof Long)
+                || (value instanceof Integer)
+                || (value instanceof Short)
+                || (value instanceof Byte))
+            {
+                longs[iColumn][iRow] = ((Number) value).longValue();
+                columnObjects[iRow] = null;
+                return;
+            }
+            break;
+        case FLOAT:
+        case DOUBLE:
+            if ((value instanceof Double) || (value instanceof Float)) {
+                doubles[iColumn][iRow] = ((Number) value).doubleValue();
+                columnObjects[iRow] = null;
+                return;
+            }
+            break;
+        }
+        columnObjects[iRow] = value;
+    }
+
+    /**
+     * Empties this batch so that it can be filled again.
+     */
+    void clear()
+    {
+        for (int i = 0; i < kinds.length; ++i) {
+            Arrays.fill(objects[i], 0, rowCount, null);
+            Arrays.fill(nulls[i], 0, rowCount, false);
+        }
+        rowCount = 0;
+    }
+}
+
+// End FarragoUdxBatch.java
@@ -0,0 +1,89 @@
+/*
+// Licensed to DynamoBI Corporation (DynamoBI) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  DynamoBI licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+
+//   http://www.apache.org/licenses/LICENSE-2.0
+
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+*/
+package net.sf.farrago.runtime;
+
+import java.sql.*;
+
+
+/**
+ * FarragoUdxBatchInserter is the batch alternative to the {@link
+ * PreparedStatement} through which a Java UDX returns its rows. A UDX whose
+ * last parameter is declared as a FarragoUdxBatchInserter instead of a
+ * PreparedStatement fills a {@link FarragoUdxBatch} at a time and hands off
+ * the whole batch, which avoids a method call per column per row and a
+ * handoff per row. For example:
+ *
+ * <blockquote>
+ * <pre>
+ * public static void ramp(int n, FarragoUdxBatchInserter inserter)
+ *     throws SQLException
+ * {
+ *     FarragoUdxBatch batch = inserter.getBatch();
+ *     for (int i = 0; i &lt; n; ++i) {
+ *         int iRow = batch.getRowCount();
+ *         batch.getLongs(1)[iRow] = i;
+ *         batch.setRowCount(iRow + 1);
+ *         if (iRow + 1 == batch.getCapacity()) {
+ *             batch = inserter.insertBatch();
+ *         }
+ *     }
+ *     inserter.insertBatch();
+ * }</pre>
+ * </blockquote>
+ *
+ * <p>As with {@link PreparedStatement#executeBatch}, rows are only inserted
+ * by {@link #insertBatch}; rows still in the current batch when the UDX
+ * returns are discarded.
+ *
+ * @version $Id$
+ */
+public interface FarragoUdxBatchInserter
+{
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * Returns the batch currently being filled.
+     *
+     * @return current batch
+     */
+    FarragoUdxBatch getBatch();
+
+    /**
+     * Inserts the rows of the current batch, waiting if the consumer of the
+     * UDX's output is behind, and starts a new batch. Objects in the batch
+     * are converted to the types of their columns first.
+     *
+     * @return new, empty batch, which replaces the one inserted; the
+     * inserted batch must no longer be accessed
+     *
+     * @throws SQLException if an object in the batch cannot be converted
+     */
+    FarragoUdxBatch insertBatch()
+        throws SQLException;
+
+    /**
+     * Returns the types of the columns of the UDX's output, as {@link
+     * PreparedStatement#getParameterMetaData} does.
+     *
+     * @return column metadata
+     */
+    ParameterMetaData getParameterMetaData();
+}
+
+// End FarragoUdxBatchInserter.java
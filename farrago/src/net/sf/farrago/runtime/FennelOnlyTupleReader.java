@@ -62,7 +62,9 @@ public class FennelOnlyTupleReader
         byte [] byteArray,
         ByteBuffer sliceBuffer)
     {
-        if (tupleAccessor.getCurrentTupleBuf() == null) {
+        // the iterator may switch buffers between fetches (direct views,
+        // or a heap buffer that grew)
+        if (tupleAccessor.getCurrentTupleBuf() != byteBuffer) {
             tupleAccessor.setCurrentTupleBuf(byteBuffer);
         }
         tupleAccessor.unmarshal(tupleData);
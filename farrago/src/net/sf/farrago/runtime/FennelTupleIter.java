@@ -38,15 +38,34 @@ import net.sf.farrago.fennel.*;
 public class FennelTupleIter
     extends FennelAbstractTupleIter
 {
+    //~ Static fields/initializers ---------------------------------------------
+
+    /**
+     * Upper bound on how far the fetch buffer may grow, as a multiple of the
+     * initial buffer size.
+     */
+    private static final int MAX_BUFFER_GROWTH = 8;
+
+    private static final ByteBuffer EMPTY_BUFFER = ByteBuffer.allocate(0);
+
     //~ Instance fields --------------------------------------------------------
 
     private final FennelStreamGraph streamGraph;
     private final FennelStreamHandle streamHandle;
+    private final boolean direct;
+    private final int maxBufferSize;
+
+    /**
+     * Size of the last fetch; in direct mode, this is also the number of bytes
+     * of the current view which have not yet been consumed in Fennel.
+     */
+    private int cbLastFetch;
 
     //~ Constructors -----------------------------------------------------------
 
     /**
-     * Creates a new FennelTupleIter object.
+     * Creates a new FennelTupleIter object which copies tuples into a heap
+     * buffer.
      *
      * @param tupleReader FennelTupleReader to use to interpret Fennel data
      * @param streamGraph underlying FennelStreamGraph
@@ -59,14 +78,59 @@ public class FennelTupleIter
         FennelStreamGraph streamGraph,
         FennelStreamHandle streamHandle,
         int bufferSize)
+    {
+        this(tupleReader, streamGraph, streamHandle, bufferSize, false);
+    }
+
+    /**
+     * Creates a new FennelTupleIter object.
+     *
+     * <p>In direct mode, no buffer is allocated at all: each fetch returns a
+     * direct ByteBuffer mapped onto the output buffer of the Fennel stream, and
+     * the tuples are only consumed in Fennel when the next batch is requested.
+     * This is only usable with a FennelTupleReader which unmarshals solely
+     * from the ByteBuffer arguments (such as {@link FennelOnlyTupleReader});
+     * generated readers point {@link net.sf.farrago.type.runtime.BytePointer}s into
+     * the byte array, which is null in direct mode.
+     *
+     * <p>Otherwise, tuples are copied into a heap buffer which starts at
+     * bufferSize bytes and grows (up to a bounded multiple) while Fennel keeps
+     * filling most of it, so that wide rows are not fetched a handful at a
+     * time.
+     *
+     * @param tupleReader FennelTupleReader to use to interpret Fennel data
+     * @param streamGraph underlying FennelStreamGraph
+     * @param streamHandle handle to underlying Fennel ExecStream that this
+     * TupleIter reads from
+     * @param bufferSize initial number of bytes in buffer used for fetching
+     * from Fennel (ignored in direct mode)
+     * @param direct whether to read tuples in place rather than copying them
+     */
+    public FennelTupleIter(
+        FennelTupleReader tupleReader,
+        FennelStreamGraph streamGraph,
+        FennelStreamHandle streamHandle,
+        int bufferSize,
+        boolean direct)
     {
         super(tupleReader);
         this.streamGraph = streamGraph;
         this.streamHandle = streamHandle;
+        this.direct = direct;
+        this.maxBufferSize = bufferSize * MAX_BUFFER_GROWTH;
+
+        if (direct) {
+            bufferAsArray = null;
+            byteBuffer = EMPTY_BUFFER;
+        } else {
+            allocateBuffer(bufferSize);
+        }
+    }
+
+    //~ Methods ----------------------------------------------------------------
 
-        // In this implementation of FennelAbstractTupleIter, byteBuffer and
-        // bufferAsArray are effectively final. In other implementations, they
-        // might be set by populateBuffer.
+    private void allocateBuffer(int bufferSize)
+    {
         bufferAsArray = new byte[bufferSize];
         byteBuffer = ByteBuffer.wrap(bufferAsArray);
         byteBuffer.order(ByteOrder.nativeOrder());
@@ -74,22 +138,39 @@ public class FennelTupleIter
         byteBuffer.limit(0);
     }
 
-    //~ Methods ----------------------------------------------------------------
+    /**
+     * @return whether this iterator reads tuples in place from Fennel's
+     * buffers
+     */
+    public boolean isDirect()
+    {
+        return direct;
+    }
 
     // override FennelAbstractTupleIter
     public void restart()
     {
         super.restart();
-        bufferAsArray = byteBuffer.array();
-        byteBuffer.clear();
-        byteBuffer.limit(0);
+        cbLastFetch = 0;
+        if (direct) {
+            // the restart discards whatever the current view points to
+            byteBuffer = EMPTY_BUFFER;
+        } else {
+            bufferAsArray = byteBuffer.array();
+            byteBuffer.clear();
+            byteBuffer.limit(0);
+        }
         streamGraph.restart(streamHandle);
     }
 
     // implement TupleIter
     public void closeAllocation()
     {
-        // REVIEW: SWZ: 2/23/2006: Deallocate byteBuffer here?
+        if (direct) {
+            // don't hang on to a view of memory owned by the stream graph
+            byteBuffer = EMPTY_BUFFER;
+            cbLastFetch = 0;
+        }
     }
 
     /**
@@ -100,8 +181,28 @@ public class FennelTupleIter
      */
     protected int populateBuffer()
     {
+        if (direct) {
+            ByteBuffer view = streamGraph.fetchDirect(streamHandle, cbLastFetch);
+            if (view == null) {
+                cbLastFetch = 0;
+                byteBuffer = EMPTY_BUFFER;
+                return 0;
+            }
+            view.order(ByteOrder.nativeOrder());
+            byteBuffer = view;
+            cbLastFetch = view.capacity();
+            return cbLastFetch;
+        }
+
+        int capacity = bufferAsArray.length;
+        if ((cbLastFetch > (capacity / 2)) && (capacity < maxBufferSize)) {
+            // Fennel filled most of the buffer last time, which means the
+            // rows are wide relative to it; fetch more per call
+            allocateBuffer(Math.min(capacity * 2, maxBufferSize));
+        }
         byteBuffer.clear();
-        return streamGraph.fetch(streamHandle, bufferAsArray);
+        cbLastFetch = streamGraph.fetch(streamHandle, bufferAsArray);
+        return cbLastFetch;
     }
 }
 
@@ -93,6 +93,13 @@ public interface FarragoSessionExecutableStmt
      */
     public TableModificationRel.Operation getTableModOp();
 
+    /**
+     * @return true if a single execution of this statement can process a
+     * batch of dynamic parameter rows (see {@link
+     * FarragoSessionRuntimeParams#dynamicParamBatch})
+     */
+    public boolean isBatchable();
+
     /**
      * @return approximate total number of bytes used by this statement's
      * in-memory representation
@@ -18,6 +18,8 @@
 */
 package net.sf.farrago.session;
 
+import java.util.concurrent.*;
+
 import net.sf.farrago.cwm.relational.*;
 import net.sf.farrago.fem.med.*;
 import net.sf.farrago.namespace.*;
@@ -173,6 +175,25 @@ public interface FarragoSessionIndexMap
         FemLocalIndex index,
         boolean estimate);
 
+    /**
+     * Prepares to compute statistics for an index, as {@link
+     * #computeIndexStats} does, but defers the verification itself to a
+     * task. Everything which reads the catalog or this map happens here; the
+     * task only runs the verification, so tasks for several indexes may be
+     * run concurrently on other threads. A task begins and ends a repository
+     * session of its own around the verification.
+     *
+     * @param wrapperCache cache for looking up data wrappers
+     * @param index the index to verify
+     * @param estimate whether to estimate statistics
+     *
+     * @return task returning statistics for the index
+     */
+    public Callable<FarragoMedLocalIndexStats> newIndexStatsTask(
+        FarragoDataWrapperCache wrapperCache,
+        FemLocalIndex index,
+        boolean estimate);
+
     /**
      * Commit hook.
      */
@@ -41,9 +41,9 @@ public interface FarragoSessionRuntimeContext
      * Loads the Fennel portion of an execution plan (either creating a new XO
      * graph or reusing a cached instance).
      *
-     * @param xmiFennelPlan XMI representation of plan definition
+     * @param fennelPlan plan definition
      */
-    public void loadFennelPlan(final String xmiFennelPlan);
+    public void loadFennelPlan(FennelPlan fennelPlan);
 
     /**
      * Opens all streams, including the Fennel portion of the execution plan.
@@ -86,6 +86,13 @@ public class FarragoSessionRuntimeParams
      */
     public Object [] dynamicParamValues;
 
+    /**
+     * Rows of values bound to dynamic parameters, or null if the statement is
+     * executed for {@link #dynamicParamValues} only. Only set for statements
+     * which are {@link FarragoSessionExecutableStmt#isBatchable batchable}.
+     */
+    public List<Object []> dynamicParamBatch;
+
     /**
      * Connection-dependent settings.
      */
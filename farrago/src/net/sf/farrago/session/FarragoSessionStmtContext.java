@@ -156,6 +156,42 @@ public interface FarragoSessionStmtContext
      */
     public void clearParameters();
 
+    /**
+     * Adds a copy of the current dynamic parameter settings to the batch to be
+     * executed by {@link #executeBatch}.
+     */
+    public void addDynamicParamBatch();
+
+    /**
+     * Discards any parameter settings added by {@link #addDynamicParamBatch}.
+     */
+    public void clearDynamicParamBatch();
+
+    /**
+     * Executes the currently prepared DML statement once for each parameter
+     * setting added by {@link #addDynamicParamBatch}, then clears the batch.
+     * If the statement is {@link FarragoSessionExecutableStmt#isBatchable
+     * batchable}, a single execution processes the whole batch.
+     *
+     * <p>If an execution fails, the remaining settings are not executed; the
+     * update counts of the settings processed before the failure are
+     * available from {@link #getBatchUpdateCounts}.
+     *
+     * @return number of rows affected by each setting, in the order added, or
+     * {@link java.sql.Statement#SUCCESS_NO_INFO} where that is not known
+     */
+    public long [] executeBatch();
+
+    /**
+     * Returns the update counts of the parameter settings which the most
+     * recent call to {@link #executeBatch} completed. If that call failed,
+     * this holds one count for each setting which was processed before the
+     * failure; if the batch was processed in a single execution, none was.
+     *
+     * @return update counts, in the order the settings were added
+     */
+    public long [] getBatchUpdateCounts();
+
     /**
      * Executes the currently prepared statement.
      */
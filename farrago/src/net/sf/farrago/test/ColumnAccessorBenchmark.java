@@ -0,0 +1,166 @@
+/*
+// Licensed to DynamoBI Corporation (DynamoBI) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  DynamoBI licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+
+//   http://www.apache.org/licenses/LICENSE-2.0
+
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+*/
+package net.sf.farrago.test;
+
+import java.sql.*;
+
+import junit.framework.*;
+
+import net.sf.farrago.util.*;
+
+
+/**
+ * ColumnAccessorBenchmark measures how fast an embedded caller can read the
+ * rows of a compiled statement through typed getters, comparing a generated
+ * {@link net.sf.farrago.runtime.FarragoColumnAccessor} against reflection.
+ * The source is the mock foreign data server with a Java executor, so rows
+ * are produced by generated Java code and no storage access is involved.
+ *
+ * <p>The name deliberately does not end in "Test" so that it is not part of
+ * the regular suite; run it with junitSingle. The row count can be overridden
+ * with the system property
+ * "net.sf.farrago.test.ColumnAccessorBenchmark.rowCount".
+ *
+ * @version $Id$
+ */
+public class ColumnAccessorBenchmark
+    extends FarragoTestCase
+{
+    //~ Static fields/initializers ---------------------------------------------
+
+    private static final int ROW_COUNT =
+        Integer.getInteger(
+            "net.sf.farrago.test.ColumnAccessorBenchmark.rowCount",
+            2000000);
+
+    //~ Constructors -----------------------------------------------------------
+
+    /**
+     * Creates a new ColumnAccessorBenchmark object.
+     *
+     * @param testName JUnit test name
+     *
+     * @throws Exception .
+     */
+    public ColumnAccessorBenchmark(String testName)
+        throws Exception
+    {
+        super(testName);
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    // implement TestCase
+    public static Test suite()
+    {
+        return wrappedSuite(ColumnAccessorBenchmark.class);
+    }
+
+    // override FarragoTestCase
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+        try {
+            stmt.execute("drop schema accessor_bench cascade");
+        } catch (SQLException ex) {
+            // ignore:  didn't exist
+        }
+        stmt.execute("create schema accessor_bench");
+        stmt.execute(
+            "create foreign table accessor_bench.t("
+            + "id int not null, n bigint, x double not null, y double) "
+            + "server sys_mock_foreign_data_server "
+            + "options(executor_impl 'JAVA', row_count '"
+            + ROW_COUNT + "')");
+    }
+
+    // override FarragoTestCase
+    protected void tearDown()
+        throws Exception
+    {
+        FarragoProperties.instance().compiledColumnAccessors.set(true);
+        super.tearDown();
+    }
+
+    public void testNumericGetters()
+        throws Exception
+    {
+        compare(false);
+    }
+
+    public void testStringGetters()
+        throws Exception
+    {
+        compare(true);
+    }
+
+    private void compare(boolean strings)
+        throws Exception
+    {
+        // warm up both paths (statement cache, code paths in the JIT)
+        measure(strings, true);
+        measure(strings, false);
+
+        double reflective = measure(strings, false);
+        double compiled = measure(strings, true);
+        String msg =
+            getName() + ": reflection " + (long) reflective
+            + " rows/sec, compiled accessor " + (long) compiled
+            + " rows/sec";
+        tracer.info(msg);
+        System.out.println(msg);
+    }
+
+    private double measure(boolean strings, boolean compiled)
+        throws Exception
+    {
+        // the property is read at execution time, so a cached
+        // plan picks up the change
+        FarragoProperties.instance().compiledColumnAccessors.set(compiled);
+        long start = System.nanoTime();
+        resultSet = stmt.executeQuery("select * from accessor_bench.t");
+        int nRows = 0;
+        long sum = 0;
+        while (resultSet.next()) {
+            if (strings) {
+                for (int i = 1; i <= 4; ++i) {
+                    String s = resultSet.getString(i);
+                    sum += (s == null) ? 0 : s.length();
+                }
+            } else {
+                sum += resultSet.getInt(1);
+                sum += resultSet.getLong(2);
+                sum += (long) resultSet.getDouble(3);
+                sum += (long) resultSet.getDouble(4);
+            }
+            ++nRows;
+        }
+        resultSet.close();
+        resultSet = null;
+        long elapsed = System.nanoTime() - start;
+        assertEquals(ROW_COUNT, nRows);
+
+        // keep the reads from being optimized away
+        assertTrue(sum >= 0);
+        return nRows * 1e9 / Math.max(elapsed, 1);
+    }
+}
+
+// End ColumnAccessorBenchmark.java
@@ -3111,6 +3111,96 @@ public class FarragoJdbcTest
         resultSet = null;
     }
 
+    /**
+     * Tests that numeric getters return the same values and nulls whether
+     * columns are read through a compiled {@link
+     * net.sf.farrago.runtime.FarragoColumnAccessor} or via reflection.
+     *
+     * @throws Exception .
+     */
+    public void testColumnAccessor()
+        throws Exception
+    {
+        String sql =
+            "select * from (values (1, cast(null as integer), "
+            + "cast(2.5 as double), cast(-7 as bigint), true, "
+            + "cast(null as double), cast(3 as smallint)))";
+        FarragoProperties props = FarragoProperties.instance();
+        try {
+            props.compiledColumnAccessors.set(false);
+            List<String> expected = readTypedColumns(sql);
+            props.compiledColumnAccessors.set(true);
+            assertEquals(expected, readTypedColumns(sql));
+        } finally {
+            props.compiledColumnAccessors.set(true);
+        }
+    }
+
+    private List<String> readTypedColumns(String sql)
+        throws Exception
+    {
+        List<String> values = new ArrayList<String>();
+        resultSet = stmt.executeQuery(sql);
+        int nColumns = resultSet.getMetaData().getColumnCount();
+        assertTrue(resultSet.next());
+        for (int i = 1; i <= nColumns; ++i) {
+            values.add(resultSet.getString(i) + "/" + resultSet.wasNull());
+            values.add(resultSet.getInt(i) + "/" + resultSet.wasNull());
+            values.add(resultSet.getLong(i) + "/" + resultSet.wasNull());
+            values.add(resultSet.getDouble(i) + "/" + resultSet.wasNull());
+        }
+        assertFalse(resultSet.next());
+        resultSet.close();
+        resultSet = null;
+        return values;
+    }
+
+    /**
+     * Tests that a UDX which returns its rows through a {@link
+     * net.sf.farrago.runtime.FarragoUdxBatchInserter} produces the same rows
+     * as one which uses a PreparedStatement, including across batches.
+     *
+     * @throws Exception .
+     */
+    public void testBatchUdx()
+        throws Exception
+    {
+        quietlyDropSchema("udx_batch_test");
+        stmt.execute("create schema udx_batch_test");
+        stmt.execute(
+            "create function udx_batch_test.ramp(n int) returns table(i int) "
+            + "language java parameter style system defined java "
+            + "no sql external name "
+            + "'class net.sf.farrago.test.FarragoTestUDR.ramp'");
+        stmt.execute(
+            "create function udx_batch_test.batch_ramp(n int) "
+            + "returns table(i int) "
+            + "language java parameter style system defined java "
+            + "no sql external name "
+            + "'class net.sf.farrago.test.FarragoTestUDR.batchRamp'");
+        for (int n : new int[] { 0, 1, 1000 }) {
+            List<Integer> expected = readRamp("udx_batch_test.ramp", n);
+            assertEquals(n, expected.size());
+            assertEquals(expected, readRamp("udx_batch_test.batch_ramp", n));
+        }
+        quietlyDropSchema("udx_batch_test");
+    }
+
+    private List<Integer> readRamp(String functionName, int n)
+        throws Exception
+    {
+        List<Integer> values = new ArrayList<Integer>();
+        resultSet =
+            stmt.executeQuery(
+                "select * from table(" + functionName + "(" + n + "))");
+        while (resultSet.next()) {
+            values.add(resultSet.getInt(1));
+        }
+        resultSet.close();
+        resultSet = null;
+        return values;
+    }
+
     /**
      * Tests re-execution of a prepared query.
      *
@@ -3549,6 +3639,94 @@ public class FarragoJdbcTest
         }
     }
 
+    /**
+     * Tests batch execution of a prepared INSERT, which inserts all of the
+     * rows of parameters in a single execution, and of a prepared UPDATE,
+     * which is executed once for each row of parameters, including an UPDATE
+     * which fails partway through the batch.
+     */
+    public void testBatch()
+        throws Exception
+    {
+        String name = "JDBC Test Batch";
+        assertTrue(connection.getMetaData().supportsBatchUpdates());
+
+        preparedStmt =
+            connection.prepareStatement(
+                "insert into sales.emps values "
+                + "(?, ?, 10, 'M', 'Oakland', ?, 28, NULL, NULL, false)");
+        for (int i = 901; i <= 903; ++i) {
+            preparedStmt.setInt(1, i);
+            preparedStmt.setString(2, name);
+            preparedStmt.setInt(3, i);
+            preparedStmt.addBatch();
+        }
+        int [] counts = preparedStmt.executeBatch();
+        assertEquals(3, counts.length);
+        for (int count : counts) {
+            assertEquals(1, count);
+        }
+
+        // executeBatch empties the batch, and so does clearBatch
+        assertEquals(0, preparedStmt.executeBatch().length);
+        preparedStmt.setInt(1, 904);
+        preparedStmt.setString(2, name);
+        preparedStmt.setInt(3, 904);
+        preparedStmt.addBatch();
+        preparedStmt.clearBatch();
+        assertEquals(0, preparedStmt.executeBatch().length);
+
+        preparedStmt =
+            connection.prepareStatement(
+                "update sales.emps set age = ? where empno = ?");
+        preparedStmt.setInt(1, 30);
+        preparedStmt.setInt(2, 901);
+        preparedStmt.addBatch();
+        preparedStmt.setInt(1, 31);
+        preparedStmt.setInt(2, 999);
+        preparedStmt.addBatch();
+        counts = preparedStmt.executeBatch();
+        assertEquals(2, counts.length);
+        assertEquals(1, counts[0]);
+        assertEquals(0, counts[1]);
+
+        // the second setting fails; the first has already been applied, and
+        // the third is not executed
+        preparedStmt =
+            connection.prepareStatement(
+                "update sales.emps set age = 60 / ? where empno = ?");
+        preparedStmt.setInt(1, 2);
+        preparedStmt.setInt(2, 902);
+        preparedStmt.addBatch();
+        preparedStmt.setInt(1, 0);
+        preparedStmt.setInt(2, 903);
+        preparedStmt.addBatch();
+        preparedStmt.setInt(1, 1);
+        preparedStmt.setInt(2, 901);
+        preparedStmt.addBatch();
+        try {
+            preparedStmt.executeBatch();
+            Assert.fail("Expected division by zero");
+        } catch (BatchUpdateException ex) {
+            counts = ex.getUpdateCounts();
+            assertEquals(1, counts.length);
+            assertEquals(1, counts[0]);
+        }
+
+        preparedStmt =
+            connection.prepareStatement(
+                "select cast(empno as varchar(10)) || ':'"
+                + " || cast(age as varchar(10))"
+                + " from sales.emps where name = ?");
+        preparedStmt.setString(1, name);
+        resultSet = preparedStmt.executeQuery();
+        Set<String> refSet = new HashSet<String>();
+        refSet.add("901:30");
+        refSet.add("902:30");
+        refSet.add("903:28");
+        compareResultSet(refSet);
+    }
+
     /**
      * Tests {@link Statement#setMaxRows}.
      */
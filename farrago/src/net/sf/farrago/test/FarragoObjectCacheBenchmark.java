@@ -0,0 +1,229 @@
+/*
+// Licensed to DynamoBI Corporation (DynamoBI) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  DynamoBI licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+
+//   http://www.apache.org/licenses/LICENSE-2.0
+
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+*/
+package net.sf.farrago.test;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import junit.framework.*;
+
+import net.sf.farrago.util.*;
+
+
+/**
+ * FarragoObjectCacheBenchmark is a multi-threaded stress benchmark for {@link
+ * FarragoObjectCache}. Each thread pins and unpins randomly chosen keys as
+ * fast as it can; the benchmark reports pins per second for increasing thread
+ * counts, with a cache big enough for every key (all hits after warmup) and
+ * with one that only holds half of them (constant victimization).
+ *
+ * <p>Besides throughput, it checks the same invariants as {@link
+ * FarragoObjectCacheTest}: exclusive entries are never handed to two callers
+ * at once, and the cache never ends up over its limit with nothing pinned.
+ *
+ * <p>The name deliberately does not end in "Test" so that it is not part of
+ * the regular suite; run it with junitSingle.
+ *
+ * @version $Id$
+ */
+public class FarragoObjectCacheBenchmark
+    extends TestCase
+{
+    //~ Static fields/initializers ---------------------------------------------
+
+    private static final int KEY_COUNT = 1000;
+
+    private static final int ENTRY_SIZE = 10;
+
+    private static final int [] THREAD_COUNTS = { 1, 2, 4, 8, 16 };
+
+    private static final long RUN_MILLIS = 2000;
+
+    //~ Constructors -----------------------------------------------------------
+
+    public FarragoObjectCacheBenchmark(String testName)
+        throws Exception
+    {
+        super(testName);
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    public void testSharedAllHits()
+        throws Exception
+    {
+        runAll(false, KEY_COUNT * ENTRY_SIZE);
+    }
+
+    public void testSharedWithVictimization()
+        throws Exception
+    {
+        runAll(false, (KEY_COUNT / 2) * ENTRY_SIZE);
+    }
+
+    public void testExclusiveAllHits()
+        throws Exception
+    {
+        runAll(true, KEY_COUNT * ENTRY_SIZE * 4);
+    }
+
+    public void testExclusiveWithVictimization()
+        throws Exception
+    {
+        runAll(true, (KEY_COUNT / 2) * ENTRY_SIZE);
+    }
+
+    private void runAll(boolean exclusive, long maxBytes)
+        throws Exception
+    {
+        for (int nThreads : THREAD_COUNTS) {
+            run(nThreads, exclusive, maxBytes);
+        }
+    }
+
+    private void run(int nThreads, final boolean exclusive, long maxBytes)
+        throws Exception
+    {
+        FarragoCompoundAllocation owner = new FarragoCompoundAllocation();
+        final FarragoObjectCache cache =
+            new FarragoObjectCache(
+                owner,
+                maxBytes,
+                new FarragoLruVictimPolicy());
+        final AtomicInteger nCreated = new AtomicInteger();
+        final AtomicInteger nClosed = new AtomicInteger();
+        final FarragoObjectCache.CachedObjectFactory factory =
+            new FarragoObjectCache.CachedObjectFactory() {
+                public void initializeEntry(
+                    Object key,
+                    FarragoObjectCache.UninitializedEntry entry)
+                {
+                    nCreated.incrementAndGet();
+                    entry.initialize(
+                        new Value(nClosed),
+                        ENTRY_SIZE,
+                        true);
+                }
+
+                public boolean isStale(Object value)
+                {
+                    return false;
+                }
+            };
+
+        final AtomicBoolean quit = new AtomicBoolean();
+        final AtomicLong nPins = new AtomicLong();
+        final List<Throwable> failures =
+            Collections.synchronizedList(new ArrayList<Throwable>());
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < nThreads; ++i) {
+            final long seed = i;
+            Thread thread =
+                new Thread() {
+                    public void run()
+                    {
+                        Random random = new Random(seed);
+                        long n = 0;
+                        try {
+                            start.await();
+                            while (!quit.get()) {
+                                String key =
+                                    "key" + random.nextInt(KEY_COUNT);
+                                FarragoObjectCache.Entry entry =
+                                    cache.pin(key, factory, exclusive);
+                                try {
+                                    ((Value) entry.getValue()).use(exclusive);
+                                } finally {
+                                    cache.unpin(entry);
+                                }
+                                ++n;
+                            }
+                        } catch (Throwable ex) {
+                            failures.add(ex);
+                        }
+                        nPins.addAndGet(n);
+                    }
+                };
+            thread.start();
+            threads.add(thread);
+        }
+
+        long startNanos = System.nanoTime();
+        start.countDown();
+        Thread.sleep(RUN_MILLIS);
+        quit.set(true);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsedNanos = System.nanoTime() - startNanos;
+
+        if (!failures.isEmpty()) {
+            throw new AssertionError(failures.get(0));
+        }
+        assertTrue(cache.getBytesCached() <= maxBytes);
+
+        System.out.println(
+            getName() + " threads=" + nThreads + ": "
+            + (nPins.get() * 1000000000L / elapsedNanos) + " pins/sec, "
+            + nCreated.get() + " created");
+
+        owner.closeAllocation();
+        assertEquals(0, cache.getBytesCached());
+        assertEquals(nCreated.get(), nClosed.get());
+    }
+
+    //~ Inner Classes ----------------------------------------------------------
+
+    /**
+     * Cached value which detects concurrent use of an exclusive entry.
+     */
+    private static class Value
+        implements FarragoAllocation
+    {
+        private final AtomicInteger nClosed;
+        private final AtomicInteger users = new AtomicInteger();
+
+        Value(AtomicInteger nClosed)
+        {
+            this.nClosed = nClosed;
+        }
+
+        void use(boolean exclusive)
+        {
+            int n = users.incrementAndGet();
+            try {
+                if (exclusive) {
+                    assertEquals(1, n);
+                }
+            } finally {
+                users.decrementAndGet();
+            }
+        }
+
+        // implement FarragoAllocation
+        public void closeAllocation()
+        {
+            nClosed.incrementAndGet();
+        }
+    }
+}
+
+// End FarragoObjectCacheBenchmark.java
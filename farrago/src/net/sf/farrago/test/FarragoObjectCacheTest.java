@@ -166,6 +166,43 @@ public class FarragoObjectCacheTest
         // Let tearDown take care of cleanup verification.
     }
 
+    /**
+     * Tests a scenario where the agency limits how many idle cars of each
+     * description it keeps. Three cars are rented at the same time and
+     * returned, and then one car at a time is rented and returned until
+     * demand has been low for long enough that the agency sells off the
+     * spares.
+     */
+    public void testOneThreadExclusivePool()
+    {
+        agency = new RentalCarAgency(true, MAX_TIRES);
+        agency.fleet.setMaxIdleExclusiveEntries(2);
+
+        String description = "Compact 2-door";
+        RentalCarAgreement a1 = agency.rentCar(description);
+        RentalCarAgreement a2 = agency.rentCar(description);
+        RentalCarAgreement a3 = agency.rentCar(description);
+        assertEquals(3, nCarsCreated.get());
+
+        // Three cars were in demand at once, but only two may idle.
+        agency.returnCar(a1);
+        agency.returnCar(a2);
+        assertEquals(0, nCarsDestroyed.get());
+        agency.returnCar(a3);
+        assertEquals(1, nCarsDestroyed.get());
+
+        // Once demand has stayed at one car for a full window of rentals
+        // (64 in FarragoObjectCache), the remaining spare goes too.
+        for (int i = 0; i < 200; ++i) {
+            RentalCarAgreement a = agency.rentCar(description);
+            agency.returnCar(a);
+        }
+        assertEquals(3, nCarsCreated.get());
+        assertEquals(2, nCarsDestroyed.get());
+
+        // Let tearDown take care of cleanup verification.
+    }
+
     /**
      * Tests a scenario where a single car is rented, returned, and then rented
      * and returned again.
@@ -798,6 +798,46 @@ public class FarragoQueryTest
         }
     }
 
+    /**
+     * Tests that the raw SQL statement cache does not return a plan after
+     * DDL or a change of default schema alters how the same text resolves.
+     */
+    public void testRawSqlCacheResolution()
+        throws Exception
+    {
+        stmt.execute("create schema rawsql1");
+        stmt.execute("create schema rawsql2");
+        stmt.execute("create table rawsql1.t(i int primary key)");
+        stmt.execute("create table rawsql2.t(i int primary key, j int, k int)");
+
+        String sql = "select * from t";
+        stmt.execute("set schema 'rawsql1'");
+        assertEquals(1, getPreparedColumnCount(sql));
+        assertEquals(1, getPreparedColumnCount(sql));
+
+        // same text, different default schema
+        stmt.execute("set schema 'rawsql2'");
+        assertEquals(3, getPreparedColumnCount(sql));
+
+        // same text and schema, but the table has been replaced
+        stmt.execute("set schema 'rawsql1'");
+        stmt.execute("drop table rawsql1.t");
+        stmt.execute("create table rawsql1.t(i int primary key, j int)");
+        assertEquals(2, getPreparedColumnCount(sql));
+    }
+
+    private int getPreparedColumnCount(String sql)
+        throws Exception
+    {
+        preparedStmt = connection.prepareStatement(sql);
+        try {
+            return preparedStmt.getMetaData().getColumnCount();
+        } finally {
+            preparedStmt.close();
+            preparedStmt = null;
+        }
+    }
+
     //~ Inner Classes ----------------------------------------------------------
 
     private static class TxnListener
@@ -30,9 +30,17 @@ import net.sf.farrago.catalog.*;
 import net.sf.farrago.cwm.core.*;
 import net.sf.farrago.cwm.relational.*;
 import net.sf.farrago.cwm.relational.enumerations.*;
+import net.sf.farrago.fem.fennel.*;
 import net.sf.farrago.fem.sql2003.*;
+import net.sf.farrago.fennel.rel.*;
+import net.sf.farrago.type.*;
 import net.sf.farrago.util.*;
 
+import org.eigenbase.enki.test.*;
+import org.eigenbase.jmi.*;
+import org.eigenbase.reltype.*;
+import org.eigenbase.sql.type.*;
+
 import org.xml.sax.*;
 import org.xml.sax.helpers.*;
 
@@ -205,6 +213,97 @@ public class FarragoRepositoryTest
         assertEquals("ISO-8859-1", repos.getDefaultCharsetName());
     }
 
+    /**
+     * Tests that {@link JmiBinaryCodec} reproduces a Fennel plan, including
+     * the order of a stream's inputs, and refuses a plan which references a
+     * stream outside it.
+     */
+    public void testBinaryPlanEncoding()
+    {
+        repos.beginReposSession();
+        try {
+            FarragoTypeFactory typeFactory = new FarragoTypeFactoryImpl(repos);
+            RelDataType rowType =
+                typeFactory.createStructType(
+                    new RelDataType[] {
+                        typeFactory.createSqlType(SqlTypeName.INTEGER),
+                        typeFactory.createSqlType(SqlTypeName.VARCHAR, 128)
+                    },
+                    new String[] { "A", "B" });
+
+            FemCmdPrepareExecutionStreamGraph cmd =
+                repos.newFemCmdPrepareExecutionStreamGraph();
+            cmd.setDegreeOfParallelism(1);
+            FemCartesianProductStreamDef join =
+                repos.newFemCartesianProductStreamDef();
+            join.setName("join");
+            join.setOutputDesc(
+                FennelRelUtil.createTupleDescriptorFromRowType(
+                    repos,
+                    typeFactory,
+                    typeFactory.createJoinType(
+                        new RelDataType[] { rowType, rowType })));
+            cmd.getStreamDefs().add(join);
+
+            // Create the inputs in reverse, so that the order of the join's
+            // inputs is not the order in which the streams are reached.
+            FemMockTupleStreamDef [] inputs = new FemMockTupleStreamDef[2];
+            for (int i = inputs.length - 1; i >= 0; --i) {
+                inputs[i] = repos.newFemMockTupleStreamDef();
+                inputs[i].setName("input" + i);
+                inputs[i].setRowCount(10 * (i + 1));
+                inputs[i].setOutputDesc(
+                    FennelRelUtil.createTupleDescriptorFromRowType(
+                        repos,
+                        typeFactory,
+                        rowType));
+                cmd.getStreamDefs().add(inputs[i]);
+            }
+            for (FemMockTupleStreamDef input : inputs) {
+                FemExecStreamDataFlow flow = repos.newFemExecStreamDataFlow();
+                input.getOutputFlow().add(flow);
+                join.getInputFlow().add(flow);
+            }
+
+            byte [] bytes = JmiBinaryCodec.encode(cmd);
+            assertNotNull(bytes);
+            FemCmdPrepareExecutionStreamGraph copy =
+                (FemCmdPrepareExecutionStreamGraph) JmiBinaryCodec.decode(
+                    repos.getTransientFarragoPackage(),
+                    bytes);
+            assertNotSame(cmd, copy);
+            XmiFileComparator.assertEqual(
+                JmiObjUtil.exportToXmiString(Collections.singleton(cmd)),
+                JmiObjUtil.exportToXmiString(Collections.singleton(copy)));
+
+            FemCartesianProductStreamDef joinCopy = null;
+            for (FemExecutionStreamDef streamDef : copy.getStreamDefs()) {
+                if (streamDef.getName().equals("join")) {
+                    joinCopy = (FemCartesianProductStreamDef) streamDef;
+                }
+            }
+            assertNotNull(joinCopy);
+            List<FemExecStreamDataFlow> flows = joinCopy.getInputFlow();
+            assertEquals(2, flows.size());
+            assertEquals("input0", flows.get(0).getProducer().getName());
+            assertEquals("input1", flows.get(1).getProducer().getName());
+            copy.refDelete();
+
+            // A stream which is not part of the command feeds the join.
+            FemMockTupleStreamDef outsider = repos.newFemMockTupleStreamDef();
+            outsider.setName("outsider");
+            FemExecStreamDataFlow flow = repos.newFemExecStreamDataFlow();
+            outsider.getOutputFlow().add(flow);
+            join.getInputFlow().add(flow);
+            assertNull(JmiBinaryCodec.encode(cmd));
+
+            cmd.refDelete();
+            outsider.refDelete();
+        } finally {
+            repos.endReposSession();
+        }
+    }
+
     public void testInvalidCharFilter()
         throws Exception
     {
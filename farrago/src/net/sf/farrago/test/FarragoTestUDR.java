@@ -308,6 +308,24 @@ public abstract class FarragoTestUDR
         ramp(n.intValue(), resultInserter);
     }
 
+    /**
+     * Same as {@link #ramp}, but returns its rows through the batch interface.
+     */
+    public static void batchRamp(int n, FarragoUdxBatchInserter inserter)
+        throws SQLException
+    {
+        FarragoUdxBatch batch = inserter.getBatch();
+        for (int i = 0; i < n; ++i) {
+            int iRow = batch.getRowCount();
+            batch.getLongs(1)[iRow] = i;
+            batch.setRowCount(iRow + 1);
+            if (batch.getRowCount() == batch.getCapacity()) {
+                batch = inserter.insertBatch();
+            }
+        }
+        inserter.insertBatch();
+    }
+
     /** The identity UDX: copies any input to its output.
      * Named "self" as "identity" is a SQL reserved word.
      */
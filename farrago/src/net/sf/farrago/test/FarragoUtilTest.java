@@ -71,6 +71,60 @@ public class FarragoUtilTest
         }
     }
 
+    /**
+     * Tests that {@link FarragoHyperLogLog} estimates within a few percent,
+     * both directly and after merging.
+     */
+    public void testHyperLogLog()
+    {
+        FarragoHyperLogLog hll1 = new FarragoHyperLogLog();
+        FarragoHyperLogLog hll2 = new FarragoHyperLogLog();
+        for (int i = 0; i < 100000; ++i) {
+            hll1.add(i);
+            hll2.add("value " + i);
+            hll2.add("value " + i);
+        }
+        assertEquals(100000, hll1.estimate(), 3000.0);
+        assertEquals(100000, hll2.estimate(), 3000.0);
+        hll1.merge(hll2);
+        assertEquals(200000, hll1.estimate(), 6000.0);
+    }
+
+    /**
+     * Tests that {@link FarragoQuantileSketch} preserves total weight and
+     * ranks values approximately.
+     */
+    public void testQuantileSketch()
+    {
+        FarragoQuantileSketch<Integer> sketch =
+            new FarragoQuantileSketch<Integer>(
+                FarragoQuantileSketch.DEFAULT_K,
+                new Comparator<Integer>() {
+                    public int compare(Integer o1, Integer o2)
+                    {
+                        return o1.compareTo(o2);
+                    }
+                },
+                new Random(42));
+        int n = 100000;
+        for (int i = 0; i < n; ++i) {
+            sketch.add((i * 7919) % n);
+        }
+        assertEquals(n, sketch.getCount());
+
+        List<Integer> values = new ArrayList<Integer>();
+        List<Long> weights = new ArrayList<Long>();
+        sketch.getSortedView(values, weights);
+        long rank = 0;
+        for (int i = 0; i < values.size(); ++i) {
+            // the values are a permutation of 0 .. n-1, so the rank of a
+            // value is the value itself
+            assertEquals(rank, values.get(i).longValue(), n / 50.0);
+            rank += weights.get(i);
+        }
+        assertEquals(n, rank);
+    }
+
     //~ Inner Classes ----------------------------------------------------------
 
     private class TimerTestTask
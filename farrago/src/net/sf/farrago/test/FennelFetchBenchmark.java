@@ -0,0 +1,162 @@
+/*
+// Licensed to DynamoBI Corporation (DynamoBI) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  DynamoBI licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+
+//   http://www.apache.org/licenses/LICENSE-2.0
+
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+*/
+package net.sf.farrago.test;
+
+import java.sql.*;
+
+import junit.framework.*;
+
+import net.sf.farrago.util.*;
+
+
+/**
+ * FennelFetchBenchmark measures how fast rows produced by a pure Fennel plan
+ * reach JDBC, comparing in-place reads from Fennel's buffers against copying
+ * them into the Java heap (see {@link
+ * net.sf.farrago.runtime.FennelTupleIter}). The source is the mock foreign
+ * data server with a Fennel executor, so no storage access is involved.
+ *
+ * <p>The name deliberately does not end in "Test" so that it is not part of
+ * the regular suite; run it with junitSingle. The row count can be overridden
+ * with the system property
+ * "net.sf.farrago.test.FennelFetchBenchmark.rowCount".
+ *
+ * @version $Id$
+ */
+public class FennelFetchBenchmark
+    extends FarragoTestCase
+{
+    //~ Static fields/initializers ---------------------------------------------
+
+    private static final int ROW_COUNT =
+        Integer.getInteger(
+            "net.sf.farrago.test.FennelFetchBenchmark.rowCount",
+            2000000);
+
+    //~ Constructors -----------------------------------------------------------
+
+    /**
+     * Creates a new FennelFetchBenchmark object.
+     *
+     * @param testName JUnit test name
+     *
+     * @throws Exception .
+     */
+    public FennelFetchBenchmark(String testName)
+        throws Exception
+    {
+        super(testName);
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    // implement TestCase
+    public static Test suite()
+    {
+        return wrappedSuite(FennelFetchBenchmark.class);
+    }
+
+    // override FarragoTestCase
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+        try {
+            stmt.execute("drop schema fetch_bench cascade");
+        } catch (SQLException ex) {
+            // ignore:  didn't exist
+        }
+        stmt.execute("create schema fetch_bench");
+        stmt.execute(
+            "create foreign table fetch_bench.narrow("
+            + "id int not null, n bigint not null) "
+            + "server sys_mock_foreign_data_server "
+            + "options(executor_impl 'FENNEL', row_count '"
+            + ROW_COUNT + "')");
+        stmt.execute(
+            "create foreign table fetch_bench.wide("
+            + "id int not null, c1 char(400) not null, "
+            + "c2 char(400) not null, c3 char(400) not null, "
+            + "v varchar(1000) not null) "
+            + "server sys_mock_foreign_data_server "
+            + "options(executor_impl 'FENNEL', row_count '"
+            + (ROW_COUNT / 10) + "')");
+    }
+
+    // override FarragoTestCase
+    protected void tearDown()
+        throws Exception
+    {
+        FarragoProperties.instance().fennelDirectFetch.set(true);
+        super.tearDown();
+    }
+
+    public void testNarrowRows()
+        throws Exception
+    {
+        compare("select * from fetch_bench.narrow", ROW_COUNT);
+    }
+
+    public void testWideRows()
+        throws Exception
+    {
+        compare("select * from fetch_bench.wide", ROW_COUNT / 10);
+    }
+
+    private void compare(String sql, int expectedRows)
+        throws Exception
+    {
+        // warm up both paths (statement cache, code paths in the JIT)
+        measure(sql, expectedRows, true);
+        measure(sql, expectedRows, false);
+
+        double copied = measure(sql, expectedRows, false);
+        double direct = measure(sql, expectedRows, true);
+        String msg =
+            getName() + ": copied " + (long) copied + " rows/sec, direct "
+            + (long) direct + " rows/sec";
+        tracer.info(msg);
+        System.out.println(msg);
+    }
+
+    private double measure(String sql, int expectedRows, boolean direct)
+        throws Exception
+    {
+        // the property is read at execution time, so a cached
+        // plan picks up the change
+        FarragoProperties.instance().fennelDirectFetch.set(direct);
+        long start = System.nanoTime();
+        resultSet = stmt.executeQuery(sql);
+        int nColumns = resultSet.getMetaData().getColumnCount();
+        int nRows = 0;
+        while (resultSet.next()) {
+            for (int i = 1; i <= nColumns; ++i) {
+                resultSet.getObject(i);
+            }
+            ++nRows;
+        }
+        resultSet.close();
+        resultSet = null;
+        long elapsed = System.nanoTime() - start;
+        assertEquals(expectedRows, nRows);
+        return nRows * 1e9 / Math.max(elapsed, 1);
+    }
+}
+
+// End FennelFetchBenchmark.java
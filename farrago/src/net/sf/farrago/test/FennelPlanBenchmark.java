@@ -0,0 +1,179 @@
+/*
+// Licensed to DynamoBI Corporation (DynamoBI) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  DynamoBI licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+
+//   http://www.apache.org/licenses/LICENSE-2.0
+
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+*/
+package net.sf.farrago.test;
+
+import java.sql.*;
+
+import junit.framework.*;
+
+import net.sf.farrago.util.*;
+
+
+/**
+ * FennelPlanBenchmark measures the latency from preparing a short query to
+ * fetching its first row, with Fennel plans held in the compact encoding of
+ * {@link org.eigenbase.jmi.JmiBinaryCodec} and again with them held as XMI
+ * (see {@link net.sf.farrago.fennel.FennelPlan}). The code cache is flushed
+ * before each repetition, so every repetition prepares the statement and
+ * builds its stream graphs from scratch.
+ *
+ * <p>Each repetition opens several cursors on the query at once. The first
+ * pays for preparation; the others share the prepared statement, but each
+ * needs a stream graph of its own, so they isolate the cost of turning a
+ * prepared plan back into a Fennel command.
+ *
+ * <p>The name deliberately does not end in "Test" so that it is not part of
+ * the regular suite; run it with junitSingle.
+ *
+ * @version $Id$
+ */
+public class FennelPlanBenchmark
+    extends FarragoTestCase
+{
+    //~ Static fields/initializers ---------------------------------------------
+
+    private static final int REPETITIONS = 20;
+
+    private static final int CURSORS = 8;
+
+    //~ Constructors -----------------------------------------------------------
+
+    /**
+     * Creates a new FennelPlanBenchmark object.
+     *
+     * @param testName JUnit test name
+     *
+     * @throws Exception .
+     */
+    public FennelPlanBenchmark(String testName)
+        throws Exception
+    {
+        super(testName);
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    // implement TestCase
+    public static Test suite()
+    {
+        return wrappedSuite(FennelPlanBenchmark.class);
+    }
+
+    // override FarragoTestCase
+    protected void tearDown()
+        throws Exception
+    {
+        FarragoProperties.instance().fennelPlanBinary.set(true);
+        super.tearDown();
+    }
+
+    public void testPointQuery()
+        throws Exception
+    {
+        compare("select * from sales.depts where deptno = 20");
+    }
+
+    public void testJoin()
+        throws Exception
+    {
+        compare(
+            "select e.name, d.name from sales.emps e, sales.depts d"
+            + " where e.deptno = d.deptno order by 1");
+    }
+
+    public void testAggregate()
+        throws Exception
+    {
+        compare(
+            "select deptno, count(*), max(age) from sales.emps"
+            + " group by deptno");
+    }
+
+    private void compare(String sql)
+        throws Exception
+    {
+        // warm up both paths (JIT, catalog caches)
+        for (int i = 0; i < 3; ++i) {
+            measure(sql, true);
+            measure(sql, false);
+        }
+
+        double [] xmi = measure(sql, false);
+        double [] binary = measure(sql, true);
+        String msg =
+            getName() + ": first row after " + format(xmi[0])
+            + " ms with XMI plans, " + format(binary[0])
+            + " ms with encoded plans; each further cursor "
+            + format(xmi[1]) + " ms with XMI, " + format(binary[1])
+            + " ms encoded";
+        tracer.info(msg);
+        System.out.println(msg);
+    }
+
+    /**
+     * Measures a query.
+     *
+     * @return mean milliseconds to the first row of the first cursor, and
+     * mean milliseconds to the first row of each further cursor
+     */
+    private double [] measure(String sql, boolean binary)
+        throws Exception
+    {
+        // the property is read when a statement is prepared, which is why
+        // the code cache is flushed before each repetition
+        FarragoProperties.instance().fennelPlanBinary.set(binary);
+        long firstNanos = 0;
+        long furtherNanos = 0;
+        for (int i = 0; i < REPETITIONS; ++i) {
+            stmt.execute("call sys_boot.mgmt.flush_code_cache()");
+            Statement [] stmts = new Statement[CURSORS];
+            try {
+                long start = System.nanoTime();
+                for (int j = 0; j < CURSORS; ++j) {
+                    stmts[j] = connection.createStatement();
+                    ResultSet rs = stmts[j].executeQuery(sql);
+                    assertTrue(rs.next());
+                    if (j == 0) {
+                        long now = System.nanoTime();
+                        firstNanos += now - start;
+                        start = now;
+                    }
+                }
+                furtherNanos += System.nanoTime() - start;
+            } finally {
+                for (Statement s : stmts) {
+                    if (s != null) {
+                        s.close();
+                    }
+                }
+            }
+        }
+        return new double[] {
+            firstNanos / 1e6 / REPETITIONS,
+            furtherNanos / 1e6 / REPETITIONS / (CURSORS - 1)
+        };
+    }
+
+    private static String format(double millis)
+    {
+        return String.valueOf(Math.round(millis * 100) / 100.0);
+    }
+}
+
+// End FennelPlanBenchmark.java
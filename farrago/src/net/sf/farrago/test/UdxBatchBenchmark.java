@@ -0,0 +1,137 @@
+/*
+// Licensed to DynamoBI Corporation (DynamoBI) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  DynamoBI licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+
+//   http://www.apache.org/licenses/LICENSE-2.0
+
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+*/
+package net.sf.farrago.test;
+
+import java.sql.*;
+
+import junit.framework.*;
+
+
+/**
+ * UdxBatchBenchmark measures how fast rows come out of a Java UDX, comparing
+ * a UDX which sets the columns of each row through a PreparedStatement
+ * ({@link FarragoTestUDR#ramp}) against one which fills a {@link
+ * net.sf.farrago.runtime.FarragoUdxBatch} at a time ({@link
+ * FarragoTestUDR#batchRamp}).
+ *
+ * <p>The name deliberately does not end in "Test" so that it is not part of
+ * the regular suite; run it with junitSingle. The row count can be overridden
+ * with the system property "net.sf.farrago.test.UdxBatchBenchmark.rowCount".
+ *
+ * @version $Id$
+ */
+public class UdxBatchBenchmark
+    extends FarragoTestCase
+{
+    //~ Static fields/initializers ---------------------------------------------
+
+    private static final int ROW_COUNT =
+        Integer.getInteger(
+            "net.sf.farrago.test.UdxBatchBenchmark.rowCount",
+            5000000);
+
+    //~ Constructors -----------------------------------------------------------
+
+    /**
+     * Creates a new UdxBatchBenchmark object.
+     *
+     * @param testName JUnit test name
+     *
+     * @throws Exception .
+     */
+    public UdxBatchBenchmark(String testName)
+        throws Exception
+    {
+        super(testName);
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    // implement TestCase
+    public static Test suite()
+    {
+        return wrappedSuite(UdxBatchBenchmark.class);
+    }
+
+    // override FarragoTestCase
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+        try {
+            stmt.execute("drop schema udx_bench cascade");
+        } catch (SQLException ex) {
+            // ignore:  didn't exist
+        }
+        stmt.execute("create schema udx_bench");
+        stmt.execute(
+            "create function udx_bench.ramp(n int) returns table(i int) "
+            + "language java parameter style system defined java "
+            + "no sql external name "
+            + "'class net.sf.farrago.test.FarragoTestUDR.ramp'");
+        stmt.execute(
+            "create function udx_bench.batch_ramp(n int) "
+            + "returns table(i int) "
+            + "language java parameter style system defined java "
+            + "no sql external name "
+            + "'class net.sf.farrago.test.FarragoTestUDR.batchRamp'");
+    }
+
+    public void testRamp()
+        throws Exception
+    {
+        // warm up both paths (statement cache, code paths in the JIT)
+        measure("udx_bench.ramp");
+        measure("udx_bench.batch_ramp");
+
+        double perRow = measure("udx_bench.ramp");
+        double batched = measure("udx_bench.batch_ramp");
+        String msg =
+            getName() + ": PreparedStatement " + (long) perRow
+            + " rows/sec, batch " + (long) batched + " rows/sec";
+        tracer.info(msg);
+        System.out.println(msg);
+    }
+
+    private double measure(String functionName)
+        throws Exception
+    {
+        long start = System.nanoTime();
+        resultSet =
+            stmt.executeQuery(
+                "select * from table(" + functionName + "(" + ROW_COUNT
+                + "))");
+        int nRows = 0;
+        long sum = 0;
+        while (resultSet.next()) {
+            sum += resultSet.getInt(1);
+            ++nRows;
+        }
+        resultSet.close();
+        resultSet = null;
+        long elapsed = System.nanoTime() - start;
+        assertEquals(ROW_COUNT, nRows);
+
+        // keep the reads from being optimized away
+        assertTrue(sum >= 0);
+        return nRows * 1e9 / Math.max(elapsed, 1);
+    }
+}
+
+// End UdxBatchBenchmark.java
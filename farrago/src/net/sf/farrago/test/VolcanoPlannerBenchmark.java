@@ -0,0 +1,151 @@
+/*
+// Licensed to DynamoBI Corporation (DynamoBI) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  DynamoBI licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+
+//   http://www.apache.org/licenses/LICENSE-2.0
+
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+*/
+package net.sf.farrago.test;
+
+import java.sql.*;
+
+import junit.framework.*;
+
+
+/**
+ * VolcanoPlannerBenchmark measures how long it takes to plan star joins of
+ * increasing width, where most of the planner's time goes into registering
+ * equivalent join trees (see {@link org.eigenbase.relopt.RelDigest}). Plans
+ * are produced by EXPLAIN PLAN, which is never cached, so every execution is
+ * planned afresh; no rows are read.
+ *
+ * <p>The name deliberately does not end in "Test" so that it is not part of
+ * the regular suite; run it with junitSingle, on two builds to compare them.
+ * The widest join can be overridden with the system property
+ * "net.sf.farrago.test.VolcanoPlannerBenchmark.maxDimensions".
+ *
+ * @version $Id$
+ */
+public class VolcanoPlannerBenchmark
+    extends FarragoTestCase
+{
+    //~ Static fields/initializers ---------------------------------------------
+
+    private static final int MAX_DIMENSIONS =
+        Integer.getInteger(
+            "net.sf.farrago.test.VolcanoPlannerBenchmark.maxDimensions",
+            20);
+
+    private static final int REPETITIONS = 5;
+
+    //~ Constructors -----------------------------------------------------------
+
+    /**
+     * Creates a new VolcanoPlannerBenchmark object.
+     *
+     * @param testName JUnit test name
+     *
+     * @throws Exception .
+     */
+    public VolcanoPlannerBenchmark(String testName)
+        throws Exception
+    {
+        super(testName);
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    // implement TestCase
+    public static Test suite()
+    {
+        return wrappedSuite(VolcanoPlannerBenchmark.class);
+    }
+
+    // override FarragoTestCase
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+        try {
+            stmt.execute("drop schema planner_bench cascade");
+        } catch (SQLException ex) {
+            // ignore:  didn't exist
+        }
+        stmt.execute("create schema planner_bench");
+        StringBuilder fact =
+            new StringBuilder(
+                "create table planner_bench.fact(id int not null primary key");
+        for (int i = 1; i <= MAX_DIMENSIONS; ++i) {
+            fact.append(", k").append(i).append(" int not null");
+            stmt.execute(
+                "create table planner_bench.d" + i
+                + "(id int not null primary key, attr varchar(20))");
+        }
+        fact.append(")");
+        stmt.execute(fact.toString());
+    }
+
+    public void testStarJoins()
+        throws Exception
+    {
+        for (int n = 4; n <= MAX_DIMENSIONS; n += 4) {
+            String sql = getStarJoin(n);
+
+            // warm up (JIT, catalog caches)
+            plan(sql);
+
+            long start = System.nanoTime();
+            for (int i = 0; i < REPETITIONS; ++i) {
+                plan(sql);
+            }
+            long elapsed = System.nanoTime() - start;
+            String msg =
+                getName() + ": " + (n + 1) + "-way star join planned in "
+                + (elapsed / REPETITIONS / 1000000) + " ms";
+            tracer.info(msg);
+            System.out.println(msg);
+        }
+    }
+
+    private String getStarJoin(int nDimensions)
+    {
+        StringBuilder sql =
+            new StringBuilder("explain plan for select count(*) from ");
+        sql.append("planner_bench.fact f");
+        for (int i = 1; i <= nDimensions; ++i) {
+            sql.append(", planner_bench.d").append(i).append(" d").append(i);
+        }
+        for (int i = 1; i <= nDimensions; ++i) {
+            sql.append((i == 1) ? " where " : " and ");
+            sql.append("f.k").append(i).append(" = d").append(i).append(
+                ".id");
+            sql.append(" and d").append(i).append(".attr = 'x").append(i)
+            .append("'");
+        }
+        return sql.toString();
+    }
+
+    private void plan(String sql)
+        throws Exception
+    {
+        resultSet = stmt.executeQuery(sql);
+        while (resultSet.next()) {
+            resultSet.getString(1);
+        }
+        resultSet.close();
+        resultSet = null;
+    }
+}
+
+// End VolcanoPlannerBenchmark.java
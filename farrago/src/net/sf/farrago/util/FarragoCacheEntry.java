@@ -33,16 +33,31 @@ public class FarragoCacheEntry
     //~ Instance fields --------------------------------------------------------
 
     // NOTE jvs 15-July-2004: entry attribute synchronization is fine-grained;
-    // pinCount is protected by FarragoObjectCache.mapKeyToEntry's monitor,
-    // while the others are protected by the entry's monitor.
+    // pinCount is protected by the monitor of the FarragoObjectCache stripe
+    // the key hashes to, while the others are protected by the entry's
+    // monitor.  value and constructionThread are also read without the entry
+    // monitor while holding the stripe, hence volatile.
     Object key;
-    Object value;
+    volatile Object value;
     int pinCount;
     AtomicLong memoryUsage;
-    Thread constructionThread;
+    volatile Thread constructionThread;
     boolean isReusable;
     boolean isInitialized;
 
+    /**
+     * Reference bit maintained by the victimization policy; see {@link
+     * FarragoLruVictimPolicy}.
+     */
+    volatile boolean referenced;
+
+    /**
+     * Concurrency of this entry's key, if the entry has been pinned
+     * exclusively while {@link FarragoObjectCache#setMaxIdleExclusiveEntries}
+     * was in effect; protected by the monitor of the key's stripe.
+     */
+    FarragoObjectCache.ExclusiveUsage exclusiveUsage;
+
     /**
      * The cache this entry is associated with
      */
@@ -94,6 +109,7 @@ public class FarragoCacheEntry
         // due to access by unsynchronized code in FarragoObjectCache.  I'm not
         // sure if that's safe on all architectures--could the lack of a read
         // memory barrier cause the writes to get reordered?
+        // (value is volatile and written last, which provides the barrier.)
         this.isInitialized = true;
         this.isReusable = isReusable;
         this.memoryUsage.set(memoryUsage);
@@ -29,6 +29,12 @@ import java.util.*;
  * determine the order in which entries should be victimized from the cache,
  * when the cache becomes full.
  *
+ * <p>FarragoObjectCache makes these calls from many threads at once, without
+ * any common lock, so implementations must be safe for concurrent use. The
+ * exception is {@link #getVictimIterator}: FarragoObjectCache never has more
+ * than one victim iterator in use at a time. An iterator may reflect a
+ * snapshot.
+ *
  * @author Zelaine Fong
  * @version $Id$
  */
@@ -0,0 +1,195 @@
+/*
+// Licensed to DynamoBI Corporation (DynamoBI) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  DynamoBI licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+
+//   http://www.apache.org/licenses/LICENSE-2.0
+
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+*/
+package net.sf.farrago.util;
+
+/**
+ * FarragoHyperLogLog estimates the number of distinct values in a stream in
+ * fixed space, using the HyperLogLog algorithm described in "HyperLogLog: the
+ * analysis of a near-optimal cardinality estimation algorithm" by Philippe
+ * Flajolet, Eric Fusy, Olivier Gandouet and Frederic Meunier (AofA 2007).
+ *
+ * <p>With the default precision of 14 bits, the sketch occupies 16KB and the
+ * standard error of the estimate is about 0.8%. Sketches of the same
+ * precision can be merged, so that separately built sketches estimate the
+ * number of distinct values in the union of their inputs.
+ *
+ * <p>Values are hashed with a 64-bit hash, so the estimate remains good well
+ * beyond 2^32 distinct values. Values which are equal must have equal
+ * {@link Object#toString()} representations, unless they are numbers, byte
+ * arrays or strings, which are hashed directly.
+ *
+ * @version $Id$
+ */
+public class FarragoHyperLogLog
+{
+    //~ Static fields/initializers ---------------------------------------------
+
+    public static final int DEFAULT_PRECISION = 14;
+
+    //~ Instance fields --------------------------------------------------------
+
+    private final int precision;
+    private final byte [] registers;
+
+    //~ Constructors -----------------------------------------------------------
+
+    /**
+     * Creates a sketch with the default precision.
+     */
+    public FarragoHyperLogLog()
+    {
+        this(DEFAULT_PRECISION);
+    }
+
+    /**
+     * Creates a sketch.
+     *
+     * @param precision number of hash bits used to choose a register, between
+     * 4 and 18; the sketch has 2^precision registers
+     */
+    public FarragoHyperLogLog(int precision)
+    {
+        assert ((precision >= 4) && (precision <= 18));
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * Adds a value to the sketch.
+     *
+     * @param value value to add; must not be null
+     */
+    public void add(Object value)
+    {
+        addHash(hash(value));
+    }
+
+    /**
+     * Adds a value which has already been hashed by {@link #hash(Object)}.
+     *
+     * @param hash 64-bit hash of the value
+     */
+    public void addHash(long hash)
+    {
+        int index = (int) (hash >>> (64 - precision));
+
+        // rank of the first 1 bit in the remaining bits, counting from 1;
+        // the sentinel bit bounds the rank when all the bits are zero
+        long rest = (hash << precision) | (1L << (precision - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(rest) + 1);
+        if (rank > registers[index]) {
+            registers[index] = rank;
+        }
+    }
+
+    /**
+     * Merges another sketch into this one.
+     *
+     * @param other sketch of the same precision
+     */
+    public void merge(FarragoHyperLogLog other)
+    {
+        assert (other.precision == precision);
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    /**
+     * @return estimated number of distinct values added to this sketch
+     */
+    public long estimate()
+    {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                ++zeros;
+            }
+        }
+        double alpha = 0.7213 / (1.0 + (1.079 / m));
+        double estimate = (alpha * m * m) / sum;
+        if ((estimate <= (2.5 * m)) && (zeros > 0)) {
+            // small range correction: linear counting is more accurate
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * Computes the 64-bit hash of a value.
+     *
+     * @param value value to hash; must not be null
+     *
+     * @return hash
+     */
+    public static long hash(Object value)
+    {
+        if (value instanceof Long
+            || value instanceof Integer
+            || value instanceof Short
+            || value instanceof Byte)
+        {
+            return mix(((Number) value).longValue());
+        } else if (value instanceof Double) {
+            return mix(Double.doubleToLongBits((Double) value));
+        } else if (value instanceof Float) {
+            return mix(Double.doubleToLongBits((Float) value));
+        } else if (value instanceof Boolean) {
+            return mix(((Boolean) value) ? 1 : 0);
+        } else if (value instanceof byte []) {
+            byte [] bytes = (byte []) value;
+            long h = 0x9E3779B97F4A7C15L ^ bytes.length;
+            for (byte b : bytes) {
+                h = (h ^ (b & 0xFF)) * 0x100000001B3L;
+            }
+            return mix(h);
+        } else {
+            CharSequence chars =
+                (value instanceof CharSequence) ? (CharSequence) value
+                : value.toString();
+            long h = 0x9E3779B97F4A7C15L ^ chars.length();
+            for (int i = 0; i < chars.length(); i++) {
+                h = (h ^ chars.charAt(i)) * 0x100000001B3L;
+            }
+            return mix(h);
+        }
+    }
+
+    /**
+     * Scrambles the bits of a long (the finalizer of MurmurHash3).
+     */
+    private static long mix(long h)
+    {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
+
+// End FarragoHyperLogLog.java
@@ -19,13 +19,20 @@
 package net.sf.farrago.util;
 
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 
 
 /**
  * FarragoLruVictimPolicy implements an LRU caching policy for the
  * FarragoObjectCache.
  *
- * <p>This class assumes that synchronization is handled by its caller.
+ * <p>This class is safe for concurrent use. Rather than maintaining a list in
+ * exact access order (which would need a lock on every cache hit), it
+ * approximates LRU with the CLOCK ("second chance") algorithm: an access just
+ * sets the entry's reference bit, and the victim iterator walks a circular
+ * queue, clearing set bits and moving those entries to the back, and offering
+ * the first entry it finds with the bit clear.
  *
  * @author Zelaine Fong
  * @version $Id$
@@ -36,16 +43,30 @@ public class FarragoLruVictimPolicy
     //~ Instance fields --------------------------------------------------------
 
     /**
-     * LRU ordering of objects in the cache. The linked list provides the LRU
-     * ordering.
+     * Registered entries; the values are unused.
      */
-    private final LinkedHashSet<FarragoCacheEntry> lruCacheOrder;
+    private final ConcurrentMap<FarragoCacheEntry, Boolean> entries;
+
+    /**
+     * The clock. Entries unregistered other than via a victim iterator are not
+     * removed from here right away (that would be a linear search); they are
+     * dropped when the clock hand passes them, or purged once they outnumber
+     * the live ones.
+     */
+    private final Queue<FarragoCacheEntry> clock;
+
+    /**
+     * Number of unregistered entries still in {@link #clock}.
+     */
+    private final AtomicInteger deadCount;
 
     //~ Constructors -----------------------------------------------------------
 
     public FarragoLruVictimPolicy()
     {
-        lruCacheOrder = new LinkedHashSet<FarragoCacheEntry>();
+        entries = new ConcurrentHashMap<FarragoCacheEntry, Boolean>();
+        clock = new ConcurrentLinkedQueue<FarragoCacheEntry>();
+        deadCount = new AtomicInteger();
     }
 
     //~ Methods ----------------------------------------------------------------
@@ -59,7 +80,8 @@ public class FarragoLruVictimPolicy
     // implement FarragoCacheVictimPolicy
     public void registerEntry(FarragoCacheEntry entry)
     {
-        lruCacheOrder.add(entry);
+        entries.put(entry, Boolean.TRUE);
+        clock.add(entry);
     }
 
     // implement FarragoCacheVictimPolicy
@@ -71,29 +93,107 @@ public class FarragoLruVictimPolicy
     // implement FarragoCacheVictimPolicy
     public void unregisterEntry(FarragoCacheEntry entry)
     {
-        boolean rc = lruCacheOrder.remove(entry);
+        boolean rc = (entries.remove(entry) != null);
         assert (rc);
+        if (deadCount.incrementAndGet() > entries.size()) {
+            purge();
+        }
+    }
+
+    private void purge()
+    {
+        deadCount.set(0);
+        Iterator<FarragoCacheEntry> iter = clock.iterator();
+        while (iter.hasNext()) {
+            if (!entries.containsKey(iter.next())) {
+                iter.remove();
+            }
+        }
     }
 
     // implement FarragoCacheVictimPolicy
     public void accessEntry(FarragoCacheEntry entry)
     {
-        // remove the object from the list and add it to the end of the list
-        boolean rc = lruCacheOrder.remove(entry);
-        assert (rc);
-        lruCacheOrder.add(entry);
+        entry.referenced = true;
     }
 
     // implement FarragoCacheVictimPolicy
     public Iterator<FarragoCacheEntry> getVictimIterator()
     {
-        return lruCacheOrder.iterator();
+        return new VictimIterator();
     }
 
     // implement FarragoCacheVictimPolicy
     public void clearCache()
     {
-        lruCacheOrder.clear();
+        entries.clear();
+        clock.clear();
+        deadCount.set(0);
+    }
+
+    //~ Inner Classes ----------------------------------------------------------
+
+    /**
+     * Advances the clock hand. Every candidate returned stays in the clock
+     * (at the back) unless removed through this iterator, and the iteration
+     * ends after twice around the clock, by which time any entry not accessed
+     * in the meantime has been offered.
+     */
+    private class VictimIterator
+        implements Iterator<FarragoCacheEntry>
+    {
+        private int stepsLeft;
+        private FarragoCacheEntry next;
+        private FarragoCacheEntry current;
+
+        VictimIterator()
+        {
+            stepsLeft = 2 * (entries.size() + deadCount.get()) + 1;
+        }
+
+        public boolean hasNext()
+        {
+            while ((next == null) && (stepsLeft > 0)) {
+                --stepsLeft;
+                FarragoCacheEntry entry = clock.poll();
+                if (entry == null) {
+                    stepsLeft = 0;
+                    break;
+                }
+                if (!entries.containsKey(entry)) {
+                    // lazily drop an unregistered entry
+                    deadCount.decrementAndGet();
+                    continue;
+                }
+                clock.add(entry);
+                if (entry.referenced) {
+                    // second chance
+                    entry.referenced = false;
+                    continue;
+                }
+                next = entry;
+            }
+            return next != null;
+        }
+
+        public FarragoCacheEntry next()
+        {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            current = next;
+            next = null;
+            return current;
+        }
+
+        public void remove()
+        {
+            if (current == null) {
+                throw new IllegalStateException();
+            }
+            unregisterEntry(current);
+            current = null;
+        }
     }
 }
 
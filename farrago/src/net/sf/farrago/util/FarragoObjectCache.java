@@ -19,6 +19,7 @@
 package net.sf.farrago.util;
 
 import java.util.*;
+import java.util.concurrent.atomic.*;
 import java.util.logging.*;
 
 import net.sf.farrago.trace.*;
@@ -37,6 +38,17 @@ import org.eigenbase.util.*;
  * <p>See {@link net.sf.farrago.test.FarragoObjectCacheTest} for examples of
  * usage patterns.
  *
+ * <p>The key space is split into a fixed number of stripes, each with its own
+ * map and monitor, so that sessions pinning unrelated keys don't contend; byte
+ * accounting is lock-free, and the victimization policy must be safe for
+ * concurrent use (see {@link FarragoCacheVictimPolicy}).
+ *
+ * <p>Objects pinned exclusively accumulate one entry per concurrent user of
+ * a key, and each stays cached once unpinned, to be handed to the next user.
+ * After {@link #setMaxIdleExclusiveEntries}, such a key keeps at most as many
+ * idle entries as it has recently had concurrent users, and never more than
+ * the given maximum; surplus entries are discarded as they are unpinned.
+ *
  * <p>Note that {@link #closeAllocation} should only be called with no entries
  * pinned, no calls in progress, and no further calls planned.
  *
@@ -50,27 +62,53 @@ public class FarragoObjectCache
 
     private static final Logger tracer = FarragoTrace.getObjectCacheTracer();
 
+    /**
+     * Number of lock stripes; must be a power of two.
+     */
+    private static final int STRIPE_COUNT = 32;
+
+    /**
+     * Number of exclusive pins of a key over which its concurrency is
+     * observed; see {@link ExclusiveUsage}.
+     */
+    static final int USAGE_WINDOW_PINS = 64;
+
     //~ Instance fields --------------------------------------------------------
 
     /**
-     * Map from cache key to EntryImpl. To avoid deadlock, synchronize on either
-     * map or entry but not both at once. See code comments in tryPin for more
-     * info on this.
+     * Maps from cache key to entry, one per stripe; a key always hashes to the
+     * same stripe, and the stripe's map is its monitor. An entry's pinCount is
+     * protected by the monitor of its key's stripe. To avoid deadlock,
+     * synchronize on either a stripe or an entry but not both at once, and
+     * never on two stripes at once. See code comments in tryPin for more info
+     * on this.
      */
-    protected MultiMap<Object, FarragoCacheEntry> mapKeyToEntry;
-    private long bytesMax;
+    private final MultiMap<Object, FarragoCacheEntry> [] stripes;
+
+    private volatile long bytesMax;
+
+    /**
+     * Number of bytes currently in use by cached objects.
+     */
+    private final AtomicLong bytesUsed;
 
     /**
-     * Number of bytes currently in use by cached objects. This and bytesMax are
-     * synchronized via mapKeyToEntry monitor.
+     * Serializes victimization sweeps, so that concurrent callers over the
+     * limit don't all discard entries on behalf of the same overdraft.
      */
-    private long bytesUsed;
+    private final Object victimLock;
 
     /**
      * Victimization policy for this cache
      */
     private FarragoCacheVictimPolicy victimPolicy;
 
+    /**
+     * Maximum number of idle entries kept per key pinned exclusively, or 0
+     * for no limit.
+     */
+    private volatile int maxIdleExclusive;
+
     //~ Constructors -----------------------------------------------------------
 
     /**
@@ -86,15 +124,33 @@ public class FarragoObjectCache
         long bytesMax,
         FarragoCacheVictimPolicy victimPolicy)
     {
-        mapKeyToEntry = new MultiMap<Object, FarragoCacheEntry>();
+        // generic array creation is unchecked
+        @SuppressWarnings("unchecked")
+        MultiMap<Object, FarragoCacheEntry> [] stripes =
+            new MultiMap[STRIPE_COUNT];
+        for (int i = 0; i < STRIPE_COUNT; ++i) {
+            stripes[i] = new MultiMap<Object, FarragoCacheEntry>();
+        }
+        this.stripes = stripes;
         owner.addAllocation(this);
         this.bytesMax = bytesMax;
-        bytesUsed = 0;
+        bytesUsed = new AtomicLong();
+        victimLock = new Object();
         this.victimPolicy = victimPolicy;
     }
 
     //~ Methods ----------------------------------------------------------------
 
+    private MultiMap<Object, FarragoCacheEntry> getStripe(Object key)
+    {
+        // spread the hash bits so that keys differing only in high bits
+        // (e.g. long strings with a common prefix) don't collide
+        int h = key.hashCode();
+        h ^= (h >>> 20) ^ (h >>> 12);
+        h ^= (h >>> 7) ^ (h >>> 4);
+        return stripes[h & (STRIPE_COUNT - 1)];
+    }
+
     /**
      * Pins an entry in the cache. When the caller is done with it, the returned
      * entry must be unpinned, otherwise the entry can never be discarded from
@@ -146,6 +202,57 @@ public class FarragoObjectCache
         }
     }
 
+    /**
+     * Pins an existing entry in the cache, without ever constructing one.
+     * Only entries which are fully initialized, reusable and not stale
+     * qualify; in particular, this never waits for another caller's
+     * construction in progress. As with {@link #pin}, a returned entry must be
+     * unpinned by the caller.
+     *
+     * @param key key of the entry to pin
+     * @param factory CachedObjectFactory used only for its staleness test
+     * @param exclusive if true, only reuse unpinned entries
+     *
+     * @return pinned entry, or null if no usable entry exists
+     */
+    public Entry pinIfPresent(
+        Object key,
+        CachedObjectFactory factory,
+        boolean exclusive)
+    {
+        MultiMap<Object, FarragoCacheEntry> stripe = getStripe(key);
+        synchronized (stripe) {
+            for (FarragoCacheEntry entry : stripe.getMulti(key)) {
+                if (exclusive && (entry.pinCount != 0)) {
+                    continue;
+                }
+
+                // see findOrCreateEntry regarding unsynchronized access
+                Object value = entry.value;
+                if ((value == null)
+                    || (entry.constructionThread != null)
+                    || !entry.isReusable()
+                    || factory.isStale(value))
+                {
+                    // leave any cleanup to the next regular pin
+                    continue;
+                }
+                entry.pinCount++;
+                victimPolicy.accessEntry(entry);
+                if (exclusive && (maxIdleExclusive > 0)) {
+                    recordExclusivePin(stripe, key, entry);
+                }
+                if (tracer.isLoggable(Level.FINE)) {
+                    tracer.fine(
+                        "pinned existing entry with pin count = "
+                        + entry.pinCount + ", key " + key.toString());
+                }
+                return entry;
+            }
+        }
+        return null;
+    }
+
     private Entry tryPin(
         Object key,
         CachedObjectFactory factory,
@@ -257,7 +364,7 @@ public class FarragoObjectCache
             }
         } finally {
             if (unpinEntry) {
-                synchronized (mapKeyToEntry) {
+                synchronized (getStripe(key)) {
                     entry.pinCount--;
                 }
             }
@@ -273,7 +380,7 @@ public class FarragoObjectCache
         assert (!unpinEntry);
 
         if (tracer.isLoggable(Level.FINE)) {
-            long cacheSize = bytesUsed + entry.memoryUsage.get();
+            long cacheSize = bytesUsed.get() + entry.memoryUsage.get();
             tracer.fine(
                 "returning new entry, pin count " + entry.pinCount
                 + ", size " + entry.memoryUsage.get() + ", cache size "
@@ -293,8 +400,9 @@ public class FarragoObjectCache
 
         List<FarragoCacheEntry> staleList = null;
 
-        synchronized (mapKeyToEntry) {
-            List<FarragoCacheEntry> candidateList = mapKeyToEntry.getMulti(key);
+        MultiMap<Object, FarragoCacheEntry> stripe = getStripe(key);
+        synchronized (stripe) {
+            List<FarragoCacheEntry> candidateList = stripe.getMulti(key);
             int nCandidates = candidateList.size();
             Iterator<FarragoCacheEntry> iter = candidateList.iterator();
             while (iter.hasNext()) {
@@ -351,7 +459,7 @@ public class FarragoObjectCache
                 // NOTE jvs 10-Jun-2007: This special case is required because
                 // of the non-uniform return behavior of MultiMap (singleton
                 // entries are returned via an immutable list).
-                mapKeyToEntry.remove(key);
+                stripe.remove(key);
             }
             if (entry == null) {
                 // create a new entry and add it to the map
@@ -363,7 +471,10 @@ public class FarragoObjectCache
                 // let others know we're planning to construct it, so they
                 // shouldn't
                 entry.constructionThread = currentThread;
-                mapKeyToEntry.putMulti(key, entry);
+                stripe.putMulti(key, entry);
+            }
+            if (exclusive && (maxIdleExclusive > 0)) {
+                recordExclusivePin(stripe, key, entry);
             }
         }
 
@@ -378,25 +489,94 @@ public class FarragoObjectCache
         return entry;
     }
 
+    /**
+     * Records that an entry has been pinned exclusively, noting how many
+     * entries of its key are now pinned. Must be called with the key's stripe
+     * locked.
+     */
+    private void recordExclusivePin(
+        MultiMap<Object, FarragoCacheEntry> stripe,
+        Object key,
+        FarragoCacheEntry entry)
+    {
+        ExclusiveUsage usage = entry.exclusiveUsage;
+        int nPinned = 0;
+        for (FarragoCacheEntry candidate : stripe.getMulti(key)) {
+            if (candidate.pinCount != 0) {
+                ++nPinned;
+            }
+            if (usage == null) {
+                usage = candidate.exclusiveUsage;
+            }
+        }
+        if (usage == null) {
+            usage = new ExclusiveUsage();
+        }
+        entry.exclusiveUsage = usage;
+        usage.recordPin(nPinned);
+    }
+
+    /**
+     * Removes surplus idle entries of a key after one of them has been
+     * unpinned from exclusive use, keeping the one just unpinned since it is
+     * the most likely to be warm. Must be called with the key's stripe locked;
+     * the caller must discard the returned entries after releasing it.
+     *
+     * @return entries removed, or null if none
+     */
+    private List<FarragoCacheEntry> removeSurplusIdleEntries(
+        MultiMap<Object, FarragoCacheEntry> stripe,
+        FarragoCacheEntry unpinned)
+    {
+        int maxIdle =
+            Math.min(
+                maxIdleExclusive,
+                unpinned.exclusiveUsage.getPoolSize());
+        List<FarragoCacheEntry> idle = new ArrayList<FarragoCacheEntry>();
+        for (FarragoCacheEntry entry : stripe.getMulti(unpinned.key)) {
+            if ((entry != unpinned)
+                && (entry.pinCount == 0)
+                && (entry.value != null))
+            {
+                idle.add(entry);
+            }
+        }
+
+        // the entry just unpinned is idle too
+        int nSurplus = idle.size() + 1 - maxIdle;
+        if (nSurplus <= 0) {
+            return null;
+        }
+        List<FarragoCacheEntry> surplus =
+            new ArrayList<FarragoCacheEntry>(idle.subList(0, nSurplus));
+        for (FarragoCacheEntry entry : surplus) {
+            stripe.removeMulti(unpinned.key, entry);
+            victimPolicy.unregisterEntry(entry);
+        }
+        if (tracer.isLoggable(Level.FINE)) {
+            tracer.fine(
+                "discarding " + nSurplus + " surplus idle entries, key "
+                + unpinned.key);
+        }
+        return surplus;
+    }
+
     private void adjustMemoryUsage(long incBytes)
     {
+        long used = bytesUsed.addAndGet(incBytes);
         if (tracer.isLoggable(Level.FINER)) {
             tracer.finer(
-                "cache size before discards = " + bytesUsed
+                "cache size before discards = " + (used - incBytes)
                 + " increasing by " + incBytes);
         }
-        List<FarragoCacheEntry> discards;
-
-        synchronized (mapKeyToEntry) {
-            bytesUsed += incBytes;
-
-            long overdraft = bytesUsed - bytesMax;
-
-            if (overdraft <= 0) {
-                return;
-            }
+        if (used <= bytesMax) {
+            return;
+        }
 
-            discards = new ArrayList<FarragoCacheEntry>();
+        List<FarragoCacheEntry> discards = new ArrayList<FarragoCacheEntry>();
+        synchronized (victimLock) {
+            // another sweep may have made room while we were waiting
+            long overdraft = bytesUsed.get() - bytesMax;
 
             // get an ordered list of potential cache victims and search
             // for unused entries
@@ -404,22 +584,37 @@ public class FarragoObjectCache
                 victimPolicy.getVictimIterator();
             while ((overdraft > 0) && lruList.hasNext()) {
                 FarragoCacheEntry entry = lruList.next();
-                if (entry.pinCount > 0) {
-                    continue;
+                MultiMap<Object, FarragoCacheEntry> stripe =
+                    getStripe(entry.getKey());
+                synchronized (stripe) {
+                    if (entry.pinCount > 0) {
+                        continue;
+                    }
+
+                    // the entry may have been discarded as stale in the
+                    // meantime, in which case it's no longer ours to remove
+                    if (!stripe.removeMulti(entry.getKey(), entry)) {
+                        continue;
+                    }
+                    victimPolicy.unregisterEntry(lruList);
                 }
-                victimPolicy.unregisterEntry(lruList);
-                mapKeyToEntry.removeMulti(entry.getKey(), entry);
                 discards.add(entry);
-                overdraft -= entry.memoryUsage.get();
+                long entryBytes = entry.memoryUsage.get();
+                overdraft -= entryBytes;
+
+                // Deduct while still holding victimLock so that the next
+                // sweep sees the reduced usage.
+                bytesUsed.addAndGet(-entryBytes);
             }
         }
 
-        // release map lock since actual discard could be time-consuming
+        // Close the victims without any locks, since actual discard could be
+        // time-consuming; they are no longer reachable from the cache.
         for (FarragoCacheEntry discard : discards) {
-            discardEntry(discard);
+            closeEntry(discard);
         }
         if (tracer.isLoggable(Level.FINER)) {
-            tracer.finer("cache size after discards = " + bytesUsed);
+            tracer.finer("cache size after discards = " + bytesUsed.get());
         }
 
         // REVIEW:  in some circumstances, we want to fail if overdraft is
@@ -433,13 +628,25 @@ public class FarragoObjectCache
      */
     public void setMaxBytes(long bytesMaxNew)
     {
-        synchronized (mapKeyToEntry) {
-            bytesMax = bytesMaxNew;
-        }
-
+        bytesMax = bytesMaxNew;
         adjustMemoryUsage(0);
     }
 
+    /**
+     * Limits the number of idle entries kept for each key which is pinned
+     * exclusively. Within that limit, a key keeps as many idle entries as the
+     * greatest number of its entries pinned at once over roughly its last
+     * {@link #USAGE_WINDOW_PINS} exclusive pins.
+     *
+     * @param maxIdle maximum number of idle entries per key, or 0 to keep
+     * every entry until it is victimized
+     */
+    public void setMaxIdleExclusiveEntries(int maxIdle)
+    {
+        assert (maxIdle >= 0);
+        maxIdleExclusive = maxIdle;
+    }
+
     /**
      * @return cache size limit
      */
@@ -454,7 +661,7 @@ public class FarragoObjectCache
      */
     public long getBytesCached()
     {
-        return bytesUsed;
+        return bytesUsed.get();
     }
 
     /**
@@ -467,13 +674,27 @@ public class FarragoObjectCache
     public void unpin(Entry pinnedEntry)
     {
         FarragoCacheEntry entry = (FarragoCacheEntry) pinnedEntry;
-        synchronized (mapKeyToEntry) {
+        List<FarragoCacheEntry> discards = null;
+        MultiMap<Object, FarragoCacheEntry> stripe = getStripe(entry.key);
+        synchronized (stripe) {
             if (tracer.isLoggable(Level.FINE)) {
                 tracer.fine("Unpinning key " + entry.key.toString());
                 tracer.fine("pin count before unpin = " + entry.pinCount);
             }
             assert (entry.pinCount > 0);
             entry.pinCount--;
+            if ((entry.pinCount == 0)
+                && (entry.exclusiveUsage != null)
+                && (maxIdleExclusive > 0))
+            {
+                discards = removeSurplusIdleEntries(stripe, entry);
+            }
+        }
+
+        if (discards != null) {
+            for (FarragoCacheEntry discard : discards) {
+                discardEntry(discard);
+            }
         }
 
         // in case too much was pinned
@@ -491,8 +712,9 @@ public class FarragoObjectCache
      */
     public void tryUnpin(String key)
     {
-        synchronized (mapKeyToEntry) {
-            List<FarragoCacheEntry> entryList = mapKeyToEntry.getMulti(key);
+        MultiMap<Object, FarragoCacheEntry> stripe = getStripe(key);
+        synchronized (stripe) {
+            List<FarragoCacheEntry> entryList = stripe.getMulti(key);
             assert (entryList != null);
             tracer.fine("unpinning cache entries " + entryList);
 
@@ -530,9 +752,10 @@ public class FarragoObjectCache
     public void discard(Object key)
     {
         List<FarragoCacheEntry> list;
-        synchronized (mapKeyToEntry) {
-            list = mapKeyToEntry.getMulti(key);
-            mapKeyToEntry.remove(key);
+        MultiMap<Object, FarragoCacheEntry> stripe = getStripe(key);
+        synchronized (stripe) {
+            list = stripe.getMulti(key);
+            stripe.remove(key);
             for (FarragoCacheEntry entry : list) {
                 victimPolicy.unregisterEntry(entry);
             }
@@ -552,20 +775,38 @@ public class FarragoObjectCache
     public void discardAll()
     {
         tracer.fine("discarding all entries");
-        synchronized (mapKeyToEntry) {
-            Iterator<Map.Entry<Object, FarragoCacheEntry>> iter =
-                mapKeyToEntry.entryIterMulti();
-            while (iter.hasNext()) {
-                Map.Entry<Object, FarragoCacheEntry> mapEntry = iter.next();
-                FarragoCacheEntry entry = mapEntry.getValue();
-                discardEntry(entry);
+        List<FarragoCacheEntry> discards = new ArrayList<FarragoCacheEntry>();
+        synchronized (victimLock) {
+            for (MultiMap<Object, FarragoCacheEntry> stripe : stripes) {
+                synchronized (stripe) {
+                    Iterator<Map.Entry<Object, FarragoCacheEntry>> iter =
+                        stripe.entryIterMulti();
+                    while (iter.hasNext()) {
+                        discards.add(iter.next().getValue());
+                    }
+                    stripe.clear();
+                }
             }
-            mapKeyToEntry.clear();
             victimPolicy.clearCache();
         }
+        for (FarragoCacheEntry entry : discards) {
+            discardEntry(entry);
+        }
     }
 
     private void discardEntry(FarragoCacheEntry entry)
+    {
+        closeEntry(entry);
+        bytesUsed.addAndGet(-entry.memoryUsage.get());
+    }
+
+    /**
+     * Releases the value of an entry which has been removed from the cache,
+     * without deducting its memory usage.
+     *
+     * @param entry entry to close
+     */
+    private void closeEntry(FarragoCacheEntry entry)
     {
         synchronized (entry) {
             if (tracer.isLoggable(Level.FINE)) {
@@ -582,28 +823,29 @@ public class FarragoObjectCache
                 ((FarragoAllocation) entry.value).closeAllocation();
             }
         }
-
-        synchronized (mapKeyToEntry) {
-            bytesUsed -= entry.memoryUsage.get();
-        }
     }
 
     // implement FarragoAllocation
     public void closeAllocation()
     {
         discardAll();
-        assert (bytesUsed == 0);
+        assert (bytesUsed.get() == 0);
     }
 
     public void dumpCache()
     {
-        Iterator<Map.Entry<Object, FarragoCacheEntry>> it =
-            mapKeyToEntry.entryIterMulti();
-        while (it.hasNext()) {
-            Map.Entry<Object, FarragoCacheEntry> entry = it.next();
-            tracer.fine(
-                "objectCache[" + entry.getKey().getClass().getName()
-                + "," + entry.getKey() + "]=" + entry.getValue().getValue());
+        for (MultiMap<Object, FarragoCacheEntry> stripe : stripes) {
+            synchronized (stripe) {
+                Iterator<Map.Entry<Object, FarragoCacheEntry>> it =
+                    stripe.entryIterMulti();
+                while (it.hasNext()) {
+                    Map.Entry<Object, FarragoCacheEntry> entry = it.next();
+                    tracer.fine(
+                        "objectCache[" + entry.getKey().getClass().getName()
+                        + "," + entry.getKey() + "]="
+                        + entry.getValue().getValue());
+                }
+            }
         }
     }
 
@@ -683,6 +925,47 @@ public class FarragoObjectCache
          */
         public Object getValue();
     }
+
+    //~ Inner Classes ----------------------------------------------------------
+
+    /**
+     * Concurrency observed for a key which is pinned exclusively, shared by
+     * all of the key's entries. Protected by the monitor of the key's stripe.
+     */
+    static class ExclusiveUsage
+    {
+        /**
+         * Greatest number of entries pinned at once during the last complete
+         * window of {@link #USAGE_WINDOW_PINS} pins.
+         */
+        private int lastPeak;
+
+        /**
+         * Greatest number of entries pinned at once during the current
+         * window.
+         */
+        private int peak;
+
+        private int nPins;
+
+        void recordPin(int nPinned)
+        {
+            peak = Math.max(peak, nPinned);
+            if (++nPins >= USAGE_WINDOW_PINS) {
+                lastPeak = peak;
+                peak = 0;
+                nPins = 0;
+            }
+        }
+
+        /**
+         * @return number of idle entries worth keeping for the key
+         */
+        int getPoolSize()
+        {
+            return Math.max(1, Math.max(lastPeak, peak));
+        }
+    }
 }
 
 // End FarragoObjectCache.java
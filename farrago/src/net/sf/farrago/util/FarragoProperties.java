@@ -142,6 +142,59 @@ public class FarragoProperties
             "net.sf.farrago.ddl.DdlReloadTableStmt.crash",
             false);
 
+    /**
+     * The boolean property "net.sf.farrago.runtime.FennelTupleIter.direct"
+     * controls whether results of plans executed entirely in Fennel are read
+     * in place from Fennel's buffers rather than copied into the Java heap.
+     * Default is true; the switch exists mostly for benchmarking.
+     */
+    public final BooleanProperty fennelDirectFetch =
+        new BooleanProperty(
+            this,
+            "net.sf.farrago.runtime.FennelTupleIter.direct",
+            true);
+
+    /**
+     * The boolean property "net.sf.farrago.fennel.FennelPlan.binary" controls
+     * whether prepared Fennel plans are held in the compact encoding of
+     * {@link org.eigenbase.jmi.JmiBinaryCodec} rather than as XMI. Default is
+     * true; the switch exists mostly for benchmarking.
+     */
+    public final BooleanProperty fennelPlanBinary =
+        new BooleanProperty(
+            this,
+            "net.sf.farrago.fennel.FennelPlan.binary",
+            true);
+
+    /**
+     * The integer property "net.sf.farrago.db.FarragoDatabase.codeCachePoolMax"
+     * bounds how many idle copies of an exclusively used object the code
+     * cache keeps per key; chiefly these are prepared Fennel stream graphs,
+     * one per concurrent execution of a statement. Within the bound, each
+     * statement keeps as many as it has recently had concurrent executions
+     * (see {@link FarragoObjectCache#setMaxIdleExclusiveEntries}). Default is
+     * 16; 0 removes the bound, so that every copy stays until victimized.
+     */
+    public final IntegerProperty codeCachePoolMax =
+        new IntegerProperty(
+            this,
+            "net.sf.farrago.db.FarragoDatabase.codeCachePoolMax",
+            16);
+
+    /**
+     * The boolean property
+     * "net.sf.farrago.runtime.FarragoColumnAccessor.compiled" controls
+     * whether result sets of compiled statements read their rows through a
+     * generated {@link net.sf.farrago.runtime.FarragoColumnAccessor} rather
+     * than via reflection. Default is true; the switch exists mostly for
+     * benchmarking.
+     */
+    public final BooleanProperty compiledColumnAccessors =
+        new BooleanProperty(
+            this,
+            "net.sf.farrago.runtime.FarragoColumnAccessor.compiled",
+            true);
+
     //~ Constructors -----------------------------------------------------------
 
     private FarragoProperties()
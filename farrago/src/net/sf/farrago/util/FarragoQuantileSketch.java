@@ -0,0 +1,232 @@
+/*
+// Licensed to DynamoBI Corporation (DynamoBI) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  DynamoBI licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+
+//   http://www.apache.org/licenses/LICENSE-2.0
+
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+*/
+package net.sf.farrago.util;
+
+import java.util.*;
+
+
+/**
+ * FarragoQuantileSketch summarizes the distribution of a stream of values in
+ * small space, so that the value at any rank can be found to within a small
+ * error. It implements the compactor hierarchy described in "Optimal
+ * Quantile Approximation in Streams" by Zohar Karnin, Kevin Lang and Edo
+ * Liberty (FOCS 2016).
+ *
+ * <p>Level h of the hierarchy holds values standing for 2^h input values
+ * each. When a level fills up it is sorted and every other value, starting
+ * at a random offset, is promoted to the next level; the others are
+ * discarded. The total weight of the retained values always equals the
+ * number of values added. Sketches built with the same parameters can be
+ * merged.
+ *
+ * @version $Id$
+ */
+public class FarragoQuantileSketch<T>
+{
+    //~ Static fields/initializers ---------------------------------------------
+
+    public static final int DEFAULT_K = 256;
+
+    private static final int MIN_CAPACITY = 8;
+
+    //~ Instance fields --------------------------------------------------------
+
+    private final int k;
+    private final Comparator<? super T> comparator;
+    private final Random random;
+    private final List<List<T>> levels;
+    private long count;
+    private int retained;
+
+    //~ Constructors -----------------------------------------------------------
+
+    /**
+     * Creates a sketch.
+     *
+     * @param k capacity of the top level; the rank error is roughly
+     * proportional to 1/k
+     * @param comparator orders the values
+     * @param random chooses which values a compaction keeps
+     */
+    public FarragoQuantileSketch(
+        int k,
+        Comparator<? super T> comparator,
+        Random random)
+    {
+        this.k = k;
+        this.comparator = comparator;
+        this.random = random;
+        levels = new ArrayList<List<T>>();
+        levels.add(new ArrayList<T>());
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * Adds a value to the sketch.
+     *
+     * @param value value to add
+     */
+    public void add(T value)
+    {
+        levels.get(0).add(value);
+        ++count;
+        ++retained;
+        if (retained >= totalCapacity()) {
+            compress();
+        }
+    }
+
+    /**
+     * Merges another sketch into this one.
+     *
+     * @param other sketch to merge; it is not modified
+     */
+    public void merge(FarragoQuantileSketch<T> other)
+    {
+        while (levels.size() < other.levels.size()) {
+            levels.add(new ArrayList<T>());
+        }
+        for (int h = 0; h < other.levels.size(); h++) {
+            levels.get(h).addAll(other.levels.get(h));
+        }
+        count += other.count;
+        retained += other.retained;
+        while (retained >= totalCapacity()) {
+            compress();
+        }
+    }
+
+    /**
+     * @return number of values added to this sketch
+     */
+    public long getCount()
+    {
+        return count;
+    }
+
+    /**
+     * Returns the retained values in order, each with the number of input
+     * values it stands for. Adjacent equal values are combined, so the result
+     * approximates a GROUP BY of the input ordered by value.
+     *
+     * @param values receives the distinct retained values, in order
+     * @param weights receives the weight of each value in <code>values</code>
+     */
+    public void getSortedView(List<T> values, List<Long> weights)
+    {
+        List<Weighted<T>> all = new ArrayList<Weighted<T>>(retained);
+        for (int h = 0; h < levels.size(); h++) {
+            long weight = 1L << h;
+            for (T value : levels.get(h)) {
+                all.add(new Weighted<T>(value, weight));
+            }
+        }
+        Collections.sort(
+            all,
+            new Comparator<Weighted<T>>() {
+                public int compare(Weighted<T> o1, Weighted<T> o2)
+                {
+                    return comparator.compare(o1.value, o2.value);
+                }
+            });
+        for (Weighted<T> w : all) {
+            int last = values.size() - 1;
+            if ((last >= 0)
+                && (comparator.compare(values.get(last), w.value) == 0))
+            {
+                weights.set(last, weights.get(last) + w.weight);
+            } else {
+                values.add(w.value);
+                weights.add(w.weight);
+            }
+        }
+    }
+
+    private int capacity(int h)
+    {
+        // Lower levels get geometrically smaller capacities, which keeps the
+        // sketch small without hurting the error much, since values there
+        // carry less weight.
+        int depth = levels.size() - 1 - h;
+        return Math.max(
+            MIN_CAPACITY,
+            (int) Math.ceil(k * Math.pow(2.0 / 3.0, depth)));
+    }
+
+    private int totalCapacity()
+    {
+        int total = 0;
+        for (int h = 0; h < levels.size(); h++) {
+            total += capacity(h);
+        }
+        return total;
+    }
+
+    private void compress()
+    {
+        for (int h = 0; h < levels.size(); h++) {
+            List<T> level = levels.get(h);
+            if (level.size() < capacity(h)) {
+                continue;
+            }
+            if ((h + 1) == levels.size()) {
+                levels.add(new ArrayList<T>());
+            }
+            List<T> above = levels.get(h + 1);
+            Collections.sort(level, comparator);
+
+            // an odd value out stays behind, so that total weight is
+            // preserved
+            T leftover = null;
+            int n = level.size();
+            if ((n % 2) != 0) {
+                leftover = level.get(n - 1);
+                --n;
+            }
+            for (int i = random.nextBoolean() ? 1 : 0; i < n; i += 2) {
+                above.add(level.get(i));
+            }
+            level.clear();
+            if (leftover != null) {
+                level.add(leftover);
+            }
+            retained -= n / 2;
+            if (retained < totalCapacity()) {
+                return;
+            }
+        }
+    }
+
+    //~ Inner Classes ----------------------------------------------------------
+
+    private static class Weighted<T>
+    {
+        final T value;
+        final long weight;
+
+        Weighted(T value, long weight)
+        {
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+}
+
+// End FarragoQuantileSketch.java
@@ -25,12 +25,14 @@ import java.nio.*;
 import java.security.*;
 
 import java.util.*;
+import java.util.concurrent.*;
 
 import org.codehaus.janino.*;
 import org.codehaus.janino.util.*;
 import org.codehaus.janino.util.enumerator.*;
 import org.codehaus.janino.util.resource.*;
 
+import org.eigenbase.trace.*;
 import org.eigenbase.util.*;
 
 
@@ -38,12 +40,23 @@ import org.eigenbase.util.*;
  * <code>JaninoCompiler</code> implements the {@link JavaCompiler} interface by
  * calling <a href="http://www.janino.net">Janino</a>.
  *
+ * <p>Every compilation gets its own class loader, so classes for different
+ * statements can be compiled in parallel. The number of compilations running
+ * at the same time is limited by {@link
+ * SaffronProperties#javaCompilerConcurrency}; waiting and compilation times
+ * are reported on the timing tracer from {@link
+ * JavaCompilerArgs#getTimingTracer}, if any.
+ *
  * @author John V. Sichi
  * @version $Id$
  */
 public class JaninoCompiler
     implements JavaCompiler
 {
+    //~ Static fields/initializers ---------------------------------------------
+
+    private static Semaphore compileSlots;
+
     //~ Instance fields --------------------------------------------------------
 
     private JaninoCompilerArgs args = new JaninoCompilerArgs();
@@ -92,11 +105,42 @@ public class JaninoCompiler
                 parentClassLoader,
                 sourceFinder,
                 null);
+
+        EigenbaseTimingTracer timingTracer = args.getTimingTracer();
+        Semaphore slots = getCompileSlots();
+        slots.acquireUninterruptibly();
         try {
+            if (timingTracer != null) {
+                timingTracer.traceTime(
+                    "begin compile " + args.fullClassName);
+            }
             classLoader.loadClass(args.fullClassName);
+            if (timingTracer != null) {
+                timingTracer.traceTime(
+                    "end compile " + args.fullClassName);
+            }
         } catch (ClassNotFoundException ex) {
             throw Util.newInternal(ex, "while compiling " + args.fullClassName);
+        } finally {
+            slots.release();
+        }
+    }
+
+    /**
+     * Returns the semaphore limiting the number of concurrent compilations,
+     * creating it on first use.
+     */
+    private static synchronized Semaphore getCompileSlots()
+    {
+        if (compileSlots == null) {
+            int concurrency =
+                SaffronProperties.instance().javaCompilerConcurrency.get();
+            if (concurrency <= 0) {
+                concurrency = Runtime.getRuntime().availableProcessors();
+            }
+            compileSlots = new Semaphore(concurrency, true);
         }
+        return compileSlots;
     }
 
     // implement JavaCompiler
@@ -20,6 +20,8 @@ package org.eigenbase.javac;
 
 import java.util.*;
 
+import org.eigenbase.trace.*;
+
 
 /**
  * A <code>JavaCompilerArgs</code> holds the arguments for a {@link
@@ -43,6 +45,8 @@ public class JavaCompilerArgs
 
     ClassLoader classLoader;
 
+    EigenbaseTimingTracer timingTracer;
+
     //~ Constructors -----------------------------------------------------------
 
     public JavaCompilerArgs()
@@ -179,6 +183,22 @@ public class JavaCompilerArgs
     {
         return classLoader;
     }
+
+    /**
+     * Sets the tracer on which the compiler reports the time spent waiting
+     * for and performing each compilation.
+     *
+     * @param timingTracer timing tracer, or null for no timing
+     */
+    public void setTimingTracer(EigenbaseTimingTracer timingTracer)
+    {
+        this.timingTracer = timingTracer;
+    }
+
+    public EigenbaseTimingTracer getTimingTracer()
+    {
+        return timingTracer;
+    }
 }
 
 // End JavaCompilerArgs.java
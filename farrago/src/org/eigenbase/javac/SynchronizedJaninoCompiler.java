@@ -25,6 +25,10 @@ package org.eigenbase.javac;
  * <code>alter system set "javaCompilerClassName" =
  * 'org.eigenbase.javac.SynchronizedJaninoCompiler';</code>
  *
+ * <p>Normally it is enough to limit parallel compilation in {@link
+ * JaninoCompiler} via the "saffron.java.compiler.concurrency" property
+ * (a value of 1 serializes compilation like this class does).
+ *
  * @author John Sichi
  * @version $Id$
  */
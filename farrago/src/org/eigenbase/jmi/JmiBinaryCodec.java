@@ -0,0 +1,623 @@
+/*
+// Licensed to DynamoBI Corporation (DynamoBI) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  DynamoBI licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+
+//   http://www.apache.org/licenses/LICENSE-2.0
+
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+*/
+package org.eigenbase.jmi;
+
+import java.io.*;
+
+import java.util.*;
+
+import javax.jmi.model.*;
+import javax.jmi.reflect.*;
+
+import org.eigenbase.util.*;
+
+
+/**
+ * JmiBinaryCodec encodes a tree of JMI objects as a compact byte array, and
+ * decodes the array into new objects. It is much cheaper than a round trip
+ * through XMI ({@link JmiObjUtil#exportToXmiString} and {@link
+ * JmiObjUtil#importFromXmiString}) for objects which are copied within one
+ * JVM, such as Fennel execution plans.
+ *
+ * <p>The tree consists of a root object and every object which it contains,
+ * directly or indirectly. All changeable, non-derived attributes and
+ * references of those objects are encoded, and ordered multi-valued features
+ * keep their order. A tree which references an object outside itself cannot
+ * be encoded.
+ *
+ * <p>Classes are identified by the MOF ID of their metaclass, and enumeration
+ * literals by the name of their Java class, so an encoding can only be
+ * decoded by a JVM which has loaded the same metamodel. It is not a
+ * persistent format.
+ *
+ * @version $Id$
+ */
+public abstract class JmiBinaryCodec
+{
+    //~ Static fields/initializers ---------------------------------------------
+
+    private static final int MAGIC = 0x4A424331;
+
+    private static final byte NULL_VALUE = 0;
+    private static final byte FALSE_VALUE = 1;
+    private static final byte TRUE_VALUE = 2;
+    private static final byte INT_VALUE = 3;
+    private static final byte LONG_VALUE = 4;
+    private static final byte FLOAT_VALUE = 5;
+    private static final byte DOUBLE_VALUE = 6;
+    private static final byte STRING_VALUE = 7;
+    private static final byte ENUM_VALUE = 8;
+    private static final byte OBJECT_VALUE = 9;
+    private static final byte LIST_VALUE = 10;
+
+    /**
+     * Map from metaclass to the features which are encoded for its instances.
+     */
+    private static final Map<RefObject, List<StructuralFeature>> featureMap =
+        new HashMap<RefObject, List<StructuralFeature>>();
+
+    /**
+     * Map from extent to a map from metaclass MOF ID to the extent's class
+     * proxy. Extents are few and live as long as their repository, so entries
+     * are never removed.
+     */
+    private static final Map<RefPackage, Map<String, RefClass>> extentMap =
+        new HashMap<RefPackage, Map<String, RefClass>>();
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * Encodes a tree of JMI objects.
+     *
+     * @param root root of the tree
+     *
+     * @return encoded tree, or null if the tree references objects outside
+     * itself, or has values which cannot be encoded
+     */
+    public static byte [] encode(RefObject root)
+    {
+        try {
+            return new Encoder(root).encode();
+        } catch (IOException ex) {
+            throw Util.newInternal(ex);
+        }
+    }
+
+    /**
+     * Decodes a tree of JMI objects, creating new objects.
+     *
+     * @param extent extent in which to create the objects; must be an
+     * instance of the metamodel from which the tree was encoded
+     * @param bytes tree encoded by {@link #encode}
+     *
+     * @return root of the new tree
+     */
+    public static RefObject decode(RefPackage extent, byte [] bytes)
+    {
+        try {
+            return new Decoder(extent, bytes).decode();
+        } catch (IOException ex) {
+            throw Util.newInternal(ex);
+        }
+    }
+
+    /**
+     * Returns the features which are encoded for instances of a class, in a
+     * fixed order.
+     */
+    private static List<StructuralFeature> getFeatures(RefClass refClass)
+    {
+        RefObject mofClass = refClass.refMetaObject();
+        synchronized (featureMap) {
+            List<StructuralFeature> features = featureMap.get(mofClass);
+            if (features == null) {
+                features = new ArrayList<StructuralFeature>();
+                for (
+                    StructuralFeature feature
+                    : JmiObjUtil.getFeatures(
+                        refClass,
+                        StructuralFeature.class,
+                        true))
+                {
+                    if (isEncoded(feature)) {
+                        features.add(feature);
+                    }
+                }
+                featureMap.put(mofClass, features);
+            }
+            return features;
+        }
+    }
+
+    private static boolean isEncoded(StructuralFeature feature)
+    {
+        if (!feature.isChangeable()) {
+            return false;
+        }
+        if (feature instanceof Attribute) {
+            return !((Attribute) feature).isDerived();
+        }
+        if (feature instanceof Reference) {
+            AssociationEnd end = ((Reference) feature).getReferencedEnd();
+            return !((Association) end.getContainer()).isDerived();
+        }
+        return false;
+    }
+
+    private static boolean isMultiValued(StructuralFeature feature)
+    {
+        return feature.getMultiplicity().getUpper() != 1;
+    }
+
+    private static Map<String, RefClass> getClassMap(RefPackage extent)
+    {
+        synchronized (extentMap) {
+            Map<String, RefClass> classMap = extentMap.get(extent);
+            if (classMap == null) {
+                classMap = new HashMap<String, RefClass>();
+                addClasses(extent, classMap);
+                extentMap.put(extent, classMap);
+            }
+            return classMap;
+        }
+    }
+
+    private static void addClasses(
+        RefPackage refPackage,
+        Map<String, RefClass> classMap)
+    {
+        for (Object obj : refPackage.refAllClasses()) {
+            RefClass refClass = (RefClass) obj;
+            classMap.put(refClass.refMetaObject().refMofId(), refClass);
+        }
+        for (Object obj : refPackage.refAllPackages()) {
+            addClasses((RefPackage) obj, classMap);
+        }
+    }
+
+    private static void writeVarLong(DataOutputStream out, long n)
+        throws IOException
+    {
+        while ((n & ~0x7FL) != 0) {
+            out.writeByte((int) ((n & 0x7F) | 0x80));
+            n >>>= 7;
+        }
+        out.writeByte((int) n);
+    }
+
+    private static long readVarLong(DataInputStream in)
+        throws IOException
+    {
+        long n = 0;
+        for (int shift = 0;; shift += 7) {
+            int b = in.readUnsignedByte();
+            n |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return n;
+            }
+        }
+    }
+
+    private static int readCount(DataInputStream in)
+        throws IOException
+    {
+        return (int) readVarLong(in);
+    }
+
+    private static void writeString(DataOutputStream out, String s)
+        throws IOException
+    {
+        byte [] bytes = s.getBytes("UTF-8");
+        writeVarLong(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in)
+        throws IOException
+    {
+        byte [] bytes = new byte[readCount(in)];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    //~ Inner Classes ----------------------------------------------------------
+
+    /**
+     * Encodes one tree. Objects are numbered in the order they are reached,
+     * starting with the root, and each object's record is written as soon as
+     * the previous one is finished. The tables of classes and enumeration
+     * literals, which grow as records are written, precede the records in the
+     * result.
+     */
+    private static class Encoder
+    {
+        private final RefObject root;
+
+        private final List<RefObject> objects = new ArrayList<RefObject>();
+
+        private final Map<RefObject, Integer> objectIds =
+            new HashMap<RefObject, Integer>();
+
+        private final List<RefClass> classes = new ArrayList<RefClass>();
+
+        private final List<List<StructuralFeature>> classFeatures =
+            new ArrayList<List<StructuralFeature>>();
+
+        private final Map<RefClass, Integer> classIds =
+            new HashMap<RefClass, Integer>();
+
+        private final List<RefEnum> enums = new ArrayList<RefEnum>();
+
+        private final Map<RefEnum, Integer> enumIds =
+            new HashMap<RefEnum, Integer>();
+
+        private final ByteArrayOutputStream bodyBytes =
+            new ByteArrayOutputStream();
+
+        private final DataOutputStream body = new DataOutputStream(bodyBytes);
+
+        Encoder(RefObject root)
+        {
+            this.root = root;
+        }
+
+        byte [] encode()
+            throws IOException
+        {
+            getObjectId(root);
+            for (int i = 0; i < objects.size(); ++i) {
+                RefObject obj = objects.get(i);
+                int classId = getClassId(obj.refClass());
+                writeVarLong(body, classId);
+                for (StructuralFeature feature : classFeatures.get(classId)) {
+                    if (!writeValue(obj.refGetValue(feature))) {
+                        return null;
+                    }
+                }
+            }
+            body.flush();
+
+            ByteArrayOutputStream bytes =
+                new ByteArrayOutputStream(bodyBytes.size() + 1024);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(MAGIC);
+            writeVarLong(out, classes.size());
+            for (RefClass refClass : classes) {
+                writeString(out, refClass.refMetaObject().refMofId());
+            }
+            writeVarLong(out, enums.size());
+            for (RefEnum refEnum : enums) {
+                writeString(out, refEnum.getClass().getName());
+                writeString(out, refEnum.toString());
+            }
+            writeVarLong(out, objects.size());
+            bodyBytes.writeTo(out);
+            out.flush();
+            return bytes.toByteArray();
+        }
+
+        private boolean writeValue(Object value)
+            throws IOException
+        {
+            if (value == null) {
+                body.writeByte(NULL_VALUE);
+            } else if (value instanceof Boolean) {
+                body.writeByte(
+                    ((Boolean) value).booleanValue() ? TRUE_VALUE
+                    : FALSE_VALUE);
+            } else if (value instanceof Integer) {
+                // zig-zag, so that small negative values are short too
+                int n = ((Integer) value).intValue();
+                body.writeByte(INT_VALUE);
+                writeVarLong(body, ((n << 1) ^ (n >> 31)) & 0xFFFFFFFFL);
+            } else if (value instanceof Long) {
+                body.writeByte(LONG_VALUE);
+                body.writeLong(((Long) value).longValue());
+            } else if (value instanceof Float) {
+                body.writeByte(FLOAT_VALUE);
+                body.writeFloat(((Float) value).floatValue());
+            } else if (value instanceof Double) {
+                body.writeByte(DOUBLE_VALUE);
+                body.writeDouble(((Double) value).doubleValue());
+            } else if (value instanceof String) {
+                body.writeByte(STRING_VALUE);
+                writeString(body, (String) value);
+            } else if (value instanceof RefEnum) {
+                Integer enumId = getEnumId((RefEnum) value);
+                if (enumId == null) {
+                    return false;
+                }
+                body.writeByte(ENUM_VALUE);
+                writeVarLong(body, enumId);
+            } else if (value instanceof RefObject) {
+                Integer objectId = getObjectId((RefObject) value);
+                if (objectId == null) {
+                    return false;
+                }
+                body.writeByte(OBJECT_VALUE);
+                writeVarLong(body, objectId);
+            } else if (value instanceof Collection) {
+                Collection<?> collection = (Collection<?>) value;
+                body.writeByte(LIST_VALUE);
+                writeVarLong(body, collection.size());
+                for (Object element : collection) {
+                    if ((element instanceof Collection)
+                        || !writeValue(element))
+                    {
+                        return false;
+                    }
+                }
+            } else {
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * Returns the number of an object in the tree, numbering it if it has
+         * not been reached before, or null if it is not in the tree.
+         */
+        private Integer getObjectId(RefObject obj)
+        {
+            Integer objectId = objectIds.get(obj);
+            if (objectId == null) {
+                RefFeatured container = obj;
+                while (!root.equals(container)) {
+                    if (!(container instanceof RefObject)) {
+                        return null;
+                    }
+                    container = ((RefObject) container).refImmediateComposite();
+                }
+                objectId = objects.size();
+                objects.add(obj);
+                objectIds.put(obj, objectId);
+            }
+            return objectId;
+        }
+
+        private int getClassId(RefClass refClass)
+        {
+            Integer classId = classIds.get(refClass);
+            if (classId == null) {
+                classId = classes.size();
+                classes.add(refClass);
+                classFeatures.add(getFeatures(refClass));
+                classIds.put(refClass, classId);
+            }
+            return classId;
+        }
+
+        /**
+         * Returns the number of an enumeration literal, or null if the
+         * literal's class cannot look it up by name.
+         */
+        private Integer getEnumId(RefEnum refEnum)
+        {
+            Integer enumId = enumIds.get(refEnum);
+            if (enumId == null) {
+                try {
+                    refEnum.getClass().getMethod("forName", String.class);
+                } catch (NoSuchMethodException ex) {
+                    return null;
+                }
+                enumId = enums.size();
+                enums.add(refEnum);
+                enumIds.put(refEnum, enumId);
+            }
+            return enumId;
+        }
+    }
+
+    /**
+     * Decodes one tree. References are resolved once all objects have been
+     * created: first multi-valued ones, in order, then single-valued ones,
+     * skipping links which have already been created from the other end.
+     */
+    private static class Decoder
+    {
+        private final RefPackage extent;
+
+        private final DataInputStream in;
+
+        private RefEnum [] enums;
+
+        private final List<Link> multiLinks = new ArrayList<Link>();
+
+        private final List<Link> singleLinks = new ArrayList<Link>();
+
+        Decoder(RefPackage extent, byte [] bytes)
+        {
+            this.extent = extent;
+            this.in = new DataInputStream(new ByteArrayInputStream(bytes));
+        }
+
+        RefObject decode()
+            throws IOException
+        {
+            if (in.readInt() != MAGIC) {
+                throw Util.newInternal("not an encoded JMI object tree");
+            }
+
+            Map<String, RefClass> classMap = getClassMap(extent);
+            RefClass [] classes = new RefClass[readCount(in)];
+            List<List<StructuralFeature>> classFeatures =
+                new ArrayList<List<StructuralFeature>>();
+            for (int i = 0; i < classes.length; ++i) {
+                String mofId = readString(in);
+                classes[i] = classMap.get(mofId);
+                if (classes[i] == null) {
+                    throw Util.newInternal(
+                        "metaclass " + mofId + " has no instances in extent "
+                        + extent.refMofId());
+                }
+                classFeatures.add(getFeatures(classes[i]));
+            }
+
+            enums = new RefEnum[readCount(in)];
+            for (int i = 0; i < enums.length; ++i) {
+                enums[i] = resolveEnum(readString(in), readString(in));
+            }
+
+            RefObject [] objects = new RefObject[readCount(in)];
+            for (int i = 0; i < objects.length; ++i) {
+                int classId = readCount(in);
+                RefObject obj =
+                    classes[classId].refCreateInstance(Collections.EMPTY_LIST);
+                objects[i] = obj;
+                for (StructuralFeature feature : classFeatures.get(classId)) {
+                    setValue(obj, feature, readValue());
+                }
+            }
+
+            for (Link link : multiLinks) {
+                Collection<Object> collection =
+                    (Collection<Object>) link.obj.refGetValue(link.feature);
+                for (Object element : (List<?>) link.value) {
+                    RefObject target = objects[((ObjectRef) element).id];
+                    if (!collection.contains(target)) {
+                        collection.add(target);
+                    }
+                }
+            }
+            for (Link link : singleLinks) {
+                RefObject target = objects[((ObjectRef) link.value).id];
+                if (!target.equals(link.obj.refGetValue(link.feature))) {
+                    link.obj.refSetValue(link.feature, target);
+                }
+            }
+            return objects[0];
+        }
+
+        private void setValue(
+            RefObject obj,
+            StructuralFeature feature,
+            Object value)
+        {
+            if (value == null) {
+                return;
+            }
+            if (value instanceof ObjectRef) {
+                singleLinks.add(new Link(obj, feature, value));
+            } else if (!isMultiValued(feature)) {
+                obj.refSetValue(feature, value);
+            } else {
+                List<?> list = (List<?>) value;
+                if (list.isEmpty()) {
+                    return;
+                }
+                if (list.get(0) instanceof ObjectRef) {
+                    multiLinks.add(new Link(obj, feature, value));
+                } else {
+                    ((Collection<Object>) obj.refGetValue(feature)).addAll(
+                        list);
+                }
+            }
+        }
+
+        private Object readValue()
+            throws IOException
+        {
+            byte tag = in.readByte();
+            switch (tag) {
+            case NULL_VALUE:
+                return null;
+            case FALSE_VALUE:
+                return Boolean.FALSE;
+            case TRUE_VALUE:
+                return Boolean.TRUE;
+            case INT_VALUE:
+                int n = (int) readVarLong(in);
+                return (n >>> 1) ^ -(n & 1);
+            case LONG_VALUE:
+                return in.readLong();
+            case FLOAT_VALUE:
+                return in.readFloat();
+            case DOUBLE_VALUE:
+                return in.readDouble();
+            case STRING_VALUE:
+                return readString(in);
+            case ENUM_VALUE:
+                return enums[readCount(in)];
+            case OBJECT_VALUE:
+                return new ObjectRef(readCount(in));
+            case LIST_VALUE:
+                int size = readCount(in);
+                List<Object> list = new ArrayList<Object>(size);
+                for (int i = 0; i < size; ++i) {
+                    list.add(readValue());
+                }
+                return list;
+            default:
+                throw Util.newInternal("unknown value tag " + tag);
+            }
+        }
+
+        private RefEnum resolveEnum(String className, String literal)
+        {
+            try {
+                Class<?> enumClass =
+                    Class.forName(
+                        className,
+                        true,
+                        extent.getClass().getClassLoader());
+                return (RefEnum) enumClass.getMethod("forName", String.class)
+                    .invoke(null, literal);
+            } catch (Exception ex) {
+                throw Util.newInternal(
+                    ex,
+                    "cannot resolve enumeration literal " + className + "."
+                    + literal);
+            }
+        }
+    }
+
+    /**
+     * Reference to an object by its number within the encoded tree.
+     */
+    private static class ObjectRef
+    {
+        final int id;
+
+        ObjectRef(int id)
+        {
+            this.id = id;
+        }
+    }
+
+    /**
+     * Reference or object-valued attribute to be set once all objects exist.
+     */
+    private static class Link
+    {
+        final RefObject obj;
+
+        final StructuralFeature feature;
+
+        final Object value;
+
+        Link(RefObject obj, StructuralFeature feature, Object value)
+        {
+            this.obj = obj;
+            this.feature = feature;
+            this.value = value;
+        }
+    }
+}
+
+// End JmiBinaryCodec.java
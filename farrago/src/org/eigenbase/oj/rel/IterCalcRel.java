@@ -125,6 +125,16 @@ public class IterCalcRel
         return tempDigest;
     }
 
+    protected RelDigest computeStructuralDigest()
+    {
+        RelDigest digest = super.computeStructuralDigest();
+        if (tag != null) {
+            // calcs which differ only in logger type are not equivalent
+            digest = digest.plus("type", tag);
+        }
+        return digest;
+    }
+
     public double getRows()
     {
         return FilterRel.estimateFilteredRows(
@@ -833,6 +833,7 @@ public abstract class OJPreparingStmt
         boolean writeJavaFile = shouldAlwaysWriteJavaFile();
         javaCompiler.getArgs().setDestdir(javaRoot.getAbsolutePath());
         javaCompiler.getArgs().setFullClassName(fullClassName);
+        javaCompiler.getArgs().setTimingTracer(timingTracer);
         if (javaCompiler.getArgs().supportsSetSource()) {
             javaCompiler.getArgs().setSource(
                 source,
@@ -52,7 +52,8 @@ public abstract class AbstractRelNode
     //~ Instance fields --------------------------------------------------------
 
     /**
-     * Description, consists of id plus digest.
+     * Description, consists of id plus digest. Null if it needs to be
+     * recomputed, along with {@link #digest}.
      */
     private String desc;
 
@@ -65,13 +66,19 @@ public abstract class AbstractRelNode
      * A short description of this relational expression's type, inputs, and
      * other properties. The string uniquely identifies the node; another node
      * is equivalent if and only if it has the same value. Computed by {@link
-     * #computeDigest}, assigned by {@link #onRegister}, returned by {@link
-     * #getDigest()}.
+     * #computeDigest} when first needed after {@link #recomputeDigest},
+     * returned by {@link #getDigest()}.
      *
      * @see #desc
      */
     protected String digest;
 
+    /**
+     * Structural form of {@link #digest}, which planners use to recognize
+     * equivalent expressions. Computed by {@link #recomputeDigest}.
+     */
+    private RelDigest structuralDigest;
+
     private RelOptCluster cluster;
 
     /**
@@ -347,7 +354,17 @@ public abstract class AbstractRelNode
         recomputeDigest();
     }
 
-    public String recomputeDigest()
+    public void recomputeDigest()
+    {
+        // Both digests are built when they are first asked for. The string
+        // digest is only needed for tracing and explaining, and is expensive
+        // to build.
+        this.structuralDigest = null;
+        this.desc = null;
+        this.digest = null;
+    }
+
+    private void computeDescription()
     {
         String tempDigest = computeDigest();
         assert tempDigest != null : "post: return != null";
@@ -357,7 +374,6 @@ public abstract class AbstractRelNode
         // of memory.
         this.desc = prefix + tempDigest;
         this.digest = this.desc.substring(prefix.length());
-        return this.digest;
     }
 
     public void registerCorrelVariable(String correlVariable)
@@ -376,24 +392,52 @@ public abstract class AbstractRelNode
 
     public String toString()
     {
-        return desc;
+        return getDescription();
     }
 
     public final String getDescription()
     {
+        if (desc == null) {
+            computeDescription();
+        }
         return desc;
     }
 
     public final String getDigest()
     {
+        if (digest == null) {
+            computeDescription();
+        }
         return digest;
     }
 
+    public final RelDigest getStructuralDigest()
+    {
+        if (structuralDigest == null) {
+            structuralDigest = computeStructuralDigest();
+        }
+        return structuralDigest;
+    }
+
     public RelOptTable getTable()
     {
         return null;
     }
 
+    /**
+     * Computes the structural digest. Does not modify this object.
+     *
+     * <p>The default implementation collects the attributes which this
+     * expression explains, so it agrees with the default {@link
+     * #computeDigest}. A subclass which overrides {@link #computeDigest} to
+     * add attributes must override this method to add them too (see {@link
+     * RelDigest#plus}).
+     */
+    protected RelDigest computeStructuralDigest()
+    {
+        return RelDigest.of(this);
+    }
+
     /**
      * Computes the digest. Does not modify this object.
      *
@@ -255,9 +255,11 @@ public interface RelNode
     public void onRegister(RelOptPlanner planner);
 
     /**
-     * Computes the digest, assigns it, and returns it. For planner use only.
+     * Recomputes the digest, after the inputs have changed. For planner use
+     * only. The structural digest is computed immediately; the string digest
+     * is computed when next asked for.
      */
-    public String recomputeDigest();
+    public void recomputeDigest();
 
     /**
      * Registers a correlation variable.
@@ -333,6 +335,14 @@ public interface RelNode
      */
     String getDigest();
 
+    /**
+     * Returns the structural form of the digest, which a planner can hash and
+     * compare much more cheaply than the string digest. Two relational
+     * expressions whose inputs are the same objects have equal structural
+     * digests if and only if they have equal digests.
+     */
+    RelDigest getStructuralDigest();
+
     /**
      * Returns a string which describes the relational expression and, unlike
      * {@link #getDigest()}, also includes the identity. Typically returns
@@ -37,7 +37,14 @@ public class CachingRelMetadataProvider
 {
     //~ Instance fields --------------------------------------------------------
 
-    private final Map<List, CacheEntry> cache;
+    private final Map<CacheKey, CacheEntry> cache;
+
+    /**
+     * Key used to probe the cache, so that lookups which hit do not allocate.
+     * Safe because a provider is used by one planner (and thread) at a time;
+     * it must not be used again after a recursive metadata request.
+     */
+    private final CacheKey probeKey;
 
     private final RelMetadataProvider underlyingProvider;
 
@@ -52,7 +59,8 @@ public class CachingRelMetadataProvider
         this.underlyingProvider = underlyingProvider;
         this.planner = planner;
 
-        cache = new HashMap<List, CacheEntry>();
+        cache = new HashMap<CacheKey, CacheEntry>();
+        probeKey = new CacheKey();
     }
 
     //~ Methods ----------------------------------------------------------------
@@ -66,21 +74,11 @@ public class CachingRelMetadataProvider
         // TODO jvs 30-Mar-2006: Use meta-metadata to decide which metadata
         // query results can stay fresh until the next Ice Age.
 
-        // Compute hash key.
-        List<Object> hashKey;
-        if (args != null) {
-            hashKey = new ArrayList<Object>(args.length + 2);
-            hashKey.add(rel);
-            hashKey.add(metadataQueryName);
-            hashKey.addAll(Arrays.asList(args));
-        } else {
-            hashKey = Arrays.asList(rel, metadataQueryName);
-        }
-
         long timestamp = planner.getRelMetadataTimestamp(rel);
 
         // Perform cache lookup.
-        CacheEntry entry = cache.get(hashKey);
+        probeKey.set(rel, metadataQueryName, args);
+        CacheEntry entry = cache.get(probeKey);
         if (entry != null) {
             if (timestamp == entry.timestamp) {
                 return entry.result;
@@ -99,7 +97,9 @@ public class CachingRelMetadataProvider
             entry = new CacheEntry();
             entry.timestamp = timestamp;
             entry.result = result;
-            cache.put(hashKey, entry);
+            CacheKey key = new CacheKey();
+            key.set(rel, metadataQueryName, args);
+            cache.put(key, entry);
         }
         return result;
     }
@@ -112,6 +112,64 @@ public class CachingRelMetadataProvider
 
         Object result;
     }
+
+    /**
+     * Key of a cached metadata result: the relational expression, the query
+     * name, and the query's arguments.
+     */
+    private static class CacheKey
+    {
+        RelNode rel;
+
+        String metadataQueryName;
+
+        Object [] args;
+
+        int hash;
+
+        void set(RelNode rel, String metadataQueryName, Object [] args)
+        {
+            this.rel = rel;
+            this.metadataQueryName = metadataQueryName;
+            this.args = args;
+            int h = rel.hashCode();
+            h = (31 * h) + metadataQueryName.hashCode();
+            if ((args != null) && (args.length > 0)) {
+                h = (31 * h) + Arrays.hashCode(args);
+            }
+            this.hash = h;
+        }
+
+        public int hashCode()
+        {
+            return hash;
+        }
+
+        public boolean equals(Object obj)
+        {
+            if (!(obj instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey that = (CacheKey) obj;
+            return (hash == that.hash)
+                && rel.equals(that.rel)
+                && metadataQueryName.equals(that.metadataQueryName)
+                && argsEqual(args, that.args);
+        }
+
+        /**
+         * Compares argument arrays, treating null as empty, as the list key
+         * this replaced did.
+         */
+        private static boolean argsEqual(Object [] args1, Object [] args2)
+        {
+            if ((args1 == null) || (args2 == null)) {
+                return ((args1 == null) || (args1.length == 0))
+                    && ((args2 == null) || (args2.length == 0));
+            }
+            return Arrays.equals(args1, args2);
+        }
+    }
 }
 
 // End CachingRelMetadataProvider.java
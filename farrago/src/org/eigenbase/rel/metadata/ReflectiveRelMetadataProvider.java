@@ -31,6 +31,11 @@ import org.eigenbase.util.*;
  * implementations of the {@link RelMetadataProvider} interface. For an example,
  * see {@link DefaultRelMetadataProvider}.
  *
+ * <p>Each metadata query is dispatched to the public method of the same name
+ * whose first parameter is the most specific supertype of the relational
+ * expression's class. The method found for each class is called through a
+ * {@link RelMetadataHandler}.
+ *
  * <p>TODO jvs 28-Mar-2006: most of this should probably be refactored into
  * ReflectUtil.
  *
@@ -48,6 +53,13 @@ public abstract class ReflectiveRelMetadataProvider
     private final ReflectiveVisitDispatcher<ReflectiveRelMetadataProvider,
         RelNode> visitDispatcher;
 
+    /**
+     * Handlers by metadata query name and relational expression class.
+     */
+    private final Map<String, Map<Class, RelMetadataHandler>> handlerMap;
+
+    private final boolean compileHandlers;
+
     //~ Constructors -----------------------------------------------------------
 
     /**
@@ -60,6 +72,9 @@ public abstract class ReflectiveRelMetadataProvider
             ReflectUtil.createDispatcher(
                 ReflectiveRelMetadataProvider.class,
                 RelNode.class);
+        handlerMap = new HashMap<String, Map<Class, RelMetadataHandler>>();
+        compileHandlers =
+            SaffronProperties.instance().metadataCompileHandlers.get();
     }
 
     //~ Methods ----------------------------------------------------------------
@@ -83,6 +98,25 @@ public abstract class ReflectiveRelMetadataProvider
         RelNode rel,
         String metadataQueryName,
         Object [] args)
+    {
+        // Two map lookups with no allocation, once the handler is known.
+        Map<Class, RelMetadataHandler> handlers =
+            handlerMap.get(metadataQueryName);
+        if (handlers == null) {
+            handlers = new HashMap<Class, RelMetadataHandler>();
+            handlerMap.put(metadataQueryName, handlers);
+        }
+        RelMetadataHandler handler = handlers.get(rel.getClass());
+        if (handler == null) {
+            handler = lookupHandler(rel.getClass(), metadataQueryName);
+            handlers.put(rel.getClass(), handler);
+        }
+        return handler.invoke(this, rel, args);
+    }
+
+    private RelMetadataHandler lookupHandler(
+        Class<? extends RelNode> relClass,
+        String metadataQueryName)
     {
         List<Class> parameterTypes = parameterTypeMap.get(metadataQueryName);
         if (parameterTypes == null) {
@@ -91,34 +125,17 @@ public abstract class ReflectiveRelMetadataProvider
         Method method =
             visitDispatcher.lookupVisitMethod(
                 getClass(),
-                rel.getClass(),
+                relClass,
                 metadataQueryName,
                 parameterTypes);
 
         if (method == null) {
-            return null;
+            return RelMetadataHandler.NONE;
         }
-
-        Object [] allArgs;
-        if (args != null) {
-            allArgs = new Object[args.length + 1];
-            allArgs[0] = rel;
-            System.arraycopy(args, 0, allArgs, 1, args.length);
+        if (compileHandlers) {
+            return RelMetadataHandler.forMethod(method);
         } else {
-            allArgs = new Object[] { rel };
-        }
-
-        try {
-            return method.invoke(this, allArgs);
-        } catch (Throwable ex) {
-            // TODO jvs 28-Mar-2006:  share code with ReflectUtil
-            if (ex instanceof RuntimeException) {
-                throw (RuntimeException) ex;
-            } else if (ex instanceof Error) {
-                throw (Error) ex;
-            } else {
-                throw Util.newInternal(ex);
-            }
+            return RelMetadataHandler.reflective(method);
         }
     }
 }
@@ -0,0 +1,322 @@
+/*
+// Licensed to DynamoBI Corporation (DynamoBI) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  DynamoBI licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+
+//   http://www.apache.org/licenses/LICENSE-2.0
+
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+*/
+package org.eigenbase.rel.metadata;
+
+import java.io.*;
+
+import java.lang.reflect.*;
+
+import java.util.*;
+import java.util.concurrent.atomic.*;
+import java.util.logging.*;
+
+import org.codehaus.janino.*;
+
+import org.eigenbase.rel.*;
+import org.eigenbase.trace.*;
+import org.eigenbase.util.*;
+
+
+/**
+ * RelMetadataHandler calls one metadata method of a {@link
+ * ReflectiveRelMetadataProvider}, for the relational expression classes which
+ * dispatch to it.
+ *
+ * <p>Handlers created by {@link #forMethod} are compiled, using Janino, into a
+ * class which casts its arguments and calls the method directly, so that a
+ * metadata request costs neither a <code>Method.invoke</code> nor a copy of
+ * its arguments. Each method is compiled once per JVM. Methods which the
+ * generated code cannot see (of a non-public class, say) are called
+ * reflectively; so are all methods of providers created while {@link
+ * SaffronProperties#metadataCompileHandlers} is false, which use {@link
+ * #reflective}.
+ *
+ * @version $Id$
+ */
+public abstract class RelMetadataHandler
+{
+    //~ Static fields/initializers ---------------------------------------------
+
+    private static final Logger tracer = EigenbaseTrace.getPlannerTracer();
+
+    /**
+     * Handler for a relational expression class and metadata query which no
+     * method matches; always returns null.
+     */
+    public static final RelMetadataHandler NONE =
+        new RelMetadataHandler() {
+            public Object invoke(
+                ReflectiveRelMetadataProvider provider,
+                RelNode rel,
+                Object [] args)
+            {
+                return null;
+            }
+        };
+
+    private static final Map<Method, RelMetadataHandler> handlers =
+        new HashMap<Method, RelMetadataHandler>();
+
+    private static final AtomicInteger nextId = new AtomicInteger();
+
+    //~ Constructors -----------------------------------------------------------
+
+    protected RelMetadataHandler()
+    {
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * Calls the metadata method.
+     *
+     * @param provider provider declaring the method
+     * @param rel relational expression of interest
+     * @param args additional arguments to the method, or null if none
+     *
+     * @return metadata result, or null
+     */
+    public abstract Object invoke(
+        ReflectiveRelMetadataProvider provider,
+        RelNode rel,
+        Object [] args);
+
+    /**
+     * Returns the handler for a metadata method, creating it on first use.
+     *
+     * @param method metadata method, whose first parameter is the relational
+     * expression
+     *
+     * @return handler
+     */
+    public static RelMetadataHandler forMethod(Method method)
+    {
+        synchronized (handlers) {
+            RelMetadataHandler handler = handlers.get(method);
+            if (handler == null) {
+                handler = createHandler(method);
+                handlers.put(method, handler);
+            }
+            return handler;
+        }
+    }
+
+    /**
+     * Returns a handler which calls a metadata method via reflection.
+     *
+     * @param method metadata method, whose first parameter is the relational
+     * expression
+     *
+     * @return handler
+     */
+    public static RelMetadataHandler reflective(Method method)
+    {
+        return new ReflectiveHandler(method);
+    }
+
+    private static RelMetadataHandler createHandler(Method method)
+    {
+        if (isVisible(method)) {
+            try {
+                return compileHandler(method);
+            } catch (Exception ex) {
+                tracer.log(
+                    Level.FINE,
+                    "could not compile metadata handler for " + method
+                    + "; using reflection",
+                    ex);
+            }
+        }
+        return new ReflectiveHandler(method);
+    }
+
+    /**
+     * Returns whether generated code can call a method and name its types.
+     */
+    private static boolean isVisible(Method method)
+    {
+        if (!Modifier.isPublic(method.getModifiers())
+            || !isVisible(method.getDeclaringClass())
+            || !isVisible(method.getReturnType()))
+        {
+            return false;
+        }
+        for (Class<?> paramType : method.getParameterTypes()) {
+            if (!isVisible(paramType)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isVisible(Class<?> clazz)
+    {
+        while (clazz.isArray()) {
+            clazz = clazz.getComponentType();
+        }
+        if (clazz.isPrimitive()) {
+            return true;
+        }
+        for (Class<?> c = clazz; c != null; c = c.getDeclaringClass()) {
+            if (!Modifier.isPublic(c.getModifiers())) {
+                return false;
+            }
+        }
+
+        // local and anonymous classes have no canonical name
+        return clazz.getCanonicalName() != null;
+    }
+
+    private static RelMetadataHandler compileHandler(Method method)
+        throws Exception
+    {
+        String className = "RelMetadataHandler_" + nextId.getAndIncrement();
+        String source = generateSource(className, method);
+        if (tracer.isLoggable(Level.FINEST)) {
+            tracer.finest(
+                "metadata handler for " + method + ":" + Util.lineSeparator
+                + source);
+        }
+        SimpleCompiler compiler = new SimpleCompiler();
+        compiler.setParentClassLoader(
+            method.getDeclaringClass().getClassLoader());
+        compiler.cook(new StringReader(source));
+        Class<?> clazz = compiler.getClassLoader().loadClass(className);
+        return (RelMetadataHandler) clazz.newInstance();
+    }
+
+    /**
+     * Generates a handler class which calls a method directly. For example,
+     * for <code>RelMdRowCount.getRowCount(FilterRelBase)</code>, the body of
+     * <code>invoke</code> is
+     *
+     * <blockquote>
+     * <pre>return ((RelMdRowCount) provider).getRowCount(
+     *     (FilterRelBase) rel);</pre>
+     * </blockquote>
+     *
+     * Janino does not box and unbox automatically, so the generated code does
+     * it explicitly.
+     */
+    private static String generateSource(String className, Method method)
+    {
+        String handlerClass = RelMetadataHandler.class.getName();
+        String providerClass =
+            ReflectiveRelMetadataProvider.class.getName();
+        Class<?> [] paramTypes = method.getParameterTypes();
+
+        StringBuilder call = new StringBuilder();
+        call.append("((")
+        .append(method.getDeclaringClass().getCanonicalName())
+        .append(") provider).")
+        .append(method.getName())
+        .append("((")
+        .append(paramTypes[0].getCanonicalName())
+        .append(") rel");
+        for (int i = 1; i < paramTypes.length; i++) {
+            String arg = "args[" + (i - 1) + "]";
+            call.append(", ");
+            if (paramTypes[i].isPrimitive()) {
+                call.append("((")
+                .append(ReflectUtil.getBoxingClass(paramTypes[i]).getName())
+                .append(") ")
+                .append(arg)
+                .append(").")
+                .append(paramTypes[i].getName())
+                .append("Value()");
+            } else {
+                call.append("(")
+                .append(paramTypes[i].getCanonicalName())
+                .append(") ")
+                .append(arg);
+            }
+        }
+        call.append(")");
+
+        Class<?> returnType = method.getReturnType();
+        String body;
+        if (returnType == Void.TYPE) {
+            body = call + "; return null;";
+        } else if (returnType.isPrimitive()) {
+            body =
+                "return "
+                + ReflectUtil.getBoxingClass(returnType).getName()
+                + ".valueOf(" + call + ");";
+        } else {
+            body = "return " + call + ";";
+        }
+
+        return "public final class " + className
+            + " extends " + handlerClass + " {\n"
+            + "    public Object invoke(\n"
+            + "        " + providerClass + " provider,\n"
+            + "        " + RelNode.class.getName() + " rel,\n"
+            + "        Object[] args)\n"
+            + "    {\n"
+            + "        " + body + "\n"
+            + "    }\n"
+            + "}\n";
+    }
+
+    //~ Inner Classes ----------------------------------------------------------
+
+    /**
+     * Handler which calls its method via reflection.
+     */
+    private static class ReflectiveHandler
+        extends RelMetadataHandler
+    {
+        private final Method method;
+
+        ReflectiveHandler(Method method)
+        {
+            this.method = method;
+        }
+
+        public Object invoke(
+            ReflectiveRelMetadataProvider provider,
+            RelNode rel,
+            Object [] args)
+        {
+            Object [] allArgs;
+            if (args != null) {
+                allArgs = new Object[args.length + 1];
+                allArgs[0] = rel;
+                System.arraycopy(args, 0, allArgs, 1, args.length);
+            } else {
+                allArgs = new Object[] { rel };
+            }
+
+            try {
+                return method.invoke(provider, allArgs);
+            } catch (Throwable ex) {
+                // TODO jvs 28-Mar-2006:  share code with ReflectUtil
+                if (ex instanceof RuntimeException) {
+                    throw (RuntimeException) ex;
+                } else if (ex instanceof Error) {
+                    throw (Error) ex;
+                } else {
+                    throw Util.newInternal(ex);
+                }
+            }
+        }
+    }
+}
+
+// End RelMetadataHandler.java
@@ -137,7 +137,20 @@ public class PushAggregateThroughUnionRule extends RelOptRule
         call.transformTo(castRel);
     }
 
-    private List<AggregateCall> transformAggCalls(
+    /**
+     * Transforms the calls of an aggregate into the calls which combine the
+     * results of the same aggregate applied to each of several inputs: SUM
+     * of COUNTs, MIN of MINs, and so on.
+     *
+     * @param typeFactory type factory
+     * @param nGroupCols number of grouping columns
+     * @param origCalls original aggregate calls
+     *
+     * @return combining calls, each referencing the corresponding output
+     * field of the partial aggregates, or null if some call (such as AVG or
+     * an aggregate of DISTINCT values) cannot be combined this way
+     */
+    public static List<AggregateCall> transformAggCalls(
         RelDataTypeFactory typeFactory,
         int nGroupCols,
         List<AggregateCall> origCalls)
@@ -60,6 +60,8 @@ public abstract class AbstractRelOptPlanner
 
     private CancelFlag cancelFlag;
 
+    private RelOptPlanningBudget planningBudget;
+
     //~ Constructors -----------------------------------------------------------
 
     /**
@@ -72,6 +74,7 @@ public abstract class AbstractRelOptPlanner
         // In case no one calls setCancelFlag, set up a
         // dummy here.
         cancelFlag = new CancelFlag();
+        planningBudget = new RelOptPlanningBudget();
     }
 
     //~ Methods ----------------------------------------------------------------
@@ -93,6 +96,18 @@ public abstract class AbstractRelOptPlanner
         }
     }
 
+    // implement RelOptPlanner
+    public void setPlanningBudget(RelOptPlanningBudget budget)
+    {
+        this.planningBudget = budget;
+    }
+
+    // implement RelOptPlanner
+    public RelOptPlanningBudget getPlanningBudget()
+    {
+        return planningBudget;
+    }
+
     /**
      * Registers a rule's description.
      *
@@ -269,6 +284,7 @@ public abstract class AbstractRelOptPlanner
         RelOptRuleCall ruleCall)
     {
         checkCancel();
+        planningBudget.ruleCalled();
 
         assert ruleCall.getRule().matches(ruleCall);
         if (isRuleExcluded(ruleCall.getRule())) {
@@ -0,0 +1,281 @@
+/*
+// Licensed to DynamoBI Corporation (DynamoBI) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  DynamoBI licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+
+//   http://www.apache.org/licenses/LICENSE-2.0
+
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+*/
+package org.eigenbase.relopt;
+
+import java.io.*;
+
+import java.util.*;
+
+import org.eigenbase.rel.*;
+import org.eigenbase.rex.*;
+import org.eigenbase.sql.*;
+
+
+/**
+ * RelDigest is the structural identity of a relational expression, which a
+ * planner uses to recognize equivalent expressions. It holds the same
+ * information as the string digest returned by {@link RelNode#getDigest()}
+ * -- the expression's class, traits, inputs, child expressions and explained
+ * values -- but as references rather than text, so it is cheap to build, and
+ * its hash code is computed once.
+ *
+ * <p>Inputs are compared by identity. Within a planner whose expressions'
+ * inputs are canonical (such as the {@link
+ * org.eigenbase.relopt.volcano.RelSubset}s of a {@link
+ * org.eigenbase.relopt.volcano.VolcanoPlanner}), two expressions have equal
+ * digests if and only if their string digests are equal.
+ *
+ * @version $Id$
+ */
+public final class RelDigest
+{
+    //~ Static fields/initializers ---------------------------------------------
+
+    private static final PrintWriter nullWriter =
+        new PrintWriter(
+            new Writer() {
+                public void write(char [] cbuf, int off, int len)
+                {
+                }
+
+                public void flush()
+                {
+                }
+
+                public void close()
+                {
+                }
+            });
+
+    //~ Instance fields --------------------------------------------------------
+
+    private final Class<? extends RelNode> relClass;
+    private final RelTrait [] traits;
+    private final String [] terms;
+    private final Object [] items;
+    private final int hash;
+
+    //~ Constructors -----------------------------------------------------------
+
+    private RelDigest(
+        Class<? extends RelNode> relClass,
+        RelTrait [] traits,
+        String [] terms,
+        Object [] items)
+    {
+        this.relClass = relClass;
+        this.traits = traits;
+        this.terms = terms;
+        this.items = items;
+        int h = relClass.hashCode();
+        h = (31 * h) + Arrays.hashCode(traits);
+        h = (31 * h) + Arrays.hashCode(terms);
+        h = (31 * h) + Arrays.hashCode(items);
+        this.hash = h;
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * Computes the digest of a relational expression, from the terms it
+     * explains at {@link SqlExplainLevel#DIGEST_ATTRIBUTES}.
+     *
+     * @param rel Relational expression
+     *
+     * @return digest
+     */
+    public static RelDigest of(RelNode rel)
+    {
+        RelTraitSet traitSet = rel.getTraits();
+        RelTrait [] traits = new RelTrait[traitSet.size()];
+        for (int i = 0; i < traits.length; i++) {
+            traits[i] = traitSet.getTrait(i);
+        }
+        CapturingWriter writer = new CapturingWriter();
+        rel.explain(writer);
+        return new RelDigest(
+            rel.getClass(),
+            traits,
+            writer.terms.toArray(new String[writer.terms.size()]),
+            writer.items.toArray());
+    }
+
+    /**
+     * Creates a digest which is only equal to the digest of the same
+     * expression, for expressions which are canonical by construction.
+     *
+     * @param rel Relational expression
+     *
+     * @return digest
+     */
+    public static RelDigest ofIdentity(RelNode rel)
+    {
+        return new RelDigest(
+            rel.getClass(),
+            new RelTrait[0],
+            new String[0],
+            new Object[] { rel });
+    }
+
+    /**
+     * Returns a digest which has the terms of this digest followed by one
+     * more. Used by expressions whose string digest has attributes besides
+     * those they explain.
+     *
+     * @param term Name of the attribute
+     * @param value Value of the attribute
+     *
+     * @return digest with the extra attribute
+     */
+    public RelDigest plus(String term, Object value)
+    {
+        String [] newTerms = new String[terms.length + 1];
+        System.arraycopy(terms, 0, newTerms, 0, terms.length);
+        newTerms[terms.length] = term;
+        Object [] newItems = new Object[items.length + 1];
+        System.arraycopy(items, 0, newItems, 0, items.length);
+        newItems[items.length] = normalize(value);
+        return new RelDigest(relClass, traits, newTerms, newItems);
+    }
+
+    public int hashCode()
+    {
+        return hash;
+    }
+
+    public boolean equals(Object obj)
+    {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof RelDigest)) {
+            return false;
+        }
+        RelDigest that = (RelDigest) obj;
+        return (hash == that.hash)
+            && (relClass == that.relClass)
+            && Arrays.equals(traits, that.traits)
+            && Arrays.equals(terms, that.terms)
+            && itemsEqual(items, that.items);
+    }
+
+    private static boolean itemsEqual(Object [] items1, Object [] items2)
+    {
+        if (items1.length != items2.length) {
+            return false;
+        }
+        for (int i = 0; i < items1.length; i++) {
+            Object item1 = items1[i];
+            Object item2 = items2[i];
+            if (item1 == item2) {
+                continue;
+            }
+            if ((item1 instanceof RelNode)
+                || (item1 == null)
+                || !item1.equals(item2))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public String toString()
+    {
+        return relClass.getName() + Arrays.asList(terms) + "="
+            + Arrays.asList(items);
+    }
+
+    /**
+     * Returns a value for a digest, which is equal to another value if and
+     * only if their string representations are equal. Values of common
+     * immutable types stand for themselves; other values are converted to
+     * strings.
+     */
+    private static Object normalize(Object value)
+    {
+        if ((value == null)
+            || (value instanceof String)
+            || (value instanceof Integer)
+            || (value instanceof Long)
+            || (value instanceof Boolean)
+            || (value instanceof Enum))
+        {
+            return value;
+        }
+        return value.toString();
+    }
+
+    //~ Inner Classes ----------------------------------------------------------
+
+    /**
+     * Plan writer which collects the terms an expression explains, instead of
+     * printing them. Inputs are collected as references, child expressions
+     * as their (cached) digests.
+     */
+    private static class CapturingWriter
+        extends RelOptPlanWriter
+    {
+        final List<String> terms = new ArrayList<String>();
+        final List<Object> items = new ArrayList<Object>();
+
+        CapturingWriter()
+        {
+            super(nullWriter, SqlExplainLevel.DIGEST_ATTRIBUTES);
+        }
+
+        public void explain(
+            RelNode rel,
+            String [] terms,
+            Object [] values)
+        {
+            RelNode [] inputs = rel.getInputs();
+            RexNode [] childExps = rel.getChildExps();
+            assert terms.length
+                == (inputs.length + childExps.length + values.length)
+                : "terms.length="
+                + terms.length
+                + " inputs.length=" + inputs.length
+                + " childExps.length=" + childExps.length
+                + " values.length=" + values.length;
+
+            // Rels usually explain themselves once, but keep the calls apart
+            // in case one explains itself more than once.
+            items.add(terms.length);
+            this.terms.addAll(Arrays.asList(terms));
+            items.addAll(Arrays.asList(inputs));
+            for (RexNode childExp : childExps) {
+                items.add(childExp.toString());
+            }
+            for (Object value : values) {
+                items.add(normalize(value));
+            }
+        }
+
+        public void explainSubset(
+            String s,
+            RelNode child)
+        {
+            items.add(s);
+            child.explain(this);
+        }
+    }
+}
+
+// End RelDigest.java
@@ -103,6 +103,21 @@ public interface RelOptPlanner
      */
     public void setCancelFlag(CancelFlag cancelFlag);
 
+    /**
+     * Installs the budget for planning the current statement. When the budget
+     * is exhausted, the planner stops exploring alternatives as soon as it
+     * has a complete plan, and returns the cheapest plan found so far.
+     *
+     * @param budget budget to observe
+     */
+    public void setPlanningBudget(RelOptPlanningBudget budget);
+
+    /**
+     * @return the budget installed by {@link #setPlanningBudget}, or an
+     * unlimited budget if none was installed
+     */
+    public RelOptPlanningBudget getPlanningBudget();
+
     /**
      * Changes a relational expression to an equivalent one with a different set
      * of traits.
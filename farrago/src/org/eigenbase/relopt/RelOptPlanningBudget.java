@@ -0,0 +1,150 @@
+/*
+// Licensed to DynamoBI Corporation (DynamoBI) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  DynamoBI licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+
+//   http://www.apache.org/licenses/LICENSE-2.0
+
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+*/
+package org.eigenbase.relopt;
+
+/**
+ * RelOptPlanningBudget limits the effort a planner spends optimizing a
+ * statement, in elapsed time and in rule calls. Unlike a {@link
+ * org.eigenbase.util.CancelFlag}, an exhausted budget does not abort
+ * planning: planners (and expensive rules) check {@link #isExhausted} at
+ * points where they can stop exploring alternatives and settle for the best
+ * complete plan found so far.
+ *
+ * <p>The clock starts at the first call to {@link #start}, so that time spent
+ * parsing and validating the statement does not count.
+ *
+ * @version $Id$
+ */
+public class RelOptPlanningBudget
+{
+    //~ Instance fields --------------------------------------------------------
+
+    private final long maxMillis;
+    private final long maxRuleCalls;
+    private long startNanos;
+    private boolean started;
+    private long ruleCalls;
+
+    //~ Constructors -----------------------------------------------------------
+
+    /**
+     * Creates an unlimited budget.
+     */
+    public RelOptPlanningBudget()
+    {
+        this(0, 0);
+    }
+
+    /**
+     * Creates a budget.
+     *
+     * @param maxMillis milliseconds of planning allowed, or 0 for no limit
+     * @param maxRuleCalls number of rule calls allowed, or 0 for no limit
+     */
+    public RelOptPlanningBudget(long maxMillis, long maxRuleCalls)
+    {
+        this.maxMillis = maxMillis;
+        this.maxRuleCalls = maxRuleCalls;
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    /**
+     * Starts the clock, unless it is already running.
+     */
+    public void start()
+    {
+        if (!started) {
+            started = true;
+            startNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * Records that a planner has called a rule.
+     */
+    public void ruleCalled()
+    {
+        ++ruleCalls;
+    }
+
+    /**
+     * @return whether this budget limits planning at all
+     */
+    public boolean isLimited()
+    {
+        return (maxMillis > 0) || (maxRuleCalls > 0);
+    }
+
+    /**
+     * @return whether the time or the rule calls allowed have been used up
+     */
+    public boolean isExhausted()
+    {
+        if ((maxRuleCalls > 0) && (ruleCalls >= maxRuleCalls)) {
+            return true;
+        }
+        return (maxMillis > 0) && (getElapsedMillis() >= maxMillis);
+    }
+
+    /**
+     * @return number of rule calls so far
+     */
+    public long getRuleCallCount()
+    {
+        return ruleCalls;
+    }
+
+    /**
+     * @return milliseconds since the clock was started
+     */
+    public long getElapsedMillis()
+    {
+        if (!started) {
+            return 0;
+        }
+        return (System.nanoTime() - startNanos) / 1000000;
+    }
+
+    /**
+     * Describes the effort spent since a previous point, for tracing.
+     *
+     * @param sinceMillis elapsed milliseconds at the previous point
+     * @param sinceRuleCalls rule calls at the previous point
+     *
+     * @return description such as "12 ms, 340 rule calls (total 20 of 1000
+     * ms, 500 of unlimited rule calls)"
+     */
+    public String describeUsage(long sinceMillis, long sinceRuleCalls)
+    {
+        long elapsed = getElapsedMillis();
+        return (elapsed - sinceMillis) + " ms, "
+            + (ruleCalls - sinceRuleCalls) + " rule calls (total "
+            + elapsed + " of " + describeLimit(maxMillis) + " ms, "
+            + ruleCalls + " of " + describeLimit(maxRuleCalls)
+            + " rule calls)";
+    }
+
+    private static String describeLimit(long limit)
+    {
+        return (limit > 0) ? Long.toString(limit) : "unlimited";
+    }
+}
+
+// End RelOptPlanningBudget.java
@@ -42,6 +42,12 @@ abstract class HepInstruction
     // typesafe dispatch via the visitor pattern
     abstract void execute(HepPlanner planner);
 
+    // for tracing
+    public String toString()
+    {
+        return getClass().getSimpleName();
+    }
+
     //~ Inner Classes ----------------------------------------------------------
 
     static class RuleClass<R extends RelOptRule>
@@ -68,6 +74,11 @@ abstract class HepInstruction
         {
             planner.executeInstruction(this);
         }
+
+        public String toString()
+        {
+            return super.toString() + "(" + ruleClass.getSimpleName() + ")";
+        }
     }
 
     static class RuleCollection
@@ -142,6 +153,12 @@ abstract class HepInstruction
         {
             planner.executeInstruction(this);
         }
+
+        public String toString()
+        {
+            return super.toString() + "("
+                + ((rule != null) ? rule.toString() : ruleDescription) + ")";
+        }
     }
 
     static class MatchOrder
@@ -153,6 +153,7 @@ public class HepPlanner
     {
         assert (root != null);
 
+        getPlanningBudget().start();
         executeProgram(mainProgram);
 
         // Get rid of everything except what's in the final plan.
@@ -166,8 +167,16 @@ public class HepPlanner
         HepProgram savedProgram = currentProgram;
         currentProgram = program;
         currentProgram.initialize(program == mainProgram);
+        final RelOptPlanningBudget budget = getPlanningBudget();
         for (HepInstruction instruction : currentProgram.instructions) {
+            final long startMillis = budget.getElapsedMillis();
+            final long startRuleCalls = budget.getRuleCallCount();
             instruction.execute(this);
+            if ((program == mainProgram) && tracer.isLoggable(Level.FINE)) {
+                tracer.fine(
+                    "Instruction " + instruction + " used "
+                    + budget.describeUsage(startMillis, startRuleCalls));
+            }
             int delta = nTransformations - nTransformationsLastGC;
             if (delta > graphSizeLastGC) {
                 // The number of transformations performed since the last
@@ -752,7 +761,8 @@ public class HepPlanner
         // try to find equivalent rel only if DAG is allowed
         if (!noDAG) {
             // Now, check if an equivalent vertex already exists in graph.
-            String digest = rel.recomputeDigest();
+            rel.recomputeDigest();
+            String digest = rel.getDigest();
             HepRelVertex equivVertex = mapDigestToVertex.get(digest);
             if (equivVertex != null) {
                 // Use existing vertex.
@@ -825,7 +835,8 @@ public class HepPlanner
         if (mapDigestToVertex.get(oldDigest) == vertex) {
             mapDigestToVertex.remove(oldDigest);
         }
-        String newDigest = rel.recomputeDigest();
+        rel.recomputeDigest();
+        String newDigest = rel.getDigest();
         if (mapDigestToVertex.get(newDigest) == null) {
             mapDigestToVertex.put(newDigest, vertex);
         } else {
@@ -0,0 +1,162 @@
+/*
+// Licensed to DynamoBI Corporation (DynamoBI) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  DynamoBI licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+
+//   http://www.apache.org/licenses/LICENSE-2.0
+
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+*/
+package org.eigenbase.relopt.volcano;
+
+import junit.framework.*;
+
+import org.eigenbase.oj.rel.*;
+import org.eigenbase.rel.*;
+import org.eigenbase.relopt.*;
+import org.eigenbase.rex.*;
+
+
+/**
+ * Unit test for {@link RelDigest}, checking that structural digests are equal
+ * exactly when the string digests of the expressions are.
+ *
+ * @version $Id$
+ */
+public class RelDigestTest
+    extends TestCase
+{
+    //~ Instance fields --------------------------------------------------------
+
+    private RelOptCluster cluster;
+    private RelNode leaf1;
+    private RelNode leaf2;
+
+    //~ Constructors -----------------------------------------------------------
+
+    public RelDigestTest(String name)
+    {
+        super(name);
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+        cluster = VolcanoPlannerTest.newCluster(new VolcanoPlanner());
+        leaf1 = new OneRowRel(cluster);
+        leaf2 = new OneRowRel(cluster);
+    }
+
+    /**
+     * Tests that expressions with the same class, inputs and attributes have
+     * equal digests.
+     */
+    public void testEqual()
+    {
+        RelNode filter1 = new FilterRel(cluster, leaf1, makeLiteral(true));
+        RelNode filter2 = new FilterRel(cluster, leaf1, makeLiteral(true));
+        assertDigestsEqual(filter1, filter2, true);
+        assertEquals(
+            RelDigest.of(filter1),
+            filter1.getStructuralDigest());
+
+        // leaves without attributes are equivalent to each other
+        assertDigestsEqual(leaf1, leaf2, true);
+    }
+
+    /**
+     * Tests that expressions which differ in an attribute or an input have
+     * different digests.
+     */
+    public void testUnequal()
+    {
+        RelNode filter1 = new FilterRel(cluster, leaf1, makeLiteral(true));
+        RelNode filter2 = new FilterRel(cluster, leaf1, makeLiteral(false));
+        assertDigestsEqual(filter1, filter2, false);
+
+        // inputs are compared by identity
+        RelNode filter3 = new FilterRel(cluster, leaf2, makeLiteral(true));
+        assertFalse(
+            filter1.getStructuralDigest().equals(
+                filter3.getStructuralDigest()));
+
+        // same terms, different class
+        RelNode project =
+            CalcRel.createProject(
+                leaf1,
+                new RexNode[] { makeLiteral(true) },
+                new String[] { "condition" });
+        assertDigestsEqual(filter1, project, false);
+    }
+
+    /**
+     * Tests that the digest is computed again after an input is replaced.
+     */
+    public void testRecompute()
+    {
+        FilterRel filter = new FilterRel(cluster, leaf1, makeLiteral(true));
+        RelDigest before = filter.getStructuralDigest();
+        filter.replaceInput(0, leaf2);
+        filter.recomputeDigest();
+        RelDigest after = filter.getStructuralDigest();
+        assertFalse(before.equals(after));
+        assertEquals(RelDigest.of(filter), after);
+    }
+
+    /**
+     * Tests that the logger type of an {@link IterCalcRel}, which its string
+     * digest includes but it does not explain, is part of the digest.
+     */
+    public void testIterCalcTag()
+    {
+        RexProgram program =
+            RexProgram.createIdentity(leaf1.getRowType());
+        RelNode calcA1 = new IterCalcRel(cluster, leaf1, program, 0, "a");
+        RelNode calcA2 = new IterCalcRel(cluster, leaf1, program, 0, "a");
+        RelNode calcB = new IterCalcRel(cluster, leaf1, program, 0, "b");
+        RelNode calcNone = new IterCalcRel(cluster, leaf1, program, 0);
+        assertDigestsEqual(calcA1, calcA2, true);
+        assertDigestsEqual(calcA1, calcB, false);
+        assertDigestsEqual(calcA1, calcNone, false);
+    }
+
+    private RexNode makeLiteral(boolean b)
+    {
+        return cluster.getRexBuilder().makeLiteral(b);
+    }
+
+    /**
+     * Asserts that two expressions have equal structural digests, or not, and
+     * that their string digests agree.
+     */
+    private static void assertDigestsEqual(
+        RelNode rel1,
+        RelNode rel2,
+        boolean expected)
+    {
+        RelDigest digest1 = rel1.getStructuralDigest();
+        RelDigest digest2 = rel2.getStructuralDigest();
+        assertEquals(expected, digest1.equals(digest2));
+        assertEquals(expected, digest2.equals(digest1));
+        if (expected) {
+            assertEquals(digest1.hashCode(), digest2.hashCode());
+        }
+        assertEquals(
+            expected,
+            rel1.getDigest().equals(rel2.getDigest()));
+    }
+}
+
+// End RelDigestTest.java
@@ -186,6 +186,13 @@ public class RelSubset
         return digest.toString();
     }
 
+    protected RelDigest computeStructuralDigest()
+    {
+        // There is only one subset per set and traits, so a subset is
+        // equivalent only to itself.
+        return RelDigest.ofIdentity(this);
+    }
+
     // implement RelNode
     protected RelDataType deriveRowType()
     {
@@ -333,7 +333,7 @@ class RuleQueue
      */
     void addMatch(VolcanoRuleMatch match)
     {
-        final String matchName = match.toString();
+        final List<Object> matchName = match.getDigest();
         for (PhaseMatchList matchList : matchListMap.values()) {
             if (!matchList.names.add(matchName)) {
                 // Identical match has already been added.
@@ -352,7 +352,7 @@ class RuleQueue
             if (tracer.isLoggable(Level.FINEST)) {
                 tracer.finest(
                     matchList.phase.toString() + " Rule-match queued: "
-                    + matchName);
+                    + match);
             }
 
             matchList.list.add(match);
@@ -623,10 +623,10 @@ class RuleQueue
         final List<VolcanoRuleMatch> list;
 
         /**
-         * A set of rule-match names contained in {@link #list}. Allows fast
-         * detection of duplicate rule-matches.
+         * A set of the digests of the rule-matches contained in {@link
+         * #list}. Allows fast detection of duplicate rule-matches.
          */
-        final Set<String> names;
+        final Set<List<Object>> names;
 
         /**
          * Multi-map of RelSubset to VolcanoRuleMatches. Used to {@link
@@ -644,7 +644,7 @@ class RuleQueue
             // Use a double-linked list because an array-list does not
             // implement remove(0) efficiently.
             this.list = new LinkedList<VolcanoRuleMatch>();
-            this.names = new HashSet<String>();
+            this.names = new HashSet<List<Object>>();
             this.matchMap = new MultiMap<RelSubset, VolcanoRuleMatch>();
         }
     }
@@ -87,11 +87,15 @@ public class VolcanoPlanner
     final List<RelSet> allSets = new ArrayList<RelSet>();
 
     /**
-     * Canonical map from {@link String digest} to the unique {@link RelNode
+     * Canonical map from {@link RelDigest digest} to the unique {@link RelNode
      * relational expression} with that digest.
+     *
+     * <p>The map is keyed by {@link RelNode#getStructuralDigest()} rather than
+     * by the string digest, which is much more expensive to build and hash,
+     * and is only built for tracing.
      */
-    private final Map<String, RelNode> mapDigestToRel =
-        new HashMap<String, RelNode>();
+    private final Map<RelDigest, RelNode> mapDigestToRel =
+        new HashMap<RelDigest, RelNode>();
 
     /**
      * Map each registered expression ({@link RelNode}) to its equivalence set
@@ -425,6 +429,8 @@ public class VolcanoPlanner
      * number of iterations necessary to first reach an implementable plan or 25
      * iterations whichever is larger).</li>
      * <li>For non-ambitious planners: When an implementable plan is found.</li>
+     * <li>The {@link #getPlanningBudget() planning budget} is exhausted and an
+     * implementable plan has been found.</li>
      * </ol>
      *
      * <p>Furthermore, after every 10 iterations without an implementable plan,
@@ -438,8 +444,13 @@ public class VolcanoPlanner
      */
     public RelNode findBestExp()
     {
+        final RelOptPlanningBudget budget = getPlanningBudget();
+        budget.start();
+        boolean budgetExhausted = false;
         int cumulativeTicks = 0;
         for (VolcanoPlannerPhase phase : VolcanoPlannerPhase.values()) {
+            final long phaseStartMillis = budget.getElapsedMillis();
+            final long phaseStartRuleCalls = budget.getRuleCallCount();
             setInitialImportance();
 
             RelOptCost targetCost = makeHugeCost();
@@ -490,6 +501,20 @@ public class VolcanoPlanner
                     break;
                 }
 
+                if (budget.isExhausted()) {
+                    if (!budgetExhausted && tracer.isLoggable(Level.FINE)) {
+                        tracer.fine(
+                            "Planning budget exhausted in phase " + phase
+                            + (root.bestCost.isInfinite()
+                                ? "; continuing until a plan is found"
+                                : "; using best plan so far"));
+                    }
+                    budgetExhausted = true;
+                    if (!root.bestCost.isInfinite()) {
+                        break;
+                    }
+                }
+
                 if (tracer.isLoggable(Level.FINE)) {
                     tracer.fine(
                         "PLANNER = " + this
@@ -508,6 +533,13 @@ public class VolcanoPlanner
             }
 
             ruleQueue.phaseCompleted(phase);
+            if (tracer.isLoggable(Level.FINE)) {
+                tracer.fine(
+                    "Phase " + phase + " used "
+                    + budget.describeUsage(
+                        phaseStartMillis,
+                        phaseStartRuleCalls));
+            }
         }
         if (tracer.isLoggable(Level.FINER)) {
             StringWriter sw = new StringWriter();
@@ -993,13 +1025,18 @@ SUBSET_LOOP:
      */
     void rename(RelNode rel)
     {
-        final String oldDigest = rel.getDigest();
+        final RelDigest oldDigest = rel.getStructuralDigest();
+        final String oldDigestString =
+            tracer.isLoggable(Level.FINER) ? rel.getDigest() : null;
         if (fixupInputs(rel)) {
             assert mapDigestToRel.remove(oldDigest) == rel;
-            final String newDigest = rel.recomputeDigest();
-            tracer.finer(
-                "Rename #" + rel.getId() + " from '" + oldDigest
-                + "' to '" + newDigest + "'");
+            rel.recomputeDigest();
+            final RelDigest newDigest = rel.getStructuralDigest();
+            if (tracer.isLoggable(Level.FINER)) {
+                tracer.finer(
+                    "Rename #" + rel.getId() + " from '" + oldDigestString
+                    + "' to '" + rel.getDigest() + "'");
+            }
             final RelNode equivRel = mapDigestToRel.put(newDigest, rel);
             if (equivRel != null) {
                 assert equivRel != rel;
@@ -1010,7 +1047,7 @@ SUBSET_LOOP:
                     "After renaming rel#" + rel.getId()
                     + ", it is now equivalent to rel#" + equivRel.getId());
                 mapDigestToRel.put(
-                    equivRel.getDigest(),
+                    equivRel.getStructuralDigest(),
                     equivRel);
 
                 RelSubset equivRelSubset = getSubset(equivRel);
@@ -1056,7 +1093,7 @@ SUBSET_LOOP:
         // Is there an equivalent relational expression? (This might have
         // just occurred because the relational expression's child was just
         // found to be equivalent to another set.)
-        RelNode equivRel = mapDigestToRel.get(rel.getDigest());
+        RelNode equivRel = mapDigestToRel.get(rel.getStructuralDigest());
         if ((equivRel != null) && (equivRel != rel)) {
             assert (equivRel.getClass() == rel.getClass());
             assert (equivRel.getTraits().equals(rel.getTraits()));
@@ -1245,7 +1282,7 @@ SUBSET_LOOP:
 
         // If it is equivalent to an existing expression, return the set that
         // the equivalent expression belongs to.
-        String digest = rel.getDigest();
+        RelDigest digest = rel.getStructuralDigest();
         RelNode equivExp = mapDigestToRel.get(digest);
         if (equivExp == null) {
             ;
@@ -1281,7 +1318,7 @@ SUBSET_LOOP:
             {
                 if (tracer.isLoggable(Level.FINER)) {
                     tracer.finer(
-                        "Register #" + rel.getId() + " " + digest
+                        "Register #" + rel.getId() + " " + rel.getDigest()
                         + " (and merge sets, because it is a conversion)");
                 }
                 merge(set, childSet);
@@ -1292,7 +1329,8 @@ SUBSET_LOOP:
                 // check whether we are now equivalent to an existing
                 // expression.
                 if (fixupInputs(rel)) {
-                    digest = rel.recomputeDigest();
+                    rel.recomputeDigest();
+                    digest = rel.getStructuralDigest();
                     RelNode equivRel = mapDigestToRel.get(digest);
                     if ((equivRel != rel) && (equivRel != null)) {
                         // make sure this bad rel didn't get into the
@@ -127,6 +127,39 @@ public class VolcanoPlannerTest
         assertTrue(result instanceof PhysSingleRel);
     }
 
+    /**
+     * Tests that the planner keeps going past an exhausted planning budget
+     * until it has a complete plan.
+     */
+    public void testExhaustedBudget()
+    {
+        VolcanoPlanner planner = new VolcanoPlanner();
+        planner.addRelTraitDef(CallingConventionTraitDef.instance);
+
+        planner.addRule(new PhysLeafRule());
+        planner.addRule(new GoodSingleRule());
+
+        RelOptPlanningBudget budget = new RelOptPlanningBudget(0, 1);
+        planner.setPlanningBudget(budget);
+
+        NoneLeafRel leafRel =
+            new NoneLeafRel(
+                newCluster(planner),
+                "a");
+        NoneSingleRel singleRel =
+            new NoneSingleRel(
+                leafRel.getCluster(),
+                leafRel);
+        RelNode convertedRel =
+            planner.changeTraits(
+                singleRel,
+                new RelTraitSet(PHYS_CALLING_CONVENTION));
+        planner.setRoot(convertedRel);
+        RelNode result = planner.chooseDelegate().findBestExp();
+        assertTrue(result instanceof PhysSingleRel);
+        assertTrue(budget.isExhausted());
+    }
+
     /**
      * Tests transformation of a single+leaf from NONE to PHYS. In the past,
      * this one didn't work due to the definition of ReformedSingleRule.
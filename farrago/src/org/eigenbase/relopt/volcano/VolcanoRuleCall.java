@@ -154,6 +154,7 @@ public class VolcanoRuleCall
     {
         assert getRule().matches(this);
         volcanoPlanner.checkCancel();
+        volcanoPlanner.getPlanningBudget().ruleCalled();
         try {
             if (volcanoPlanner.isRuleExcluded(getRule())) {
                 if (tracer.isLoggable(Level.FINE)) {
@@ -18,6 +18,8 @@
 */
 package org.eigenbase.relopt.volcano;
 
+import java.util.*;
+
 import org.eigenbase.rel.*;
 import org.eigenbase.relopt.*;
 
@@ -37,7 +39,7 @@ class VolcanoRuleMatch
 
     private final RelSet targetSet;
     private RelSubset targetSubset;
-    private String digest;
+    private List<Object> digest;
     private final VolcanoPlanner volcanoPlanner;
     private double cachedImportance = Double.NaN;
 
@@ -73,6 +75,24 @@ class VolcanoRuleMatch
     //~ Methods ----------------------------------------------------------------
 
     public String toString()
+    {
+        StringBuilder buf =
+            new StringBuilder("rule [" + getRule() + "] rels [");
+        for (int i = 0; i < rels.length; i++) {
+            if (i > 0) {
+                buf.append(", ");
+            }
+            buf.append(rels[i].toString());
+        }
+        buf.append("]");
+        return buf.toString();
+    }
+
+    /**
+     * Returns the digest of this rule match. Two rule matches are equivalent
+     * if and only if their digests are equal.
+     */
+    List<Object> getDigest()
     {
         return digest;
     }
@@ -147,23 +167,22 @@ class VolcanoRuleMatch
     }
 
     /**
-     * Computes a string describing this rule match. Two rule matches are
-     * equivalent if and only if their digests are the same.
+     * Computes the digest of this rule match: the rule, and each relational
+     * expression along with its current digest. It identifies the match just
+     * as the string returned by {@link #toString()} does, but does not
+     * require the expressions' string digests to be built.
      *
-     * @return description of this rule match
+     * @return digest of this rule match
      */
-    private String computeDigest()
+    private List<Object> computeDigest()
     {
-        StringBuilder buf =
-            new StringBuilder("rule [" + getRule() + "] rels [");
+        List<Object> list = new ArrayList<Object>(1 + (2 * rels.length));
+        list.add(getRule());
         for (int i = 0; i < rels.length; i++) {
-            if (i > 0) {
-                buf.append(", ");
-            }
-            buf.append(rels[i].toString());
+            list.add(rels[i]);
+            list.add(rels[i].getStructuralDigest());
         }
-        buf.append("]");
-        return buf.toString();
+        return list;
     }
 
     /**
@@ -23,6 +23,7 @@ import java.util.*;
 import org.eigenbase.rel.*;
 import org.eigenbase.rel.metadata.*;
 import org.eigenbase.relopt.*;
+import org.eigenbase.util.*;
 
 
 /**
@@ -552,6 +553,40 @@ public class RelMetadataTest
                 null);
         assertTrue(result == null);
     }
+
+    // ----------------------------------------------------------------------
+    // Tests for RelMetadataHandler
+    // ----------------------------------------------------------------------
+
+    /**
+     * Tests that compiled and reflective metadata handlers give the same
+     * answers, including for methods with primitive parameters.
+     */
+    public void testCompiledHandlers()
+    {
+        String sql =
+            "select e.ename, d.name from emp e, dept d"
+            + " where e.deptno = d.deptno and d.name = 'x'";
+        SaffronProperties props = SaffronProperties.instance();
+        boolean compileHandlers = props.metadataCompileHandlers.get();
+        List<Object> results = new ArrayList<Object>();
+        try {
+            for (boolean compile : new boolean[] { true, false }) {
+                props.metadataCompileHandlers.set(compile);
+                RelNode rel = convertSql(sql);
+                results.add(
+                    Arrays.asList(
+                        RelMetadataQuery.getRowCount(rel),
+                        RelMetadataQuery.getColumnOrigins(rel, 1).size(),
+                        RelMetadataQuery.getUniqueKeys(rel, true),
+                        RelMetadataQuery.getSelectivity(rel, null),
+                        RelMetadataQuery.getPercentageOriginalRows(rel)));
+            }
+        } finally {
+            props.metadataCompileHandlers.set(compileHandlers);
+        }
+        assertEquals(results.get(1), results.get(0));
+    }
 }
 
 // End RelMetadataTest.java
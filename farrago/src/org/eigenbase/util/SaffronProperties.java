@@ -118,6 +118,26 @@ public class SaffronProperties
     public final StringProperty javaCompilerArgs =
         new StringProperty(this, "saffron.java.compiler.args", null);
 
+    /**
+     * The integer property "saffron.java.compiler.concurrency" limits how
+     * many classes {@link org.eigenbase.javac.JaninoCompiler} compiles at the
+     * same time across all statements. Each compilation uses its own class
+     * loader, so independent statements can be compiled in parallel. The
+     * default, 0, means the number of available processors.
+     */
+    public final IntegerProperty javaCompilerConcurrency =
+        new IntegerProperty(this, "saffron.java.compiler.concurrency", 0);
+
+    /**
+     * The boolean property "saffron.metadata.compileHandlers" controls
+     * whether {@link
+     * org.eigenbase.rel.metadata.ReflectiveRelMetadataProvider} compiles a
+     * direct-call handler for each metadata method it dispatches to, rather
+     * than calling the method reflectively. Default is true.
+     */
+    public final BooleanProperty metadataCompileHandlers =
+        new BooleanProperty(this, "saffron.metadata.compileHandlers", true);
+
     /**
      * The boolean property "saffron.stupid" determines whether to optimize
      * variable assignments. If it is true, records are assigned to a variable
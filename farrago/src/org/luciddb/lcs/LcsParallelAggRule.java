@@ -0,0 +1,274 @@
+/*
+// Licensed to DynamoBI Corporation (DynamoBI) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  DynamoBI licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+
+//   http://www.apache.org/licenses/LICENSE-2.0
+
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+*/
+package org.luciddb.lcs;
+
+import java.util.*;
+
+import net.sf.farrago.catalog.*;
+import net.sf.farrago.cwm.relational.*;
+import net.sf.farrago.defimpl.*;
+import net.sf.farrago.fem.med.*;
+import net.sf.farrago.query.*;
+
+import org.eigenbase.rel.*;
+import org.eigenbase.rel.rules.*;
+import org.eigenbase.relopt.*;
+
+
+/**
+ * LcsParallelAggRule splits an aggregation over a full scan of a large
+ * column store table into partial aggregations over ranges of the table's
+ * rids, so that they can run on as many threads as the session's degree of
+ * parallelism allows. The partial results are combined by a UNION ALL, which
+ * is implemented by a non-sequential merge, and a final aggregation:
+ *
+ * <pre>
+ * AggregateRel
+ *   [ProjectRel]
+ *     [FilterRel]
+ *       LcsRowScanRel
+ * </pre>
+ *
+ * becomes
+ *
+ * <pre>
+ * AggregateRel (combining the partial results)
+ *   UnionRel (all)
+ *     AggregateRel
+ *       [ProjectRel]
+ *         [FilterRel]
+ *           LcsRowScanRel (rids [0, r1))
+ *     ...
+ *     AggregateRel
+ *       [ProjectRel]
+ *         [FilterRel]
+ *           LcsRowScanRel (rids [rn, *))
+ * </pre>
+ *
+ * <p>The last range is unbounded, so the plan remains correct however the
+ * table grows after it is prepared; the row counts only determine how evenly
+ * the work is balanced.
+ *
+ * <p>This rule must be applied after {@link LcsAddDeletionScanRule}, since
+ * each range scan needs its own scan of the deletion index.
+ *
+ * @version $Id$
+ */
+public class LcsParallelAggRule
+    extends RelOptRule
+{
+    //~ Static fields/initializers ---------------------------------------------
+
+    /**
+     * Fewest rows worth scanning in a partition of their own; below this,
+     * the cost of starting another branch outweighs the gain.
+     */
+    public static final long MIN_ROWS_PER_PARTITION = 250000;
+
+    /**
+     * Aggregate functions whose partial results can be combined.
+     */
+    private static final Set<String> combinableAggs =
+        new HashSet<String>(
+            Arrays.asList("COUNT", "SUM", "$SUM0", "MIN", "MAX"));
+
+    public final static LcsParallelAggRule instanceScan =
+        new LcsParallelAggRule(
+            new RelOptRuleOperand(
+                AggregateRel.class,
+                new RelOptRuleOperand(LcsRowScanRel.class, ANY)),
+            "scan");
+
+    public final static LcsParallelAggRule instanceProjectScan =
+        new LcsParallelAggRule(
+            new RelOptRuleOperand(
+                AggregateRel.class,
+                new RelOptRuleOperand(
+                    ProjectRel.class,
+                    new RelOptRuleOperand(LcsRowScanRel.class, ANY))),
+            "project scan");
+
+    public final static LcsParallelAggRule instanceFilterScan =
+        new LcsParallelAggRule(
+            new RelOptRuleOperand(
+                AggregateRel.class,
+                new RelOptRuleOperand(
+                    FilterRel.class,
+                    new RelOptRuleOperand(LcsRowScanRel.class, ANY))),
+            "filter scan");
+
+    public final static LcsParallelAggRule instanceProjectFilterScan =
+        new LcsParallelAggRule(
+            new RelOptRuleOperand(
+                AggregateRel.class,
+                new RelOptRuleOperand(
+                    ProjectRel.class,
+                    new RelOptRuleOperand(
+                        FilterRel.class,
+                        new RelOptRuleOperand(LcsRowScanRel.class, ANY)))),
+            "project filter scan");
+
+    //~ Constructors -----------------------------------------------------------
+
+    /**
+     * Creates an LcsParallelAggRule.
+     *
+     * @param operand Root operand, must not be null
+     *
+     * @param id Description of rule
+     */
+    public LcsParallelAggRule(
+        RelOptRuleOperand operand,
+        String id)
+    {
+        super(operand, "LcsParallelAggRule: " + id);
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    // implement RelOptRule
+    public void onMatch(RelOptRuleCall call)
+    {
+        AggregateRel aggRel = (AggregateRel) call.rels[0];
+        int iScan = call.rels.length - 1;
+        LcsRowScanRel rowScan = (LcsRowScanRel) call.rels[iScan];
+
+        // Only full scans can be split by rid, and a scan which already
+        // covers a range has been split before.
+        if (!rowScan.isFullScan() || rowScan.hasRidRange()) {
+            return;
+        }
+        if (rowScan.getInputs().length == 0) {
+            // no deletion index scan yet
+            return;
+        }
+        for (AggregateCall aggCall : aggRel.getAggCallList()) {
+            if (aggCall.isDistinct()
+                || !combinableAggs.contains(
+                    aggCall.getAggregation().getName()))
+            {
+                return;
+            }
+        }
+
+        FarragoPreparingStmt stmt = FennelRelUtil.getPreparingStmt(aggRel);
+        Integer dop =
+            stmt.getSession().getSessionVariables().getInteger(
+                FarragoDefaultSessionPersonality.DEGREE_OF_PARALLELISM);
+        if ((dop == null) || (dop <= 1)) {
+            return;
+        }
+
+        CwmColumnSet columnSet = rowScan.getLcsTable().getCwmColumnSet();
+        if (!(columnSet instanceof FemAbstractColumnSet)) {
+            return;
+        }
+        Long [] rowCounts = new Long[2];
+        FarragoCatalogUtil.getRowCounts(
+            (FemAbstractColumnSet) columnSet,
+            stmt.getSession().getSessionLabelCreationTimestamp(),
+            rowCounts);
+        if ((rowCounts[0] == null) || (rowCounts[1] == null)) {
+            return;
+        }
+        long nPartitions =
+            Math.min(dop, rowCounts[0] / MIN_ROWS_PER_PARTITION);
+        if (nPartitions <= 1) {
+            return;
+        }
+
+        List<AggregateCall> combiningCalls =
+            PushAggregateThroughUnionRule.transformAggCalls(
+                aggRel.getCluster().getTypeFactory(),
+                aggRel.getGroupCount(),
+                aggRel.getAggCallList());
+        if (combiningCalls == null) {
+            return;
+        }
+
+        // Deleted rows still occupy rids, so split the whole rid space.
+        long ridsPerPartition =
+            (rowCounts[0] + rowCounts[1] + nPartitions - 1) / nPartitions;
+        RelNode [] partialAggs = new RelNode[(int) nPartitions];
+        for (int i = 0; i < nPartitions; i++) {
+            long startRid = i * ridsPerPartition;
+            long endRid =
+                (i == (nPartitions - 1)) ? 0 : (startRid + ridsPerPartition);
+            RelNode input =
+                new LcsRowScanRel(
+                    rowScan.getCluster(),
+                    rowScan.getInputs(),
+                    rowScan.getLcsTable(),
+                    rowScan.getClusteredIndexes(),
+                    rowScan.getConnection(),
+                    rowScan.getProjectedColumns(),
+                    true,
+                    rowScan.getResidualColumns(),
+                    rowScan.getInputSelectivity() / nPartitions,
+                    startRid,
+                    endRid);
+            for (int j = iScan - 1; j > 0; j--) {
+                input = copyWithInput(call.rels[j], input);
+            }
+            partialAggs[i] =
+                new AggregateRel(
+                    aggRel.getCluster(),
+                    input,
+                    aggRel.getGroupCount(),
+                    aggRel.getAggCallList());
+        }
+
+        AggregateRel combiningAgg =
+            new AggregateRel(
+                aggRel.getCluster(),
+                new UnionRel(aggRel.getCluster(), partialAggs, true),
+                aggRel.getGroupCount(),
+                combiningCalls);
+
+        // COUNT becomes SUM, which is nullable; cast back to the original
+        // types
+        call.transformTo(
+            RelOptUtil.createCastRel(
+                combiningAgg,
+                aggRel.getRowType(),
+                false));
+    }
+
+    private RelNode copyWithInput(RelNode rel, RelNode input)
+    {
+        if (rel instanceof ProjectRel) {
+            ProjectRel projRel = (ProjectRel) rel;
+            return new ProjectRel(
+                projRel.getCluster(),
+                input,
+                projRel.getProjectExps(),
+                projRel.getRowType(),
+                projRel.getFlags(),
+                projRel.getCollationList());
+        } else {
+            FilterRel filterRel = (FilterRel) rel;
+            return new FilterRel(
+                filterRel.getCluster(),
+                input,
+                filterRel.getCondition());
+        }
+    }
+}
+
+// End LcsParallelAggRule.java
@@ -20,7 +20,9 @@ package org.luciddb.lcs;
 
 import java.util.*;
 
+import net.sf.farrago.fem.fennel.*;
 import net.sf.farrago.fem.med.*;
+import net.sf.farrago.query.*;
 
 import org.eigenbase.rel.*;
 import org.eigenbase.relopt.*;
@@ -36,6 +38,20 @@ import org.eigenbase.relopt.*;
 public class LcsRowScanRel
     extends LcsRowScanRelBase
 {
+    //~ Instance fields --------------------------------------------------------
+
+    /**
+     * For a full scan, the first rid to read; 0 unless this scan reads one
+     * partition of a table scanned in parallel.
+     */
+    final long startRid;
+
+    /**
+     * For a full scan, the rid just past the last rid to read, or 0 to read
+     * through the end of the table.
+     */
+    final long endRid;
+
     //~ Constructors -----------------------------------------------------------
 
     /**
@@ -62,6 +78,51 @@ public class LcsRowScanRel
         boolean isFullScan,
         Integer [] resCols,
         double inputSelectivity)
+    {
+        this(
+            cluster,
+            children,
+            lcsTable,
+            clusteredIndexes,
+            connection,
+            projectedColumns,
+            isFullScan,
+            resCols,
+            inputSelectivity,
+            0,
+            0);
+    }
+
+    /**
+     * Creates a new LcsRowScanRel object which reads a range of rids.
+     *
+     * @param cluster RelOptCluster for this rel
+     * @param children children inputs into the row scan
+     * @param lcsTable table being scanned
+     * @param clusteredIndexes clusters to use for table access
+     * @param connection connection
+     * @param projectedColumns array of 0-based table-relative column ordinals,
+     * or null to project all columns
+     * @param isFullScan true if doing a full scan of the table
+     * @param resCols residual filter columns
+     * @param inputSelectivity estimate of input selectivity, including the
+     * fraction of the table covered by the rid range
+     * @param startRid first rid to read
+     * @param endRid rid just past the last rid to read, or 0 to read through
+     * the end of the table
+     */
+    public LcsRowScanRel(
+        RelOptCluster cluster,
+        RelNode [] children,
+        LcsTable lcsTable,
+        List<FemLocalIndex> clusteredIndexes,
+        RelOptConnection connection,
+        Integer [] projectedColumns,
+        boolean isFullScan,
+        Integer [] resCols,
+        double inputSelectivity,
+        long startRid,
+        long endRid)
     {
         super(
             cluster,
@@ -73,6 +134,10 @@ public class LcsRowScanRel
             isFullScan,
             resCols,
             inputSelectivity);
+        assert (isFullScan || ((startRid == 0) && (endRid == 0)));
+        assert ((endRid == 0) || (endRid > startRid));
+        this.startRid = startRid;
+        this.endRid = endRid;
     }
 
     //~ Methods ----------------------------------------------------------------
@@ -90,10 +155,59 @@ public class LcsRowScanRel
                 projectedColumns,
                 isFullScan,
                 residualColumns,
-                inputSelectivity);
+                inputSelectivity,
+                startRid,
+                endRid);
         clone.inheritTraitsFrom(this);
         return clone;
     }
+
+    /**
+     * @return true if this scan reads only a range of the table's rids
+     */
+    public boolean hasRidRange()
+    {
+        return (startRid != 0) || (endRid != 0);
+    }
+
+    public long getStartRid()
+    {
+        return startRid;
+    }
+
+    public long getEndRid()
+    {
+        return endRid;
+    }
+
+    // override LcsRowScanRelBase
+    public void explain(RelOptPlanWriter pw)
+    {
+        if (!hasRidRange()) {
+            super.explain(pw);
+            return;
+        }
+
+        // the range must be part of the digest, since the scans over the
+        // partitions of a table differ only by their ranges
+        super.explain(
+            pw,
+            new String[] { "rid range" },
+            new Object[] {
+                "[" + startRid + ", "
+                + ((endRid == 0) ? "*" : String.valueOf(endRid)) + ")"
+            });
+    }
+
+    // override LcsRowScanRelBase
+    protected FemLcsRowScanStreamDef createScanStream(
+        FennelRelImplementor implementor)
+    {
+        FemLcsRowScanStreamDef scanStream = super.createScanStream(implementor);
+        scanStream.setStartRid(startRid);
+        scanStream.setEndRid(endRid);
+        return scanStream;
+    }
 }
 
 // End LcsRowScanRel.java
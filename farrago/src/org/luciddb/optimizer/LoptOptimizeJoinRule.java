@@ -436,8 +436,14 @@ outerForLoop:
             RelOptUtil.getFieldNames(
                 multiJoin.getMultiJoinRel().getRowType());
 
-        // generate the N join orderings
-        for (int i = 0; i < multiJoin.getNumJoinFactors(); i++) {
+        // generate up to N join orderings, one starting from each factor; if
+        // the planning budget runs out, settle for the orderings so far
+        RelOptPlanningBudget budget = call.getPlanner().getPlanningBudget();
+        for (int i : getStartingFactors(multiJoin, budget)) {
+            if (!plans.isEmpty() && budget.isExhausted()) {
+                break;
+            }
+
             // first factor cannot be null generating
             if (multiJoin.isNullGenerating(i)) {
                 continue;
@@ -466,6 +472,47 @@ outerForLoop:
         }
     }
 
+    /**
+     * Returns the order in which to try the join factors as the starting
+     * point of a join ordering. Normally this is the order of the factors.
+     * Under a limited planning budget, the largest factors come first, since
+     * they are the most promising starting points (in a star join, the fact
+     * table) and may be the only ones tried.
+     *
+     * @param multiJoin join factors being optimized
+     * @param budget planning budget
+     *
+     * @return factor ordinals
+     */
+    private List<Integer> getStartingFactors(
+        LoptMultiJoin multiJoin,
+        RelOptPlanningBudget budget)
+    {
+        int nJoinFactors = multiJoin.getNumJoinFactors();
+        List<Integer> factors = new ArrayList<Integer>(nJoinFactors);
+        for (int i = 0; i < nJoinFactors; i++) {
+            factors.add(i);
+        }
+        if (!budget.isLimited()) {
+            return factors;
+        }
+        final double [] rowCounts = new double[nJoinFactors];
+        for (int i = 0; i < nJoinFactors; i++) {
+            Double rowCount =
+                RelMetadataQuery.getRowCount(multiJoin.getJoinFactor(i));
+            rowCounts[i] = (rowCount == null) ? 0 : rowCount;
+        }
+        Collections.sort(
+            factors,
+            new Comparator<Integer>() {
+                public int compare(Integer f1, Integer f2)
+                {
+                    return Double.compare(rowCounts[f2], rowCounts[f1]);
+                }
+            });
+        return factors;
+    }
+
     /**
      * Creates the topmost projection that will sit on top of the selected join
      * ordering. The projection needs to match the original join ordering. Also,
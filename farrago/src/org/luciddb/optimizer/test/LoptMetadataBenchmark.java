@@ -0,0 +1,270 @@
+/*
+// Licensed to DynamoBI Corporation (DynamoBI) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  DynamoBI licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+
+//   http://www.apache.org/licenses/LICENSE-2.0
+
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+*/
+package org.luciddb.optimizer.test;
+
+import junit.framework.*;
+
+import net.sf.farrago.catalog.*;
+import net.sf.farrago.jdbc.engine.*;
+import net.sf.farrago.query.*;
+import net.sf.farrago.session.*;
+import net.sf.farrago.test.*;
+
+import org.eigenbase.rel.*;
+import org.eigenbase.rel.metadata.*;
+import org.eigenbase.relopt.*;
+import org.eigenbase.util.*;
+
+
+/**
+ * LoptMetadataBenchmark measures the rate of metadata requests while the
+ * LucidDB optimizer plans star joins of increasing width. Join ordering in
+ * {@link org.luciddb.optimizer.LoptOptimizeJoinRule} issues most of these
+ * requests. Each width is planned with compiled metadata handlers and again
+ * with reflective ones (see {@link RelMetadataHandler}).
+ *
+ * <p>The name deliberately does not end in "Test" so that it is not part of
+ * the regular suite; run it with junitSingle.
+ *
+ * @version $Id$
+ */
+public class LoptMetadataBenchmark
+    extends FarragoSqlToRelTestBase
+{
+    //~ Static fields/initializers ---------------------------------------------
+
+    private static final int MAX_DIMENSIONS = 12;
+
+    private static final int REPETITIONS = 5;
+
+    private static final long FACT_ROWCOUNT = 10000000;
+
+    private static final long DIMENSION_ROWCOUNT = 1000;
+
+    private static boolean doneStaticSetup;
+
+    //~ Instance fields --------------------------------------------------------
+
+    private FarragoReposTxnContext txn;
+
+    private long metadataCalls;
+
+    private long planningNanos;
+
+    //~ Constructors -----------------------------------------------------------
+
+    /**
+     * Creates a new LoptMetadataBenchmark object.
+     *
+     * @param testName JUnit test name
+     *
+     * @throws Exception .
+     */
+    public LoptMetadataBenchmark(String testName)
+        throws Exception
+    {
+        super(testName);
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    // implement TestCase
+    public static Test suite()
+    {
+        return wrappedSuite(LoptMetadataBenchmark.class);
+    }
+
+    // implement TestCase
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+        if (!doneStaticSetup) {
+            doneStaticSetup = true;
+            createStarSchema();
+        }
+        txn = repos.newTxnContext(true);
+        txn.beginWriteTxn();
+    }
+
+    // implement TestCase
+    public void tearDown()
+        throws Exception
+    {
+        txn.commit();
+        txn = null;
+        super.tearDown();
+    }
+
+    private void createStarSchema()
+        throws Exception
+    {
+        stmt.executeUpdate("create schema lopt_metadata_bench");
+        stmt.executeUpdate("set schema 'lopt_metadata_bench'");
+        stmt.executeUpdate(
+            "alter session implementation set jar"
+            + " sys_boot.sys_boot.luciddb_plugin");
+
+        FarragoSession session =
+            ((FarragoJdbcEngineConnection) connection).getSession();
+        StringBuilder fact = new StringBuilder("create table FACT(id int");
+        for (int i = 1; i <= MAX_DIMENSIONS; ++i) {
+            fact.append(", k").append(i).append(" int");
+            stmt.executeUpdate(
+                "create table D" + i
+                + "(id int primary key, attr varchar(20))");
+        }
+        fact.append(")");
+        stmt.executeUpdate(fact.toString());
+
+        session.getRepos().beginReposSession();
+        try {
+            FarragoStatsUtil.setTableRowCount(
+                session,
+                "",
+                "",
+                "FACT",
+                FACT_ROWCOUNT);
+            for (int i = 1; i <= MAX_DIMENSIONS; ++i) {
+                FarragoStatsUtil.setTableRowCount(
+                    session,
+                    "",
+                    "",
+                    "D" + i,
+                    DIMENSION_ROWCOUNT);
+            }
+        } finally {
+            session.getRepos().endReposSession();
+        }
+    }
+
+    public void testStarJoins()
+        throws Exception
+    {
+        SaffronProperties props = SaffronProperties.instance();
+        boolean compileHandlers = props.metadataCompileHandlers.get();
+        try {
+            for (int n = 2; n <= MAX_DIMENSIONS; n += 2) {
+                String sql = getStarJoin(n);
+                for (boolean compile : new boolean[] { true, false }) {
+                    props.metadataCompileHandlers.set(compile);
+
+                    // warm up (JIT, catalog caches, handler compilation)
+                    checkQuery(sql);
+
+                    metadataCalls = 0;
+                    planningNanos = 0;
+                    for (int i = 0; i < REPETITIONS; ++i) {
+                        checkQuery(sql);
+                    }
+                    String msg =
+                        getName() + ": " + (n + 1) + "-way star join, "
+                        + (compile ? "compiled" : "reflective")
+                        + " handlers: " + (metadataCalls / REPETITIONS)
+                        + " metadata calls in "
+                        + (planningNanos / REPETITIONS / 1000000) + " ms ("
+                        + (long) (metadataCalls * 1.0e9 / planningNanos)
+                        + " calls/sec)";
+                    tracer.info(msg);
+                    System.out.println(msg);
+                }
+            }
+        } finally {
+            props.metadataCompileHandlers.set(compileHandlers);
+        }
+    }
+
+    private String getStarJoin(int nDimensions)
+    {
+        StringBuilder sql =
+            new StringBuilder("explain plan for select count(*) from FACT f");
+        for (int i = 1; i <= nDimensions; ++i) {
+            sql.append(", D").append(i).append(" d").append(i);
+        }
+        for (int i = 1; i <= nDimensions; ++i) {
+            sql.append((i == 1) ? " where " : " and ");
+            sql.append("f.k").append(i).append(" = d").append(i).append(
+                ".id");
+            sql.append(" and d").append(i).append(".attr = 'x").append(i)
+            .append("'");
+        }
+        return sql.toString();
+    }
+
+    // implement FarragoSqlToRelTestBase
+    protected void initPlanner(FarragoPreparingStmt stmt)
+    {
+        // use the session's own planner, i.e. the LucidDB program
+        stmt.setPlanner(
+            stmt.getSession().getPersonality().newPlanner(stmt, true));
+    }
+
+    // implement FarragoSqlToRelTestBase
+    protected void checkAbstract(
+        FarragoPreparingStmt stmt,
+        RelNode relBefore)
+        throws Exception
+    {
+        RelOptCluster cluster = relBefore.getCluster();
+        CountingMetadataProvider provider =
+            new CountingMetadataProvider(cluster.getMetadataProvider());
+        cluster.setMetadataProvider(provider);
+
+        RelOptPlanner planner = stmt.getPlanner();
+        planner.setRoot(relBefore);
+        long start = System.nanoTime();
+        planner.findBestExp();
+        planningNanos += System.nanoTime() - start;
+        metadataCalls += provider.calls;
+    }
+
+    //~ Inner Classes ----------------------------------------------------------
+
+    /**
+     * Provider which counts the requests it passes on. Nested requests also
+     * go through the cluster's provider, so every request is counted.
+     */
+    private static class CountingMetadataProvider
+        implements RelMetadataProvider
+    {
+        private final RelMetadataProvider underlyingProvider;
+
+        long calls;
+
+        CountingMetadataProvider(RelMetadataProvider underlyingProvider)
+        {
+            this.underlyingProvider = underlyingProvider;
+        }
+
+        // implement RelMetadataProvider
+        public Object getRelMetadata(
+            RelNode rel,
+            String metadataQueryName,
+            Object [] args)
+        {
+            ++calls;
+            return underlyingProvider.getRelMetadata(
+                rel,
+                metadataQueryName,
+                args);
+        }
+    }
+}
+
+// End LoptMetadataBenchmark.java
@@ -605,6 +605,15 @@ public class LucidDbSessionPersonality
         builder.addRuleInstance(LcsAddDeletionScanRule.instanceAnyInput);
         builder.addRuleInstance(LcsAddDeletionScanRule.instanceNoInputs);
 
+        // Split aggregations over large full table scans into partial
+        // aggregations over rid ranges, to be run in parallel.  This needs
+        // the deletion index scans added above, and must come before the
+        // aggregates are converted to physical ones.
+        builder.addRuleInstance(LcsParallelAggRule.instanceProjectFilterScan);
+        builder.addRuleInstance(LcsParallelAggRule.instanceProjectScan);
+        builder.addRuleInstance(LcsParallelAggRule.instanceFilterScan);
+        builder.addRuleInstance(LcsParallelAggRule.instanceScan);
+
         // Prefer hash aggregation over the standard Fennel aggregation.
         // Apply aggregation rules before the calc rules below so we can
         // call metadata queries on logical RelNodes.
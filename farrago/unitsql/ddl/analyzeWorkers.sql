@@ -0,0 +1,51 @@
+-- $Id$
+-- Test ANALYZE with several index verification workers, both in
+-- autocommit mode and with a transaction in progress
+
+create schema analyze_workers;
+set schema 'analyze_workers';
+
+create table aw_t(id int primary key, a int, b int, c varchar(10));
+create index aw_t_a on aw_t(a);
+create index aw_t_b on aw_t(b);
+create index aw_t_c on aw_t(c);
+create index aw_t_ab on aw_t(a, b);
+
+insert into aw_t values
+  (1, 10, 100, 'x'), (2, 20, 200, 'y'), (3, 10, 300, 'z'),
+  (4, 20, 400, 'x'), (5, 30, 500, null), (6, 30, 100, 'y');
+
+create table aw_log(id int primary key);
+
+create view aw_index_stats as
+select "name", "pageCount" from sys_fem.med."LocalIndex"
+where "name" like '%AW_T%';
+
+-- statistics computed by a single worker
+create table aw_seq_stats(name varchar(128) primary key, page_count bigint);
+
+analyze table aw_t compute statistics for all columns;
+insert into aw_seq_stats select * from aw_index_stats;
+
+-- several workers, in autocommit mode
+alter session set "analyzeIndexWorkers" = 4;
+analyze table aw_t compute statistics for all columns;
+
+select count(*) > 4 from aw_seq_stats;
+select count(*) from
+  (select * from aw_index_stats except select * from aw_seq_stats);
+select count(*) from
+  (select * from aw_seq_stats except select * from aw_index_stats);
+
+-- several workers, with a transaction in progress
+!autocommit off
+insert into aw_log values (1);
+analyze table aw_t compute statistics for all columns;
+select count(*) from
+  (select * from aw_index_stats except select * from aw_seq_stats);
+select count(*) from
+  (select * from aw_seq_stats except select * from aw_index_stats);
+commit;
+!autocommit on
+
+drop schema analyze_workers cascade;
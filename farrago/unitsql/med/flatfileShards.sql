@@ -0,0 +1,120 @@
+-- $Id$
+-- Test flatfile tables which read all files matching a pattern
+
+create schema flatfile_shards;
+
+set schema 'flatfile_shards';
+
+create server shard_server
+foreign data wrapper sys_file_wrapper
+options (
+    directory 'unitsql/med/flatfiles/shards/',
+    file_extension 'csv',
+    with_header 'yes',
+    lenient 'no');
+
+-- should read day_1, day_2 and day_3 but not other
+create foreign table shards(
+    id int not null,
+    amount int not null)
+server shard_server
+options (filename_pattern 'day_*');
+
+select * from shards order by id;
+
+select count(*), sum(amount) from shards;
+
+-- same thing, with the files read in parallel
+alter session set "degreeOfParallelism" = 2;
+
+select * from shards order by id;
+
+alter session set "degreeOfParallelism" = 1;
+
+-- source file names as a column
+create foreign table shards_by_file(
+    id int not null,
+    source_file varchar(100) not null,
+    amount int not null)
+server shard_server
+options (filename_pattern 'day_[12]', source_file_column 'SOURCE_FILE');
+
+select * from shards_by_file order by id;
+
+select source_file, count(*) from shards_by_file
+group by source_file order by source_file;
+
+-- should fail:  source file column is not a column of the table
+create foreign table bad_source_file(
+    id int not null,
+    amount int not null)
+server shard_server
+options (filename_pattern 'day_[12]', source_file_column 'SOURCE_FILE');
+
+-- should fail:  source file column is not a character column
+create foreign table bad_source_file_type(
+    id int not null,
+    amount int not null)
+server shard_server
+options (filename_pattern 'day_[12]', source_file_column 'AMOUNT');
+
+-- read through a memory mapping
+create server mapped_shard_server
+foreign data wrapper sys_file_wrapper
+options (
+    directory 'unitsql/med/flatfiles/shards/',
+    file_extension 'csv',
+    with_header 'yes',
+    lenient 'no',
+    memory_map 'yes');
+
+create foreign table mapped_shards(
+    id int not null,
+    amount int not null)
+server mapped_shard_server
+options (filename_pattern 'day_*');
+
+select * from mapped_shards order by id;
+
+-- a quoted value spanning two lines; files whose values may be quoted are
+-- never divided into ranges, so the row is read whole even in parallel
+create foreign table mapped_multiline(
+    id int not null,
+    note varchar(40) not null)
+server mapped_shard_server
+options (filename 'multiline');
+
+alter session set "degreeOfParallelism" = 2;
+
+select id, char_length(note) from mapped_multiline order by id;
+
+alter session set "degreeOfParallelism" = 1;
+
+-- negated class
+create foreign table later_shards(
+    id int not null,
+    amount int not null)
+server shard_server
+options (filename_pattern 'day_[!12]');
+
+select * from later_shards order by id;
+
+-- should fail:  invalid class range
+create foreign table bad_shards(
+    id int not null,
+    amount int not null)
+server shard_server
+options (filename_pattern 'day_[3-1]');
+
+-- should fail:  no files match
+create foreign table no_shards(
+    id int not null,
+    amount int not null)
+server shard_server
+options (filename_pattern 'night_*');
+
+select * from no_shards;
+
+drop schema flatfile_shards cascade;
+drop server shard_server cascade;
+drop server mapped_shard_server cascade;
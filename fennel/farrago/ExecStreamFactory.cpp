@@ -192,6 +192,12 @@ void ExecStreamFactory::readLcsRowScanStreamParams(
         LcsRowScanExecStreamParams::defaultSystemSamplingClumps;
     params.samplingRowCount = streamDef.getSamplingRowCount();
 
+    // an end rid of 0 (the default) means no upper bound
+    params.startRid = LcsRid(streamDef.getStartRid());
+    if (streamDef.getEndRid() != 0) {
+        params.endRid = LcsRid(streamDef.getEndRid());
+    }
+
     CmdInterpreter::readTupleProjection(
         params.residualFilterCols,
         streamDef.getResidualFilterColumns());
@@ -606,6 +612,9 @@ void ExecStreamFactory::visit(ProxyFlatFileTupleStreamDef &streamDef)
     params.trim = streamDef.isTrim();
     params.mapped = streamDef.isMapped();
     readColumnList(streamDef, params.columnNames);
+    params.memoryMapped = streamDef.isMemoryMapped();
+    params.startOffset = streamDef.getStartOffset();
+    params.endOffset = streamDef.getEndOffset();
 
     params.numRowsScan = streamDef.getNumRowsScan();
     params.calcProgram = streamDef.getCalcProgram();
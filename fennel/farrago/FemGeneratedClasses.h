@@ -887,6 +887,8 @@ SharedProxyColumnName getColumn();
 static jmethodID meth_getColumn;
 std::string getDataFilePath();
 static jmethodID meth_getDataFilePath;
+int64_t getEndOffset();
+static jmethodID meth_getEndOffset;
 std::string getErrorFilePath();
 static jmethodID meth_getErrorFilePath;
 std::string getEscapeCharacter();
@@ -899,12 +901,16 @@ bool isLenient();
 static jmethodID meth_isLenient;
 bool isMapped();
 static jmethodID meth_isMapped;
+bool isMemoryMapped();
+static jmethodID meth_isMemoryMapped;
 int32_t getNumRowsScan();
 static jmethodID meth_getNumRowsScan;
 std::string getQuoteCharacter();
 static jmethodID meth_getQuoteCharacter;
 std::string getRowDelimiter();
 static jmethodID meth_getRowDelimiter;
+int64_t getStartOffset();
+static jmethodID meth_getStartOffset;
 std::string getSubstituteCharacter();
 static jmethodID meth_getSubstituteCharacter;
 bool isTranslationRecovery();
@@ -1071,6 +1077,10 @@ bool isSamplingRepeatable();
 static jmethodID meth_isSamplingRepeatable;
 int64_t getSamplingRowCount();
 static jmethodID meth_getSamplingRowCount;
+int64_t getStartRid();
+static jmethodID meth_getStartRid;
+int64_t getEndRid();
+static jmethodID meth_getEndRid;
 };
 
 class FENNEL_FARRAGO_EXPORT ProxyLbmGeneratorStreamDef
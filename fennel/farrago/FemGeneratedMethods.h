@@ -104,15 +104,18 @@ jmethodID ProxyFlatFileTupleStreamDef::meth_getCalcProgram = 0;
 jmethodID ProxyFlatFileTupleStreamDef::meth_getCodePage = 0;
 jmethodID ProxyFlatFileTupleStreamDef::meth_getColumn = 0;
 jmethodID ProxyFlatFileTupleStreamDef::meth_getDataFilePath = 0;
+jmethodID ProxyFlatFileTupleStreamDef::meth_getEndOffset = 0;
 jmethodID ProxyFlatFileTupleStreamDef::meth_getErrorFilePath = 0;
 jmethodID ProxyFlatFileTupleStreamDef::meth_getEscapeCharacter = 0;
 jmethodID ProxyFlatFileTupleStreamDef::meth_getFieldDelimiter = 0;
 jmethodID ProxyFlatFileTupleStreamDef::meth_isHasHeader = 0;
 jmethodID ProxyFlatFileTupleStreamDef::meth_isLenient = 0;
 jmethodID ProxyFlatFileTupleStreamDef::meth_isMapped = 0;
+jmethodID ProxyFlatFileTupleStreamDef::meth_isMemoryMapped = 0;
 jmethodID ProxyFlatFileTupleStreamDef::meth_getNumRowsScan = 0;
 jmethodID ProxyFlatFileTupleStreamDef::meth_getQuoteCharacter = 0;
 jmethodID ProxyFlatFileTupleStreamDef::meth_getRowDelimiter = 0;
+jmethodID ProxyFlatFileTupleStreamDef::meth_getStartOffset = 0;
 jmethodID ProxyFlatFileTupleStreamDef::meth_getSubstituteCharacter = 0;
 jmethodID ProxyFlatFileTupleStreamDef::meth_isTranslationRecovery = 0;
 jmethodID ProxyFlatFileTupleStreamDef::meth_isTrim = 0;
@@ -178,6 +181,8 @@ jmethodID ProxyLcsRowScanStreamDef::meth_getSamplingRate = 0;
 jmethodID ProxyLcsRowScanStreamDef::meth_getSamplingRepeatableSeed = 0;
 jmethodID ProxyLcsRowScanStreamDef::meth_isSamplingRepeatable = 0;
 jmethodID ProxyLcsRowScanStreamDef::meth_getSamplingRowCount = 0;
+jmethodID ProxyLcsRowScanStreamDef::meth_getStartRid = 0;
+jmethodID ProxyLcsRowScanStreamDef::meth_getEndRid = 0;
 jmethodID ProxyLhxAggStreamDef::meth_getCndGroupByKeys = 0;
 jmethodID ProxyLhxAggStreamDef::meth_getNumRows = 0;
 jmethodID ProxyLhxJoinStreamDef::meth_getCndBuildKeys = 0;
@@ -483,15 +488,18 @@ ProxyFlatFileTupleStreamDef::meth_getCalcProgram = pEnv->GetMethodID(jClass,"get
 ProxyFlatFileTupleStreamDef::meth_getCodePage = pEnv->GetMethodID(jClass,"getCodePage","()I");
 ProxyFlatFileTupleStreamDef::meth_getColumn = pEnv->GetMethodID(jClass,"getColumn","()Ljava/util/List;");
 ProxyFlatFileTupleStreamDef::meth_getDataFilePath = pEnv->GetMethodID(jClass,"getDataFilePath","()Ljava/lang/String;");
+ProxyFlatFileTupleStreamDef::meth_getEndOffset = pEnv->GetMethodID(jClass,"getEndOffset","()J");
 ProxyFlatFileTupleStreamDef::meth_getErrorFilePath = pEnv->GetMethodID(jClass,"getErrorFilePath","()Ljava/lang/String;");
 ProxyFlatFileTupleStreamDef::meth_getEscapeCharacter = pEnv->GetMethodID(jClass,"getEscapeCharacter","()Ljava/lang/String;");
 ProxyFlatFileTupleStreamDef::meth_getFieldDelimiter = pEnv->GetMethodID(jClass,"getFieldDelimiter","()Ljava/lang/String;");
 ProxyFlatFileTupleStreamDef::meth_isHasHeader = pEnv->GetMethodID(jClass,"isHasHeader","()Z");
 ProxyFlatFileTupleStreamDef::meth_isLenient = pEnv->GetMethodID(jClass,"isLenient","()Z");
 ProxyFlatFileTupleStreamDef::meth_isMapped = pEnv->GetMethodID(jClass,"isMapped","()Z");
+ProxyFlatFileTupleStreamDef::meth_isMemoryMapped = pEnv->GetMethodID(jClass,"isMemoryMapped","()Z");
 ProxyFlatFileTupleStreamDef::meth_getNumRowsScan = pEnv->GetMethodID(jClass,"getNumRowsScan","()I");
 ProxyFlatFileTupleStreamDef::meth_getQuoteCharacter = pEnv->GetMethodID(jClass,"getQuoteCharacter","()Ljava/lang/String;");
 ProxyFlatFileTupleStreamDef::meth_getRowDelimiter = pEnv->GetMethodID(jClass,"getRowDelimiter","()Ljava/lang/String;");
+ProxyFlatFileTupleStreamDef::meth_getStartOffset = pEnv->GetMethodID(jClass,"getStartOffset","()J");
 ProxyFlatFileTupleStreamDef::meth_getSubstituteCharacter = pEnv->GetMethodID(jClass,"getSubstituteCharacter","()Ljava/lang/String;");
 ProxyFlatFileTupleStreamDef::meth_isTranslationRecovery = pEnv->GetMethodID(jClass,"isTranslationRecovery","()Z");
 ProxyFlatFileTupleStreamDef::meth_isTrim = pEnv->GetMethodID(jClass,"isTrim","()Z");
@@ -641,6 +649,8 @@ ProxyLcsRowScanStreamDef::meth_getSamplingRate = pEnv->GetMethodID(jClass,"getSa
 ProxyLcsRowScanStreamDef::meth_getSamplingRepeatableSeed = pEnv->GetMethodID(jClass,"getSamplingRepeatableSeed","()I");
 ProxyLcsRowScanStreamDef::meth_isSamplingRepeatable = pEnv->GetMethodID(jClass,"isSamplingRepeatable","()Z");
 ProxyLcsRowScanStreamDef::meth_getSamplingRowCount = pEnv->GetMethodID(jClass,"getSamplingRowCount","()J");
+ProxyLcsRowScanStreamDef::meth_getStartRid = pEnv->GetMethodID(jClass,"getStartRid","()J");
+ProxyLcsRowScanStreamDef::meth_getEndRid = pEnv->GetMethodID(jClass,"getEndRid","()J");
 
 jClass = pEnv->FindClass("net/sf/farrago/fem/fennel/FemLhxAggStreamDef");
 visitTbl.addMethod(jClass,JniProxyVisitTable<FemVisitor>::SharedVisitorMethod(new JniProxyVisitTable<FemVisitor>::VisitorMethodImpl<ProxyLhxAggStreamDef>));
@@ -1378,6 +1388,11 @@ std::string ProxyFlatFileTupleStreamDef::getDataFilePath()
 return constructString(pEnv->CallObjectMethod(jObject,meth_getDataFilePath));
 }
 
+int64_t ProxyFlatFileTupleStreamDef::getEndOffset()
+{
+return pEnv->CallLongMethod(jObject,meth_getEndOffset);
+}
+
 std::string ProxyFlatFileTupleStreamDef::getErrorFilePath()
 {
 return constructString(pEnv->CallObjectMethod(jObject,meth_getErrorFilePath));
@@ -1408,6 +1423,11 @@ bool ProxyFlatFileTupleStreamDef::isMapped()
 return pEnv->CallBooleanMethod(jObject,meth_isMapped);
 }
 
+bool ProxyFlatFileTupleStreamDef::isMemoryMapped()
+{
+return pEnv->CallBooleanMethod(jObject,meth_isMemoryMapped);
+}
+
 int32_t ProxyFlatFileTupleStreamDef::getNumRowsScan()
 {
 return pEnv->CallIntMethod(jObject,meth_getNumRowsScan);
@@ -1423,6 +1443,11 @@ std::string ProxyFlatFileTupleStreamDef::getRowDelimiter()
 return constructString(pEnv->CallObjectMethod(jObject,meth_getRowDelimiter));
 }
 
+int64_t ProxyFlatFileTupleStreamDef::getStartOffset()
+{
+return pEnv->CallLongMethod(jObject,meth_getStartOffset);
+}
+
 std::string ProxyFlatFileTupleStreamDef::getSubstituteCharacter()
 {
 return constructString(pEnv->CallObjectMethod(jObject,meth_getSubstituteCharacter));
@@ -1830,6 +1855,16 @@ int64_t ProxyLcsRowScanStreamDef::getSamplingRowCount()
 return pEnv->CallLongMethod(jObject,meth_getSamplingRowCount);
 }
 
+int64_t ProxyLcsRowScanStreamDef::getStartRid()
+{
+return pEnv->CallLongMethod(jObject,meth_getStartRid);
+}
+
+int64_t ProxyLcsRowScanStreamDef::getEndRid()
+{
+return pEnv->CallLongMethod(jObject,meth_getEndRid);
+}
+
 int64_t ProxyLhxAggStreamDef::getCndGroupByKeys()
 {
 return pEnv->CallLongMethod(jObject,meth_getCndGroupByKeys);
@@ -138,6 +138,47 @@ Java_net_sf_farrago_fennel_FennelStorage_tupleStreamFetch(
     }
 }
 
+extern "C" JNIEXPORT jobject JNICALL
+Java_net_sf_farrago_fennel_FennelStorage_tupleStreamFetchDirect(
+    JNIEnv *pEnvInit, jclass, jlong hStream, jint cbConsumed)
+{
+    JniEnvRef pEnv(pEnvInit);
+    try {
+        ExecStream &stream =
+            CmdInterpreter::getExecStreamFromLong(hStream);
+        ExecStreamScheduler *scheduler = stream.getGraph().getScheduler();
+        assert(scheduler);
+        if (cbConsumed) {
+            // The caller is done with the tuples exposed by the previous
+            // call, so release them before asking the producer for more.
+            SharedExecStreamBufAccessor pPrevAccessor =
+                stream.getGraph().getStreamOutputAccessor(
+                    stream.getStreamId(), 0);
+            assert(
+                pPrevAccessor->getConsumptionAvailable() >= uint(cbConsumed));
+            pPrevAccessor->consumeData(
+                pPrevAccessor->getConsumptionStart() + cbConsumed);
+        }
+        ExecStreamBufAccessor &bufAccessor = scheduler->readStream(stream);
+        if (bufAccessor.getState() == EXECBUF_EOS) {
+            return NULL;
+        }
+        assert(bufAccessor.isConsumptionPossible());
+
+        // Hand Java a view of the consumption buffer itself rather than a
+        // copy; the data stays unconsumed (and therefore stable) until the
+        // next call tells us how much of it was read.
+        uint cbActual = bufAccessor.getConsumptionAvailable();
+        assert(cbActual);
+        PConstBuffer pBuffer = bufAccessor.getConsumptionStart();
+        return pEnv->NewDirectByteBuffer(
+            const_cast<PBuffer>(pBuffer), cbActual);
+    } catch (std::exception &ex) {
+        pEnv.handleExcn(ex);
+        return NULL;
+    }
+}
+
 extern "C" JNIEXPORT jint JNICALL
 Java_net_sf_farrago_fennel_FennelStorage_tupleStreamTransformFetch(
     JNIEnv *pEnvInit, jclass, jlong hStream, jint inputOrdinal,
@@ -102,6 +102,14 @@ JNIEXPORT void JNICALL Java_net_sf_farrago_fennel_FennelStorage_tupleStreamGraph
 JNIEXPORT jint JNICALL Java_net_sf_farrago_fennel_FennelStorage_tupleStreamFetch
   (JNIEnv *, jclass, jlong, jbyteArray);
 
+/*
+ * Class:     net_sf_farrago_fennel_FennelStorage
+ * Method:    tupleStreamFetchDirect
+ * Signature: (JI)Ljava/nio/ByteBuffer;
+ */
+JNIEXPORT jobject JNICALL Java_net_sf_farrago_fennel_FennelStorage_tupleStreamFetchDirect
+  (JNIEnv *, jclass, jlong, jint);
+
 /*
  * Class:     net_sf_farrago_fennel_FennelStorage
  * Method:    tupleStreamTransformFetch
@@ -20,19 +20,31 @@
 #include "fennel/common/CommonPreamble.h"
 #include "fennel/common/FennelResource.h"
 #include "fennel/common/FennelExcn.h"
+#include "fennel/common/SysCallExcn.h"
 #include "fennel/device/RandomAccessFileDevice.h"
 #include "fennel/flatfile/FlatFileBuffer.h"
 
+#include <sys/types.h>
+#include <sys/stat.h>
+
+#ifdef HAVE_MMAP
+#include <sys/mman.h>
+#endif
+
 FENNEL_BEGIN_CPPFILE("$Id$");
 
-FlatFileBuffer::FlatFileBuffer(const std::string &path)
+FlatFileBuffer::FlatFileBuffer(const std::string &path, bool memoryMapped)
 {
     this->path = path;
+    this->memoryMapped = memoryMapped;
     pBuffer = NULL;
     bufferSize = 0;
     contentSize = 0;
     pCurrent = NULL;
     pFile = NULL;
+    pMapping = NULL;
+    mappingSize = 0;
+    pRangeStart = pRangeEnd = NULL;
 }
 
 FlatFileBuffer::~FlatFileBuffer()
@@ -41,6 +53,9 @@ FlatFileBuffer::~FlatFileBuffer()
 
 void FlatFileBuffer::closeImpl()
 {
+    if (memoryMapped) {
+        unmap();
+    }
     if (pFile) {
         fclose(pFile);
         pFile = NULL;
@@ -51,6 +66,9 @@ void FlatFileBuffer::closeImpl()
 
 void FlatFileBuffer::setStorage(char *pBuffer, uint size)
 {
+    if (memoryMapped) {
+        return;
+    }
     this->pBuffer = pBuffer;
     bufferSize = size;
     contentSize = 0;
@@ -76,10 +94,122 @@ void FlatFileBuffer::open()
     filePosition = 0;
     contentSize = 0;
     pCurrent = NULL;
+
+    if (memoryMapped) {
+        openMapped();
+    }
+}
+
+void FlatFileBuffer::openMapped()
+{
+    struct stat fileStat;
+    if (fstat(fileno(pFile), &fileStat)) {
+        throw SysCallExcn("fstat failed");
+    }
+    mappingSize = fileStat.st_size;
+    if (mappingSize == 0) {
+        pMapping = &emptyMapping;
+    } else {
+#ifdef HAVE_MMAP
+        void *v = ::mmap(
+            NULL, mappingSize,
+            PROT_READ | PROT_WRITE, MAP_PRIVATE, fileno(pFile), 0);
+        if (v == MAP_FAILED) {
+            throw SysCallExcn("mmap failed");
+        }
+#ifdef MADV_SEQUENTIAL
+        // a hint only, so failure does not matter
+        ::madvise(v, mappingSize, MADV_SEQUENTIAL);
+#endif
+        pMapping = static_cast<char *>(v);
+#else
+        pMapping = static_cast<char *>(malloc(mappingSize));
+        if (!pMapping) {
+            throw std::bad_alloc();
+        }
+        if (fread(pMapping, 1, mappingSize, pFile) != mappingSize) {
+            free(pMapping);
+            pMapping = NULL;
+            throw FennelExcn(
+                FennelResource::instance().dataTransferFailed(
+                    path, mappingSize));
+        }
+#endif
+    }
+
+    pRangeStart = pMapping;
+    pRangeEnd = pMapping + mappingSize;
+    pBuffer = pRangeStart;
+    bufferSize = MAX_MAPPED_WINDOW;
+}
+
+void FlatFileBuffer::unmap()
+{
+    if (pMapping && pMapping != &emptyMapping) {
+#ifdef HAVE_MMAP
+        ::munmap(pMapping, mappingSize);
+#else
+        free(pMapping);
+#endif
+    }
+    pMapping = NULL;
+    mappingSize = 0;
+    pRangeStart = pRangeEnd = NULL;
+    pBuffer = NULL;
+}
+
+void FlatFileBuffer::setRange(
+    FileSize startOffset, FileSize endOffset, char rowDelim)
+{
+    assert(memoryMapped && pMapping != NULL && pCurrent == NULL);
+    pRangeStart = pMapping + alignToRow(startOffset, rowDelim);
+    if (endOffset > 0) {
+        pRangeEnd = pMapping + alignToRow(endOffset, rowDelim);
+    }
+    if (pRangeEnd < pRangeStart) {
+        pRangeEnd = pRangeStart;
+    }
+    pBuffer = pRangeStart;
+}
+
+FileSize FlatFileBuffer::alignToRow(FileSize offset, char rowDelim)
+{
+    if (offset == 0 || offset >= mappingSize) {
+        return std::min(offset, mappingSize);
+    }
+
+    // The row in progress at the offset ends at the first row delimiter at
+    // or after the preceding character. As in FlatFileParser, a row
+    // delimiter of '\n' matches either line character. If the offset falls
+    // within a "\r\n" pair, the parser skips the '\n' that begins the
+    // range as it would any leading row delimiter. Nothing here knows
+    // whether the delimiter found lies within a quoted value, so callers
+    // only divide files that have no quote or escape character.
+    const char *p = pMapping + offset - 1;
+    const char *end = pMapping + mappingSize;
+    for (; p < end; p++) {
+        if (*p == rowDelim || (rowDelim == '\n' && *p == '\r')) {
+            return p + 1 - pMapping;
+        }
+    }
+    return mappingSize;
 }
 
 uint FlatFileBuffer::read()
 {
+    if (memoryMapped) {
+        // slide the window forward to the read pointer; nothing is copied
+        char *pOldEnd = (pCurrent == NULL) ? pRangeStart : getEndPtr();
+        if (pCurrent == NULL) {
+            pCurrent = pRangeStart;
+        }
+        pBuffer = pCurrent;
+        FileSize remaining = pRangeEnd - pBuffer;
+        contentSize = std::min(remaining, FileSize(bufferSize));
+        filePosition = getEndPtr() - pMapping;
+        return getEndPtr() - pOldEnd;
+    }
+
     int residual = 0;
     if (pCurrent != NULL) {
         assert(pBuffer <= pCurrent && pCurrent <= getEndPtr());
@@ -130,6 +260,9 @@ bool FlatFileBuffer::isFull()
 
 bool FlatFileBuffer::isComplete()
 {
+    if (memoryMapped) {
+        return getEndPtr() == pRangeEnd;
+    }
     assert(pFile);
     return feof(pFile);
 }
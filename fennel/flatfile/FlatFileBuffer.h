@@ -58,6 +58,19 @@ typedef boost::shared_ptr<FlatFileBuffer> SharedFlatFileBuffer;
  *
  * <p>
  *
+ * Alternatively, a buffer may be constructed to read the file through a
+ * memory mapping. The storage provided by <code>setStorage()</code> is
+ * then not used: <code>read()</code> instead exposes a window of at most
+ * MAX_MAPPED_WINDOW characters of the mapping, beginning at the current
+ * read pointer, so that no data is copied. A mapped buffer may also be
+ * restricted to the rows in part of the file with <code>setRange()</code>,
+ * so that several scans can share a large file. The mapping is private
+ * and writable, because parsing strips quotes from values in place; pages
+ * that are not modified stay shared with the file system cache. Where the
+ * platform has no mmap, the file is read into memory instead.
+ *
+ * <p>
+ *
  * FIXME: This class should use a special character pointer. It may be
  * updated to handle unicode. It may be refined to prefetch pages for
  * better performance.
@@ -77,16 +90,53 @@ class FENNEL_FLATFILE_EXPORT FlatFileBuffer
     uint bufferSize, contentSize;
     char *pCurrent;
 
+    bool memoryMapped;
+
+    /**
+     * Start of the mapped file, and its size
+     */
+    char *pMapping;
+    FileSize mappingSize;
+
+    /**
+     * Part of the mapping to be read, as set by setRange()
+     */
+    char *pRangeStart;
+    char *pRangeEnd;
+
+    /**
+     * Stands in for the mapping of an empty file, which cannot be mapped
+     */
+    char emptyMapping;
+
     // implement ClosableObject
     void closeImpl();
 
+    void openMapped();
+
+    void unmap();
+
+    /**
+     * Returns the offset of the first row which begins at or after a given
+     * offset, where a row begins the file or follows a row delimiter.
+     */
+    FileSize alignToRow(FileSize offset, char rowDelim);
+
 public:
+    /**
+     * Maximum number of characters exposed by one read() of a mapped buffer.
+     * This is also the maximum size of a row in a mapped file.
+     */
+    static const uint MAX_MAPPED_WINDOW = 64 * 1024 * 1024;
+
     /**
      * Constructs a buffer
      *
      * @param path location of flat file to be opened
+     *
+     * @param memoryMapped whether to read the file through a memory mapping
      */
-    FlatFileBuffer(const std::string &path);
+    FlatFileBuffer(const std::string &path, bool memoryMapped = false);
     virtual ~FlatFileBuffer();
 
     /**
@@ -95,7 +145,7 @@ public:
     void open();
 
     /**
-     * Sets internal buffers
+     * Sets internal buffers. Ignored by a memory-mapped buffer.
      *
      * @param pBuffer storage for characters read
      *
@@ -103,6 +153,21 @@ public:
      */
     void setStorage(char *pBuffer, uint size);
 
+    /**
+     * Restricts a memory-mapped buffer to the rows which begin in a range
+     * of the file. Each end of the range is moved forward to the start of
+     * the next row, so buffers for adjacent ranges read each row exactly
+     * once. Must be called after open() and before the first read().
+     *
+     * @param startOffset offset at which the range begins
+     *
+     * @param endOffset offset at which the range ends, or 0 for the end of
+     * the file
+     *
+     * @param rowDelim row delimiter, as for FlatFileParser
+     */
+    void setRange(FileSize startOffset, FileSize endOffset, char rowDelim);
+
     /**
      * Reads more data into buffer, preserving unread data.
      * Invalidates previous read pointers.
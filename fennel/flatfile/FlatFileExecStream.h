@@ -150,6 +150,30 @@ struct FlatFileExecStreamParams : public SingleOutputExecStreamParams
      */
     std::vector<std::string> columnNames;
 
+    /**
+     * Whether to read the file through a memory mapping rather than through
+     * the scratch buffer. A memory-mapped scan may also be restricted to
+     * part of the file; see startOffset and endOffset.
+     */
+    bool memoryMapped;
+
+    /**
+     * For a memory-mapped scan, the byte offset at which the part of the
+     * file to be read begins. The part is extended to row boundaries: it
+     * consists of the rows which begin at or after the first row delimiter
+     * preceding this offset. Must be 0 unless memoryMapped is set.
+     */
+    FileSize startOffset;
+
+    /**
+     * For a memory-mapped scan, the byte offset at which the part of the
+     * file to be read ends, extended to the end of the row in progress at
+     * that offset. Scans with adjacent ranges read every row exactly once,
+     * provided that quoted values contain no row delimiters. Zero means
+     * the end of the file.
+     */
+    FileSize endOffset;
+
     explicit FlatFileExecStreamParams()
     {
         errorFilePath = "";
@@ -160,6 +184,9 @@ struct FlatFileExecStreamParams : public SingleOutputExecStreamParams
         header = true;
         numRowsScan = 0;
         mode = FLATFILE_MODE_QUERY;
+        memoryMapped = false;
+        startOffset = 0;
+        endOffset = 0;
     }
 };
 
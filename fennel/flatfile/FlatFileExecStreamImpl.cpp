@@ -47,6 +47,11 @@ void FlatFileExecStreamImpl::prepare(
     trim = params.trim;
     mapped = params.mapped;
     columnNames = params.columnNames;
+    memoryMapped = params.memoryMapped;
+    startOffset = params.startOffset;
+    endOffset = params.endOffset;
+    rowDelim = params.rowDelim;
+    assert(memoryMapped || (startOffset == 0 && endOffset == 0));
 
     dataTuple.compute(pOutAccessor->getTupleDesc());
 
@@ -57,7 +62,7 @@ void FlatFileExecStreamImpl::prepare(
     rowDesc = readTupleDescriptor(pOutAccessor->getTupleDesc());
     rowDesc.setLenient(lenient);
     pBuffer.reset(
-        new FlatFileBuffer(params.dataFilePath),
+        new FlatFileBuffer(params.dataFilePath, params.memoryMapped),
         ClosableObjectDestructor());
     pParser.reset(
         new FlatFileParser(
@@ -94,6 +99,9 @@ void FlatFileExecStreamImpl::open(bool restart)
         pBuffer->setStorage((char*)pBufferStorage, cbPageSize);
     }
     pBuffer->open();
+    if (memoryMapped) {
+        pBuffer->setRange(startOffset, endOffset, rowDelim);
+    }
     pBuffer->read();
     next = pBuffer->getReadPtr();
     isRowPending = false;
@@ -59,6 +59,10 @@ class FENNEL_FLATFILE_EXPORT FlatFileExecStreamImpl
     bool lenient;
     bool trim;
     bool mapped;
+    bool memoryMapped;
+    FileSize startOffset;
+    FileSize endOffset;
+    char rowDelim;
     std::vector<std::string> columnNames;
 
     FlatFileRowDescriptor rowDesc;
@@ -72,6 +72,51 @@ void FlatFileRowParseResult::reset()
     nRowDelimsRead = 0;
 }
 
+FlatFileCharSet::FlatFileCharSet()
+{
+    nChars = 0;
+    memset(members, 0, sizeof(members));
+}
+
+void FlatFileCharSet::add(char c)
+{
+    if (contains(c)) {
+        return;
+    }
+    assert(nChars < MAX_CHARS);
+    members[(unsigned char) c] = true;
+    patterns[nChars++] = (unsigned char) c * 0x0101010101010101ULL;
+}
+
+const char *FlatFileCharSet::find(const char *buffer, const char *end) const
+{
+    const uint64_t lowBits = 0x0101010101010101ULL;
+    const uint64_t highBits = 0x8080808080808080ULL;
+    const char *read = buffer;
+
+    // Skip whole words which contain no member. A byte of (word ^ pattern)
+    // is zero where the word holds the member, and
+    // (x - lowBits) & ~x & highBits is non-zero if and only if some byte of
+    // x is zero.
+    while (end - read >= (int) sizeof(uint64_t)) {
+        uint64_t word;
+        memcpy(&word, read, sizeof(word));
+        uint64_t hits = 0;
+        for (uint i = 0; i < nChars; i++) {
+            uint64_t x = word ^ patterns[i];
+            hits |= (x - lowBits) & ~x & highBits;
+        }
+        if (hits) {
+            break;
+        }
+        read += sizeof(uint64_t);
+    }
+    while (read < end && !contains(*read)) {
+        read++;
+    }
+    return read;
+}
+
 FlatFileParser::FlatFileParser(
     char fieldDelim, char rowDelim, char quote, char escape, bool doTrim)
 {
@@ -86,6 +131,20 @@ FlatFileParser::FlatFileParser(
         assert(quote == 0);
         assert(escape == 0);
     }
+
+    if (rowDelim == '\n') {
+        rowDelims.add('\r');
+    }
+    rowDelims.add(rowDelim);
+
+    // NOTE: a quote or escape of zero (none) is still compared with the
+    // text by scanColumn, so it belongs in these sets too
+    quotedSpecials.add(quote);
+    quotedSpecials.add(escape);
+    unquotedSpecials = rowDelims;
+    unquotedSpecials.add(fieldDelim);
+    unquotedSpecials.add(quote);
+    unquotedSpecials.add(escape);
 }
 
 void FlatFileParser::scanRow(
@@ -220,6 +279,9 @@ const char *FlatFileParser::scanRowDelim(
 {
     const char *read = buffer;
     const char *end = buffer + size;
+    if (search) {
+        return rowDelims.find(read, end);
+    }
     while (read < end) {
         if (isRowDelim(*read) == search) {
             break;
@@ -266,6 +328,13 @@ void FlatFileParser::scanColumn(
         read++;
     }
     while (read < end) {
+        // skip over ordinary characters in bulk
+        read = quoted
+            ? quotedSpecials.find(read, end)
+            : unquotedSpecials.find(read, end);
+        if (read == end) {
+            break;
+        }
         if (*read == quote) {
             read++;
             if (quoteEscape) {
@@ -322,13 +391,11 @@ void FlatFileParser::scanFixedColumn(
 
     FlatFileColumnParseResult::DelimiterType type =
         FlatFileColumnParseResult::NO_DELIM;
-    while (read < end && remaining > 0) {
-        if (isRowDelim(*read)) {
-            type = FlatFileColumnParseResult::ROW_DELIM;
-            break;
-        }
-        read++;
-        remaining--;
+    const char *limit = (end - read > remaining) ? read + remaining : end;
+    read = rowDelims.find(read, limit);
+    remaining -= read - buffer;
+    if (read < limit) {
+        type = FlatFileColumnParseResult::ROW_DELIM;
     }
 
     // Resolve delimiter type if another character can be read. This allows
@@ -373,6 +373,50 @@ public:
     }
 };
 
+/**
+ * FlatFileCharSet is a small set of characters, such as the delimiters of a
+ * flat file, which can be searched for in bulk. A search examines a machine
+ * word of text at a time, and examines individual characters only within a
+ * word known to contain a member of the set.
+ */
+class FENNEL_FLATFILE_EXPORT FlatFileCharSet
+{
+    static const uint MAX_CHARS = 5;
+
+    uint nChars;
+
+    /**
+     * Each member repeated in every byte of a word
+     */
+    uint64_t patterns[MAX_CHARS];
+
+    bool members[256];
+
+public:
+    explicit FlatFileCharSet();
+
+    /**
+     * Adds a character to the set
+     */
+    void add(char c);
+
+    bool contains(char c) const
+    {
+        return members[(unsigned char) c];
+    }
+
+    /**
+     * Finds the first member of the set in a buffer
+     *
+     * @param[in] buffer start of text to search
+     *
+     * @param[in] end end of text to search
+     *
+     * @return pointer to the first member found, or end
+     */
+    const char *find(const char *buffer, const char *end) const;
+};
+
 /**
  * This class parses fields and rows from a field delimited text buffer.
  * The main entry point is <code>scanRow()</code> which returns pointers
@@ -396,6 +440,23 @@ class FENNEL_FLATFILE_EXPORT FlatFileParser
      */
     bool fixed;
 
+    /**
+     * Characters which end a run of ordinary characters within an unquoted
+     * column: delimiters, quotes and escapes
+     */
+    FlatFileCharSet unquotedSpecials;
+
+    /**
+     * Characters which end a run of ordinary characters within a quoted
+     * column: quotes and escapes
+     */
+    FlatFileCharSet quotedSpecials;
+
+    /**
+     * Characters which are row delimiters
+     */
+    FlatFileCharSet rowDelims;
+
     /**
      * Scans through buffer to recover from any row errors. Scans to row
      * delimiter if one was not found. Then scans past spurious row
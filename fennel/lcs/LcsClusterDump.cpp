@@ -137,6 +137,8 @@ void LcsClusterDump::dump(
         callTrace("oVal:             %5u", pBatch[i].oVal);
         callTrace("oLastValHighMark: %5u", pBatch[i].oLastValHighMark);
         callTrace("recSize:          %5u", pBatch[i].recSize);
+        callTrace("iMinVal:          %5u", pBatch[i].iMinVal);
+        callTrace("iMaxVal:          %5u", pBatch[i].iMaxVal);
 
         if (pBatch[i].mode == LCS_COMPRESSED) {
             nBits = calcWidth(pBatch[i].nVal);
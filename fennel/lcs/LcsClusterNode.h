@@ -86,6 +86,19 @@ public:
      * Size of batch records in fixed mode case
      */
     uint recSize;
+
+    /**
+     * Position of the smallest value in the batch, recorded when the batch
+     * is written.  In the case of compressed mode, this is a value code
+     * (always 0, since the distinct values are sorted).  In the other cases,
+     * it is the row within the batch holding the value.
+     */
+    uint iMinVal;
+
+    /**
+     * Position of the largest value in the batch; see iMinVal
+     */
+    uint iMaxVal;
 };
 
 typedef LcsBatchDir *PLcsBatchDir;
@@ -98,7 +111,7 @@ typedef LcsBatchDir *PLcsBatchDir;
  */
 struct LcsClusterNode : public StoredNode
 {
-    static const MagicNumber MAGIC_NUMBER = 0xa83767addb0d2f09LL;
+    static const MagicNumber MAGIC_NUMBER = 0xa83767addb0d2f0aLL;
 public:
 
     /**
@@ -20,6 +20,7 @@
 #include "fennel/common/CommonPreamble.h"
 #include "fennel/lcs/LcsClusterNodeWriter.h"
 #include "fennel/tuple/TupleAccessor.h"
+#include "fennel/tuple/TupleDataWithBuffer.h"
 #include <boost/scoped_array.hpp>
 
 FENNEL_BEGIN_CPPFILE("$Id$");
@@ -199,6 +200,8 @@ void LcsClusterNodeWriter::openNew(LcsRid startRID)
         batchDirs[i].oVal = 0;
         batchDirs[i].oLastValHighMark = lastVal[i];
         batchDirs[i].nValHighMark = nVal[i];
+        batchDirs[i].iMinVal = 0;
+        batchDirs[i].iMaxVal = 0;
         batchOffset[i] = hdrSize;
         // # of bits it takes to represent 0 values
         nBits[i] = 0;
@@ -640,6 +643,12 @@ void LcsClusterNodeWriter::putCompressedBatch(
         b += w[j];
     }
 
+    // the distinct values are sorted, so the smallest and largest are the
+    // first and the last
+    batchDirs[column].iMinVal = 0;
+    batchDirs[column].iMaxVal =
+        (batchDirs[column].nVal > 0) ? batchDirs[column].nVal - 1 : 0;
+
     // put the batch in the batch directory
     pBatch = (PLcsBatchDir)(pBlock[column] + batchOffset[column]);
     pBatch[batchCount[column]] = batchDirs[column];
@@ -741,6 +750,9 @@ void LcsClusterNodeWriter::putFixedVarBatch(
         pVal += batchRecSize;
     }
 
+    // must be done before the value bank is reset
+    setBatchMinMax(column, pRows, batchRows);
+
     if (pValBank[column]) {
         oValBank[column] = 0;
     }
@@ -781,6 +793,59 @@ void LcsClusterNodeWriter::putFixedVarBatch(
     maxValueSize[column] = 0;
 }
 
+void LcsClusterNodeWriter::setBatchMinMax(
+    uint column, uint16_t *pRows, uint nRows)
+{
+    batchDirs[column].iMinVal = 0;
+    batchDirs[column].iMaxVal = 0;
+    if (nRows < 2) {
+        return;
+    }
+
+    TupleDescriptor valDesc;
+    valDesc.push_back(colTupleDesc[column]);
+    TupleDataWithBuffer val(valDesc);
+    TupleDataWithBuffer bound(valDesc);
+
+    uint16_t localLastVal = lastVal[column];
+    PBuffer localpValBank = pValBank[column] + valBankStart[column];
+    uint16_t localoValBank = oValBank[column];
+    PBuffer localpBlock = pBlock[column];
+
+    for (uint i = 1; i < nRows; i++) {
+        attrAccessors[column].loadValue(
+            val[0],
+            valueSource(
+                localLastVal, localpValBank, localoValBank,
+                localpBlock, pRows[i]));
+
+        attrAccessors[column].loadValue(
+            bound[0],
+            valueSource(
+                localLastVal, localpValBank, localoValBank,
+                localpBlock, pRows[batchDirs[column].iMinVal]));
+        int c = valDesc.compareTuples(val, bound);
+        bound.resetBuffer();
+
+        if (c < 0) {
+            batchDirs[column].iMinVal = i;
+        } else {
+            attrAccessors[column].loadValue(
+                bound[0],
+                valueSource(
+                    localLastVal, localpValBank, localoValBank,
+                    localpBlock, pRows[batchDirs[column].iMaxVal]));
+            if (valDesc.compareTuples(val, bound) > 0) {
+                batchDirs[column].iMaxVal = i;
+            }
+            bound.resetBuffer();
+        }
+
+        // reset datum pointers in case the value just read was null
+        val.resetBuffer();
+    }
+}
+
 void LcsClusterNodeWriter::pickCompressionMode(
     uint column, uint recSize, uint nRow, uint16_t **pValOffset,
     LcsBatchMode &compressionMode)
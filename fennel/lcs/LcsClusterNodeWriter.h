@@ -205,6 +205,20 @@ private:
         }
     }
 
+    /**
+     * Records in the batch directory of a fixed or variable mode batch the
+     * rows holding the smallest and largest values of the batch, so that
+     * scans can skip the batch when no value in that range passes their
+     * filters
+     *
+     * @param column column corresponding to the batch
+     *
+     * @param pRows array of offsets to values
+     *
+     * @param nRows number of rows being written to the batch
+     */
+    void setBatchMinMax(uint column, uint16_t *pRows, uint nRows);
+
     /**
      * Moves all cluster data from cluster page to temporary storage
      *
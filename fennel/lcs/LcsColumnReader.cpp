@@ -32,6 +32,7 @@ void LcsColumnReader::sync()
     pBase = pScan->pLeaf - pScan->delta[colOrd];
 
     filters.filteringBitmap.resize(0);
+    batchRejected = filters.hasResidualFilters && !batchOverlapsFilters();
 
     if (batchIsCompressed()) {
         // where the bit vectors start
@@ -123,7 +124,10 @@ void LcsColumnReader::sync()
         // Set function pointer to get data
         pGetCurrentValueFunc = &LcsColumnReader::getCompressedValue;
 
-        if (filters.hasResidualFilters) {
+        if (batchRejected) {
+            // no value passes, so leave every bit clear
+            filters.filteringBitmap.resize(pBatch->nVal);
+        } else if (filters.hasResidualFilters) {
             /*
              * initializes bitmap
              */
@@ -175,6 +179,10 @@ uint16_t LcsColumnReader::getCurrentValueCode() const
 bool LcsColumnReader::applyFilters(
     TupleDescriptor &projDescriptor, TupleData &outputTupleData)
 {
+    if (batchRejected) {
+        return false;
+    }
+
     if (!filters.filteringBitmap.empty()) {
         /*
          * bitmap filtering
@@ -328,6 +336,70 @@ void LcsColumnReader::buildContainsMap()
     }
 }
 
+const PBuffer LcsColumnReader::getBatchBoundValue(uint iVal)
+{
+    if (batchIsCompressed()) {
+        return getBatchValue(iVal);
+    } else if (batchIsFixed()) {
+        return (const PBuffer) (pValues + (iVal * pBatch->recSize));
+    } else {
+        return (const PBuffer) (getBatchBase() + getBatchOffsets()[iVal]);
+    }
+}
+
+bool LcsColumnReader::batchOverlapsFilters()
+{
+    if (pBatch->nRow == 0 || pBatch->nVal == 0) {
+        return true;
+    }
+
+    TupleDataWithBuffer &readerKeyData = filters.readerKeyData;
+
+    for (uint k = 0; k < filters.filterData.size(); k++) {
+        LcsResidualFilter *filter = filters.filterData[k].get();
+
+        // rejected if the largest value is below the lower bound
+        if (filter->lowerBoundDirective != SEARCH_UNBOUNDED_LOWER) {
+            filters.attrAccessor.loadValue(
+                readerKeyData[0],
+                getBatchBoundValue(pBatch->iMaxVal));
+            int c = filters.inputKeyDesc.compareTuples(
+                filter->boundData, filters.lowerBoundProj,
+                readerKeyData, allProj);
+            readerKeyData.resetBuffer();
+
+            if (c > 0
+                || (c == 0
+                    && filter->lowerBoundDirective != SEARCH_CLOSED_LOWER))
+            {
+                continue;
+            }
+        }
+
+        // rejected if the smallest value is above the upper bound
+        if (filter->upperBoundDirective != SEARCH_UNBOUNDED_UPPER) {
+            filters.attrAccessor.loadValue(
+                readerKeyData[0],
+                getBatchBoundValue(pBatch->iMinVal));
+            int c = filters.inputKeyDesc.compareTuples(
+                filter->boundData, filters.upperBoundProj,
+                readerKeyData, allProj);
+            readerKeyData.resetBuffer();
+
+            if (c < 0
+                || (c == 0
+                    && filter->upperBoundDirective != SEARCH_CLOSED_UPPER))
+            {
+                continue;
+            }
+        }
+
+        return true;
+    }
+
+    return false;
+}
+
 FENNEL_END_CPPFILE("$Id$");
 
 // End LcsColumnReader.cpp
@@ -93,6 +93,12 @@ class FENNEL_LCS_EXPORT LcsColumnReader
      */
     TupleProjection allProj;
 
+    /**
+     * True if the range of values recorded for the current batch shows that
+     * no row of the batch can pass this column's filters
+     */
+    bool batchRejected;
+
     /**
      * Returns value from compressed batch
      */
@@ -152,6 +158,23 @@ class FENNEL_LCS_EXPORT LcsColumnReader
      */
     void buildContainsMap();
 
+    /**
+     * Returns the value at a position recorded in the batch directory;
+     * a value code in a compressed batch, otherwise a row of the batch
+     *
+     * @param iVal position of the value
+     */
+    const PBuffer getBatchBoundValue(uint iVal);
+
+    /**
+     * Determines whether some filter's range overlaps the range between the
+     * smallest and largest values of the current batch, as recorded when the
+     * batch was written
+     *
+     * @return false if no row of the batch can pass the filters
+     */
+    bool batchOverlapsFilters();
+
 public:
     /**
      * Initializes a scan of column "colOrdInit"
@@ -167,6 +190,7 @@ public:
         filters.hasResidualFilters = false;
         filters.filterDataInitialized = false;
         allProj.push_back(0);
+        batchRejected = false;
     }
 
     /**
@@ -270,6 +294,20 @@ public:
         return filters;
     }
 
+    /**
+     * Determines whether no row of the current batch can pass this column's
+     * residual filters.  The positions of the smallest and largest values of
+     * each batch are recorded in its batch directory when the cluster is
+     * written, so this only compares the filters' bounds with those two
+     * values, for batches of any mode.
+     *
+     * @return true if the filters reject every row of the current batch
+     */
+    bool batchRejectsAllRows() const
+    {
+        return batchRejected;
+    }
+
     /**
      * Applies the filters
      *
@@ -174,6 +174,17 @@ void LcsRowScanBaseExecStream::syncColumns(SharedLcsClusterReader &pScan)
     }
 }
 
+bool LcsRowScanBaseExecStream::rangeRejectsAllRows(
+    SharedLcsClusterReader &pScan)
+{
+    for (uint iCluCol = 0; iCluCol < pScan->nColsToRead; iCluCol++) {
+        if (pScan->clusterCols[iCluCol].batchRejectsAllRows()) {
+            return true;
+        }
+    }
+    return false;
+}
+
 bool LcsRowScanBaseExecStream::readColVals(
     SharedLcsClusterReader &pScan,
     TupleDataWithBuffer &tupleData,
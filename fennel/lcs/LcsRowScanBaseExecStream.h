@@ -132,6 +132,17 @@ protected:
         TupleDataWithBuffer &tupleData,
         uint colStart);
 
+    /**
+     * Determines whether the residual filters on some column of a cluster
+     * reject every row in the reader's current range, so that the scan can
+     * skip to the end of the range.  Must be called after syncColumns.
+     *
+     * @param pScan cluster reader
+     *
+     * @return true if no row in the current range can pass the filters
+     */
+    bool rangeRejectsAllRows(SharedLcsClusterReader &pScan);
+
     /**
      * Builds outputProj from params.
      *
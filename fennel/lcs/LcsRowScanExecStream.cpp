@@ -28,6 +28,12 @@ FENNEL_BEGIN_CPPFILE("$Id$");
 
 int32_t LcsRowScanExecStreamParams::defaultSystemSamplingClumps = 10;
 
+LcsRowScanExecStreamParams::LcsRowScanExecStreamParams()
+{
+    startRid = LcsRid(0);
+    endRid = LcsRid(MAXU);
+}
+
 LcsRowScanExecStream::LcsRowScanExecStream()
 :
     LcsRowScanBaseExecStream(),
@@ -35,6 +41,7 @@ LcsRowScanExecStream::LcsRowScanExecStream()
 {
     ridRuns.resize(4000);
     isCountAgg = false;
+    nRangesSkipped = 0;
 }
 
 void LcsRowScanExecStream::prepareResidualFilters(
@@ -128,6 +135,10 @@ void LcsRowScanExecStream::prepare(LcsRowScanExecStreamParams const &params)
 
     isFullScan = params.isFullScan;
     hasExtraFilter = params.hasExtraFilter;
+    startRid = params.startRid;
+    endRid = params.endRid;
+    assert(startRid == LcsRid(0) || isFullScan);
+    assert(endRid == LcsRid(MAXU) || isFullScan);
 
     // Set up rid bitmap input stream
     ridTupleData.compute(inAccessors[0]->getTupleDesc());
@@ -205,6 +216,7 @@ void LcsRowScanExecStream::open(bool restart)
     producePending = false;
     tupleFound = false;
     nRidsRead = 0;
+    nRangesSkipped = 0;
     ridRunsBuilt = false;
     currRidRun.startRid = LcsRid(MAXU);
     currRidRun.nRids = 0;
@@ -212,7 +224,7 @@ void LcsRowScanExecStream::open(bool restart)
     ridRunIter.reset();
 
     if (isFullScan) {
-        inputRid = LcsRid(0);
+        inputRid = startRid;
         readDeletedRid = true;
         deletedRidEos = false;
     }
@@ -467,6 +479,18 @@ ExecStreamResult LcsRowScanExecStream::execute(ExecStreamQuantum const &quantum)
 
                     // Tell all column scans that the batch has changed.
                     syncColumns(pScan);
+
+                    // If some column's filters reject every value in its
+                    // batch, no rid in the range can qualify, so skip the
+                    // rest of the range without reading its rows.
+                    if (rangeRejectsAllRows(pScan)) {
+                        if (nextRid < pScan->getRangeEndRid()) {
+                            nextRid = pScan->getRangeEndRid();
+                        }
+                        nRangesSkipped++;
+                        passedFilter = false;
+                        break;
+                    }
                 } else {
                     // Should not have moved into previous batch.
                     assert(rid > pScan->getRangeStartRid());
@@ -542,6 +566,10 @@ ExecStreamResult LcsRowScanExecStream::fillRidRunBuffer()
             nRows = 1;
 
         } else {
+            if (inputRid >= endRid) {
+                ridRunsBuilt = true;
+                break;
+            }
             if (!deletedRidEos && readDeletedRid) {
                 rc = ridReader.readRidAndAdvance(deletedRid);
                 if (rc == EXECRC_EOS) {
@@ -560,6 +588,11 @@ ExecStreamResult LcsRowScanExecStream::fillRidRunBuffer()
                     readDeletedRid = false;
                 }
             }
+            // deleted rids preceding our rid range don't matter
+            if (!deletedRidEos && deletedRid < inputRid) {
+                readDeletedRid = true;
+                continue;
+            }
             // skip over deleted rids
             if (!deletedRidEos && inputRid == deletedRid) {
                 inputRid++;
@@ -571,6 +604,11 @@ ExecStreamResult LcsRowScanExecStream::fillRidRunBuffer()
                 } else {
                     nRows = opaqueToInt(deletedRid - inputRid);
                 }
+                if (endRid != LcsRid(MAXU)
+                    && nRows > opaqueToInt(endRid - inputRid))
+                {
+                    nRows = opaqueToInt(endRid - inputRid);
+                }
             }
         }
 
@@ -678,6 +716,10 @@ ExecStreamResult LcsRowScanExecStream::fillRidRunBuffer()
 
 void LcsRowScanExecStream::closeImpl()
 {
+    FENNEL_TRACE(
+        TRACE_FINE,
+        "ranges skipped by residual filters = " << nRangesSkipped);
+
     LcsRowScanBaseExecStream::closeImpl();
 
     for (uint i = 0; i < nFilters; i++) {
@@ -98,6 +98,20 @@ struct FENNEL_LCS_EXPORT LcsRowScanExecStreamParams
      * specific to sampling.
      */
     int64_t samplingRowCount;
+
+    /**
+     * For a full table scan, the first rid to read.  A table can be scanned
+     * in parallel by giving each of several scans a distinct rid range.
+     */
+    LcsRid startRid;
+
+    /**
+     * For a full table scan, the rid just past the last rid to read, or
+     * MAXU to read through the end of the table.
+     */
+    LcsRid endRid;
+
+    explicit LcsRowScanExecStreamParams();
 };
 
 /**
@@ -151,6 +165,12 @@ class FENNEL_LCS_EXPORT LcsRowScanExecStream
      */
     RecordNum nRidsRead;
 
+    /**
+     * Number of cluster ranges skipped because a column's residual filters
+     * rejected every value in its batch
+     */
+    RecordNum nRangesSkipped;
+
     /**
      * Current rid read from the input stream
      */
@@ -280,6 +300,13 @@ class FENNEL_LCS_EXPORT LcsRowScanExecStream
      */
     int64_t rowCount;
 
+    /**
+     * Rid range read by a full table scan; endRid is MAXU if the scan runs
+     * through the end of the table
+     */
+    LcsRid startRid;
+    LcsRid endRid;
+
     /**
      * True if completed building rid runs
      */
@@ -358,6 +385,16 @@ public:
         ExecStreamResourceQuantity &minQuantity,
         ExecStreamResourceQuantity &optQuantity);
     virtual void closeImpl();
+
+    /**
+     * @return number of cluster ranges skipped since the stream was last
+     * opened, because a column's residual filters rejected every value in
+     * its batch
+     */
+    RecordNum getNumRangesSkipped() const
+    {
+        return nRangesSkipped;
+    }
 };
 
 FENNEL_END_NAMESPACE
@@ -83,6 +83,15 @@ protected:
         BTreeDescriptor &bTreeDescriptor,
         bool compressed);
 
+    /**
+     * Loads a single cluster with nRows rows, one column per generator.
+     */
+    void loadOneCluster(
+        uint nRows,
+        vector<boost::shared_ptr<ColumnGenerator<int64_t> > > &
+            columnGenerators,
+        BTreeDescriptor &bTreeDescriptor);
+
     /**
      * Reads rows from clusters.  Assumes clusters have been loaded by
      * loadClusters/loadOneCluster.
@@ -216,6 +225,25 @@ protected:
         LbmEntry &lbmEntry, TupleAccessor &bitmapTupleAccessor, PBuffer pBuf,
         int &bufSize);
 
+    /**
+     * Loads a single column cluster and scans it with a residual filter
+     * selecting the values between 1000 and 1099, verifying the result and
+     * that some of the cluster's ranges were skipped
+     *
+     * @param nRows number of rows to load
+     *
+     * @param loadGenerator generator for the values loaded
+     *
+     * @param resultGenerator generator for the values expected in the result
+     *
+     * @param nResultRows number of rows expected in the result
+     */
+    void scanSkippingRanges(
+        uint nRows,
+        SharedInt64ColumnGenerator loadGenerator,
+        SharedInt64ColumnGenerator resultGenerator,
+        uint nResultRows);
+
 public:
     explicit LcsRowScanExecStreamTest()
     {
@@ -228,6 +256,9 @@ public:
         FENNEL_UNIT_TEST_CASE(LcsRowScanExecStreamTest, testBernoulliSampling);
         FENNEL_UNIT_TEST_CASE(LcsRowScanExecStreamTest, testSystemSampling);
         FENNEL_UNIT_TEST_CASE(LcsRowScanExecStreamTest, testCount);
+        FENNEL_UNIT_TEST_CASE(LcsRowScanExecStreamTest, testRangeSkipping);
+        FENNEL_UNIT_TEST_CASE(
+            LcsRowScanExecStreamTest, testFixedRangeSkipping);
     }
 
     void testCaseSetUp();
@@ -240,6 +271,8 @@ public:
     void testBernoulliSampling();
     void testSystemSampling();
     void testCount();
+    void testRangeSkipping();
+    void testFixedRangeSkipping();
 };
 
 void LcsRowScanExecStreamTest::loadClusters(
@@ -265,12 +298,6 @@ void LcsRowScanExecStreamTest::loadOneCluster(
     BTreeDescriptor &bTreeDescriptor,
     bool compressed)
 {
-    MockProducerExecStreamParams mockParams;
-    for (uint i = 0; i < nCols; i++) {
-        mockParams.outputTupleDesc.push_back(attrDesc_int64);
-    }
-    mockParams.nRows = nRows;
-
     // generators for input stream load
 
     vector<boost::shared_ptr<ColumnGenerator<int64_t> > > columnGenerators;
@@ -283,6 +310,20 @@ void LcsRowScanExecStreamTest::loadOneCluster(
                 : new SeqColumnGenerator(i + colStart));
         columnGenerators.push_back(col);
     }
+    loadOneCluster(nRows, columnGenerators, bTreeDescriptor);
+}
+
+void LcsRowScanExecStreamTest::loadOneCluster(
+    uint nRows,
+    vector<boost::shared_ptr<ColumnGenerator<int64_t> > > &columnGenerators,
+    BTreeDescriptor &bTreeDescriptor)
+{
+    uint nCols = columnGenerators.size();
+    MockProducerExecStreamParams mockParams;
+    for (uint i = 0; i < nCols; i++) {
+        mockParams.outputTupleDesc.push_back(attrDesc_int64);
+    }
+    mockParams.nRows = nRows;
     mockParams.pGenerator.reset(
         new CompositeExecStreamGenerator(columnGenerators));
 
@@ -655,6 +696,132 @@ void LcsRowScanExecStreamTest::testCount()
         &countParams);
 }
 
+/**
+ * Loads a single column in "date" order, NDUPS rows per value, and filters
+ * it on a narrow range of values.  The batches are compressed; those lying
+ * wholly outside the range should be skipped without their rows being read.
+ */
+void LcsRowScanExecStreamTest::testRangeSkipping()
+{
+    scanSkippingRanges(
+        50000,
+        SharedInt64ColumnGenerator(new DupColumnGenerator(NDUPS)),
+        SharedInt64ColumnGenerator(new DupColumnGenerator(NDUPS, 1000)),
+        100 * NDUPS);
+}
+
+/**
+ * Same as testRangeSkipping, but with unique values, which are stored in
+ * fixed mode batches.  Those batches are skipped using the smallest and
+ * largest values recorded for them when the cluster was loaded.
+ */
+void LcsRowScanExecStreamTest::testFixedRangeSkipping()
+{
+    scanSkippingRanges(
+        50000,
+        SharedInt64ColumnGenerator(new SeqColumnGenerator(0)),
+        SharedInt64ColumnGenerator(new SeqColumnGenerator(1000)),
+        100);
+}
+
+void LcsRowScanExecStreamTest::scanSkippingRanges(
+    uint nRows,
+    SharedInt64ColumnGenerator loadGenerator,
+    SharedInt64ColumnGenerator resultGenerator,
+    uint nResultRows)
+{
+    boost::shared_ptr<BTreeDescriptor> pBTreeDesc =
+        boost::shared_ptr<BTreeDescriptor> (new BTreeDescriptor());
+    bTreeClusters.push_back(pBTreeDesc);
+    vector<boost::shared_ptr<ColumnGenerator<int64_t> > > columnGenerators;
+    columnGenerators.push_back(loadGenerator);
+    loadOneCluster(nRows, columnGenerators, *pBTreeDesc);
+    resetExecStreamTest();
+
+    // empty input, standing in for the scan of the deletion index
+    ValuesExecStreamParams valuesParams;
+    valuesParams.outputTupleDesc.push_back(attrDesc_int64);
+    valuesParams.outputTupleDesc.push_back(attrDesc_bitmap);
+    valuesParams.outputTupleDesc.push_back(attrDesc_bitmap);
+    boost::shared_array<FixedBuffer> pBuffer;
+    pBuffer.reset(new FixedBuffer[16]);
+    valuesParams.pTupleBuffer = pBuffer;
+    valuesParams.bufSize = 0;
+    ExecStreamEmbryo valuesStreamEmbryo;
+    valuesStreamEmbryo.init(new ValuesExecStream(), valuesParams);
+    valuesStreamEmbryo.getStream()->setName("ValuesExecStream");
+
+    // key0 between 1000 and 1099
+    TupleAttributeDescriptor attrDesc_nullableInt64 =
+        TupleAttributeDescriptor(
+            stdTypeFactory.newDataType(STANDARD_TYPE_INT_64),
+            true, sizeof(uint64_t));
+    TupleDescriptor inputTupleDesc;
+    for (uint i = 0; i < 2; i++) {
+        inputTupleDesc.push_back(attrDesc_char1);
+        inputTupleDesc.push_back(attrDesc_nullableInt64);
+    }
+    TupleData inputTupleData(inputTupleDesc);
+    TupleAccessor inputTupleAccessor;
+    inputTupleAccessor.compute(inputTupleDesc);
+    boost::shared_array<FixedBuffer> inputBuffer;
+    inputBuffer.reset(
+        new FixedBuffer[inputTupleAccessor.getMaxByteCount()]);
+    uint offset = 0;
+    setSearchKey(
+        '[', ']', 1000, 1099, inputBuffer.get(), offset, inputTupleAccessor,
+        inputTupleData);
+
+    ValuesExecStreamParams filterParams;
+    filterParams.outputTupleDesc = inputTupleDesc;
+    filterParams.pTupleBuffer = inputBuffer;
+    filterParams.bufSize = offset;
+    ExecStreamEmbryo filterStreamEmbryo;
+    filterStreamEmbryo.init(new ValuesExecStream(), filterParams);
+    filterStreamEmbryo.getStream()->setName("ValuesExecStream1");
+
+    // full scan of the cluster, with a residual filter on its column
+    LcsRowScanExecStreamParams scanParams;
+    scanParams.hasExtraFilter = true;
+    scanParams.samplingMode = SAMPLING_OFF;
+    scanParams.isFullScan = true;
+
+    struct LcsClusterScanDef clusterScanDef;
+    clusterScanDef.clusterTupleDesc.push_back(attrDesc_int64);
+    clusterScanDef.pSegment = pBTreeDesc->segmentAccessor.pSegment;
+    clusterScanDef.pCacheAccessor = pBTreeDesc->segmentAccessor.pCacheAccessor;
+    clusterScanDef.tupleDesc = pBTreeDesc->tupleDescriptor;
+    clusterScanDef.keyProj = pBTreeDesc->keyProjection;
+    clusterScanDef.rootPageId = pBTreeDesc->rootPageId;
+    clusterScanDef.segmentId = pBTreeDesc->segmentId;
+    clusterScanDef.pageOwnerId = pBTreeDesc->pageOwnerId;
+    scanParams.lcsClusterScanDefs.push_back(clusterScanDef);
+
+    scanParams.outputProj.push_back(0);
+    scanParams.outputTupleDesc.push_back(attrDesc_int64);
+    scanParams.residualFilterCols.push_back(0);
+
+    LcsRowScanExecStream *pScanStream = new LcsRowScanExecStream();
+    ExecStreamEmbryo scanStreamEmbryo;
+    scanStreamEmbryo.init(pScanStream, scanParams);
+    scanStreamEmbryo.getStream()->setName("RowScanExecStream");
+
+    std::vector<ExecStreamEmbryo> sources;
+    sources.push_back(valuesStreamEmbryo);
+    sources.push_back(filterStreamEmbryo);
+    SharedExecStream pOutputStream =
+        prepareConfluenceGraph(sources, scanStreamEmbryo);
+
+    vector<boost::shared_ptr<ColumnGenerator<int64_t> > > resultGenerators;
+    resultGenerators.push_back(resultGenerator);
+    CompositeExecStreamGenerator resultTupleGenerator(resultGenerators);
+    verifyOutput(*pOutputStream, nResultRows, resultTupleGenerator);
+
+    // Only the 100 values in the range pass, so the batches before and
+    // after them must have been skipped.
+    BOOST_CHECK(pScanStream->getNumRangesSkipped() > 0);
+}
+
 /**
  * Create an empty cluster with 1 column.  Try reading a rid from it
  */
@@ -34,6 +34,8 @@
 #include "fennel/tuple/StandardTypeDescriptor.h"
 
 #include <boost/test/test_tools.hpp>
+#include <boost/date_time/posix_time/posix_time.hpp>
+#include <fstream>
 
 #include "fennel/flatfile/FlatFileBuffer.h"
 #include "fennel/flatfile/FlatFileParser.h"
@@ -104,17 +106,37 @@ class FlatFileExecStreamTest : public ExecStreamUnitTestBase
         uint nRowsExpected,
         StringExecStreamGenerator &generator);
 
+    void testStream(bool memoryMapped, FileSize startOffset);
+
+    void writeBenchmarkFile(
+        const std::string &path,
+        uint nColumns,
+        FileSize size);
+
+    void benchmarkScan(
+        const std::string &path,
+        uint nColumns,
+        bool memoryMapped);
+
 public:
     explicit FlatFileExecStreamTest()
     {
         FENNEL_UNIT_TEST_CASE(FlatFileExecStreamTest, testBuffer);
+        FENNEL_UNIT_TEST_CASE(FlatFileExecStreamTest, testMappedBuffer);
         FENNEL_UNIT_TEST_CASE(FlatFileExecStreamTest, testParser);
         FENNEL_UNIT_TEST_CASE(FlatFileExecStreamTest, testStream);
+        FENNEL_UNIT_TEST_CASE(FlatFileExecStreamTest, testMappedStream);
+        FENNEL_UNIT_TEST_CASE(FlatFileExecStreamTest, testMappedStreamRange);
+        FENNEL_EXTRA_UNIT_TEST_CASE(FlatFileExecStreamTest, testScanThroughput);
     }
 
     void testBuffer();
+    void testMappedBuffer();
     void testParser();
     void testStream();
+    void testMappedStream();
+    void testMappedStreamRange();
+    void testScanThroughput();
 };
 
 void FlatFileExecStreamTest::testBuffer()
@@ -138,6 +160,51 @@ void FlatFileExecStreamTest::testBuffer()
     BOOST_CHECK(pFileBuffer->isComplete());
 }
 
+void FlatFileExecStreamTest::testMappedBuffer()
+{
+    std::string path = "flatfile/stream";
+    std::string rows[] = {
+        "No one,travels\n",
+        "Along this way,but I\\,\n",
+        "This,autumn evening.\n"
+    };
+    std::string contents = rows[0] + rows[1] + rows[2];
+
+    SharedFlatFileBuffer pFileBuffer;
+    pFileBuffer.reset(
+        new FlatFileBuffer(path, true), ClosableObjectDestructor());
+    pFileBuffer->open();
+    checkRead(*pFileBuffer, contents.c_str());
+    BOOST_CHECK(pFileBuffer->isComplete());
+    pFileBuffer->setReadPtr(pFileBuffer->getEndPtr());
+    BOOST_CHECK(pFileBuffer->isDone());
+
+    // Split the file at every offset. Each range must consist of whole rows,
+    // and together the two ranges must cover the file. (An end offset of 0
+    // means the end of the file, so the split starts at 1.)
+    for (uint split = 1; split <= contents.size(); split++) {
+        pFileBuffer->open();
+        pFileBuffer->setRange(0, split, '\n');
+        pFileBuffer->read();
+        std::string first(
+            pFileBuffer->getReadPtr(), pFileBuffer->getSize());
+        BOOST_CHECK(pFileBuffer->isComplete());
+
+        pFileBuffer->open();
+        pFileBuffer->setRange(split, 0, '\n');
+        pFileBuffer->read();
+        std::string second(
+            pFileBuffer->getReadPtr(), pFileBuffer->getSize());
+        BOOST_CHECK(pFileBuffer->isComplete());
+
+        BOOST_CHECK_EQUAL(first + second, contents);
+        BOOST_CHECK(first.empty() || first[first.size() - 1] == '\n');
+        BOOST_CHECK(
+            first.empty() || first == rows[0]
+            || first == rows[0] + rows[1] || first == contents);
+    }
+}
+
 void FlatFileExecStreamTest::testParser()
 {
     FlatFileParser parser(',', '\n', '"', '"');
@@ -186,6 +253,28 @@ void FlatFileExecStreamTest::testParser()
     checkColumnScan(
         parser, "some poems",
         FlatFileColumnParseResult::NO_DELIM, 10, 10);
+
+    // delimiters beyond the first word of a long value
+    checkColumnScan(
+        parser, "The Road goes ever on and on,",
+        FlatFileColumnParseResult::FIELD_DELIM, 28, 29);
+    checkColumnScan(
+        parser, "Down from the door where it began\r\n",
+        FlatFileColumnParseResult::ROW_DELIM, 33, 34);
+    checkColumnScan(
+        parser, "\"Now far ahead, the Road has gone\"\n",
+        FlatFileColumnParseResult::ROW_DELIM, 34, 35);
+    checkColumnScan(
+        parser, "\"And I must follow, \"\"if I can\"\"\",",
+        FlatFileColumnParseResult::FIELD_DELIM, 33, 34);
+    checkColumnScan(
+        parser, "Pursuing it with eager feet",
+        FlatFileColumnParseResult::NO_DELIM, 27, 27);
+
+    FlatFileParser fixedParser(0, '\n', 0, 0);
+    checkColumnScan(
+        fixedParser, "Until it joins some larger way\n",
+        FlatFileColumnParseResult::ROW_DELIM, 30, 31);
 }
 
 void FlatFileExecStreamTest::checkRead(
@@ -246,6 +335,24 @@ void FlatFileExecStreamTest::checkColumnScan(
 }
 
 void FlatFileExecStreamTest::testStream()
+{
+    testStream(false, 0);
+}
+
+void FlatFileExecStreamTest::testMappedStream()
+{
+    testStream(true, 0);
+}
+
+void FlatFileExecStreamTest::testMappedStreamRange()
+{
+    // the range begins within the first row, so the scan starts at the
+    // second row
+    testStream(true, 10);
+}
+
+void FlatFileExecStreamTest::testStream(
+    bool memoryMapped, FileSize startOffset)
 {
     StandardTypeDescriptorFactory stdTypeFactory;
     TupleAttributeDescriptor attrDesc(
@@ -264,6 +371,8 @@ void FlatFileExecStreamTest::testStream()
     flatfileParams.quoteChar = '"';
     flatfileParams.escapeChar = '\\';
     flatfileParams.header = false;
+    flatfileParams.memoryMapped = memoryMapped;
+    flatfileParams.startOffset = startOffset;
 
     ExecStreamEmbryo flatfileStreamEmbryo;
     flatfileStreamEmbryo.init(
@@ -272,16 +381,137 @@ void FlatFileExecStreamTest::testStream()
 
     SharedExecStream pOutputStream = prepareSourceGraph(flatfileStreamEmbryo);
     StringExecStreamGeneratorImpl verifier;
-    verifier.insert("[ 'No one', 'travels' ]");
+    uint nRows = 2;
+    if (startOffset == 0) {
+        verifier.insert("[ 'No one', 'travels' ]");
+        nRows++;
+    }
     verifier.insert("[ 'Along this way', 'but I,' ]");
     verifier.insert("[ 'This', 'autumn evening.' ]");
 
     verifyOutput(
         *pOutputStream,
-        3,
+        nRows,
         verifier);
 }
 
+void FlatFileExecStreamTest::testScanThroughput()
+{
+    // size of each generated file, in megabytes
+    FileSize size = configMap.getIntParam("flatfileBenchmarkMb", 256);
+    size *= 1024 * 1024;
+
+    std::string narrowPath = "flatfile/benchNarrow";
+    std::string widePath = "flatfile/benchWide";
+    writeBenchmarkFile(narrowPath, 4, size);
+    writeBenchmarkFile(widePath, 100, size);
+
+    // read each file once first, so that all runs find it cached
+    for (uint i = 0; i < 2; i++) {
+        bool memoryMapped = (i > 0);
+        benchmarkScan(narrowPath, 4, memoryMapped);
+        benchmarkScan(widePath, 100, memoryMapped);
+        benchmarkScan(narrowPath, 4, memoryMapped);
+        benchmarkScan(widePath, 100, memoryMapped);
+    }
+
+    std::remove(narrowPath.c_str());
+    std::remove(widePath.c_str());
+}
+
+void FlatFileExecStreamTest::writeBenchmarkFile(
+    const std::string &path,
+    uint nColumns,
+    FileSize size)
+{
+    std::ofstream out(path.c_str(), std::ios::out | std::ios::trunc);
+    std::ostringstream row;
+    for (FileSize written = 0, iRow = 0; written < size; iRow++) {
+        row.str("");
+        for (uint i = 0; i < nColumns; i++) {
+            if (i > 0) {
+                row << ',';
+            }
+            switch (i % 4) {
+            case 0:
+                row << iRow;
+                break;
+            case 1:
+                row << "value " << i;
+                break;
+            case 2:
+                row << "\"quoted, with \"\"escapes\"\"\"";
+                break;
+            default:
+                row << "2010-01-0" << (iRow % 9 + 1);
+                break;
+            }
+        }
+        row << '\n';
+        out << row.str();
+        written += row.str().size();
+    }
+    out.close();
+    BOOST_REQUIRE(out.good());
+}
+
+void FlatFileExecStreamTest::benchmarkScan(
+    const std::string &path,
+    uint nColumns,
+    bool memoryMapped)
+{
+    // same size as the scratch page a stream would read into
+    std::vector<char> storage(pCache->getPageSize());
+
+    FlatFileParser parser(',', '\n', '"', '"', true);
+    FlatFileRowDescriptor rowDesc;
+    for (uint i = 0; i < nColumns; i++) {
+        rowDesc.push_back(FlatFileColumnDescriptor(64));
+    }
+    rowDesc.setLenient(false);
+    FlatFileRowParseResult result;
+
+    boost::posix_time::ptime start =
+        boost::posix_time::microsec_clock::universal_time();
+
+    SharedFlatFileBuffer pFileBuffer;
+    pFileBuffer.reset(
+        new FlatFileBuffer(path, memoryMapped), ClosableObjectDestructor());
+    pFileBuffer->open();
+    pFileBuffer->setStorage(&storage[0], (uint) storage.size());
+    pFileBuffer->read();
+
+    FileSize nBytes = 0;
+    uint nRows = 0;
+    while (!pFileBuffer->isDone()) {
+        parser.scanRow(
+            pFileBuffer->getReadPtr(), pFileBuffer->getSize(), rowDesc,
+            result);
+        if (result.status == FlatFileRowParseResult::INCOMPLETE_COLUMN
+            && !pFileBuffer->isComplete())
+        {
+            pFileBuffer->read();
+            continue;
+        }
+        BOOST_REQUIRE(result.status == FlatFileRowParseResult::NO_STATUS);
+        parser.stripQuoting(result, true);
+        nBytes += result.next - result.current;
+        nRows++;
+        pFileBuffer->setReadPtr(result.next);
+    }
+    pFileBuffer->close();
+
+    double seconds =
+        (boost::posix_time::microsec_clock::universal_time() - start)
+        .total_microseconds() / 1000000.0;
+    std::cout << path << " (" << nColumns << " columns), "
+        << (memoryMapped ? "memory-mapped" : "buffered") << ": "
+        << nRows << " rows, " << (nBytes / (1024 * 1024)) << " MB in "
+        << seconds << " s ("
+        << ((seconds > 0) ? nBytes / seconds / (1024 * 1024) : 0)
+        << " MB/s)" << std::endl;
+}
+
 void FlatFileExecStreamTest::verifyOutput(
     ExecStream &stream,
     uint nRowsExpected,
@@ -1166,6 +1166,18 @@ deterministic
 no sql
 external name 'applib.applibJar:org.eigenbase.applib.impexp.RemoteRowsUDX.execute';
 
+create or replace function APPLIB.SEND_REMOTE_ROWS(
+IN_CURSOR cursor, 
+HOST varchar(65535), 
+PORT int, 
+IS_COMPRESSED boolean)
+returns table(status int, message varchar(6000))
+language java
+parameter style system defined java
+deterministic
+no sql
+external name 'applib.applibJar:org.eigenbase.applib.impexp.RemoteRowsSender.execute';
+
 create or replace procedure applib.create_table_from_source_table(
 in sourceTable varchar(1024),
 in schemaName varchar(128),
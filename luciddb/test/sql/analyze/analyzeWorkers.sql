@@ -0,0 +1,80 @@
+-- Statistics computed by several index verification workers should match
+-- those computed by a single one
+
+!set headerinterval 0
+
+set schema 'analyzetest';
+
+create table workers_t(
+  "kseq" bigint primary key,
+  "k2" bigint,
+  "k10" bigint,
+  "k100" bigint,
+  "k1k" bigint,
+  "k10k" bigint);
+create index workers_t_k2 on workers_t("k2");
+create index workers_t_k100 on workers_t("k100");
+create index workers_t_k1k_k10 on workers_t("k1k", "k10");
+
+insert into workers_t
+select "kseq", "k2", "k10", "k100", "k1k", "k10k" from bench10k;
+
+create view workers_index_stats as
+select "name", "pageCount" from sys_fem."MED"."LocalIndex"
+where "name" like '%WORKERS_T%';
+
+create view workers_column_stats as
+select column_name, distinct_value_count, is_distinct_value_count_estimated,
+  percent_sampled, sample_size
+from sys_root.dba_column_stats
+where schema_name = 'ANALYZETEST' and table_name = 'WORKERS_T';
+
+analyze table workers_t compute statistics for all columns;
+create table workers_seq_index(name varchar(128), page_count bigint);
+create table workers_seq_column(
+  column_name varchar(128),
+  distinct_value_count bigint,
+  is_distinct_value_count_estimated boolean,
+  percent_sampled double,
+  sample_size bigint);
+insert into workers_seq_index select * from workers_index_stats;
+insert into workers_seq_column select * from workers_column_stats;
+
+alter session set "analyzeIndexWorkers" = 4;
+analyze table workers_t compute statistics for all columns;
+
+select count(*) > 3 from workers_seq_index;
+select count(*) from
+  (select * from workers_index_stats
+   except select * from workers_seq_index);
+select count(*) from
+  (select * from workers_seq_index
+   except select * from workers_index_stats);
+select count(*) from
+  (select * from workers_column_stats
+   except select * from workers_seq_column);
+select count(*) from
+  (select * from workers_seq_column
+   except select * from workers_column_stats);
+
+-- after a delete, the deletion index is verified alongside the others
+delete from workers_t where "k10" = 3;
+alter session set "analyzeIndexWorkers" = 1;
+analyze table workers_t compute statistics for all columns;
+delete from workers_seq_index;
+insert into workers_seq_index select * from workers_index_stats;
+alter session set "analyzeIndexWorkers" = 4;
+analyze table workers_t compute statistics for all columns;
+select count(*) from
+  (select * from workers_index_stats
+   except select * from workers_seq_index);
+select count(*) from
+  (select * from workers_seq_index
+   except select * from workers_index_stats);
+
+alter session set "analyzeIndexWorkers" = 1;
+drop table workers_seq_index;
+drop table workers_seq_column;
+drop view workers_column_stats;
+drop view workers_index_stats;
+drop table workers_t;
@@ -0,0 +1,59 @@
+-- Aggregations over full scans of large tables are split into partial
+-- aggregations over rid ranges when degreeOfParallelism is above 1.  Their
+-- results must match those of the unsplit aggregation, deleted rows included.
+
+!set headerinterval 0
+
+set schema 'analyzetest';
+
+create table par_t("kseq" bigint primary key, "k2" bigint, "k100" bigint);
+insert into par_t select "kseq", "k2", "k100" from bench1m;
+
+-- leave deleted rows in every range, including a run across a boundary
+delete from par_t where "kseq" between 300001 and 400000;
+delete from par_t where "k100" = 7;
+
+create table par_expected(cnt bigint, s bigint, mn bigint, mx bigint);
+create table par_expected_grouped(k2 bigint, cnt bigint, s bigint);
+
+-- unsplit results
+alter session set "degreeOfParallelism" = 1;
+insert into par_expected
+select count(*), sum("k100"), min("kseq"), max("kseq") from par_t;
+insert into par_expected_grouped
+select "k2", count(*), sum("k100") from par_t group by "k2";
+
+!outputformat csv
+explain plan for select count(*), sum("k100") from par_t;
+
+-- about 890,000 rows and 110,000 deleted ones:  three ranges of at least
+-- 250,000 rows each rather than four, splitting the million rids evenly
+alter session set "degreeOfParallelism" = 4;
+explain plan for select count(*), sum("k100") from par_t;
+!outputformat table
+
+select count(*) from
+  (select count(*), sum("k100"), min("kseq"), max("kseq") from par_t
+   except select * from par_expected);
+select count(*) from
+  (select * from par_expected
+   except
+   select count(*), sum("k100"), min("kseq"), max("kseq") from par_t);
+select count(*) from
+  (select "k2", count(*), sum("k100") from par_t group by "k2"
+   except select * from par_expected_grouped);
+select count(*) from
+  (select * from par_expected_grouped
+   except
+   select "k2", count(*), sum("k100") from par_t group by "k2");
+
+-- a filter above the scan is applied in each range
+select count(*) from
+  (select count(*) from par_t where "k2" = 1
+   except
+   select sum(cnt) from par_expected_grouped where k2 = 1);
+
+alter session set "degreeOfParallelism" = 1;
+drop table par_expected_grouped;
+drop table par_expected;
+drop table par_t;
@@ -0,0 +1,111 @@
+-- Statistics computed by a single scan of the table (analyzeSinglePass)
+-- should match those computed by a query per column, for values of every
+-- type, and nulls
+
+!set headerinterval 0
+
+set schema 'analyzetest';
+
+create table sp_t(
+  i int,
+  bi bigint,
+  dec decimal(10, 2),
+  dbl double,
+  vc varchar(20),
+  ch char(3),
+  d date,
+  t time,
+  ts timestamp,
+  b boolean,
+  vb varbinary(4));
+
+insert into sp_t values
+  (1, 10, 1.50, 0.25, 'apple', 'abc', date '2006-01-01', time '00:00:00',
+   timestamp '2006-01-01 00:00:00', true, x'00ff'),
+  (2, 10, -3.25, 1e10, 'banana', 'abd', date '2006-01-02', time '12:30:00',
+   timestamp '2006-01-01 12:30:00', false, x'0100'),
+  (2, 20, 1.50, -0.5, 'apple', 'b', date '1999-12-31', time '23:59:59',
+   timestamp '1999-12-31 23:59:59', true, x'ff'),
+  (3, null, null, null, null, null, null, null, null, null, null),
+  (null, 30, 100.00, 0.25, '', 'abc', date '2006-01-01', time '00:00:00',
+   timestamp '2006-01-01 00:00:00', null, x''),
+  (4, 40, 0.01, 2.0, 'cherry', 'zzz', date '2010-06-15', time '08:00:01',
+   timestamp '2010-06-15 08:00:01', false, x'00ff');
+
+-- plenty of repeated values, and nulls in the other columns
+insert into sp_t(i, bi, vc, d, ts)
+select "k100", "k1k", cast("k10" as varchar(20)), s.d, s.ts
+from bench10k, (select d, ts from sp_t where ts is not null) s
+where "kseq" <= 2000;
+
+create view sp_column_stats as
+select column_name, distinct_value_count, is_distinct_value_count_estimated,
+  percent_sampled, sample_size
+from sys_root.dba_column_stats
+where schema_name = 'ANALYZETEST' and table_name = 'SP_T';
+
+create view sp_histograms as
+select column_name, ordinal, start_value, value_count
+from sys_root.dba_column_histograms
+where schema_name = 'ANALYZETEST' and table_name = 'SP_T';
+
+create table sp_expected_stats(
+  column_name varchar(128),
+  distinct_value_count bigint,
+  is_distinct_value_count_estimated boolean,
+  percent_sampled double,
+  sample_size bigint);
+create table sp_expected_histograms(
+  column_name varchar(128),
+  ordinal int,
+  start_value varchar(128),
+  value_count bigint);
+
+-- a query per column
+alter session set "analyzeSinglePass" = false;
+analyze table sp_t compute statistics for all columns;
+insert into sp_expected_stats select * from sp_column_stats;
+insert into sp_expected_histograms select * from sp_histograms;
+
+select count(*) from sp_column_stats;
+
+-- timestamps are recorded the way getString formats them
+select count(*) > 0 from sp_histograms
+where column_name = 'TS' and start_value is not null;
+select count(*) from sp_histograms
+where column_name = 'TS' and start_value like '%.0';
+
+-- a single scan
+alter session set "analyzeSinglePass" = true;
+analyze table sp_t compute statistics for all columns;
+
+select count(*) from
+  (select * from sp_column_stats except select * from sp_expected_stats);
+select count(*) from
+  (select * from sp_expected_stats except select * from sp_column_stats);
+select count(*) from
+  (select * from sp_histograms except select * from sp_expected_histograms);
+select count(*) from
+  (select * from sp_expected_histograms except select * from sp_histograms);
+select count(*) from sp_histograms
+where column_name = 'TS' and start_value like '%.0';
+
+-- a column whose values are all distinct, though not declared unique,
+-- sampled enough for its sketch to give up counting values exactly; the
+-- sketch's estimate can exceed the sampled rows, and must still scale up
+-- to a count no larger than the table's
+create table sp_unique(u bigint);
+insert into sp_unique select "kseq" from bench1m;
+analyze table sp_unique estimate statistics for all columns sample 2 percent;
+select distinct_value_count between 200000 and 1000000,
+  is_distinct_value_count_estimated
+from sys_root.dba_column_stats
+where schema_name = 'ANALYZETEST' and table_name = 'SP_UNIQUE';
+drop table sp_unique;
+
+alter session set "analyzeSinglePass" = false;
+drop table sp_expected_histograms;
+drop table sp_expected_stats;
+drop view sp_histograms;
+drop view sp_column_stats;
+drop table sp_t;
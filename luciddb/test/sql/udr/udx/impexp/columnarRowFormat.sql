@@ -0,0 +1,127 @@
+-- Round trip through ColumnarRowWriter and ColumnarRowReader, as used by
+-- WRITE_ROWS_TO_FILE, READ_ROWS_FROM_FILE and REMOTE_ROWS
+create schema crf;
+set schema 'crf';
+set path 'crf';
+
+create function columnar_round_trip(c cursor, compressed boolean)
+returns table(c.*)
+language java
+parameter style system defined java
+no sql
+external name 'applib.applibJar:org.eigenbase.applib.test.ColumnarRowFormatUdx.roundTrip';
+
+create function columnar_abort(c cursor, message varchar(100), repeat_count int)
+returns table(rows_read int, message_length int, message_matches boolean)
+language java
+parameter style system defined java
+no sql
+external name 'applib.applibJar:org.eigenbase.applib.test.ColumnarRowFormatUdx.abort';
+
+create table digits(n int);
+insert into digits values (0), (1), (2), (3), (4), (5), (6), (7), (8), (9);
+
+-- one column of each type; every seventh row is all null
+create table all_types(
+id int,
+b boolean,
+ti tinyint,
+si smallint,
+i int,
+bi bigint,
+dm decimal(10,2),
+r real,
+d double,
+c char(5),
+vc varchar(20),
+bin binary(4),
+vb varbinary(8),
+dt date,
+tm time,
+ts timestamp
+);
+
+insert into all_types
+select
+  id,
+  case when mod(id, 7) = 3 then null else mod(id, 2) = 0 end,
+  case when mod(id, 7) = 3 then null else cast(mod(id, 100) as tinyint) end,
+  case when mod(id, 7) = 3 then null else cast(id - 5000 as smallint) end,
+  case when mod(id, 7) = 3 then null else id * 1000 end,
+  case when mod(id, 7) = 3 then null
+    else cast(id as bigint) * 1000000007 end,
+  case when mod(id, 7) = 3 then null
+    else cast(id as decimal(10,2)) / 4 end,
+  case when mod(id, 7) = 3 then null else cast(id as real) / 8 end,
+  case when mod(id, 7) = 3 then null else cast(id as double) / 3 end,
+  case when mod(id, 7) = 3 then null else cast(mod(id, 10) as char(5)) end,
+  case when mod(id, 7) = 3 then null else 'value ' || cast(id as varchar(10))
+    end,
+  case when mod(id, 7) = 3 then null else X'0102FEFF' end,
+  case when mod(id, 7) = 3 then null when mod(id, 2) = 0 then X'00'
+    else X'DEADBEEF' end,
+  case when mod(id, 7) = 3 then null
+    else applib.add_days(date '2000-01-01', id) end,
+  case when mod(id, 7) = 3 then null when mod(id, 2) = 0 then time '00:00:00'
+    else time '23:59:59' end,
+  case when mod(id, 7) = 3 then null
+    else applib.add_days(timestamp '1999-12-31 12:34:56', id) end
+from (
+  select d1.n * 1000 + d2.n * 100 + d3.n * 10 + d4.n as id
+  from digits d1, digits d2, digits d3, digits d4);
+
+-- 10000 rows make more than one block
+select count(*), count(id), count(b), count(ts) from all_types;
+
+-- rows come back unchanged, with or without compression
+select count(*), count(distinct id), count(b), count(ts)
+from table(columnar_round_trip(cursor(select * from all_types), false));
+
+select count(*) from (
+  select * from all_types
+  except
+  select * from table(
+    columnar_round_trip(cursor(select * from all_types), false)));
+
+select count(*) from (
+  select * from table(
+    columnar_round_trip(cursor(select * from all_types), false))
+  except
+  select * from all_types);
+
+select count(*), count(distinct id), count(b), count(ts)
+from table(columnar_round_trip(cursor(select * from all_types), true));
+
+select count(*) from (
+  select * from all_types
+  except
+  select * from table(
+    columnar_round_trip(cursor(select * from all_types), true)));
+
+select count(*) from (
+  select * from table(
+    columnar_round_trip(cursor(select * from all_types), true))
+  except
+  select * from all_types);
+
+-- a sample of the rows read back, including an all-null row
+select id, b, si, dm, c, vc, vb, dt, tm
+from table(columnar_round_trip(cursor(select * from all_types), true))
+where id between 8190 and 8194
+order by id;
+
+-- an empty cursor
+select count(*)
+from table(columnar_round_trip(
+  cursor(select * from all_types where id < 0), false));
+
+-- an aborted stream: the complete block before the error is read, then the
+-- error message, which is longer than DataOutput.writeUTF allows
+select * from table(
+  columnar_abort(cursor(select * from all_types), 'error ', 15000));
+
+select * from table(
+  columnar_abort(cursor(select * from all_types where id < 0), '', 1));
+
+-- cleanup
+drop schema crf cascade;
@@ -22,6 +22,7 @@ import java.io.ObjectOutputStream;
 import java.net.Socket;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.List;
@@ -298,9 +299,58 @@ public class TestRemoteRowsUDX
         }
             
         assertTrue("Compress stream test is not passed: ",test);
-        
-        //Case4: Premature end of stream (cancel object stream) 
-        //Case5: Unique constraints on server (ie, server based exception on JDBC connection)         
+
+        //Case4: Columnar stream sent by SEND_REMOTE_ROWS
+        conn = driver.connect(driverURI, props);
+        ps = conn.prepareStatement(
+            "insert into s.t " +
+            "select * from table( "
+            + "APPLIB.REMOTE_ROWS(cursor( "
+            + "select cast(null as int) as id, cast(null as varchar(255)) as name, "
+            + "cast(null as boolean) as is_married " + "from (values(0)) "
+            + "),7778,FALSE) " + ")");
+
+        runner = new SQLRunner(ps);
+
+        runner.start();
+
+        Thread.sleep(5000);
+
+        Connection senderConn = driver.connect(driverURI, props);
+        stmt = senderConn.createStatement();
+        ResultSet rs = stmt.executeQuery(
+            "select * from table( "
+            + "APPLIB.SEND_REMOTE_ROWS(cursor( "
+            + "select * from (values (201, 'Test2', true), "
+            + "(202, cast(null as varchar(255)), false)) "
+            + "as v(id, name, is_married) "
+            + "),'localhost',7778,TRUE) " + ")");
+        assertTrue(rs.next());
+        assertEquals(0, rs.getInt(1));
+        rs.close();
+        stmt.close();
+        senderConn.close();
+        runner.join();
+
+        ps.close();
+        conn.close();
+
+        assertNull(
+            "Columnar stream test is not passed: " + runner.getErrorMsg(),
+            runner.getErrorMsg());
+
+        conn = driver.connect(driverURI, props);
+        stmt = conn.createStatement();
+        rs = stmt.executeQuery(
+            "select count(*) from s.t where id in (201, 202)");
+        assertTrue(rs.next());
+        assertEquals(2, rs.getInt(1));
+        rs.close();
+        stmt.close();
+        conn.close();
+
+        //Case5: Premature end of stream (cancel object stream) 
+        //Case6: Unique constraints on server (ie, server based exception on JDBC connection)         
    
     }
     